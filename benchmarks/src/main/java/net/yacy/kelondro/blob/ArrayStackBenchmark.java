@@ -0,0 +1,142 @@
+// ArrayStackBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.IndexTest;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * JMH benchmark for lookups in an {@link ArrayStack} with several mounted generation files,
+ * like the RWI index files behind the ReferenceContainerArray.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ArrayStackBenchmark {
+
+    /** total number of records in all generation files */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /** number of generation files the records are distributed to */
+    @Param({"2", "20"})
+    public int generations;
+
+    private File dir;
+    private byte[][] keys, missing;
+    private ArrayStack stack;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SpaceExceededException {
+        this.dir = Files.createTempDirectory("ArrayStackBenchmark").toFile();
+        this.keys = new byte[this.size][];
+        this.missing = new byte[this.size][];
+        final Random r = new Random(0);
+        for (int i = 0; i < this.size; i++) this.keys[i] = IndexTest.randomHash(r);
+        for (int i = 0; i < this.size; i++) this.missing[i] = IndexTest.randomHash(r);
+        final byte[] blob = new byte[64];
+        r.nextBytes(blob);
+
+        this.stack = new ArrayStack(this.dir, "bench", Base64Order.enhancedCoder, 12, 0, true, false);
+        final long time = System.currentTimeMillis() - this.generations * 1000L;
+        for (int g = 0; g < this.generations; g++) {
+            final File f = this.stack.newBLOB(new Date(time + g * 1000L));
+            final HeapWriter writer = new HeapWriter(new File(this.dir, f.getName() + ".prt"), f, 12, Base64Order.enhancedCoder, 1024 * 1024);
+            for (int i = g; i < this.size; i += this.generations) writer.add(this.keys[i], blob);
+            writer.close(true);
+            this.stack.mountBLOB(f, false);
+        }
+        this.next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.stack.close(false);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    /**
+     * lookup of keys that exist in exactly one generation
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] getHit() throws IOException, SpaceExceededException {
+        return this.stack.get(this.keys[(this.next++ & Integer.MAX_VALUE) % this.size]);
+    }
+
+    /**
+     * lookup of keys that do not exist in any generation
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] getMiss() throws IOException, SpaceExceededException {
+        return this.stack.get(this.missing[(this.next++ & Integer.MAX_VALUE) % this.size]);
+    }
+
+    /**
+     * collect all values of a key, as done by the RWI term lookup
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int getAll() throws IOException {
+        int c = 0;
+        for (final byte[] b: this.stack.getAll(this.keys[(this.next++ & Integer.MAX_VALUE) % this.size])) if (b != null) c++;
+        return c;
+    }
+
+    /**
+     * existence check of keys, half of them missing
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean containsKey() {
+        final int i = this.next++ & Integer.MAX_VALUE;
+        return this.stack.containsKey(((i & 1) == 0 ? this.keys : this.missing)[i % this.size]);
+    }
+
+}
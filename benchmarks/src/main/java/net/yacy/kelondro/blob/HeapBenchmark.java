@@ -0,0 +1,136 @@
+// HeapBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.IndexTest;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * JMH benchmark for writing a BLOB heap file with the {@link HeapWriter}
+ * and reading records from it with the {@link HeapReader}.
+ * The files are written to the temporary directory; set -Djava.io.tmpdir
+ * to the device that shall be measured.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class HeapBenchmark {
+
+    /** number of records in the heap file */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /** length of each record payload in bytes */
+    @Param({"64", "1024"})
+    public int blobLength;
+
+    /** the output buffer size of the heap writer */
+    @Param({"4194304"})
+    public int writeBuffer;
+
+    private File dir;
+    private byte[][] keys;
+    private byte[] blob;
+    private HeapReader reader;
+    private int next, written;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SpaceExceededException {
+        this.dir = Files.createTempDirectory("HeapBenchmark").toFile();
+        this.keys = new byte[this.size][];
+        final Random r = new Random(0);
+        for (int i = 0; i < this.size; i++) this.keys[i] = IndexTest.randomHash(r);
+        this.blob = new byte[this.blobLength];
+        r.nextBytes(this.blob);
+        final File heapFile = write("read.heap");
+        this.reader = new HeapReader(heapFile, 12, Base64Order.enhancedCoder);
+        this.next = 0;
+        this.written = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.reader.close(false);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    private File write(final String name) throws IOException, SpaceExceededException {
+        final File heapFile = new File(this.dir, name);
+        final HeapWriter writer = new HeapWriter(new File(this.dir, name + ".prt"), heapFile, 12, Base64Order.enhancedCoder, this.writeBuffer);
+        for (int i = 0; i < this.size; i++) writer.add(this.keys[i], this.blob);
+        writer.close(true);
+        return heapFile;
+    }
+
+    /**
+     * write a complete heap file including the index dump, as done by a RWI dump or merge
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public File writeHeap() throws IOException, SpaceExceededException {
+        final File f = write("write" + (this.written++) + ".heap");
+        HeapWriter.delete(f);
+        return f;
+    }
+
+    /**
+     * random reads of existing records
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] get() throws IOException, SpaceExceededException {
+        return this.reader.get(this.keys[(this.next++ & Integer.MAX_VALUE) % this.size]);
+    }
+
+    /**
+     * random index probes without reading the record
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean containsKey() {
+        return this.reader.containsKey(this.keys[(this.next++ & Integer.MAX_VALUE) % this.size]);
+    }
+
+}
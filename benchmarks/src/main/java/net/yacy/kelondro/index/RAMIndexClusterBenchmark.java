@@ -0,0 +1,112 @@
+// RAMIndexClusterBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * JMH benchmark for the {@link RAMIndexCluster} which is the RAM part of the kelondro tables.
+ * The lookup benchmark runs with several threads because the cluster is meant to reduce lock contention.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RAMIndexClusterBenchmark {
+
+    /** number of entries in the index; use -p size=10000000 for larger runs */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /** number of RAMIndex objects inside the cluster */
+    @Param({"16"})
+    public int clusterSize;
+
+    private Row rowdef;
+    private byte[][] keys;
+    private RAMIndexCluster cluster;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = new Random().nextInt(Integer.MAX_VALUE);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        this.rowdef = new Row("byte[] key-12, Cardinal x-8 {b256}", Base64Order.enhancedCoder);
+        this.keys = new byte[this.size][];
+        final Random r = new Random(0);
+        for (int i = 0; i < this.size; i++) this.keys[i] = IndexTest.randomHash(r);
+        this.cluster = fill();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.cluster.close();
+    }
+
+    private RAMIndexCluster fill() throws SpaceExceededException {
+        final RAMIndexCluster c = new RAMIndexCluster("benchmark", this.rowdef, this.clusterSize);
+        for (int i = 0; i < this.size; i++) c.put(this.rowdef.newEntry(new byte[][]{this.keys[i], new byte[8]}));
+        return c;
+    }
+
+    /**
+     * bulk put of unique entries
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RAMIndexCluster put() throws SpaceExceededException {
+        final RAMIndexCluster c = fill();
+        c.close();
+        return c;
+    }
+
+    /**
+     * concurrent random lookups
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public Row.Entry get(final Cursor cursor) {
+        return this.cluster.get(this.keys[(cursor.next++ & Integer.MAX_VALUE) % this.size], false);
+    }
+
+}
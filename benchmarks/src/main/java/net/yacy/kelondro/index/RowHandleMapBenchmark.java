@@ -0,0 +1,113 @@
+// RowHandleMapBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * JMH benchmark for the {@link RowHandleMap}, the key/seek index of every BLOB heap file.
+ * This is the JMH version of the HandleMap part of {@link IndexTest}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RowHandleMapBenchmark {
+
+    /** number of entries in the map; use -p size=10000000 for larger runs */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private byte[][] keys;
+    private RowHandleMap map;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        this.keys = new byte[this.size][];
+        final Random r = new Random(0);
+        for (int i = 0; i < this.size; i++) this.keys[i] = IndexTest.randomHash(r);
+        this.map = fill();
+        this.map.get(this.keys[0]); // trigger sort
+        this.next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.map.close();
+    }
+
+    private RowHandleMap fill() throws SpaceExceededException {
+        final RowHandleMap m = new RowHandleMap(12, Base64Order.enhancedCoder, 8, this.size, "benchmark");
+        for (int i = 0; i < this.size; i++) m.putUnique(this.keys[i], i);
+        return m;
+    }
+
+    /**
+     * bulk load of unique keys, as done when an index dump is read or a heap file is scanned
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long putUnique() throws SpaceExceededException {
+        final RowHandleMap m = fill();
+        final long l = m.get(this.keys[0]); // trigger sort to include it into the measurement
+        m.close();
+        return l;
+    }
+
+    /**
+     * random lookups in a sorted map
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long get() {
+        return this.map.get(this.keys[(this.next++ & Integer.MAX_VALUE) % this.size]);
+    }
+
+    /**
+     * increment of existing entries, as used for reference counters
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long inc() throws SpaceExceededException {
+        return this.map.inc(this.keys[(this.next++ & Integer.MAX_VALUE) % this.size]);
+    }
+
+}
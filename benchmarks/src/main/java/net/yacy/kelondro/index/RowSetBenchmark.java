@@ -0,0 +1,110 @@
+// RowSetBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * JMH benchmark for insert, lookup and merge operations on a {@link RowSet}
+ * with the 12-byte hash keys used all over the kelondro index.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RowSetBenchmark {
+
+    /** number of entries in the set; use -p size=10000000 for larger runs */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Row rowdef;
+    private byte[][] keys;
+    private RowSet sorted;
+    private RowSet half1, half2;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        this.rowdef = new Row("byte[] key-12, Cardinal x-4 {b256}", Base64Order.enhancedCoder);
+        this.keys = new byte[this.size][];
+        final Random r = new Random(0);
+        for (int i = 0; i < this.size; i++) this.keys[i] = IndexTest.randomHash(r);
+        this.sorted = fill(0, this.size);
+        this.half1 = fill(0, this.size / 2);
+        this.half2 = fill(this.size / 2, this.size);
+        this.next = 0;
+    }
+
+    private RowSet fill(final int from, final int to) throws SpaceExceededException {
+        final RowSet set = new RowSet(this.rowdef, to - from);
+        for (int i = from; i < to; i++) set.addUnique(this.rowdef.newEntry(new byte[][]{this.keys[i], new byte[4]}));
+        set.sort();
+        return set;
+    }
+
+    /**
+     * bulk load all keys and sort the set, as it is done when a container is produced
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RowSet insert() throws SpaceExceededException {
+        return fill(0, this.size);
+    }
+
+    /**
+     * random lookups in a sorted set
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Row.Entry lookup() {
+        final byte[] key = this.keys[(this.next++ & Integer.MAX_VALUE) % this.size];
+        return this.sorted.get(key, false);
+    }
+
+    /**
+     * merge of two sorted sets of half the size
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RowSet merge() throws SpaceExceededException {
+        return this.half1.merge(this.half2);
+    }
+
+}
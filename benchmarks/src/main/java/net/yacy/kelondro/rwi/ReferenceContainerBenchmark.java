@@ -0,0 +1,108 @@
+// ReferenceContainerBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.rwi;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.util.ByteArray;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.IndexTest;
+
+/**
+ * JMH benchmark for the join of two RWI containers as done for each multi-word search
+ * and for the merge of two containers as done when the RWI cache is flushed.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReferenceContainerBenchmark {
+
+    /** number of references in the larger container */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /** size of the smaller container relative to the larger one; a small ratio selects the join by test */
+    @Param({"1.0", "0.01"})
+    public double ratio;
+
+    /** share of the references of the smaller container which are also in the larger one */
+    @Param({"0.1"})
+    public double overlap;
+
+    private final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+    private ReferenceContainer<WordReference> large, small;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        final Random r = new Random(0);
+        final int smallSize = Math.max(1, (int) (this.size * this.ratio));
+        final byte[][] largeHashes = new byte[this.size][];
+        for (int i = 0; i < this.size; i++) largeHashes[i] = IndexTest.randomHash(r);
+        this.large = new ReferenceContainer<WordReference>(this.factory, Word.word2hash("large"), this.size);
+        for (final byte[] urlhash: largeHashes) this.large.add(reference(urlhash, r));
+        this.small = new ReferenceContainer<WordReference>(this.factory, Word.word2hash("small"), smallSize);
+        final Set<ByteArray> selected = new HashSet<ByteArray>();
+        for (int i = 0; i < smallSize; i++) {
+            final byte[] urlhash = r.nextDouble() < this.overlap ? largeHashes[r.nextInt(this.size)] : IndexTest.randomHash(r);
+            if (selected.add(new ByteArray(urlhash))) this.small.add(reference(urlhash, r)); // the overlap selection may produce doubles
+        }
+        this.large.sort();
+        this.small.sort();
+    }
+
+    private static WordReferenceRow reference(final byte[] urlhash, final Random r) {
+        final long now = System.currentTimeMillis();
+        return new WordReferenceRow(urlhash, 20 + r.nextInt(60), 1 + r.nextInt(8), r.nextInt(10), 100 + r.nextInt(1000), 10 + r.nextInt(100), now, now, ASCII.getBytes("en"), 't', r.nextInt(50), r.nextInt(50));
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> joinConstructive() throws SpaceExceededException {
+        return ReferenceContainer.joinConstructive(this.factory, this.small, this.large, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> merge() throws SpaceExceededException {
+        return this.large.merge(this.small);
+    }
+
+}
@@ -31,8 +31,12 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.http.pool.PoolStats;
+
 import net.yacy.cora.protocol.ConnectionInfo;
 import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HostPolicy;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
@@ -83,6 +87,17 @@ public final class Connections_p {
         prop.put("clientList", c);
         prop.put("clientActive", ConnectionInfo.getCount());
 
+        // connection pool saturation and re-use
+        final PoolStats pool = HTTPClient.getPoolStats();
+        prop.putNum("poolLeased", pool.getLeased());
+        prop.putNum("poolPending", pool.getPending());
+        prop.putNum("poolAvailable", pool.getAvailable());
+        prop.putNum("poolMax", pool.getMax());
+        prop.putNum("poolRequests", HostPolicy.requests());
+        prop.putNum("poolConnects", HostPolicy.connects());
+        prop.putNum("poolWaits", HostPolicy.waits());
+        prop.putNum("poolWaitTimeouts", HostPolicy.waitTimeouts());
+
         // return rewrite values for templates
         return prop;
     }
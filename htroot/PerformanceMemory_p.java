@@ -33,6 +33,7 @@ import java.util.TreeMap;
 import org.apache.solr.core.SolrInfoMBean;
 import org.apache.solr.search.SolrCache;
 
+import net.yacy.cora.federate.solr.connector.LoadTimeCacheSolrConnector;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.util.ConcurrentLog;
@@ -233,7 +234,21 @@ public class PerformanceMemory_p {
         prop.putNum("namecacheMiss.Miss", Domains.cacheMiss_Miss);
         prop.putNum("namecacheMiss.Insert", Domains.cacheMiss_Insert);
         prop.putNum("namecache.noCache", Domains.nameCacheNoCachingPatternsSize());
+        prop.putNum("namecacheLookup.running", Domains.lookupRunning());
+        prop.putNum("namecacheLookup.count", Domains.lookupCount());
+        prop.putNum("namecacheLookup.timeouts", Domains.lookupTimeouts());
+        prop.putNum("namecacheLookup.prefetch", Domains.prefetchCount());
+        prop.putNum("namecacheLookup.averageTime", Domains.lookupAverageTime());
         prop.putNum("blacklistcache.size", Switchboard.urlBlacklist.blacklistCacheSize());
+        prop.putNum("blacklisthostcache.size", Switchboard.urlBlacklist.hostCacheSize());
+        prop.putNum("blacklisthostcache.hit", Switchboard.urlBlacklist.hostCacheHit());
+        prop.putNum("blacklisthostcache.miss", Switchboard.urlBlacklist.hostCacheMiss());
+        final LoadTimeCacheSolrConnector loadTimeCache = sb.index.fulltext().getLoadTimeCache();
+        prop.putNum("loadtimecache.size", loadTimeCache == null ? 0 : loadTimeCache.cacheSize());
+        prop.putNum("loadtimecache.hit", loadTimeCache == null ? 0 : loadTimeCache.cacheHit());
+        prop.putNum("loadtimecache.miss", loadTimeCache == null ? 0 : loadTimeCache.cacheMiss());
+        prop.putNum("loadtimecache.insert", loadTimeCache == null ? 0 : loadTimeCache.cacheInsert());
+        prop.putNum("loadtimecache.delete", loadTimeCache == null ? 0 : loadTimeCache.cacheDelete());
         prop.putNum("searchevent.size", SearchEventCache.size());
         prop.putNum("searchevent.hit", SearchEventCache.cacheHit);
         prop.putNum("searchevent.miss", SearchEventCache.cacheMiss);
@@ -32,6 +32,7 @@ import net.yacy.cora.protocol.ConnectionInfo;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.data.TransactionManager;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.rwi.IODispatcher;
 import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.Formatter;
@@ -320,6 +321,17 @@ public class PerformanceQueues_p {
         prop.putNum("maxURLinCache", rwi == null ? 0 : rwi.getBufferMaxReferences());
         prop.putNum("maxAgeOfCache", rwi == null ? 0 : rwi.getBufferMaxAge() / 1000 / 60); // minutes
         prop.putNum("minAgeOfCache", rwi == null ? 0 : rwi.getBufferMinAge() / 1000 / 60); // minutes
+        final IODispatcher merger = indexSegment.merger();
+        prop.putNum("mergeWorkers", merger == null ? 0 : merger.mergeWorkers());
+        prop.putNum("mergeActive", merger == null ? 0 : merger.activeMerges());
+        prop.putNum("mergeQueue", merger == null ? 0 : merger.mergeQueueSize());
+        prop.putNum("dumpQueue", merger == null ? 0 : merger.dumpQueueSize());
+        prop.putNum("dumpCount", merger == null ? 0 : merger.dumpCount());
+        prop.putNum("dumpTime", merger == null ? 0 : merger.dumpTime() / 1000);
+        prop.putNum("mergeCount", merger == null ? 0 : merger.mergeCount());
+        prop.putNum("mergeFailures", merger == null ? 0 : merger.mergeFailures());
+        prop.putNum("mergeMBytes", merger == null ? 0 : merger.mergeBytes() / 1024 / 1024);
+        prop.putNum("mergeTime", merger == null ? 0 : merger.mergeTime() / 1000);
         prop.putNum("maxWaitingWordFlush", sb.getConfigLong("maxWaitingWordFlush", 180));
         prop.put("wordCacheMaxCount", sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 20000));
         prop.put("crawlPauseProxy", sb.getConfigLong(SwitchboardConstants.PROXY_ONLINE_CAUTION_DELAY, 30000));
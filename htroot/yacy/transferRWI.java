@@ -31,12 +31,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.feed.RSSMessage;
 import net.yacy.cora.federate.yacy.Distribution;
+import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.storage.HandleSet;
@@ -44,9 +46,12 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.Memory;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
 import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.util.FileUtils;
+import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.EventChannel;
 import net.yacy.peers.Network;
@@ -115,7 +120,8 @@ public final class transferRWI {
 //      final String key      = (String) post.get("key", "");             // transmission key
         final int wordc       = post.getInt("wordc", 0);                  // number of different words
         final int entryc      = post.getInt("entryc", 0);                 // number of entries in indexes
-        byte[] indexes        = post.get("indexes", "").getBytes();       // the indexes, as list of word entries
+        final boolean binary  = ("binary" + WordReferenceFactory.TRANSFER_FORMAT_VERSION).equals(post.get("indexformat", "")); // indexes in binary transfer format
+        byte[] indexes        = binary ? Base64Order.standardCoder.decode(post.get("indexes$file", "")) : post.get("indexes", "").getBytes(); // the indexes, as list of word entries
         boolean granted       = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, false);
         final boolean blockBlacklist = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_BLOCK_BLACKLIST, false);
         final long cachelimit = sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 100000);
@@ -170,39 +176,63 @@ public final class transferRWI {
             if (sb.getLog().isFine()) sb.getLog().fine("Processing " + indexes.length + " bytes / " + wordc + " words / " + entryc + " entries from " + otherPeerName);
             final long startProcess = System.currentTimeMillis();
 
-            // decode request
-            //System.out.println("STRINGS " + UTF8.String(indexes));
-            final Iterator<String> it = FileUtils.strings(indexes);
+            // decode request into word hashes and their index entries
+            final List<String> entryWordHashes = new ArrayList<String>();
+            final List<WordReference> entries = new ArrayList<WordReference>();
+            int blocked = 0;
+            if (binary) {
+                try {
+                    Iterator<WordReference> ei;
+                    String containerHash;
+                    for (final ReferenceContainer<WordReference> container: WordReferenceFactory.decodeTransfer(indexes, 1000)) { // protection against flooding
+                        containerHash = ASCII.String(container.getTermHash());
+                        ei = container.entries();
+                        while (ei.hasNext()) {
+                            entryWordHashes.add(containerHash);
+                            entries.add(ei.next());
+                        }
+                    }
+                } catch (final IOException e) {
+                    sb.getLog().info("Rejecting malformed binary RWI transfer from peer " + otherPeerName + ": " + e.getMessage());
+                    blocked = entryc;
+                }
+            } else {
+                //System.out.println("STRINGS " + UTF8.String(indexes));
+                final Iterator<String> it = FileUtils.strings(indexes);
+                String estring;
+                int p;
+                int count = 0;
+                while (it.hasNext()) {
+                    estring = it.next();
+                    count++;
+                    if (count > 1000) break; // protection against flooding
+
+                    // check if RWI entry is well-formed
+                    p = estring.indexOf('{',0);
+                    if (p < 0 || estring.indexOf("x=",0) < 0 || !(estring.indexOf("[B@",0) < 0)) {
+                        blocked++;
+                        continue;
+                    }
+                    entryWordHashes.add(estring.substring(0, p));
+                    entries.add(new WordReferenceRow(estring.substring(p)));
+                }
+            }
 
             // free memory
             indexes = null;
 
-            // now parse the Strings in the value-vector and write index entries
-            String estring;
-            int p;
+            // now write the index entries
             String wordHash;
             byte[] urlHash;
-            WordReferenceRow iEntry;
+            WordReference iEntry;
             final HandleSet unknownURL = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
             final ArrayList<String> wordhashes = new ArrayList<String>();
             int received = 0;
-            int blocked = 0;
-            int count = 0;
             Set<String> testids = new HashSet<String>();
-            while (it.hasNext()) {
-                estring = it.next();
-                count++;
-                if (count > 1000) break; // protection against flooding
-
-                // check if RWI entry is well-formed
-                p = estring.indexOf('{',0);
-                if (p < 0 || estring.indexOf("x=",0) < 0 || !(estring.indexOf("[B@",0) < 0)) {
-                    blocked++;
-                    continue;
-                }
-                wordHash = estring.substring(0, p);
+            for (int i = 0; i < entries.size(); i++) {
+                wordHash = entryWordHashes.get(i);
                 wordhashes.add(wordHash);
-                iEntry = new WordReferenceRow(estring.substring(p));
+                iEntry = entries.get(i);
                 urlHash = iEntry.urlhash();
 
                 // block blacklisted entries
@@ -479,6 +479,48 @@ public abstract class AbstractSolrConnector implements SolrConnector {
         LoadTimeURL md = getLoadTimeURL(doc);
         return md;
     }
+
+    @Override
+    public long getLoadTime(final String id) throws IOException {
+        final LoadTimeURL md = getLoadTimeURL(id);
+        return md == null ? -1l : md.date;
+    }
+
+    @Override
+    public Map<String, Long> getLoadTimes(final Collection<String> ids) throws IOException {
+        final Map<String, Long> times = new HashMap<String, Long>();
+        if (ids.isEmpty()) return times;
+        // construct one query for all ids; the number of ids must not exceed the maxBooleanClauses limit of solr
+        final StringBuilder q = new StringBuilder(8 + ids.size() * (Word.commonHashLength + 6));
+        q.append(CollectionSchema.id.getSolrFieldName()).append(":(");
+        boolean first = true;
+        for (final String id: ids) {
+            if (!first) q.append(" OR ");
+            q.append('"').append(id).append('"');
+            first = false;
+        }
+        q.append(')');
+        final SolrQuery params = new SolrQuery();
+        params.setQuery(q.toString());
+        params.setRows(ids.size());
+        params.setStart(0);
+        params.setFacet(false);
+        params.clearSorts();
+        params.setFields(CollectionSchema.id.getSolrFieldName(), CollectionSchema.load_date_dt.getSolrFieldName());
+        params.setIncludeScore(false);
+
+        // query the server
+        final SolrDocumentList sdl = getDocumentListByParams(params);
+        if (sdl == null) return times;
+        for (final SolrDocument doc: sdl) {
+            final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+            final LoadTimeURL md = getLoadTimeURL(doc);
+            if (id == null || md == null) continue;
+            final Long date = times.get(id);
+            if (date == null || date.longValue() < md.date) times.put(id, md.date); // a mirror may return a document twice
+        }
+        return times;
+    }
     
     /**
      * get the number of results when this query is done.
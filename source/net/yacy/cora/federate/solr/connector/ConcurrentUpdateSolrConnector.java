@@ -0,0 +1,501 @@
+/**
+ *  ConcurrentUpdateSolrConnector
+ *  First released 17.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.federate.solr.connector;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+
+import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+/**
+ * A write-behind decorator for a SolrConnector.
+ * Added documents are collected in a buffer and written to the wrapped connector
+ * in batches by a background thread, either when the buffer holds batchSize documents
+ * or after maxDelay milliseconds. Reads by id (getDocumentById, getLoadTimeURL) see
+ * buffered documents, deletes cancel buffered documents and all other write operations
+ * are ordered behind the buffered documents.
+ * If the wrapped connector cannot be reached, the writes are retried with a growing delay and
+ * the buffer is limited to maxBufferFactor * batchSize documents: further documents are refused.
+ */
+public class ConcurrentUpdateSolrConnector implements SolrConnector {
+
+    private final static ConcurrentLog log = new ConcurrentLog("ConcurrentUpdateSolrConnector");
+
+    /** the maximum number of buffered documents as a multiple of the batch size */
+    private final static int maxBufferFactor = 4;
+    /** the maximum delay in milliseconds between two writes after failed writes */
+    private final static long maxRetryDelay = 60000;
+
+    private final SolrConnector connector;
+    private final int batchSize;
+    private final long maxDelay;
+    private final LinkedHashMap<String, SolrInputDocument> pending; // documents waiting for the next batch; also the monitor for inFlight
+    private Map<String, SolrInputDocument> inFlight; // the batch which is currently written to the connector
+    private final Object writeLock; // orders all write operations on the connector
+    private final Thread flusher;
+    private volatile boolean running;
+    private volatile int failures; // the number of failed writes since the last successful write; changed within the lock of pending
+
+    /**
+     * @param connector the connector to which the documents are written
+     * @param batchSize the number of buffered documents that triggers a write
+     * @param maxDelay the maximum time in milliseconds that a document stays in the buffer
+     */
+    public ConcurrentUpdateSolrConnector(final SolrConnector connector, final int batchSize, final long maxDelay) {
+        this.connector = connector;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelay = Math.max(1, maxDelay);
+        this.pending = new LinkedHashMap<String, SolrInputDocument>();
+        this.inFlight = null;
+        this.writeLock = new Object();
+        this.running = true;
+        this.failures = 0;
+        this.flusher = new Thread("ConcurrentUpdateSolrConnector.flusher") {
+            @Override
+            public void run() {
+                while (ConcurrentUpdateSolrConnector.this.running) {
+                    try {
+                        waitForBatch();
+                    } catch (final InterruptedException e) {
+                        break;
+                    }
+                    flush();
+                }
+            }
+        };
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * wait until a batch is full or maxDelay has passed; after failed writes, wait for the retry delay
+     * @throws InterruptedException
+     */
+    private void waitForBatch() throws InterruptedException {
+        synchronized (this.pending) {
+            final long until = System.currentTimeMillis() + retryDelay();
+            long rest;
+            while (this.running && (this.failures > 0 || this.pending.size() < this.batchSize) && (rest = until - System.currentTimeMillis()) > 0) {
+                this.pending.wait(rest);
+            }
+        }
+    }
+
+    /**
+     * @return the time in milliseconds until the next write: maxDelay, doubled with each failed write up to maxRetryDelay
+     */
+    private long retryDelay() {
+        final int f = this.failures;
+        if (f == 0) return this.maxDelay;
+        return Math.max(this.maxDelay, Math.min(this.maxDelay << Math.min(f - 1, 16), maxRetryDelay));
+    }
+
+    /**
+     * write all buffered documents to the connector. If the connector cannot be reached, the documents stay
+     * in the buffer and are written with the next flush.
+     */
+    public void flush() {
+        try {
+            write();
+        } catch (final IOException e) {
+            if (this.failures <= 1) {
+                log.warn("failed to write " + bufferSize() + " buffered documents, retrying later: " + e.getMessage());
+            } else if (log.isFine()) {
+                log.fine("failed to write buffered documents " + this.failures + " times, retrying in " + retryDelay() + " milliseconds: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * write all buffered documents to the connector
+     * @throws IOException if the connector cannot be reached; the documents are buffered again unless they were
+     * deleted or replaced in the meantime
+     */
+    private void write() throws IOException {
+        synchronized (this.writeLock) {
+            final List<SolrInputDocument> batch;
+            synchronized (this.pending) {
+                if (this.pending.isEmpty()) return;
+                this.inFlight = new LinkedHashMap<String, SolrInputDocument>(this.pending);
+                this.pending.clear();
+                this.pending.notifyAll(); // wake callers waiting for space in the buffer
+                batch = new ArrayList<SolrInputDocument>(this.inFlight.values());
+            }
+            try {
+                try {
+                    this.connector.add(batch);
+                } catch (final SolrException e) {
+                    // the batch was rejected: write the documents one by one, so that only the rejected documents are lost
+                    log.warn("failed to write " + batch.size() + " documents, writing them one by one: " + e.getMessage());
+                    for (final SolrInputDocument doc: batch) {
+                        try {
+                            this.connector.add(doc);
+                        } catch (final SolrException ee) {
+                            log.warn("rejected document " + doc.getFieldValue(CollectionSchema.id.getSolrFieldName()) + ": " + ee.getMessage());
+                        }
+                        synchronized (this.pending) {
+                            this.inFlight.remove(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+                        }
+                    }
+                }
+                synchronized (this.pending) {
+                    this.inFlight = null;
+                    if (this.failures > 0) log.info("wrote buffered documents after " + this.failures + " failed writes");
+                    this.failures = 0;
+                }
+            } catch (final IOException e) {
+                // buffer the documents of the batch again, behind the documents which replaced them in the meantime
+                synchronized (this.pending) {
+                    final Map<String, SolrInputDocument> retry = this.inFlight;
+                    this.inFlight = null;
+                    for (final Map.Entry<String, SolrInputDocument> entry: this.pending.entrySet()) retry.put(entry.getKey(), entry.getValue());
+                    this.pending.clear();
+                    this.pending.putAll(retry);
+                    this.failures++;
+                    this.pending.notifyAll(); // waiting callers must not wait for a write which will not come soon
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * write all buffered documents and stop the background writer; after the stop, documents are written
+     * directly to the connector. The wrapped connector is not closed.
+     */
+    public void stop() {
+        synchronized (this.pending) {
+            // set within the lock of the buffer: no add can buffer a document after the final write below
+            this.running = false;
+            this.pending.notifyAll();
+        }
+        try {
+            this.flusher.join(this.maxDelay + 1000);
+        } catch (final InterruptedException e) {}
+        try {
+            write();
+        } catch (final IOException e) {
+            log.warn("failed to write buffered documents, " + bufferSize() + " documents are lost: " + e.getMessage());
+        }
+    }
+
+    /**
+     * get a buffered document
+     * @param id the document id
+     * @return the document which is not yet written to the connector or null if there is none
+     */
+    private SolrInputDocument getPending(final String id) {
+        synchronized (this.pending) {
+            final SolrInputDocument doc = this.pending.get(id);
+            if (doc != null || this.inFlight == null) return doc;
+            return this.inFlight.get(id);
+        }
+    }
+
+    private SolrInputDocument removePending(final String id) {
+        synchronized (this.pending) {
+            final SolrInputDocument doc = this.pending.remove(id);
+            if (this.inFlight != null) this.inFlight.remove(id);
+            return doc;
+        }
+    }
+
+    private static SolrDocument toSolrDocument(final SolrInputDocument doc, final String ... fields) {
+        final SolrDocument sd = new SolrDocument();
+        if (fields == null || fields.length == 0 || (fields.length == 1 && "*".equals(fields[0]))) {
+            for (final SolrInputField field: doc) sd.setField(field.getName(), field.getValue());
+        } else {
+            for (final String name: fields) {
+                final SolrInputField field = doc.getField(name);
+                if (field != null) sd.setField(name, field.getValue());
+            }
+        }
+        return sd;
+    }
+
+    @Override
+    public void add(final SolrInputDocument solrdoc) throws IOException, SolrException {
+        final String id = (String) solrdoc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+        boolean buffered = false, writeNow = false;
+        if (id != null) synchronized (this.pending) {
+            // the buffer is full: wait for the background writer, but do not buffer documents for a connector which cannot be reached
+            while (this.running && this.pending.size() >= maxBufferFactor * this.batchSize && !this.pending.containsKey(id)) {
+                if (this.failures > 0) throw new IOException("write buffer is full after " + this.failures + " failed writes, document " + id + " is not buffered");
+                try {
+                    this.pending.wait(this.maxDelay);
+                } catch (final InterruptedException e) {
+                    throw new InterruptedIOException("interrupted while waiting for space in the write buffer");
+                }
+            }
+            if (this.running) {
+                this.pending.put(id, solrdoc);
+                buffered = true;
+                final int size = this.pending.size();
+                if (this.failures == 0) {
+                    // after failed writes, the writes are retried by the background writer only
+                    if (size >= this.batchSize) this.pending.notifyAll();
+                    writeNow = size >= 2 * this.batchSize;
+                }
+            }
+        }
+        if (!buffered) {
+            synchronized (this.writeLock) {
+                this.connector.add(solrdoc);
+            }
+            return;
+        }
+        // the background writer does not keep up: write the batch within the calling thread;
+        // if the connector cannot be reached, the document stays buffered and is written by the background writer
+        if (writeNow) flush();
+    }
+
+    @Override
+    public void add(final Collection<SolrInputDocument> solrdocs) throws IOException, SolrException {
+        for (final SolrInputDocument solrdoc: solrdocs) add(solrdoc);
+    }
+
+    @Override
+    public void update(final SolrInputDocument solrdoc) throws IOException, SolrException {
+        // partial updates must be applied after the buffered documents
+        synchronized (this.writeLock) {
+            flush();
+            this.connector.update(solrdoc);
+        }
+    }
+
+    @Override
+    public void update(final Collection<SolrInputDocument> solrdoc) throws IOException, SolrException {
+        synchronized (this.writeLock) {
+            flush();
+            this.connector.update(solrdoc);
+        }
+    }
+
+    @Override
+    public void deleteById(final String id) throws IOException {
+        removePending(id);
+        synchronized (this.writeLock) {
+            this.connector.deleteById(id);
+        }
+    }
+
+    @Override
+    public void deleteByIds(final Collection<String> ids) throws IOException {
+        for (final String id: ids) removePending(id);
+        synchronized (this.writeLock) {
+            this.connector.deleteByIds(ids);
+        }
+    }
+
+    @Override
+    public void deleteByQuery(final String querystring) throws IOException {
+        // the query may match buffered documents: write them first
+        synchronized (this.writeLock) {
+            flush();
+            this.connector.deleteByQuery(querystring);
+        }
+    }
+
+    @Override
+    public void clear() throws IOException {
+        clear(this.connector);
+    }
+
+    /**
+     * drop all buffered documents and clear a connector behind this connector, i.e. only one side of a
+     * mirror connector. The clear is ordered behind a batch which is currently written.
+     * @param target the wrapped connector or a connector which is wrapped by it
+     * @throws IOException
+     */
+    public void clear(final SolrConnector target) throws IOException {
+        synchronized (this.pending) {
+            this.pending.clear();
+            if (this.inFlight != null) this.inFlight.clear();
+        }
+        synchronized (this.writeLock) {
+            target.clear();
+        }
+    }
+
+    @Override
+    public SolrDocument getDocumentById(final String key, final String ... fields) throws IOException {
+        final SolrInputDocument doc = getPending(key);
+        if (doc != null) return toSolrDocument(doc, fields);
+        return this.connector.getDocumentById(key, fields);
+    }
+
+    @Override
+    public LoadTimeURL getLoadTimeURL(final String id) throws IOException {
+        final SolrInputDocument doc = getPending(id);
+        if (doc != null) {
+            final LoadTimeURL md = AbstractSolrConnector.getLoadTimeURL(doc);
+            if (md != null) return md;
+        }
+        return this.connector.getLoadTimeURL(id);
+    }
+
+    @Override
+    public long getLoadTime(final String id) throws IOException {
+        final SolrInputDocument doc = getPending(id);
+        if (doc != null) {
+            final LoadTimeURL md = AbstractSolrConnector.getLoadTimeURL(doc);
+            if (md != null) return md.date;
+        }
+        return this.connector.getLoadTime(id);
+    }
+
+    @Override
+    public Map<String, Long> getLoadTimes(final Collection<String> ids) throws IOException {
+        final Map<String, Long> times = new HashMap<String, Long>();
+        final List<String> missing = new ArrayList<String>(ids.size());
+        for (final String id: ids) {
+            final SolrInputDocument doc = getPending(id);
+            final LoadTimeURL md = doc == null ? null : AbstractSolrConnector.getLoadTimeURL(doc);
+            if (md != null) times.put(id, md.date); else missing.add(id);
+        }
+        if (!missing.isEmpty()) times.putAll(this.connector.getLoadTimes(missing));
+        return times;
+    }
+
+    @Override
+    public SolrDocumentList getDocumentListByQuery(final String querystring, final String sort, final int offset, final int count, final String ... fields) throws IOException {
+        if (offset == 0 && count == 1 && querystring.startsWith("id:") &&
+            ((querystring.length() == 17 && querystring.charAt(3) == '"' && querystring.charAt(16) == '"') ||
+             querystring.length() == 15)) {
+            final SolrInputDocument doc = getPending(querystring.charAt(3) == '"' ? querystring.substring(4, querystring.length() - 1) : querystring.substring(3));
+            if (doc != null) {
+                final SolrDocumentList list = new SolrDocumentList();
+                list.add(toSolrDocument(doc, fields));
+                list.setNumFound(1);
+                return list;
+            }
+        }
+        return this.connector.getDocumentListByQuery(querystring, sort, offset, count, fields);
+    }
+
+    @Override
+    public void commit(final boolean softCommit) {
+        flush();
+        this.connector.commit(softCommit);
+    }
+
+    @Override
+    public void optimize(final int maxSegments) {
+        flush();
+        this.connector.optimize(maxSegments);
+    }
+
+    @Override
+    public synchronized void close() {
+        stop();
+        this.connector.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.connector.isClosed();
+    }
+
+    @Override
+    public int bufferSize() {
+        synchronized (this.pending) {
+            return this.pending.size() + this.connector.bufferSize();
+        }
+    }
+
+    @Override
+    public void clearCaches() {
+        this.connector.clearCaches();
+    }
+
+    @Override
+    public long getSize() {
+        return this.connector.getSize();
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return this.connector.getSegmentCount();
+    }
+
+    @Override
+    public QueryResponse getResponseByParams(final ModifiableSolrParams query) throws IOException {
+        return this.connector.getResponseByParams(query);
+    }
+
+    @Override
+    public SolrDocumentList getDocumentListByParams(final ModifiableSolrParams params) throws IOException {
+        return this.connector.getDocumentListByParams(params);
+    }
+
+    @Override
+    public long getCountByQuery(final String querystring) throws IOException {
+        return this.connector.getCountByQuery(querystring);
+    }
+
+    @Override
+    public LinkedHashMap<String, ReversibleScoreMap<String>> getFacets(final String query, final int maxresults, final String ... fields) throws IOException {
+        return this.connector.getFacets(query, maxresults, fields);
+    }
+
+    @Override
+    public BlockingQueue<SolrDocument> concurrentDocumentsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency, final boolean prefetchIDs, final String ... fields) {
+        return this.connector.concurrentDocumentsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency, prefetchIDs, fields);
+    }
+
+    @Override
+    public BlockingQueue<SolrDocument> concurrentDocumentsByQueries(final List<String> querystrings, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency, final boolean prefetchIDs, final String ... fields) {
+        return this.connector.concurrentDocumentsByQueries(querystrings, sort, offset, maxcount, maxtime, buffersize, concurrency, prefetchIDs, fields);
+    }
+
+    @Override
+    public BlockingQueue<String> concurrentIDsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
+        return this.connector.concurrentIDsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency);
+    }
+
+    @Override
+    public BlockingQueue<String> concurrentIDsByQueries(final List<String> querystrings, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
+        return this.connector.concurrentIDsByQueries(querystrings, sort, offset, maxcount, maxtime, buffersize, concurrency);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return this.connector.iterator();
+    }
+
+}
@@ -0,0 +1,452 @@
+/**
+ *  LoadTimeCacheSolrConnector
+ *  First released 17.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.federate.solr.connector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleMap;
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+/**
+ * A decorator for the collection SolrConnector which keeps the load date of every
+ * document in a compact url hash to load date map. The map is filled from the index
+ * by a background thread and kept current by the add and delete calls of this connector.
+ * Once the map is complete, existence checks with getLoadTime and getLoadTimeURL for
+ * unknown documents are answered without a Solr request.
+ */
+public class LoadTimeCacheSolrConnector implements SolrConnector {
+
+    private final static ConcurrentLog log = new ConcurrentLog("LoadTimeCacheSolrConnector");
+    private final static int DATE_BYTES = 6; // enough for milliseconds until the year 10889
+
+    private final SolrConnector connector;
+    private final int maxSize;
+    private final RowHandleMap cache; // url hash -> load date
+    private final Set<String> deletedDuringFill; // ids deleted while the fill thread is running
+    private volatile boolean complete; // true if the cache contains all documents of the index
+    private volatile boolean filling;
+    private volatile Thread filler;
+    private final AtomicLong hit, miss, insert, delete;
+
+    /**
+     * @param connector the collection connector
+     * @param maxSize the maximum number of cached documents
+     */
+    public LoadTimeCacheSolrConnector(final SolrConnector connector, final int maxSize) {
+        this.connector = connector;
+        this.maxSize = maxSize;
+        this.cache = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, DATE_BYTES, Math.min(maxSize, 100000), "LoadTimeCache");
+        this.deletedDuringFill = ConcurrentHashMap.newKeySet();
+        this.complete = false;
+        this.filling = false;
+        this.filler = null;
+        this.hit = new AtomicLong(0);
+        this.miss = new AtomicLong(0);
+        this.insert = new AtomicLong(0);
+        this.delete = new AtomicLong(0);
+        startFill();
+    }
+
+    /**
+     * (re-)fill the cache from the index with a background thread
+     */
+    private synchronized void startFill() {
+        stopFill();
+        this.complete = false;
+        this.filling = true;
+        this.deletedDuringFill.clear();
+        this.filler = new Thread("LoadTimeCacheSolrConnector.fill") {
+            @Override
+            public void run() {
+                final long start = System.currentTimeMillis();
+                LoadTimeCacheSolrConnector.this.connector.commit(true); // make all previous writes visible to the fill query
+                final BlockingQueue<SolrDocument> docs = LoadTimeCacheSolrConnector.this.connector.concurrentDocumentsByQuery(
+                        CollectionSchema.load_date_dt.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM,
+                        null, 0, LoadTimeCacheSolrConnector.this.maxSize + 1, Long.MAX_VALUE, 1000, 1, false,
+                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.load_date_dt.getSolrFieldName());
+                boolean overflow = false;
+                int count = 0;
+                try {
+                    SolrDocument doc;
+                    while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                        if (LoadTimeCacheSolrConnector.this.filler != this || overflow) continue; // drain the queue to release the feeder
+                        final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                        final LoadTimeURL md = AbstractSolrConnector.getLoadTimeURL(doc);
+                        if (id == null || md == null || md.date < 0) continue;
+                        if (LoadTimeCacheSolrConnector.this.deletedDuringFill.contains(id)) continue;
+                        final byte[] key = ASCII.getBytes(id);
+                        if (LoadTimeCacheSolrConnector.this.cache.has(key)) continue; // an add during the fill is more recent
+                        if (LoadTimeCacheSolrConnector.this.cache.size() >= LoadTimeCacheSolrConnector.this.maxSize) {
+                            overflow = true;
+                            continue;
+                        }
+                        try {
+                            LoadTimeCacheSolrConnector.this.cache.put(key, md.date);
+                            // a delete between the check above and the put has not seen the entry: cacheRemove marks the id before it removes the entry
+                            if (LoadTimeCacheSolrConnector.this.deletedDuringFill.contains(id)) {
+                                LoadTimeCacheSolrConnector.this.cache.remove(key);
+                                continue;
+                            }
+                            count++;
+                        } catch (final SpaceExceededException e) {
+                            log.warn("not enough memory for the load time cache, caching stopped after " + count + " documents");
+                            overflow = true;
+                        }
+                    }
+                } catch (final InterruptedException e) {
+                    overflow = true;
+                }
+                synchronized (LoadTimeCacheSolrConnector.this) {
+                    if (LoadTimeCacheSolrConnector.this.filler == this) {
+                        LoadTimeCacheSolrConnector.this.complete = !overflow;
+                        LoadTimeCacheSolrConnector.this.filling = false;
+                        LoadTimeCacheSolrConnector.this.filler = null;
+                        LoadTimeCacheSolrConnector.this.deletedDuringFill.clear();
+                    }
+                }
+                log.info("filled load time cache with " + count + " documents in " + (System.currentTimeMillis() - start) + " milliseconds" + (overflow ? ", cache is incomplete" : ""));
+            }
+        };
+        this.filler.setDaemon(true);
+        this.filler.start();
+    }
+
+    private synchronized void stopFill() {
+        this.filling = false;
+        this.filler = null;
+    }
+
+    /**
+     * stop the fill thread and empty the cache. The wrapped connector is not closed.
+     */
+    public void stop() {
+        stopFill();
+        this.complete = false;
+        this.cache.clear();
+        if (this.connector instanceof ConcurrentUpdateSolrConnector) ((ConcurrentUpdateSolrConnector) this.connector).stop();
+    }
+
+    public int cacheSize() {
+        return this.cache.size();
+    }
+
+    public long cacheMem() {
+        return this.cache.mem();
+    }
+
+    public long cacheHit() {
+        return this.hit.get();
+    }
+
+    public long cacheMiss() {
+        return this.miss.get();
+    }
+
+    public long cacheInsert() {
+        return this.insert.get();
+    }
+
+    public long cacheDelete() {
+        return this.delete.get();
+    }
+
+    /**
+     * @return true if the cache knows all documents of the index and answers existence checks alone
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    private void cachePut(final String id, final long date) {
+        if (id == null || date < 0) return;
+        final byte[] key = ASCII.getBytes(id);
+        try {
+            if (this.cache.size() >= this.maxSize && !this.cache.has(key)) {
+                this.complete = false;
+                return;
+            }
+            this.cache.put(key, date);
+            this.insert.incrementAndGet();
+        } catch (final SpaceExceededException e) {
+            this.complete = false;
+        }
+    }
+
+    private void cacheRemove(final String id) {
+        if (id == null) return;
+        if (this.filling) this.deletedDuringFill.add(id);
+        if (this.cache.remove(ASCII.getBytes(id)) >= 0) this.delete.incrementAndGet();
+    }
+
+    private void cacheDocument(final SolrInputDocument doc) {
+        final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+        final Object d = doc.getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName());
+        if (d instanceof Date) cachePut(id, ((Date) d).getTime());
+        else if (d instanceof Long) cachePut(id, ((Long) d).longValue());
+        else if (d == null) cacheRemove(id); // documents without load date count as not existing
+    }
+
+    @Override
+    public long getLoadTime(final String id) throws IOException {
+        if (id.length() != Word.commonHashLength) return this.connector.getLoadTime(id);
+        final long date = this.cache.get(ASCII.getBytes(id));
+        if (date >= 0 || this.complete) {
+            this.hit.incrementAndGet();
+            return date;
+        }
+        this.miss.incrementAndGet();
+        final long loaded = this.connector.getLoadTime(id);
+        if (loaded >= 0 && !this.cache.has(ASCII.getBytes(id))) cachePut(id, loaded);
+        return loaded;
+    }
+
+    @Override
+    public Map<String, Long> getLoadTimes(final Collection<String> ids) throws IOException {
+        final Map<String, Long> times = new HashMap<String, Long>();
+        final List<String> missing = new ArrayList<String>(ids.size());
+        for (final String id: ids) {
+            if (id.length() != Word.commonHashLength) {
+                missing.add(id);
+                continue;
+            }
+            final long date = this.cache.get(ASCII.getBytes(id));
+            if (date >= 0 || this.complete) {
+                this.hit.incrementAndGet();
+                if (date >= 0) times.put(id, date);
+            } else {
+                this.miss.incrementAndGet();
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) return times;
+        final Map<String, Long> loaded = this.connector.getLoadTimes(missing);
+        for (final Map.Entry<String, Long> entry: loaded.entrySet()) {
+            final String id = entry.getKey();
+            if (id.length() == Word.commonHashLength && !this.cache.has(ASCII.getBytes(id))) cachePut(id, entry.getValue().longValue());
+        }
+        times.putAll(loaded);
+        return times;
+    }
+
+    @Override
+    public LoadTimeURL getLoadTimeURL(final String id) throws IOException {
+        if (this.complete && id.length() == Word.commonHashLength && !this.cache.has(ASCII.getBytes(id))) {
+            this.hit.incrementAndGet();
+            return null;
+        }
+        return this.connector.getLoadTimeURL(id);
+    }
+
+    @Override
+    public void add(final SolrInputDocument solrdoc) throws IOException, SolrException {
+        this.connector.add(solrdoc);
+        cacheDocument(solrdoc);
+    }
+
+    @Override
+    public void add(final Collection<SolrInputDocument> solrdocs) throws IOException, SolrException {
+        this.connector.add(solrdocs);
+        for (final SolrInputDocument solrdoc: solrdocs) cacheDocument(solrdoc);
+    }
+
+    @Override
+    public void update(final SolrInputDocument solrdoc) throws IOException, SolrException {
+        this.connector.update(solrdoc);
+        final String id = (String) solrdoc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+        final Object d = solrdoc.getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName());
+        if (d instanceof Date) cachePut(id, ((Date) d).getTime());
+    }
+
+    @Override
+    public void update(final Collection<SolrInputDocument> solrdocs) throws IOException, SolrException {
+        this.connector.update(solrdocs);
+        for (final SolrInputDocument solrdoc: solrdocs) {
+            final String id = (String) solrdoc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+            final Object d = solrdoc.getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName());
+            if (d instanceof Date) cachePut(id, ((Date) d).getTime());
+        }
+    }
+
+    @Override
+    public void deleteById(final String id) throws IOException {
+        cacheRemove(id);
+        this.connector.deleteById(id);
+    }
+
+    @Override
+    public void deleteByIds(final Collection<String> ids) throws IOException {
+        for (final String id: ids) cacheRemove(id);
+        this.connector.deleteByIds(ids);
+    }
+
+    @Override
+    public void deleteByQuery(final String querystring) throws IOException {
+        // the deleted ids are unknown: the cache must be filled again
+        stopFill();
+        this.complete = false;
+        this.connector.deleteByQuery(querystring);
+        this.connector.commit(true);
+        this.cache.clear();
+        startFill();
+    }
+
+    @Override
+    public void clear() throws IOException {
+        stopFill();
+        this.connector.clear();
+        this.cache.clear();
+        this.complete = true;
+    }
+
+    /**
+     * clear a connector behind this connector, i.e. only one side of a mirror connector. Buffered documents
+     * are dropped and the cache is filled again from the documents which remain in the index.
+     * @param target a connector which is wrapped by this connector
+     * @throws IOException
+     */
+    public void clear(final SolrConnector target) throws IOException {
+        stopFill();
+        this.complete = false;
+        if (this.connector instanceof ConcurrentUpdateSolrConnector) ((ConcurrentUpdateSolrConnector) this.connector).clear(target); else target.clear();
+        this.cache.clear();
+        startFill();
+    }
+
+    @Override
+    public synchronized void close() {
+        stop();
+        this.connector.close();
+    }
+
+    @Override
+    public void clearCaches() {
+        this.connector.clearCaches();
+    }
+
+    @Override
+    public int bufferSize() {
+        return this.connector.bufferSize();
+    }
+
+    @Override
+    public long getSize() {
+        return this.connector.getSize();
+    }
+
+    @Override
+    public void commit(final boolean softCommit) {
+        this.connector.commit(softCommit);
+    }
+
+    @Override
+    public void optimize(final int maxSegments) {
+        this.connector.optimize(maxSegments);
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return this.connector.getSegmentCount();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.connector.isClosed();
+    }
+
+    @Override
+    public SolrDocument getDocumentById(final String key, final String ... fields) throws IOException {
+        return this.connector.getDocumentById(key, fields);
+    }
+
+    @Override
+    public QueryResponse getResponseByParams(final ModifiableSolrParams query) throws IOException {
+        return this.connector.getResponseByParams(query);
+    }
+
+    @Override
+    public SolrDocumentList getDocumentListByParams(final ModifiableSolrParams params) throws IOException {
+        return this.connector.getDocumentListByParams(params);
+    }
+
+    @Override
+    public SolrDocumentList getDocumentListByQuery(final String querystring, final String sort, final int offset, final int count, final String ... fields) throws IOException {
+        return this.connector.getDocumentListByQuery(querystring, sort, offset, count, fields);
+    }
+
+    @Override
+    public long getCountByQuery(final String querystring) throws IOException {
+        return this.connector.getCountByQuery(querystring);
+    }
+
+    @Override
+    public LinkedHashMap<String, ReversibleScoreMap<String>> getFacets(final String query, final int maxresults, final String ... fields) throws IOException {
+        return this.connector.getFacets(query, maxresults, fields);
+    }
+
+    @Override
+    public BlockingQueue<SolrDocument> concurrentDocumentsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency, final boolean prefetchIDs, final String ... fields) {
+        return this.connector.concurrentDocumentsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency, prefetchIDs, fields);
+    }
+
+    @Override
+    public BlockingQueue<SolrDocument> concurrentDocumentsByQueries(final List<String> querystrings, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency, final boolean prefetchIDs, final String ... fields) {
+        return this.connector.concurrentDocumentsByQueries(querystrings, sort, offset, maxcount, maxtime, buffersize, concurrency, prefetchIDs, fields);
+    }
+
+    @Override
+    public BlockingQueue<String> concurrentIDsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
+        return this.connector.concurrentIDsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency);
+    }
+
+    @Override
+    public BlockingQueue<String> concurrentIDsByQueries(final List<String> querystrings, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
+        return this.connector.concurrentIDsByQueries(querystrings, sort, offset, maxcount, maxtime, buffersize, concurrency);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return this.connector.iterator();
+    }
+
+}
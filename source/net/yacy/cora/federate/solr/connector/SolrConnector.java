@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 import net.yacy.cora.sorting.ReversibleScoreMap;
@@ -125,6 +126,22 @@ public interface SolrConnector extends Iterable<String> /* Iterable of document
      */
     public LoadTimeURL getLoadTimeURL(final String id) throws IOException;
 
+    /**
+     * get the load time of a document, identified by url hash as document id
+     * @param id the url hash and document id
+     * @return the load time in milliseconds since epoch if any entry in solr exists, -1 otherwise
+     * @throws IOException
+     */
+    public long getLoadTime(final String id) throws IOException;
+
+    /**
+     * get the load times of several documents with a single request
+     * @param ids the url hashes and document ids
+     * @return a map from document id to load time in milliseconds since epoch for all documents which exist in solr
+     * @throws IOException
+     */
+    public Map<String, Long> getLoadTimes(final Collection<String> ids) throws IOException;
+
     /**
      * add a solr input document
      * @param solrdoc
@@ -27,12 +27,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import net.yacy.cora.federate.solr.connector.ConcurrentUpdateSolrConnector;
 import net.yacy.cora.federate.solr.connector.EmbeddedSolrConnector;
+import net.yacy.cora.federate.solr.connector.LoadTimeCacheSolrConnector;
 import net.yacy.cora.federate.solr.connector.MirrorSolrConnector;
 import net.yacy.cora.federate.solr.connector.RemoteSolrConnector;
 import net.yacy.cora.federate.solr.connector.SolrConnector;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.search.schema.CollectionSchema;
 
 public class InstanceMirror {
 
@@ -64,7 +67,7 @@ public class InstanceMirror {
     }
 
     public void disconnectEmbedded() {
-        mirrorConnectorCache.clear();
+        stopMirrorConnectors();
         if (this.embeddedSolrInstance == null) return;
         Set<SolrConnector> connectors = new HashSet<SolrConnector>();
         connectors.addAll(this.embeddedConnectorCache.values());
@@ -88,7 +91,7 @@ public class InstanceMirror {
     }
 
     public void disconnectRemote() {
-        mirrorConnectorCache.clear();
+        stopMirrorConnectors();
         if (this.remoteSolrInstance == null) return;
         for (RemoteSolrConnector connector: this.remoteConnectorCache.values()) connector.close();
         this.remoteConnectorCache.clear();
@@ -96,6 +99,18 @@ public class InstanceMirror {
         this.remoteSolrInstance = null;
     }
 
+    /**
+     * write all buffered documents of the mirror connectors and forget them,
+     * the connectors which they wrap are left open
+     */
+    private void stopMirrorConnectors() {
+        for (SolrConnector connector: this.mirrorConnectorCache.values()) {
+            if (connector instanceof LoadTimeCacheSolrConnector) ((LoadTimeCacheSolrConnector) connector).stop();
+            else if (connector instanceof ConcurrentUpdateSolrConnector) ((ConcurrentUpdateSolrConnector) connector).stop();
+        }
+        this.mirrorConnectorCache.clear();
+    }
+
     /**
      * Close this instance and it's connectors and cores
      */
@@ -180,10 +195,37 @@ public class InstanceMirror {
         EmbeddedSolrConnector esc = getEmbeddedConnector(corename);
         RemoteSolrConnector rsc = getRemoteConnector(corename);
         msc = new MirrorSolrConnector(esc, rsc);
+        int batchSize = SwitchboardConstants.SOLR_WRITEBEHIND_BATCHSIZE_DEFAULT;
+        long maxDelay = SwitchboardConstants.SOLR_WRITEBEHIND_MAXDELAY_DEFAULT;
+        int loadTimeCacheSize = SwitchboardConstants.SOLR_LOADTIMECACHE_MAXSIZE_DEFAULT;
+        if (Switchboard.getSwitchboard() != null) {
+            batchSize = Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.SOLR_WRITEBEHIND_BATCHSIZE, batchSize);
+            maxDelay = Switchboard.getSwitchboard().getConfigLong(SwitchboardConstants.SOLR_WRITEBEHIND_MAXDELAY, maxDelay);
+            loadTimeCacheSize = Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.SOLR_LOADTIMECACHE_MAXSIZE, loadTimeCacheSize);
+        }
+        if (batchSize > 0) msc = new ConcurrentUpdateSolrConnector(msc, batchSize, maxDelay);
+        // existence checks by url hash only go to the collection
+        if (loadTimeCacheSize > 0 && CollectionSchema.CORE_NAME.equals(corename)) msc = new LoadTimeCacheSolrConnector(msc, loadTimeCacheSize);
         this.mirrorConnectorCache.put(corename, msc);
         return msc;
     }
 
+    /**
+     * clear the embedded or the remote core behind the mirror connector of that core, so that documents
+     * buffered by the mirror connector are dropped and its load time cache does not keep the deleted documents
+     * @param corename the name of the core
+     * @param remote true to clear the remote core, false to clear the embedded core
+     * @throws IOException
+     */
+    public void clear(String corename, boolean remote) throws IOException {
+        SolrConnector target = remote ? getRemoteConnector(corename) : getEmbeddedConnector(corename);
+        if (target == null) return;
+        SolrConnector msc = this.mirrorConnectorCache.get(corename);
+        if (msc instanceof LoadTimeCacheSolrConnector) ((LoadTimeCacheSolrConnector) msc).clear(target);
+        else if (msc instanceof ConcurrentUpdateSolrConnector) ((ConcurrentUpdateSolrConnector) msc).clear(target);
+        else target.clear();
+    }
+
     public int bufferSize() {
         int b = 0;
         for (SolrConnector sc: this.mirrorConnectorCache.values()) b += sc.bufferSize();
@@ -22,6 +22,7 @@ package net.yacy.cora.language.synonyms;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
@@ -50,6 +51,8 @@ public class AutotaggingLibrary {
     /** mapping from vocabulary name to the tagging vocabulary */
     private final Map<String, Tagging> vocabularies;
     private final Map<String, Object> allTags;
+    /** the automaton to find the synonyms of all vocabularies in texts; rebuilt when the vocabularies change */
+    private volatile AutotaggingMatcher matcher = null;
 
     /**
      * create a Autotagging object:
@@ -175,6 +178,26 @@ public class AutotaggingLibrary {
     	return 4;
     }
 
+    /**
+     * Get an automaton which finds the synonyms of all vocabularies matching clear text words.
+     * The automaton is built again when a vocabulary was added, deleted or changed since the last call;
+     * then only the changed vocabularies are compiled again.
+     * @return the automaton for the current state of the vocabularies
+     */
+    public AutotaggingMatcher getMatcher() {
+        AutotaggingMatcher m = this.matcher;
+        if (m != null && m.isCurrent(this.vocabularies.values())) return m;
+        synchronized (this) {
+            m = this.matcher;
+            if (m != null && m.isCurrent(this.vocabularies.values())) return m;
+            final long start = System.currentTimeMillis();
+            m = new AutotaggingMatcher(new ArrayList<Tagging>(this.vocabularies.values()), getMaxWordsInTerm(), m);
+            if (log.isFine()) log.fine("built autotagging matcher for " + this.vocabularies.size() + " vocabularies in " + (System.currentTimeMillis() - start) + " milliseconds");
+            this.matcher = m;
+            return m;
+        }
+    }
+
     /**
      * Search a term in the given active vocabularies matching clear text words.
      * @param vocabularies the vocabularies names to search for term
@@ -0,0 +1,242 @@
+/**
+ *  AutotaggingMatcher
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.language.synonyms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.yacy.cora.lod.vocabulary.Tagging;
+import net.yacy.cora.util.CommonPattern;
+
+/**
+ * An Aho-Corasick automaton over words which finds the synonyms of all autotagging vocabularies
+ * in one pass over the words of a document. The automaton is immutable; when vocabularies are added,
+ * deleted or changed, a new automaton is built which re-uses the compiled synonyms of the unchanged
+ * vocabularies.
+ */
+public class AutotaggingMatcher {
+
+    private static final Match[] NO_MATCH = new Match[0];
+
+    /**
+     * a synonym of a vocabulary which ends with the current word
+     */
+    public static final class Match {
+        public final Tagging vocabulary;
+        public final String synonym;
+        private Match(final Tagging vocabulary, final String synonym) {
+            this.vocabulary = vocabulary;
+            this.synonym = synonym;
+        }
+    }
+
+    /**
+     * the synonyms of one vocabulary, split into words
+     */
+    private static final class Compiled {
+        private final int version;
+        private final List<String[]> words = new ArrayList<String[]>();
+        private final List<Match> matches = new ArrayList<Match>();
+        private Compiled(final Tagging vocabulary, final int maxWordsInTerm) {
+            this.version = vocabulary.version();
+            if (vocabulary.isMatchFromLinkedData()) return;
+            synonymloop: for (final String synonym: vocabulary.tags()) {
+                final String[] w = CommonPattern.SPACE.split(synonym);
+                if (w.length == 0 || w.length > maxWordsInTerm) continue;
+                for (final String s: w) if (s.isEmpty()) continue synonymloop; // can never match single-spaced words
+                this.words.add(w);
+                this.matches.add(new Match(vocabulary, synonym));
+            }
+        }
+    }
+
+    private final Map<Tagging, Compiled> compiled;
+    private final Map<String, Integer> wordIds;
+    private final Map<Long, Integer> transitions;
+    private final int[] fail;
+    private final Match[][] output;
+
+    /**
+     * build the automaton from the given vocabularies
+     * @param vocabularies the autotagging vocabularies; vocabularies which match only from linked data are left out
+     * @param maxWordsInTerm the maximum number of words in a synonym; longer synonyms are left out
+     * @param previous an automaton of a previous state of the vocabularies, may be null; the compiled synonyms of
+     *        vocabularies which did not change since then are taken from it
+     */
+    public AutotaggingMatcher(final Collection<Tagging> vocabularies, final int maxWordsInTerm, final AutotaggingMatcher previous) {
+        this.compiled = new IdentityHashMap<Tagging, Compiled>();
+        for (final Tagging vocabulary: vocabularies) {
+            Compiled c = previous == null ? null : previous.compiled.get(vocabulary);
+            if (c == null || c.version != vocabulary.version()) c = new Compiled(vocabulary, maxWordsInTerm);
+            this.compiled.put(vocabulary, c);
+        }
+
+        // build the trie of all synonyms
+        this.wordIds = new HashMap<String, Integer>();
+        this.transitions = new HashMap<Long, Integer>();
+        final List<List<Match>> out = new ArrayList<List<Match>>();
+        final List<List<long[]>> children = new ArrayList<List<long[]>>();
+        out.add(null);
+        children.add(null);
+        for (final Compiled c: this.compiled.values()) {
+            for (int p = 0; p < c.words.size(); p++) {
+                int state = 0;
+                for (final String word: c.words.get(p)) {
+                    Integer id = this.wordIds.get(word);
+                    if (id == null) {
+                        id = this.wordIds.size();
+                        this.wordIds.put(word, id);
+                    }
+                    final long key = key(state, id);
+                    final Integer next = this.transitions.get(key);
+                    if (next == null) {
+                        final int s = out.size();
+                        out.add(null);
+                        children.add(null);
+                        this.transitions.put(key, s);
+                        List<long[]> ch = children.get(state);
+                        if (ch == null) children.set(state, ch = new ArrayList<long[]>(2));
+                        ch.add(new long[]{id, s});
+                        state = s;
+                    } else {
+                        state = next;
+                    }
+                }
+                List<Match> o = out.get(state);
+                if (o == null) out.set(state, o = new ArrayList<Match>(1));
+                o.add(c.matches.get(p));
+            }
+        }
+
+        // compute the failure links in breadth-first order and merge the output of the failure state
+        final int states = out.size();
+        this.fail = new int[states];
+        this.output = new Match[states][];
+        this.output[0] = NO_MATCH;
+        final int[] queue = new int[states];
+        int head = 0, tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            final int r = queue[head++];
+            final List<long[]> ch = children.get(r);
+            if (ch == null) continue;
+            for (final long[] edge: ch) {
+                final int id = (int) edge[0];
+                final int s = (int) edge[1];
+                int f = 0;
+                if (r != 0) {
+                    f = this.fail[r];
+                    int g = transition(f, id);
+                    while (g < 0 && f != 0) {
+                        f = this.fail[f];
+                        g = transition(f, id);
+                    }
+                    f = g < 0 ? 0 : g;
+                }
+                this.fail[s] = f;
+                final List<Match> o = out.get(s);
+                final Match[] fo = this.output[f];
+                if (o == null) {
+                    this.output[s] = fo;
+                } else {
+                    final Match[] m = new Match[o.size() + fo.length];
+                    o.toArray(m);
+                    System.arraycopy(fo, 0, m, o.size(), fo.length);
+                    this.output[s] = m;
+                }
+                queue[tail++] = s;
+            }
+        }
+    }
+
+    private static long key(final int state, final int id) {
+        return (((long) state) << 32) | (id & 0xffffffffL);
+    }
+
+    private int transition(final int state, final int id) {
+        final Integer next = this.transitions.get(key(state, id));
+        return next == null ? -1 : next.intValue();
+    }
+
+    /**
+     * @param vocabularies the current vocabularies
+     * @return true if this automaton was built from exactly these vocabularies in their current state
+     */
+    public boolean isCurrent(final Collection<Tagging> vocabularies) {
+        if (vocabularies.size() != this.compiled.size()) return false;
+        for (final Tagging vocabulary: vocabularies) {
+            final Compiled c = this.compiled.get(vocabulary);
+            if (c == null || c.version != vocabulary.version()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the state to start matching of a document
+     */
+    public int start() {
+        return 0;
+    }
+
+    /**
+     * advance the automaton with the next word of a document
+     * @param state the state after the previous word
+     * @param word the next word
+     * @return the state after the word; the synonyms ending with this word are returned by matches(state)
+     */
+    public int next(int state, final String word) {
+        final Integer id = this.wordIds.get(normalize(word));
+        if (id == null) return 0; // no synonym contains this word
+        while (true) {
+            final int next = transition(state, id.intValue());
+            if (next >= 0) return next;
+            if (state == 0) return 0;
+            state = this.fail[state];
+        }
+    }
+
+    /**
+     * @param state a state returned by next()
+     * @return all synonyms which end with the word that lead to the state
+     */
+    public Match[] matches(final int state) {
+        return this.output[state];
+    }
+
+    /**
+     * normalize a word like Tagging.normalizeTerm(), but without the cost of the regular expressions
+     * for the common case of a word without umlauts and commas
+     */
+    private static String normalize(final String word) {
+        boolean lower = true;
+        for (int i = 0; i < word.length(); i++) {
+            final char c = word.charAt(i);
+            if (c <= ' ' || c == ',' || (c >= '\u00C4' && (c == '\u00E4' || c == '\u00F6' || c == '\u00FC' || c == '\u00DF' || c == '\u00C4' || c == '\u00D6' || c == '\u00DC'))) {
+                return Tagging.normalizeTerm(word);
+            }
+            if (Character.isUpperCase(c)) lower = false;
+        }
+        return lower ? word : word.toLowerCase();
+    }
+}
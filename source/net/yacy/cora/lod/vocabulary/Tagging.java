@@ -35,6 +35,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import net.yacy.cora.geo.GeoLocation;
@@ -71,6 +72,9 @@ public class Tagging {
 
     private String predicate, namespace, objectspace;
 
+    /** modification counter, changed whenever the synonyms or the matching mode of this vocabulary change */
+    private final AtomicInteger version = new AtomicInteger(0);
+
     /**
      * helper class: Synonym and Objectlink tuple
      */
@@ -286,6 +290,7 @@ public class Tagging {
             }
         } catch (final InterruptedException e) {
         }
+        this.version.incrementAndGet();
         long time = Math.max(1, System.currentTimeMillis() - start);
         ConcurrentLog.info("Tagging", "Finished Vocabulary Initialization for " + this.propFile + "; " + count + " lines; " + time + " milliseconds; " + (1000L * count / time) + " lines / second");
     }
@@ -315,6 +320,15 @@ public class Tagging {
 	 */
     public void setMatchFromLinkedData(final boolean facetFromLinkedData) {
     	this.matchFromLinkedData = facetFromLinkedData;
+    	this.version.incrementAndGet();
+    }
+
+    /**
+     * @return the modification counter of this vocabulary; a changed value means that
+     *         the synonyms or the matching mode have changed
+     */
+    public int version() {
+        return this.version.get();
     }
     
     public int size() {
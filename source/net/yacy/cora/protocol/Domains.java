@@ -36,7 +36,6 @@ import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -49,8 +48,15 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -67,9 +73,6 @@ import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 import com.google.common.net.InetAddresses;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 
 public class Domains {
     
@@ -81,7 +84,6 @@ public class Domains {
     private static Class<?> InetAddressLocatorClass;
     private static Method InetAddressLocatorGetLocaleInetAddressMethod;
     private static final Set<String> ccSLD_TLD = new HashSet<String>();
-    private static final String PRESENT = "";
     private static final String LOCALHOST_IPv4_PATTERN = "(127\\..*)";
     private static final String LOCALHOST_IPv6_PATTERN = "((\\[?fe80\\:.*)|(\\[?0\\:0\\:0\\:0\\:0\\:0\\:0\\:1.*)|(\\[?\\:\\:1))(/.*|%.*|\\z)";
     private static final String INTRANET_IPv4_PATTERN = "(10\\..*)|(172\\.(1[6-9]|2[0-9]|3[0-1])\\..*)|(169\\.254\\..*)|(192\\.168\\..*)";
@@ -93,13 +95,47 @@ public class Domains {
     private static final int MAX_NAME_CACHE_MISS_SIZE = 1000;
     private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
 
-    // a dns cache
-    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
-    private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * a resolver translates a host name into an address; the default resolver uses the name service of the JVM,
+     * tests may set a local stand-in with setResolver()
+     */
+    public interface Resolver {
+        public InetAddress resolve(String host) throws UnknownHostException;
+    }
+
+    public static final Resolver SYSTEM_RESOLVER = new Resolver() {
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            return InetAddress.getByName(host);
+        }
+    };
+
+    /**
+     * a cached address which is valid until the expiry time
+     */
+    private static final class CachedAddress {
+        private final InetAddress address;
+        private final long expires;
+        private CachedAddress(final InetAddress address, final long expires) {
+            this.address = address;
+            this.expires = expires;
+        }
+    }
+
+    // a dns cache; both caches are bounded, entries expire after the time-to-live
+    private static final ARC<String, CachedAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+    private static final ARC<String, Long> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    private static final ConcurrentHashMap<String, FutureTask<InetAddress>> LOOKUP_RUNNING = new ConcurrentHashMap<>(100, 0.75f, CONCURRENCY_LEVEL);
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
+    private static       Resolver resolver = SYSTEM_RESOLVER;
+    private static       long lastPurge = System.currentTimeMillis();
+    public static long nameCacheHitTTL = 60L * 60L * 1000L;  // time until a resolved host is looked up again
+    public static long nameCacheMissTTL = 10L * 60L * 1000L; // time until an unknown host is looked up again
+    public static long lookupTimeout = 3000L;                // time that dnsResolve waits for the name service
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
     public static long cacheMiss_Hit = 0, cacheMiss_Miss = 0, cacheMiss_Insert = 0; // for statistics only; do not write
+    private static final AtomicLong lookupCount = new AtomicLong(0), lookupTime = new AtomicLong(0);
+    private static final AtomicLong lookupTimeouts = new AtomicLong(0), prefetchCount = new AtomicLong(0);
 
     private static Set<InetAddress> myHostAddresses = new HashSet<InetAddress>();
     private static Set<InetAddress> localHostAddresses = new HashSet<InetAddress>(); // subset of myHostAddresses
@@ -764,6 +800,17 @@ public class Domains {
         if(getByNameService != null) {
         	getByNameService.shutdownNow();
         }
+        if (prefetchService != null) {
+            prefetchService.shutdownNow();
+        }
+    }
+
+    /**
+     * set the resolver which is used for name service lookups
+     * @param r the new resolver, null for the name service of the JVM
+     */
+    public static void setResolver(final Resolver r) {
+        resolver = r == null ? SYSTEM_RESOLVER : r;
     }
 
     /**
@@ -777,21 +824,137 @@ public class Domains {
         host = host.toLowerCase(Locale.ROOT).trim();
 
         // trying to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
-        if (ip != null) {
-            cacheHit_Hit++;
-            return ip;
+        final long now = System.currentTimeMillis();
+        final CachedAddress cached = NAME_CACHE_HIT.get(host);
+        if (cached != null) {
+            if (cached.expires > now) {
+                cacheHit_Hit++;
+                return cached.address;
+            }
+            NAME_CACHE_HIT.remove(host);
         }
         cacheHit_Miss++;
 
-        if (NAME_CACHE_MISS.containsKey(host)) {
-            cacheMiss_Hit++;
-            return null;
+        final Long expires = NAME_CACHE_MISS.get(host);
+        if (expires != null) {
+            if (expires.longValue() > now) {
+                cacheMiss_Hit++;
+                return null;
+            }
+            NAME_CACHE_MISS.remove(host);
         }
         cacheMiss_Miss++;
         throw new UnknownHostException("host not in cache");
     }
 
+    private static boolean isCached(final String host) {
+        final long now = System.currentTimeMillis();
+        final CachedAddress cached = NAME_CACHE_HIT.get(host);
+        if (cached != null && cached.expires > now) return true;
+        final Long expires = NAME_CACHE_MISS.get(host);
+        return expires != null && expires.longValue() > now;
+    }
+
+    /**
+     * remove all expired entries from the name caches
+     */
+    private static void purge() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, CachedAddress> entry: NAME_CACHE_HIT) {
+            if (entry.getValue().expires <= now) NAME_CACHE_HIT.remove(entry.getKey());
+        }
+        for (final Map.Entry<String, Long> entry: NAME_CACHE_MISS) {
+            if (entry.getValue().longValue() <= now) NAME_CACHE_MISS.remove(entry.getKey());
+        }
+    }
+
+    /**
+     * put the result of a lookup into the name caches
+     * @param host the host name
+     * @param ip the address or null if the host is unknown
+     */
+    private static void store(final String host, final InetAddress ip) {
+        final long now = System.currentTimeMillis();
+        if (ip == null) {
+            NAME_CACHE_HIT.remove(host);
+            NAME_CACHE_MISS.put(host, now + nameCacheMissTTL);
+            cacheMiss_Insert++;
+            return;
+        }
+        if (ip.isLoopbackAddress() || matchesList(host, nameCacheNoCachingPatterns)) return;
+
+        // add new ip cache entries
+        NAME_CACHE_MISS.remove(host);
+        NAME_CACHE_HIT.put(host, new CachedAddress(ip, now + nameCacheHitTTL));
+        cacheHit_Insert++;
+
+        // add also the isLocal host name caches
+        final boolean localp = ip.isAnyLocalAddress() || ip.isLinkLocalAddress() || ip.isSiteLocalAddress();
+        if (!localp) {
+            if (globalHosts != null) try {
+                globalHosts.add(host);
+            } catch (final IOException e) {}
+        }
+    }
+
+    /**
+     * get the running lookup of a host or create a new one. The lookup is not started here; a created task
+     * must be executed by the caller. Concurrent requests for the same host share the same task.
+     * @param host the normalized host name
+     * @return the lookup task which stores its result in the name caches
+     */
+    private static FutureTask<InetAddress> lookup(final String host) {
+        final FutureTask<InetAddress> running = LOOKUP_RUNNING.get(host);
+        if (running != null) return running;
+        final FutureTask<InetAddress> task = new FutureTask<InetAddress>(new Callable<InetAddress>() {
+            @Override
+            public InetAddress call() {
+                final String oldName = Thread.currentThread().getName();
+                Thread.currentThread().setName("Domains: DNS resolve of '" + host + "'"); // thread dump show which host is resolved
+                final long start = System.currentTimeMillis();
+                try {
+                    InetAddress ip;
+                    try {
+                        ip = resolver.resolve(host);
+                    } catch (final UnknownHostException e) {
+                        ip = null;
+                    } catch (final SecurityException e) {
+                        ip = null;
+                    }
+                    lookupCount.incrementAndGet();
+                    lookupTime.addAndGet(System.currentTimeMillis() - start);
+                    store(host, ip);
+                    return ip;
+                } finally {
+                    LOOKUP_RUNNING.remove(host);
+                    Thread.currentThread().setName(oldName);
+                }
+            }
+        });
+        final FutureTask<InetAddress> other = LOOKUP_RUNNING.putIfAbsent(host, task);
+        return other == null ? task : other;
+    }
+
+    /**
+     * start a lookup of the host in the background, so that the address is in the name cache
+     * when it is needed. Hosts which are in the cache or already in lookup are ignored; if the
+     * prefetch queue is full, the host is dropped and resolved later with dnsResolve().
+     * @param host0 a host name
+     */
+    public static void prefetch(final String host0) {
+        if (host0 == null || host0.isEmpty()) return;
+        final String host = host0.toLowerCase(Locale.ROOT).trim();
+        if (host.endsWith(".yacyh") || InetAddresses.isInetAddress(host)) return;
+        if (isCached(host) || LOOKUP_RUNNING.containsKey(host)) return;
+        final FutureTask<InetAddress> task = lookup(host);
+        try {
+            prefetchService.execute(task);
+            prefetchCount.incrementAndGet();
+        } catch (final RejectedExecutionException e) {
+            LOOKUP_RUNNING.remove(host, task);
+        }
+    }
+
     public static void setNoCachingPatterns(final String patternList) throws PatternSyntaxException {
         nameCacheNoCachingPatterns = makePatterns(patternList);
     }
@@ -813,11 +976,11 @@ public class Domains {
     }
 
     public static String getHostName(final InetAddress i) {
-        final Collection<String> hosts = NAME_CACHE_HIT.getKeys(i);
-        if (!hosts.isEmpty()) return hosts.iterator().next();
+        for (final Map.Entry<String, CachedAddress> entry: NAME_CACHE_HIT) {
+            if (i.equals(entry.getValue().address)) return entry.getKey();
+        }
         final String host = i.getHostName();
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
-        cacheHit_Insert++;
+        setHostName(i, host);
         return host;
     }
 
@@ -828,14 +991,19 @@ public class Domains {
      * @param host the known host name
      */
     public static void setHostName(final InetAddress i, final String host) {
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        NAME_CACHE_HIT.insertIfAbsent(host, new CachedAddress(i, System.currentTimeMillis() + nameCacheHitTTL));
         cacheHit_Insert++;
     }
     
 	final private static ExecutorService getByNameService = Executors
 			.newCachedThreadPool(new NamePrefixThreadFactory("InetAddress.getByName"));
 
-	final private static TimeLimiter timeLimiter = new SimpleTimeLimiter(getByNameService);
+	// prefetch lookups run in a bounded pool with a bounded queue, so a flood of new hosts cannot exhaust the threads
+	final private static ThreadPoolExecutor prefetchService = new ThreadPoolExecutor(
+	        8, 8, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1000), new NamePrefixThreadFactory("Domains.prefetch"));
+	static {
+	    prefetchService.allowCoreThreadTimeOut(true);
+	}
 
     /**
      * strip off any parts of an url, address string (containing host/ip:port) or raw IPs/Hosts,
@@ -922,9 +1090,10 @@ public class Domains {
         if (host0 == null || host0.isEmpty()) return null;
         final String host = host0.toLowerCase(Locale.ROOT).trim();
 
-        if (MemoryControl.shortStatus()) {
-            NAME_CACHE_HIT.clear();
-            NAME_CACHE_MISS.clear();
+        if (MemoryControl.shortStatus() && System.currentTimeMillis() - lastPurge > 60000L) {
+            // the caches are bounded; when memory is short, drop only the entries which are expired anyway
+            lastPurge = System.currentTimeMillis();
+            purge();
         }
         
         if (host0.endsWith(".yacyh")) {
@@ -933,104 +1102,38 @@ public class Domains {
         }
 
         // try to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
-        if (ip != null) {
-            //System.out.println("DNSLOOKUP-CACHE-HIT(CONC) " + host);
-            cacheHit_Hit++;
-            return ip;
-        }
-        cacheHit_Miss++;
-        if (NAME_CACHE_MISS.containsKey(host)) {
-            //System.out.println("DNSLOOKUP-CACHE-MISS(CONC) " + host);
-            cacheMiss_Hit++;
-            return null;
-        }
-        cacheMiss_Miss++;
-
-        // call dnsResolveNetBased(host) using concurrency to interrupt execution in case of a time-out
-        final Object sync_obj_new = new Object();
-        Object sync_obj = LOOKUP_SYNC.putIfAbsent(host, sync_obj_new);
-        if (sync_obj == null) sync_obj = sync_obj_new;
-        synchronized (sync_obj) {
-            // now look again if the host is in the cache where it may be meanwhile because of the synchronization
-
-            ip = NAME_CACHE_HIT.get(host);
-            if (ip != null) {
-                //System.out.println("DNSLOOKUP-CACHE-HIT(SYNC) " + host);
-                LOOKUP_SYNC.remove(host);
-                cacheHit_Hit++;
-                return ip;
-            }
-            cacheHit_Miss++;
-            if (NAME_CACHE_MISS.containsKey(host)) {
-                //System.out.println("DNSLOOKUP-CACHE-MISS(SYNC) " + host);
-                LOOKUP_SYNC.remove(host);
-                cacheMiss_Hit++;
-                return null;
-            }
-            cacheMiss_Miss++;
+        try {
+            return dnsResolveFromCache(host);
+        } catch (final UnknownHostException e) {}
 
-            // do the dns lookup on the dns server
-            //if (!matchesList(host, nameCacheNoCachingPatterns)) System.out.println("DNSLOOKUP " + host);
+        if (InetAddresses.isInetAddress(host)) {
+            InetAddress ip;
             try {
-                //final long t = System.currentTimeMillis();
-                String oldName = Thread.currentThread().getName();
-                Thread.currentThread().setName("Domains: DNS resolve of '" + host + "'"); // thread dump show which host is resolved
-                if (InetAddresses.isInetAddress(host)) {
-                    try {
-                        ip = InetAddresses.forString(host);
-                        log.info("using guava for host resolution:"  + host);
-                    } catch (final IllegalArgumentException e) {
-                        ip = null;
-                    }
-                }
-                Thread.currentThread().setName(oldName);
-                if (ip == null) try {
-                    ip = timeLimiter.callWithTimeout(new Callable<InetAddress>() {
-                        @Override
-                        public InetAddress call() throws Exception {
-                            return InetAddress.getByName(host);
-                        }
-                    }, 3000L, TimeUnit.MILLISECONDS, false);
-                    //ip = TimeoutRequest.getByName(host, 1000); // this makes the DNS request to backbone
-                } catch (final UncheckedTimeoutException e) {
-                	// in case of a timeout - maybe cause of massive requests - do not fill NAME_CACHE_MISS
-                	LOOKUP_SYNC.remove(host);
-                    return null;
-                }
-                //.out.println("DNSLOOKUP-*LOOKUP* " + host + ", time = " + (System.currentTimeMillis() - t) + "ms");
-            } catch (final Throwable e) {
-                // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
-                LOOKUP_SYNC.remove(host);
-                return null;
-            }
-
-            if (ip == null) {
-                // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
-                LOOKUP_SYNC.remove(host);
-                return null;
+                ip = InetAddresses.forString(host);
+            } catch (final IllegalArgumentException e) {
+                ip = null;
             }
-
-            if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
-                // add new ip cache entries
-                NAME_CACHE_HIT.insertIfAbsent(host, ip);
-                cacheHit_Insert++;
-
-                // add also the isLocal host name caches
-                final boolean localp = ip.isAnyLocalAddress() || ip.isLinkLocalAddress() || ip.isSiteLocalAddress();
-                if (!localp) {
-                    if (globalHosts != null) try {
-                        globalHosts.add(host);
-                    } catch (final IOException e) {}
-                }
-            }
-            LOOKUP_SYNC.remove(host);
+            store(host, ip);
             return ip;
         }
+
+        // join a running lookup (i.e. a prefetch) or start a new one; a lookup which is still queued in the
+        // prefetch service is started here as well, running it a second time has no effect
+        final FutureTask<InetAddress> task = lookup(host);
+        if (!task.isDone()) getByNameService.execute(task);
+        try {
+            return task.get(lookupTimeout, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // in case of a timeout - maybe cause of massive requests - do not fill NAME_CACHE_MISS;
+            // the lookup continues and stores its result in the name cache when it is finished
+            lookupTimeouts.incrementAndGet();
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e) {
+            return null;
+        }
     }
 
     public static void clear() {
@@ -1054,6 +1157,42 @@ public class Domains {
         return NAME_CACHE_MISS.size();
     }
 
+    /**
+     * @return the number of lookups which are waiting for the name service
+     */
+    public static int lookupRunning() {
+        return LOOKUP_RUNNING.size();
+    }
+
+    /**
+     * @return the number of lookups done by the name service
+     */
+    public static long lookupCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * @return the average time of a name service lookup in milliseconds
+     */
+    public static long lookupAverageTime() {
+        final long count = lookupCount.get();
+        return count == 0 ? 0 : lookupTime.get() / count;
+    }
+
+    /**
+     * @return the number of dnsResolve calls which did not get an answer within the lookup timeout
+     */
+    public static long lookupTimeouts() {
+        return lookupTimeouts.get();
+    }
+
+    /**
+     * @return the number of lookups started by prefetch
+     */
+    public static long prefetchCount() {
+        return prefetchCount.get();
+    }
+
     public static int nameCacheNoCachingPatternsSize() {
         return nameCacheNoCachingPatterns.size();
     }
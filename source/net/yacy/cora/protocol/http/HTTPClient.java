@@ -29,6 +29,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
@@ -70,6 +72,7 @@ import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.config.Lookup;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
@@ -91,6 +94,7 @@ import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.ByteArrayBuffer;
@@ -120,12 +124,15 @@ public class HTTPClient {
     private final static int default_timeout = 6000;
 	private final static int maxcon = 200;
 	private static IdleConnectionMonitorThread connectionMonitor = null;
+	private final static int maxPerRoute = (int) (2 * Memory.cores());
 	private final static RequestConfig dfltReqConf = initRequestConfig();
+	private final static PoolingHttpClientConnectionManager connectionManager = initPoolingConnectionManager();
 	private final static HttpClientBuilder clientBuilder = initClientBuilder();
 	private final RequestConfig.Builder reqConfBuilder;
 	private Set<Entry<String, String>> headers = null;
 	private CloseableHttpResponse httpResponse = null;
 	private HttpUriRequest currentRequest = null;
+	private HostPolicy.Permit hostPermit = null; // the connection permit for a slow host, held until the connection is released
 	private long upbytes = 0L;
 	private String host = null;
 	private final long timeout;
@@ -171,7 +178,7 @@ public class HTTPClient {
     private static HttpClientBuilder initClientBuilder() {
     	final HttpClientBuilder builder = HttpClientBuilder.create();
     	
-    	builder.setConnectionManager(initPoolingConnectionManager());
+    	builder.setConnectionManager(connectionManager);
 		builder.setDefaultRequestConfig(dfltReqConf);
 		
     	// UserAgent
@@ -198,7 +205,14 @@ public class HTTPClient {
     }
     
     private static PoolingHttpClientConnectionManager initPoolingConnectionManager() {
-    	final PlainConnectionSocketFactory plainsf = PlainConnectionSocketFactory.getSocketFactory();
+    	final PlainConnectionSocketFactory plainsf = new PlainConnectionSocketFactory() {
+    	    @Override
+    	    public Socket connectSocket(final int connectTimeout, final Socket socket, final HttpHost host,
+    	            final InetSocketAddress remoteAddress, final InetSocketAddress localAddress, final HttpContext context) throws IOException {
+    	        HostPolicy.connected();
+    	        return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+    	    }
+    	};
     	final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
     	        .register("http", plainsf)
     	        .register("https", getSSLSocketFactory())
@@ -215,7 +229,7 @@ public class HTTPClient {
         // for statistics same value should also be set here
         ConnectionInfo.setMaxcount(maxcon);
         // connections per host (2 default)
-        pooling.setDefaultMaxPerRoute((int) (2 * Memory.cores()));
+        pooling.setDefaultMaxPerRoute(maxPerRoute);
         // Increase max connections for localhost
         final HttpHost localhost = new HttpHost(Domains.LOCALHOST);
         pooling.setMaxPerRoute(new HttpRoute(localhost), maxcon);
@@ -225,8 +239,8 @@ public class HTTPClient {
                 .setSoReuseAddress(true)
                 // SO_TIMEOUT: maximum period inactivity between two consecutive data packets in milliseconds
                 .setSoTimeout(3000)
-                // conserve bandwidth by minimizing the number of segments that are sent
-                .setTcpNoDelay(false)
+                // send requests and handshakes at once instead of waiting for the ack of the previous segment
+                .setTcpNoDelay(true)
                 .build();
         pooling.setDefaultSocketConfig(socketConfig);
 
@@ -238,6 +252,13 @@ public class HTTPClient {
         return pooling;
     }
 
+    /**
+     * @return the statistics of the connection pool: leased, pending and available connections
+     */
+    public static PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
     /**
      * This method should be called just before shutdown
      * to stop the ConnectionManager and idledConnectionEvictor
@@ -746,6 +767,7 @@ public class HTTPClient {
                 this.currentRequest.abort();
                 this.currentRequest = null;
                 this.httpResponse.close();
+                releaseHostPermit();
                 throw e;
             }
         }
@@ -769,11 +791,13 @@ public class HTTPClient {
                 EntityUtils.consume(httpEntity);
                 ConnectionInfo.removeConnection(this.currentRequest.hashCode());
                 this.currentRequest = null;
+                releaseHostPermit();
             } catch (final IOException e) {
                 ConnectionInfo.removeConnection(this.currentRequest.hashCode());
                 this.currentRequest.abort();
                 this.currentRequest = null;
                 this.httpResponse.close();
+                releaseHostPermit();
                 throw e;
             }
         }
@@ -834,6 +858,7 @@ public class HTTPClient {
 				ConnectionInfo.removeConnection(this.currentRequest.hashCode());
 				this.currentRequest = null;
 			}
+			releaseHostPermit();
 		}
 	}
 
@@ -863,13 +888,14 @@ public class HTTPClient {
         } finally {
         	if (this.httpResponse != null) this.httpResponse.close();
         	ConnectionInfo.removeConnection(httpUriRequest.hashCode());
+        	releaseHostPermit();
         }
     	return content;
     }
 
     private void execute(final HttpUriRequest httpUriRequest, final boolean concurrent) throws IOException {
     	final HttpClientContext context = HttpClientContext.create();
-    	context.setRequestConfig(reqConfBuilder.build());
+    	context.setRequestConfig(hostRequestConfig(httpUriRequest));
     	if (this.host != null)
     		context.setTargetHost(new HttpHost(this.host));
     	
@@ -917,6 +943,7 @@ public class HTTPClient {
             ConnectionInfo.removeConnection(httpUriRequest.hashCode());
             httpUriRequest.abort();
             if (this.httpResponse != null) this.httpResponse.close();
+            releaseHostPermit();
             //e.printStackTrace();
             throw new IOException("Client can't execute: "
             		+ (e.getCause() == null ? e.getMessage() : e.getCause().getMessage())
@@ -927,6 +954,46 @@ public class HTTPClient {
         }
     }
 
+    /**
+     * adapt the request configuration to the latency of the target host and wait until
+     * a connection to the host may be leased if the host is slow; the permit for that
+     * connection is held until the connection is released
+     * @param httpUriRequest the request
+     * @return the request configuration
+     * @throws IOException if no connection to a slow host became free within the connection request time-out
+     */
+    private RequestConfig hostRequestConfig(final HttpUriRequest httpUriRequest) throws IOException {
+        releaseHostPermit(); // the connection of a previous request of this client which was not finished
+        final RequestConfig config = reqConfBuilder.build();
+        HostPolicy.requested();
+        final HttpHost target = URIUtils.extractHost(httpUriRequest.getURI());
+        if (target == null || Domains.isLocalhost(target.getHostName())) return config;
+        final int latency = HostPolicy.averageLatency(target);
+        if (latency < 0) return config;
+
+        final int limit = HostPolicy.maxConnections(latency, maxPerRoute);
+        if (limit < maxPerRoute) try {
+            this.hostPermit = HostPolicy.acquire(target.toURI(), limit, config.getConnectionRequestTimeout());
+            if (this.hostPermit == null) {
+                throw new IOException("Client can't execute: no free connection to slow host " + target.getHostName() + " (" + limit + " connections, " + latency + " ms latency)");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final int timeout = HostPolicy.timeout(latency, config.getSocketTimeout());
+        if (timeout == config.getSocketTimeout()) return config;
+        return RequestConfig.copy(config).setSocketTimeout(timeout).setConnectTimeout(Math.min(timeout, config.getConnectTimeout())).build();
+    }
+
+    private void releaseHostPermit() {
+        final HostPolicy.Permit permit = this.hostPermit;
+        if (permit != null) {
+            this.hostPermit = null;
+            permit.release();
+        }
+    }
+
     /**
      * Return entity content loaded as a byte array
      * @param entity HTTP entity
@@ -1038,14 +1105,22 @@ public class HTTPClient {
 
         final SSLConnectionSocketFactory sslSF = new SSLConnectionSocketFactory(
                 sslContext,
-                new NoopHostnameVerifier());
+                new NoopHostnameVerifier()) {
+            @Override
+            public Socket connectSocket(final int connectTimeout, final Socket socket, final HttpHost host,
+                    final InetSocketAddress remoteAddress, final InetSocketAddress localAddress, final HttpContext context) throws IOException {
+                HostPolicy.connected();
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            }
+        };
     	return sslSF;
     }
 
     /**
      * If the Keep-Alive header is not present in the response,
      * HttpClient assumes the connection can be kept alive indefinitely.
-     * Here we limit this to 5 seconds if unset and to a max of 25 seconds
+     * Here we limit this to 5 seconds if unset and to a max of 25 seconds;
+     * connections to hosts which are requested repeatedly are kept for 25 seconds if unset
      *
      * @param defaultHttpClient
      */
@@ -1054,7 +1129,7 @@ public class HTTPClient {
 			@Override
 			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
 				long keepAlive = super.getKeepAliveDuration(response, context);
-				return Math.min(Math.max(keepAlive, 5000), 25000);
+				return HostPolicy.keepAlive(HostPolicy.averageLatency(HttpClientContext.adapt(context).getTargetHost()), keepAlive);
 			}
 		};
 	}
@@ -0,0 +1,240 @@
+/**
+ *  HostPolicy
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.protocol.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+
+/**
+ * The connection policy of the http client for a single host: the number of parallel connections,
+ * the time-outs and the keep-alive time of pooled connections are adapted to the latency of the host.
+ * The latency is taken from a statistics provider, i.e. the latency table of the crawler.
+ */
+public class HostPolicy {
+
+    /**
+     * a source for the latency of hosts
+     */
+    public interface Statistics {
+        /**
+         * @param scheme the protocol of the host
+         * @param host the host name
+         * @param port the port or -1 for the default port of the protocol
+         * @return the average time in milliseconds to load a document from the host,
+         * or -1 if the host was not loaded often enough to know its latency
+         */
+        public int averageLatency(String scheme, String host, int port);
+    }
+
+    public static int minTimeout = 3000;        // adapted time-outs are never shorter than this
+    public static int slowLatency = 1000;       // hosts with a higher average latency get less parallel connections
+    public static long keepAliveDefault = 5000; // keep-alive time if the host did not send one
+    public static long keepAliveMax = 25000;    // keep-alive time for hosts which are requested repeatedly
+
+    private static Statistics statistics = null;
+    private static final Map<String, Slots> slots = new HashMap<String, Slots>(); // only hosts with requests which hold or wait for a permit
+    private static final AtomicLong requests = new AtomicLong(0), connects = new AtomicLong(0);
+    private static final AtomicLong waits = new AtomicLong(0), waitTimeouts = new AtomicLong(0);
+
+    public static void setStatistics(final Statistics s) {
+        statistics = s;
+    }
+
+    /**
+     * @param target the target host of a request
+     * @return the average latency of the host in milliseconds or -1 if it is not known
+     */
+    public static int averageLatency(final HttpHost target) {
+        final Statistics s = statistics;
+        if (s == null || target == null) return -1;
+        return s.averageLatency(target.getSchemeName(), target.getHostName(), target.getPort());
+    }
+
+    /**
+     * the number of parallel connections to a host is reduced in proportion to its latency,
+     * so that slow hosts do not bind the connections of the pool
+     * @param averageLatency the latency of the host or -1 if not known
+     * @param maxPerRoute the default number of connections per host
+     * @return the number of connections which may be leased for the host at the same time
+     */
+    public static int maxConnections(final int averageLatency, final int maxPerRoute) {
+        if (averageLatency <= slowLatency) return maxPerRoute;
+        return Math.max(1, (int) ((long) maxPerRoute * slowLatency / averageLatency));
+    }
+
+    /**
+     * the time-out for hosts with a known latency is limited to a multiple of that latency;
+     * a host which normally answers fast is given up earlier if it stalls
+     * @param averageLatency the latency of the host or -1 if not known
+     * @param timeout the time-out of the client in milliseconds
+     * @return the time-out for the host
+     */
+    public static int timeout(final int averageLatency, final int timeout) {
+        if (averageLatency < 0 || timeout <= 0) return timeout;
+        return (int) Math.min(timeout, Math.max(minTimeout, 10L * averageLatency));
+    }
+
+    /**
+     * connections to hosts which are requested repeatedly (i.e. in a crawl) are kept open until
+     * the next request to the host, which saves the connection set-up and the TLS handshake
+     * @param averageLatency the latency of the host or -1 if not known
+     * @param keepAlive the keep-alive time sent by the host or -1 if none was sent
+     * @return the time in milliseconds to keep the connection in the pool
+     */
+    public static long keepAlive(final int averageLatency, final long keepAlive) {
+        if (keepAlive < 0) return averageLatency < 0 ? keepAliveDefault : keepAliveMax;
+        return Math.min(Math.max(keepAlive, keepAliveDefault), keepAliveMax);
+    }
+
+    /**
+     * the connections to a slow host: one permit for each connection which may be leased at the same time
+     */
+    @SuppressWarnings("serial")
+    private static final class Slots extends Semaphore {
+        private int limit; // the number of permits, including the acquired ones
+        private int users; // the number of requests which hold or wait for a permit
+
+        private Slots(final int limit) {
+            super(limit, true);
+            this.limit = limit;
+        }
+
+        /**
+         * change the number of permits; acquired permits are not revoked, a reduction only takes effect when they are released
+         */
+        private void adapt(final int limit) {
+            if (limit > this.limit) release(limit - this.limit);
+            else if (limit < this.limit) reducePermits(this.limit - limit);
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * the right to lease a connection to a slow host; must be released when the connection is released
+     */
+    public static final class Permit {
+        private final String host;
+        private final Slots slots;
+        private final AtomicBoolean released;
+
+        private Permit(final String host, final Slots slots) {
+            this.host = host;
+            this.slots = slots;
+            this.released = new AtomicBoolean(false);
+        }
+
+        /**
+         * release the permit; further calls do nothing
+         */
+        public void release() {
+            if (!this.released.compareAndSet(false, true)) return;
+            this.slots.release();
+            leave(this.host);
+        }
+    }
+
+    /**
+     * wait until a connection to a slow host may be leased
+     * @param host the target host, including the scheme and the port
+     * @param limit the number of connections which may be leased for the host at the same time, see maxConnections()
+     * @param timeout the maximum waiting time in milliseconds
+     * @return the permit for the connection or null if no connection became free within the time-out
+     * @throws InterruptedException
+     */
+    public static Permit acquire(final String host, final int limit, final long timeout) throws InterruptedException {
+        final Slots s;
+        synchronized (slots) {
+            Slots t = slots.get(host);
+            if (t == null) {
+                t = new Slots(limit);
+                slots.put(host, t);
+            } else {
+                t.adapt(limit);
+            }
+            t.users++;
+            s = t;
+        }
+        boolean acquired = false;
+        try {
+            acquired = s.tryAcquire();
+            if (!acquired) {
+                acquired = s.tryAcquire(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+                waited(!acquired);
+            }
+        } finally {
+            if (!acquired) leave(host);
+        }
+        return acquired ? new Permit(host, s) : null;
+    }
+
+    private static void leave(final String host) {
+        synchronized (slots) {
+            final Slots s = slots.get(host);
+            if (s != null && --s.users <= 0) slots.remove(host);
+        }
+    }
+
+    protected static void requested() {
+        requests.incrementAndGet();
+    }
+
+    protected static void connected() {
+        connects.incrementAndGet();
+    }
+
+    protected static void waited(final boolean timeout) {
+        waits.incrementAndGet();
+        if (timeout) waitTimeouts.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests done with the pooled connection manager
+     */
+    public static long requests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of new connections; all other requests re-used a pooled connection
+     */
+    public static long connects() {
+        return connects.get();
+    }
+
+    /**
+     * @return the number of requests which had to wait for a connection to a slow host
+     */
+    public static long waits() {
+        return waits.get();
+    }
+
+    /**
+     * @return the number of requests which failed because no connection to a slow host became free
+     */
+    public static long waitTimeouts() {
+        return waitTimeouts.get();
+    }
+}
@@ -127,10 +127,10 @@ public interface Balancer {
     /**
      * get the next entry in this crawl queue in such a way that the domain access time delta is maximized
      * and always above the given minimum delay time. An additional delay time is computed using the robots.txt
-     * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method pauses
-     * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
-     * for the computed Entry does not exist, null is returned
-     * @param delay true if the requester demands forced delays using explicit thread sleep
+     * crawl-delay time which is always respected. In case the minimum time cannot ensured and delay is true,
+     * the url is not returned but kept in the queue until it is due; null is returned then and the caller may try
+     * again later. In case that a profile for the computed Entry does not exist, null is returned
+     * @param delay true if the requester demands that the crawl-delay is respected
      * @param profile
      * @return a url in a CrawlEntry object
      * @throws IOException
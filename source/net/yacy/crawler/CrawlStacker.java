@@ -29,10 +29,14 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.contentcontrol.ContentControlFilterUpdateThread;
@@ -43,7 +47,6 @@ import net.yacy.cora.document.id.AnchorURL;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.solr.FailCategory;
-import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.ftp.FTPClient;
@@ -71,6 +74,9 @@ public final class CrawlStacker implements WorkflowTask<Request>{
     public static final String CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX = "double in";
     
     private final static ConcurrentLog log = new ConcurrentLog("STACKCRAWL");
+
+    /** the time in milliseconds that a load time which was requested together with another url is trusted */
+    private final static long PREFETCH_TTL = 10000;
     
     private final RobotsTxt robots;
     private final WorkflowProcessor<Request>  requestQueue;
@@ -80,6 +86,10 @@ public final class CrawlStacker implements WorkflowTask<Request>{
     private final SeedDB            peers;
     private final boolean           acceptLocalURLs, acceptGlobalURLs;
     private final FilterEngine      domainList;
+    private final int existenceBatchSize; // the maximum number of urls which are checked for existence in the index with a single request
+    private final int maxExistenceCandidates; // the maximum number of waiting urls which are remembered for a batch
+    private final LinkedHashSet<String> existenceCandidates; // hashes of enqueued urls which are not yet checked in the index; synchronized
+    private final Map<String, long[]> prefetchedLoadTimes; // url hash -> {load time, time of the index request}
 
     // this is the process that checks url for double-occurrences and for allowance/disallowance by robots.txt
 
@@ -91,7 +101,8 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             final SeedDB peers,
             final boolean acceptLocalURLs,
             final boolean acceptGlobalURLs,
-            final FilterEngine domainList) {
+            final FilterEngine domainList,
+            final int existenceBatchSize) {
         this.robots = robots;
         this.nextQueue = cq;
         this.crawler = cs;
@@ -100,6 +111,10 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         this.acceptLocalURLs = acceptLocalURLs;
         this.acceptGlobalURLs = acceptGlobalURLs;
         this.domainList = domainList;
+        this.existenceBatchSize = existenceBatchSize;
+        this.maxExistenceCandidates = 10 * existenceBatchSize;
+        this.existenceCandidates = new LinkedHashSet<String>();
+        this.prefetchedLoadTimes = new ConcurrentHashMap<String, long[]>();
         this.requestQueue = new WorkflowProcessor<Request>("CrawlStacker", "This process checks new urls before they are enqueued into the balancer (proper, double-check, correct domain, filter)", new String[]{"Balancer"}, this, 10000, null, WorkflowProcessor.availableCPU);
         CrawlStacker.log.info("STACKCRAWL thread initialized.");
     }
@@ -115,6 +130,10 @@ public final class CrawlStacker implements WorkflowTask<Request>{
 
     public void clear() {
         this.requestQueue.clear();
+        synchronized (this.existenceCandidates) {
+            this.existenceCandidates.clear();
+        }
+        this.prefetchedLoadTimes.clear();
     }
 
     public void announceClose() {
@@ -136,6 +155,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         // this is the method that is called by the busy thread from outside
         if (entry == null) return null;
         
+        final String urlhash = ASCII.String(entry.url().hash());
         try {
             final String rejectReason = stackCrawl(entry);
 
@@ -147,6 +167,12 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         } catch (final Exception e) {
             CrawlStacker.log.warn("Error while processing stackCrawl entry.\n" + "Entry: " + entry.toString() + "Error: " + e.toString(), e);
             return null;
+        } finally {
+            // the url may have been rejected before its existence check
+            synchronized (this.existenceCandidates) {
+                this.existenceCandidates.remove(urlhash);
+            }
+            this.prefetchedLoadTimes.remove(urlhash);
         }
         return null;
     }
@@ -155,6 +181,11 @@ public final class CrawlStacker implements WorkflowTask<Request>{
 
         // DEBUG
         if (CrawlStacker.log.isFinest()) CrawlStacker.log.finest("ENQUEUE " + entry.url() + ", referer=" + entry.referrerhash() + ", initiator=" + ((entry.initiator() == null) ? "" : ASCII.String(entry.initiator())) + ", name=" + entry.name() + ", appdate=" + entry.appdate() + ", depth=" + entry.depth());
+        if (this.existenceBatchSize > 1) {
+            synchronized (this.existenceCandidates) {
+                if (this.existenceCandidates.size() < this.maxExistenceCandidates) this.existenceCandidates.add(ASCII.String(entry.url().hash()));
+            }
+        }
         this.requestQueue.enQueue(entry);
     }
     
@@ -216,6 +247,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             final byte[] urlhash = url.hash();
             if (replace) {
                 this.indexSegment.fulltext().remove(urlhash);
+                this.prefetchedLoadTimes.remove(ASCII.String(urlhash));
                 String u = url.toNormalform(true);
                 if (u.endsWith("/")) {
                     u = u + "index.html";
@@ -225,6 +257,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
                 try {
                     final byte[] uh = new DigestURL(u).hash();
                     this.indexSegment.fulltext().remove(uh);
+                    this.prefetchedLoadTimes.remove(ASCII.String(uh));
                     this.nextQueue.noticeURL.removeByURLHash(uh);
                 } catch (final MalformedURLException e1) {}
             }
@@ -384,6 +417,9 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             return null;
         }
 
+        // resolve the host in the background while the url waits in the crawl queue, so the loader finds it in the name cache
+        Domains.prefetch(entry.url().getHost());
+
         if (global) {
             // it may be possible that global == true and local == true, so do not check an error case against it
             if (proxy) CrawlStacker.log.warn("URL '" + entry.url().toString() + "' has conflicting initiator properties: global = true, proxy = true, initiator = proxy" + ", profile.handle = " + profile.handle());
@@ -419,9 +455,9 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             return CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX + ": " + dbocc.name();
         }
         String urlhash = ASCII.String(url.hash());
-        LoadTimeURL oldEntry = null;
+        long oldDate = -1;
         try {
-            oldEntry = this.indexSegment.fulltext().getDefaultConnector().getLoadTimeURL(urlhash);
+            oldDate = getLoadTime(urlhash);
         } catch (IOException e) {
             // if an exception here occurs then there is the danger that urls which had been in the crawler are overwritten a second time
             // to prevent that, we reject urls in these events
@@ -446,16 +482,15 @@ public final class CrawlStacker implements WorkflowTask<Request>{
             */
         }
         
-        final Long oldDate = oldEntry == null ? null : oldEntry.date;
-        if (oldDate == null) {
+        if (oldDate < 0) {
             return null; // no evidence that we know that url
         }
-        final boolean recrawl = profile.recrawlIfOlder() > oldDate.longValue();
+        final boolean recrawl = profile.recrawlIfOlder() > oldDate;
         final String urlstring = url.toNormalform(false);
         if (recrawl) {
             if (CrawlStacker.log.isFine())
                 CrawlStacker.log.fine("RE-CRAWL of URL '" + urlstring + "': this url was crawled " +
-                    ((System.currentTimeMillis() - oldDate.longValue()) / 60000 / 60 / 24) + " days ago.");
+                    ((System.currentTimeMillis() - oldDate) / 60000 / 60 / 24) + " days ago.");
         } else {
 			return CRAWL_REJECT_REASON_DOUBLE_IN_PREFIX + ": local index, recrawl rejected. Document date = "
 					+ ISO8601Formatter.FORMATTER.format(new Date(oldDate)) + " is not older than crawl profile recrawl minimum date = "
@@ -465,6 +500,48 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         return null;
     }
 
+    /**
+     * get the load time of an url from the index. The load time is requested together with the load times
+     * of up to existenceBatchSize - 1 other urls which are waiting in the stacker queue, so that the next
+     * checks of these urls can use the result of the same index request.
+     * @param urlhash the url hash
+     * @return the load time in milliseconds since epoch or -1 if the url is not in the index
+     * @throws IOException
+     */
+    private long getLoadTime(final String urlhash) throws IOException {
+        final long now = System.currentTimeMillis();
+        final long[] prefetched = this.prefetchedLoadTimes.remove(urlhash);
+        if (prefetched != null && now - prefetched[1] < PREFETCH_TTL) return prefetched[0];
+
+        // collect a batch of waiting urls together with the current url
+        final Set<String> batch = new HashSet<String>();
+        batch.add(urlhash);
+        synchronized (this.existenceCandidates) {
+            this.existenceCandidates.remove(urlhash);
+            final Iterator<String> i = this.existenceCandidates.iterator();
+            while (batch.size() < this.existenceBatchSize && i.hasNext()) {
+                final String candidate = i.next();
+                i.remove();
+                if (!this.prefetchedLoadTimes.containsKey(candidate)) batch.add(candidate);
+            }
+        }
+        if (batch.size() == 1) return this.indexSegment.fulltext().getLoadTime(urlhash);
+
+        final Map<String, Long> loadTimes = this.indexSegment.fulltext().getLoadTimes(batch);
+        if (this.prefetchedLoadTimes.size() > 4 * this.existenceBatchSize) {
+            // remove the load times of urls which have been rejected before their check
+            final Iterator<long[]> i = this.prefetchedLoadTimes.values().iterator();
+            while (i.hasNext()) if (now - i.next()[1] >= PREFETCH_TTL) i.remove();
+        }
+        for (final String h: batch) {
+            if (h.equals(urlhash)) continue;
+            final Long date = loadTimes.get(h);
+            this.prefetchedLoadTimes.put(h, new long[]{date == null ? -1l : date.longValue(), now});
+        }
+        final Long date = loadTimes.get(urlhash);
+        return date == null ? -1l : date.longValue();
+    }
+
     /**
      * Test if an url shall be accepted using attributes that are defined by a crawl start but can be changed during a crawl.
      * @param url
@@ -0,0 +1,984 @@
+/**
+ *  FrontierStore
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowHandleMap;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * The crawl frontier of all hosts of a {@link HostBalancer} in one append-only log file.
+ * Every push appends a record with the url hash, the crawl depth and the request row; a pop or removal
+ * appends a tombstone with the url hash, the removal of all urls of a host appends a single host tombstone.
+ * The position of a record in the log is its sequence number: for each host and depth the positions of
+ * the pushed records form a queue which is consumed with a cursor, so the requests of a host are returned
+ * from the lowest depth first and within a depth in the order in which they were pushed.
+ *
+ * Records are collected in a write buffer and appended in batches; records which are still in the buffer
+ * are lost in a crash. Reads are positional reads on the file channel. A ram index maps the url hashes of all live requests to the position of their record.
+ * At start-up the index and the cursors are restored with one sequential scan of the log; an incomplete
+ * record at the end of the log (i.e. after a crash) is cut off. The log is compacted when it contains
+ * more removed than live records.
+ *
+ * The cursors of a host are guarded by a lock of that host and the write buffer by its own lock, so the
+ * queues of different hosts are used concurrently and only the appends to the log are serialized. While
+ * the store is running the log is compacted in a background thread which blocks the store only to take
+ * over the records appended meanwhile and to swap the files.
+ */
+public class FrontierStore {
+
+    private final static ConcurrentLog log = new ConcurrentLog("FrontierStore");
+
+    public  static final String fileName = "frontier.log";
+    private static final byte[] MAGIC = ASCII.getBytes("YaCyFrontier1");
+    private static final byte   PUT = 'P', DELETE = 'D', CLEAR = 'C';
+    private static final int    BUFFER_SIZE = 256 * 1024;
+    private static final long   FLUSH_INTERVAL = 1000; // an append flushes the write buffer if the last flush is older than this; there is no timer, so without appends the buffer is only written by flush() or close()
+    private static final int    COMPACT_MIN = 10000;   // minimum number of removed records in the log before it is compacted
+    private static final int    HOST_LOCKS = 256;      // number of locks for the cursors of the hosts; hosts with the same lock are serialized
+
+    /**
+     * the queue of the record positions of one host and depth
+     */
+    private static final class Cursor {
+        private long[] positions = new long[4];
+        private int head = 0, tail = 0;
+
+        private void add(final long position) {
+            if (this.tail == this.positions.length) {
+                if (this.head > this.positions.length / 2) {
+                    System.arraycopy(this.positions, this.head, this.positions, 0, this.tail - this.head);
+                    this.tail -= this.head;
+                    this.head = 0;
+                } else {
+                    this.positions = Arrays.copyOf(this.positions, this.positions.length * 2);
+                }
+            }
+            this.positions[this.tail++] = position;
+        }
+
+        private boolean isEmpty() {
+            return this.head == this.tail;
+        }
+    }
+
+    /**
+     * the cursors of all depths of one host
+     */
+    private static final class Host {
+        private final TreeMap<Integer, Cursor> depths = new TreeMap<Integer, Cursor>();
+        private int size = 0; // number of live requests
+
+        private Cursor cursor(final int depth) {
+            Cursor cursor = this.depths.get(depth);
+            if (cursor == null) {
+                cursor = new Cursor();
+                this.depths.put(depth, cursor);
+            }
+            return cursor;
+        }
+    }
+
+    private final File file;
+    private final Row rowdef;
+    private final int keylength;
+    private final int headerLength;  // length of the file header
+    private final int putLength;     // length of a put record without the row
+    private final int deleteLength;  // length of a tombstone
+    private final int maxRecordLength;
+    private final byte[] buffer;     // the write buffer; its monitor guards the buffer, fileLength, bufferPos and lastFlush
+    private final RowHandleMap index; // url hash -> position of the put record of all live requests
+    private final Map<String, Host> hosts;
+    private final Object[] hostLocks;
+    private final ReentrantReadWriteLock lock; // shared by all operations, exclusive to truncate the log, to swap a compacted log and to close the store
+    private final AtomicInteger live, dead; // number of live requests and of records which are no longer needed
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long fileLength;         // the length of the log without the write buffer
+    private int bufferPos;
+    private long lastFlush;
+    private int generation;          // counts the rewrites of the log; positions of a previous generation are invalid
+    private Thread compaction = null; // the running background compaction
+
+    /**
+     * open the frontier store in the given directory; an existing log is read to restore the queues
+     * @param path the directory of the log file
+     * @param rowdef the row definition of the requests; the primary key is the url hash
+     * @throws IOException
+     * @throws SpaceExceededException if the index of the existing log does not fit into the memory
+     */
+    public FrontierStore(final File path, final Row rowdef) throws IOException, SpaceExceededException {
+        if (!path.exists()) path.mkdirs();
+        this.file = new File(path, fileName);
+        this.rowdef = rowdef;
+        this.keylength = rowdef.primaryKeyLength;
+        this.headerLength = MAGIC.length + 4;
+        this.putLength = 1 + this.keylength + 2 + 4;
+        this.deleteLength = 1 + this.keylength;
+        int payload = 0;
+        for (int c = 1; c < rowdef.columns(); c++) payload += 2 + rowdef.column(c).cellwidth;
+        this.maxRecordLength = this.putLength + payload;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.index = new RowHandleMap(this.keylength, rowdef.objectOrder, 6, 1000, "FrontierStore." + path.getName());
+        this.hosts = new ConcurrentHashMap<String, Host>();
+        this.hostLocks = new Object[HOST_LOCKS];
+        for (int i = 0; i < HOST_LOCKS; i++) this.hostLocks[i] = new Object();
+        this.lock = new ReentrantReadWriteLock();
+        this.live = new AtomicInteger(0);
+        this.dead = new AtomicInteger(0);
+        this.lastFlush = System.currentTimeMillis();
+
+        final long start = System.currentTimeMillis();
+        open();
+        if (this.live.get() == 0) {
+            if (this.fileLength > this.headerLength) truncate();
+        } else if (this.dead.get() > this.live.get()) {
+            compact();
+        }
+        if (log.isInfo()) log.info("opened " + this.file.getAbsolutePath() + " with " + this.live.get() + " urls of " + this.hosts.size() + " hosts in " + (System.currentTimeMillis() - start) + " milliseconds");
+    }
+
+    /**
+     * open the log file and restore the index and the cursors
+     */
+    private void open() throws IOException, SpaceExceededException {
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.channel = this.raf.getChannel();
+        final long length = this.channel.size();
+        this.fileLength = length;
+        if (length >= this.headerLength && validHeader()) {
+            this.fileLength = recover(length);
+        } else {
+            if (length > 0) log.warn("discarded " + this.file.getAbsolutePath() + " because of an unknown format");
+            this.channel.truncate(0);
+            writeFully(header(), 0);
+            this.fileLength = this.headerLength;
+        }
+    }
+
+    private byte[] header() {
+        final byte[] header = new byte[this.headerLength];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        final int objectsize = this.rowdef.objectsize;
+        header[MAGIC.length] = (byte) (objectsize >>> 24);
+        header[MAGIC.length + 1] = (byte) (objectsize >>> 16);
+        header[MAGIC.length + 2] = (byte) (objectsize >>> 8);
+        header[MAGIC.length + 3] = (byte) objectsize;
+        return header;
+    }
+
+    private boolean validHeader() throws IOException {
+        final byte[] header = new byte[this.headerLength];
+        readFully(0, header, this.headerLength);
+        return Arrays.equals(header, header());
+    }
+
+    /**
+     * scan the log and replay all records
+     * @param length the length of the log file
+     * @return the end of the last complete record
+     */
+    private long recover(final long length) throws IOException, SpaceExceededException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), 1024 * 1024));
+        final byte[] key = new byte[this.keylength];
+        long position = this.headerLength;
+        try {
+            skipFully(in, this.headerLength);
+            while (position < length) {
+                final int type = in.read();
+                if (type < 0) break;
+                in.readFully(key);
+                if (type == PUT) {
+                    final int depth = in.readUnsignedShort();
+                    final int n = in.readInt();
+                    if (n < 0 || this.putLength + n > this.maxRecordLength) break;
+                    skipFully(in, n);
+                    add(key, depth, position);
+                    position += this.putLength + n;
+                } else if (type == DELETE) {
+                    delete(key);
+                    position += this.deleteLength;
+                } else if (type == CLEAR) {
+                    delete(ASCII.String(key, 6, 6));
+                    position += this.deleteLength;
+                } else {
+                    break;
+                }
+            }
+        } catch (final EOFException e) {
+            // the last record is incomplete
+        } finally {
+            in.close();
+        }
+        if (position < length) {
+            log.warn("cut off " + (length - position) + " bytes of an incomplete record at the end of " + this.file.getAbsolutePath());
+            this.channel.truncate(position);
+        }
+        return position;
+    }
+
+    private static void skipFully(final DataInputStream in, long n) throws IOException {
+        while (n > 0) {
+            long s = in.skip(n);
+            if (s <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                s = 1;
+            }
+            n -= s;
+        }
+    }
+
+    /*
+     * The index is shared by all hosts. Its get method reads the position from a view on the index row after the
+     * index is released, so the positions are read and changed under the monitor of the index only.
+     */
+
+    private long position(final byte[] key) {
+        synchronized (this.index) {
+            return this.index.get(key);
+        }
+    }
+
+    private long position(final byte[] key, final long position) throws SpaceExceededException {
+        synchronized (this.index) {
+            return this.index.put(key, position);
+        }
+    }
+
+    private long removePosition(final byte[] key) {
+        synchronized (this.index) {
+            return this.index.remove(key);
+        }
+    }
+
+    /**
+     * @return the lock which guards the cursors of the given host
+     */
+    private Object hostLock(final String hosthash) {
+        return this.hostLocks[(hosthash.hashCode() & Integer.MAX_VALUE) % HOST_LOCKS];
+    }
+
+    /**
+     * register the put record of a request at the given position; the caller holds the lock of the host
+     */
+    private void add(final byte[] key, final int depth, final long position) throws SpaceExceededException {
+        final String hosthash = ASCII.String(key, 6, 6);
+        Host host = this.hosts.get(hosthash);
+        if (host == null) {
+            host = new Host();
+            this.hosts.put(hosthash, host);
+        }
+        if (position(key, position) >= 0) {
+            this.dead.incrementAndGet(); // a previous put record of the same url
+        } else {
+            this.live.incrementAndGet();
+            host.size++;
+        }
+        host.cursor(depth).add(position);
+    }
+
+    /**
+     * unregister the request with the given url hash; the caller holds the lock of the host
+     * @return true if the request was live
+     */
+    private boolean delete(final byte[] key) {
+        final long position = removePosition(key);
+        if (position < 0) {
+            this.dead.incrementAndGet();
+            return false;
+        }
+        this.live.decrementAndGet();
+        this.dead.addAndGet(2); // the put record and the tombstone
+        final String hosthash = ASCII.String(key, 6, 6);
+        final Host host = this.hosts.get(hosthash);
+        if (host == null) return true;
+        if (--host.size <= 0) {
+            this.hosts.remove(hosthash);
+        } else {
+            // a popped request is at the head of the lowest depth; skip it now so a peek does not need to read it again
+            final Map.Entry<Integer, Cursor> lowest = host.depths.firstEntry();
+            final Cursor cursor = lowest == null ? null : lowest.getValue();
+            if (cursor != null && !cursor.isEmpty() && cursor.positions[cursor.head] == position) cursor.head++;
+        }
+        return true;
+    }
+
+    /**
+     * unregister all requests of a host; the caller holds the lock of the host
+     * @return the number of live requests of the host
+     */
+    private int delete(final String hosthash) throws IOException {
+        this.dead.incrementAndGet();
+        final Host host = this.hosts.remove(hosthash);
+        if (host == null) return 0;
+        final byte[] key = new byte[this.keylength];
+        for (final Cursor cursor: host.depths.values()) {
+            for (int i = cursor.head; i < cursor.tail; i++) {
+                final long position = cursor.positions[i];
+                readFully(position + 1, key, this.keylength);
+                synchronized (this.index) {
+                    if (this.index.get(key) == position) this.index.remove(key);
+                }
+            }
+        }
+        this.live.addAndGet(-host.size);
+        this.dead.addAndGet(host.size);
+        return host.size;
+    }
+
+    /**
+     * store a request
+     * @param depth the crawl depth of the request
+     * @param row the request row
+     * @return false if a request with the same url hash is already stored
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public boolean put(final int depth, final Row.Entry row) throws IOException, SpaceExceededException {
+        assert depth >= 0 && depth <= 0xffff : "depth = " + depth;
+        final byte[] key = row.getPrimaryKeyBytes();
+        final byte[] bytes = row.bytes();
+        final byte[] record = new byte[this.maxRecordLength];
+        int p = 0;
+        record[p++] = PUT;
+        System.arraycopy(key, 0, record, p, this.keylength);
+        p += this.keylength;
+        record[p++] = (byte) (depth >>> 8);
+        record[p++] = (byte) depth;
+        p += 4;
+        // the cells are stored without their trailing zeros; that removes most of the padding of the url and name columns
+        for (int c = 1; c < this.rowdef.columns(); c++) {
+            final int start = this.rowdef.colstart[c];
+            int n = this.rowdef.column(c).cellwidth;
+            while (n > 0 && bytes[start + n - 1] == 0) n--;
+            record[p++] = (byte) (n >>> 8);
+            record[p++] = (byte) n;
+            System.arraycopy(bytes, start, record, p, n);
+            p += n;
+        }
+        final int n = p - this.putLength;
+        record[this.putLength - 4] = (byte) (n >>> 24);
+        record[this.putLength - 3] = (byte) (n >>> 16);
+        record[this.putLength - 2] = (byte) (n >>> 8);
+        record[this.putLength - 1] = (byte) n;
+        this.lock.readLock().lock();
+        try {
+            synchronized (hostLock(ASCII.String(key, 6, 6))) {
+                if (position(key) >= 0) return false;
+                final long position = append(record, p);
+                add(key, depth, position);
+                return true;
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param urlhash
+     * @return the stored request row or null if there is none with the given url hash
+     * @throws IOException
+     */
+    public Row.Entry get(final byte[] urlhash) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            final long position = position(urlhash);
+            if (position < 0) return null;
+            return read(position);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public boolean has(final byte[] urlhash) {
+        return position(urlhash) >= 0;
+    }
+
+    /**
+     * remove a request
+     * @param urlhash
+     * @return true if the request was stored
+     * @throws IOException
+     */
+    public boolean remove(final byte[] urlhash) throws IOException {
+        final byte[] record = new byte[this.deleteLength];
+        record[0] = DELETE;
+        System.arraycopy(urlhash, 0, record, 1, this.keylength);
+        this.lock.readLock().lock();
+        try {
+            synchronized (hostLock(ASCII.String(urlhash, 6, 6))) {
+                if (position(urlhash) < 0) return false;
+                append(record, this.deleteLength);
+                delete(urlhash);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        cleanup();
+        return true;
+    }
+
+    /**
+     * remove all requests of a host
+     * @param hosthash
+     * @return the number of removed requests
+     * @throws IOException
+     */
+    public int clear(final String hosthash) throws IOException {
+        final byte[] record = new byte[this.deleteLength];
+        record[0] = CLEAR;
+        Arrays.fill(record, 1, 7, (byte) '-');
+        System.arraycopy(ASCII.getBytes(hosthash), 0, record, 7, 6);
+        final int c;
+        this.lock.readLock().lock();
+        try {
+            synchronized (hostLock(hosthash)) {
+                if (!this.hosts.containsKey(hosthash)) return 0;
+                append(record, this.deleteLength);
+                c = delete(hosthash);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        cleanup();
+        return c;
+    }
+
+    /**
+     * remove all requests
+     * @throws IOException
+     */
+    public void clear() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            truncate();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * get the next request of a host without removing it: the oldest request of the lowest depth
+     * @param hosthash
+     * @return the request row or null if the host has no requests
+     * @throws IOException
+     */
+    public Row.Entry peek(final String hosthash) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            synchronized (hostLock(hosthash)) {
+                final Host host = this.hosts.get(hosthash);
+                if (host == null) return null;
+                while (!host.depths.isEmpty()) {
+                    final Map.Entry<Integer, Cursor> entry = host.depths.firstEntry();
+                    final Cursor cursor = entry.getValue();
+                    while (!cursor.isEmpty()) {
+                        final Row.Entry row = readLive(cursor.positions[cursor.head]);
+                        if (row != null) return row;
+                        cursor.head++;
+                    }
+                    host.depths.remove(entry.getKey());
+                }
+                return null;
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param hosthash
+     * @return the number of requests of the host
+     */
+    public int size(final String hosthash) {
+        synchronized (hostLock(hosthash)) {
+            final Host host = this.hosts.get(hosthash);
+            return host == null ? 0 : host.size;
+        }
+    }
+
+    public int size() {
+        return this.live.get();
+    }
+
+    public boolean isEmpty() {
+        return this.live.get() == 0;
+    }
+
+    /**
+     * @return the host hashes of all hosts with requests
+     */
+    public List<String> hosts() {
+        return new ArrayList<String>(this.hosts.keySet());
+    }
+
+    /**
+     * iterate the requests of a host in the order in which they are returned by peek. The iterator works
+     * on a snapshot of the cursors; requests which are removed meanwhile are skipped and the iteration
+     * ends if the log is compacted.
+     * @param hosthash
+     * @return an iterator of the request rows
+     */
+    public Iterator<Row.Entry> rows(final String hosthash) {
+        final long[] positions;
+        final int snapshot;
+        this.lock.readLock().lock();
+        try {
+            snapshot = this.generation;
+            synchronized (hostLock(hosthash)) {
+                final Host host = this.hosts.get(hosthash);
+                if (host == null) {
+                    positions = new long[0];
+                } else {
+                    int n = 0;
+                    for (final Cursor cursor: host.depths.values()) n += cursor.tail - cursor.head;
+                    positions = new long[n];
+                    n = 0;
+                    for (final Cursor cursor: host.depths.values()) {
+                        System.arraycopy(cursor.positions, cursor.head, positions, n, cursor.tail - cursor.head);
+                        n += cursor.tail - cursor.head;
+                    }
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return new Iterator<Row.Entry>() {
+            private int i = 0;
+            private Row.Entry next = null, last = null;
+            @Override
+            public boolean hasNext() {
+                if (this.next != null) return true;
+                FrontierStore.this.lock.readLock().lock();
+                try {
+                    if (snapshot != FrontierStore.this.generation || FrontierStore.this.channel == null) return false;
+                    while (this.next == null && this.i < positions.length) this.next = readLive(positions[this.i++]);
+                } catch (final IOException e) {
+                    log.warn("cannot read " + FrontierStore.this.file.getAbsolutePath() + ": " + e.getMessage());
+                    this.i = positions.length;
+                } finally {
+                    FrontierStore.this.lock.readLock().unlock();
+                }
+                return this.next != null;
+            }
+            @Override
+            public Row.Entry next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                this.last = this.next;
+                this.next = null;
+                return this.last;
+            }
+            @Override
+            public void remove() {
+                if (this.last == null) throw new IllegalStateException();
+                try {
+                    FrontierStore.this.remove(this.last.getPrimaryKeyBytes());
+                } catch (final IOException e) {
+                    log.warn("cannot remove from " + FrontierStore.this.file.getAbsolutePath() + ": " + e.getMessage());
+                }
+                this.last = null;
+            }
+        };
+    }
+
+    /**
+     * write the buffered records to the log
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.lock.readLock().lock();
+        try {
+            if (this.channel != null) flushBuffer();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public void close() {
+        // a running compaction is finished first so it does not leave a temporary file behind
+        final Thread compaction;
+        synchronized (this) {
+            compaction = this.compaction;
+        }
+        if (compaction != null) try {
+            compaction.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.lock.writeLock().lock();
+        try {
+            if (this.channel == null) return;
+            try {
+                flushBuffer();
+                this.channel.close();
+                this.raf.close();
+            } catch (final IOException e) {
+                log.warn("cannot close " + this.file.getAbsolutePath() + ": " + e.getMessage());
+            }
+            this.channel = null;
+            this.raf = null;
+            if (this.live.get() == 0) FileUtils.deletedelete(this.file);
+            this.index.close();
+            this.hosts.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        synchronized (this.buffer) {
+            if (this.bufferPos > 0) {
+                writeFully(this.buffer, this.bufferPos, this.fileLength);
+                this.fileLength += this.bufferPos;
+                this.bufferPos = 0;
+            }
+            this.lastFlush = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * append a record to the write buffer
+     * @return the position of the record in the log
+     */
+    private long append(final byte[] record, final int length) throws IOException {
+        synchronized (this.buffer) {
+            if (this.bufferPos + length > this.buffer.length) flushBuffer();
+            final long position = this.fileLength + this.bufferPos;
+            System.arraycopy(record, 0, this.buffer, this.bufferPos, length);
+            this.bufferPos += length;
+            if (System.currentTimeMillis() - this.lastFlush > FLUSH_INTERVAL) flushBuffer();
+            return position;
+        }
+    }
+
+    /**
+     * read the request row at the given position if it is live
+     * @return the row or null if the request was removed or stored again at another position
+     */
+    private Row.Entry readLive(final long position) throws IOException {
+        final Row.Entry row = read(position);
+        return row != null && position(row.getPrimaryKeyBytes()) == position ? row : null;
+    }
+
+    private Row.Entry read(final long position) throws IOException {
+        final byte[] record = new byte[this.maxRecordLength];
+        readFully(position, record, this.maxRecordLength);
+        if (record[0] != PUT) return null;
+        final byte[] bytes = new byte[this.rowdef.objectsize];
+        System.arraycopy(record, 1, bytes, 0, this.keylength);
+        int p = this.putLength;
+        for (int c = 1; c < this.rowdef.columns(); c++) {
+            final int n = ((record[p] & 0xff) << 8) | (record[p + 1] & 0xff);
+            p += 2;
+            System.arraycopy(record, p, bytes, this.rowdef.colstart[c], n);
+            p += n;
+        }
+        return this.rowdef.newEntry(bytes);
+    }
+
+    /**
+     * read from the log or from the write buffer; records are flushed completely, so a record is either
+     * in the file or in the buffer. The read stops at the end of the file or of the buffer.
+     */
+    private void readFully(final long position, final byte[] b, int length) throws IOException {
+        synchronized (this.buffer) {
+            if (position >= this.fileLength) {
+                length = (int) Math.min(length, this.fileLength + this.bufferPos - position);
+                System.arraycopy(this.buffer, (int) (position - this.fileLength), b, 0, length);
+                return;
+            }
+            length = (int) Math.min(length, this.fileLength - position);
+        }
+        final ByteBuffer bb = ByteBuffer.wrap(b, 0, length);
+        long p = position;
+        while (bb.hasRemaining()) {
+            final int n = this.channel.read(bb, p);
+            if (n < 0) throw new EOFException("position " + p + " in " + this.file.getAbsolutePath());
+            p += n;
+        }
+    }
+
+    private void writeFully(final byte[] b, final long position) throws IOException {
+        writeFully(b, b.length, position);
+    }
+
+    private void writeFully(final byte[] b, final int length, final long position) throws IOException {
+        final ByteBuffer bb = ByteBuffer.wrap(b, 0, length);
+        long p = position;
+        while (bb.hasRemaining()) p += this.channel.write(bb, p);
+    }
+
+    /**
+     * truncate the log if it is empty or start a compaction if it contains mostly removed records
+     */
+    private void cleanup() throws IOException {
+        final int live = this.live.get();
+        if (live == 0) {
+            // the log is truncated only if no other thread uses the store; otherwise it is truncated by a later removal or at the next start
+            if (!this.lock.writeLock().tryLock()) return;
+            try {
+                if (this.live.get() == 0 && this.channel != null) truncate();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } else {
+            final int dead = this.dead.get();
+            if (dead > COMPACT_MIN && dead > 2 * live) startCompaction();
+        }
+    }
+
+    private synchronized void startCompaction() {
+        if (this.compaction != null) return;
+        this.compaction = new Thread("FrontierStore.compact") {
+            @Override
+            public void run() {
+                try {
+                    compact();
+                } catch (final IOException e) {
+                    log.warn("cannot compact " + FrontierStore.this.file.getAbsolutePath() + ": " + e.getMessage());
+                } finally {
+                    synchronized (FrontierStore.this) {
+                        FrontierStore.this.compaction = null;
+                    }
+                }
+            }
+        };
+        this.compaction.setDaemon(true);
+        this.compaction.start();
+    }
+
+    private void truncate() throws IOException {
+        synchronized (this.buffer) {
+            this.bufferPos = 0;
+            this.channel.truncate(this.headerLength);
+            this.fileLength = this.headerLength;
+        }
+        synchronized (this.index) {
+            this.index.clear();
+        }
+        this.hosts.clear();
+        this.live.set(0);
+        this.dead.set(0);
+        this.generation++;
+    }
+
+    /**
+     * Rewrite the log with the live records only. The live records up to the current end of the log are
+     * copied while the store continues to work; then the store is locked, the records appended meanwhile are
+     * copied as they are and the positions in the index and the cursors are moved to the new log.
+     */
+    private void compact() throws IOException {
+        final long start = System.currentTimeMillis();
+        final long end;
+        final int snapshot, capacity;
+        this.lock.writeLock().lock();
+        try {
+            if (this.channel == null) return;
+            flushBuffer();
+            end = this.fileLength;
+            snapshot = this.generation;
+            capacity = this.live.get(); // no new record can become live before the end
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        // copy the live records before the end; these records are not changed any more, they can only be removed
+        final File tmp = new File(this.file.getParentFile(), fileName + ".tmp");
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), 1024 * 1024);
+        final long[] oldPositions = new long[capacity], newPositions = new long[capacity];
+        final byte[] keys = new byte[capacity * this.keylength];
+        final byte[] key = new byte[this.keylength];
+        final byte[] record = new byte[this.maxRecordLength];
+        int copied = 0;
+        long newPosition = this.headerLength;
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), 1024 * 1024));
+            try {
+                out.write(header());
+                skipFully(in, this.headerLength);
+                long position = this.headerLength;
+                while (position < end) {
+                    final int type = in.read();
+                    if (type < 0) throw new EOFException("position " + position + " in " + this.file.getAbsolutePath());
+                    in.readFully(key);
+                    if (type != PUT) {
+                        position += this.deleteLength;
+                        continue;
+                    }
+                    in.readFully(record, this.putLength - 6, 6);
+                    final int n = ((record[this.putLength - 4] & 0xff) << 24) | ((record[this.putLength - 3] & 0xff) << 16) | ((record[this.putLength - 2] & 0xff) << 8) | (record[this.putLength - 1] & 0xff);
+                    if (n < 0 || this.putLength + n > this.maxRecordLength) throw new IOException("bad record at position " + position + " in " + this.file.getAbsolutePath());
+                    in.readFully(record, this.putLength, n);
+                    if (position(key) == position) {
+                        if (copied == capacity) throw new IOException("more live records than requests in " + this.file.getAbsolutePath());
+                        record[0] = PUT;
+                        System.arraycopy(key, 0, record, 1, this.keylength);
+                        out.write(record, 0, this.putLength + n);
+                        System.arraycopy(key, 0, keys, copied * this.keylength, this.keylength);
+                        oldPositions[copied] = position;
+                        newPositions[copied] = newPosition;
+                        copied++;
+                        newPosition += this.putLength + n;
+                    }
+                    position += this.putLength + n;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            out.close();
+            FileUtils.deletedelete(tmp);
+            log.warn("cannot compact " + this.file.getAbsolutePath() + ": " + e.getMessage());
+            return;
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            final byte[] tail;
+            try {
+                if (this.channel == null || this.generation != snapshot) {
+                    // the store was closed or truncated meanwhile
+                    out.close();
+                    FileUtils.deletedelete(tmp);
+                    return;
+                }
+                flushBuffer();
+                tail = new byte[(int) (this.fileLength - end)];
+                readFully(end, tail, tail.length);
+                out.write(tail);
+                out.close();
+            } catch (final IOException e) {
+                out.close();
+                FileUtils.deletedelete(tmp);
+                log.warn("cannot compact " + this.file.getAbsolutePath() + ": " + e.getMessage());
+                return;
+            }
+            final long length = this.fileLength;
+            if (!replace(tmp)) return;
+
+            // move the index and the cursors to the positions in the new log
+            final long delta = newPosition - end;
+            int records = copied;
+            try {
+                for (int i = 0; i < copied; i++) {
+                    System.arraycopy(keys, i * this.keylength, key, 0, this.keylength);
+                    if (position(key) == oldPositions[i]) position(key, newPositions[i]);
+                }
+                int p = 0;
+                while (p < tail.length) {
+                    records++;
+                    if (tail[p] != PUT) {
+                        p += this.deleteLength;
+                        continue;
+                    }
+                    System.arraycopy(tail, p + 1, key, 0, this.keylength);
+                    if (position(key) == end + p) position(key, end + p + delta);
+                    p += this.putLength + (((tail[p + this.putLength - 4] & 0xff) << 24) | ((tail[p + this.putLength - 3] & 0xff) << 16) | ((tail[p + this.putLength - 2] & 0xff) << 8) | (tail[p + this.putLength - 1] & 0xff));
+                }
+            } catch (final SpaceExceededException e) {
+                throw new IOException(e.getMessage());
+            }
+            for (final Host host: this.hosts.values()) {
+                for (final Cursor cursor: host.depths.values()) {
+                    final long[] positions = new long[Math.max(4, cursor.tail - cursor.head)];
+                    int n = 0;
+                    for (int i = cursor.head; i < cursor.tail; i++) {
+                        final long position = cursor.positions[i];
+                        if (position >= end) {
+                            positions[n++] = position + delta;
+                        } else {
+                            final int j = Arrays.binarySearch(oldPositions, 0, copied, position);
+                            if (j >= 0) positions[n++] = newPositions[j];
+                        }
+                    }
+                    cursor.positions = positions;
+                    cursor.head = 0;
+                    cursor.tail = n;
+                }
+            }
+            synchronized (this.buffer) {
+                this.fileLength = newPosition + tail.length;
+            }
+            this.dead.set(Math.max(0, records - this.live.get()));
+            this.generation++;
+            if (log.isInfo()) log.info("compacted " + this.file.getAbsolutePath() + " from " + length + " to " + this.fileLength + " bytes in " + (System.currentTimeMillis() - start) + " milliseconds");
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * replace the log with the compacted log. The old log stays open until the compacted log is in place,
+     * so the store continues with the old log if the files cannot be swapped.
+     * @return true if the log was replaced
+     */
+    private boolean replace(final File tmp) throws IOException {
+        try {
+            Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            // some file systems (i.e. on windows) cannot replace an open file: close the old log and try again
+            this.channel.close();
+            this.raf.close();
+            try {
+                Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException ee) {
+                log.warn("cannot replace " + this.file.getAbsolutePath() + " with the compacted log: " + ee.getMessage());
+                FileUtils.deletedelete(tmp);
+                this.raf = new RandomAccessFile(this.file, "rw");
+                this.channel = this.raf.getChannel();
+                return false;
+            }
+        }
+        final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+        this.channel.close();
+        this.raf.close();
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        return true;
+    }
+}
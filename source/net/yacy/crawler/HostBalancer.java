@@ -26,7 +26,6 @@ import java.lang.reflect.Array;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -47,32 +46,42 @@ import net.yacy.crawler.data.Latency;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.table.Table;
 import net.yacy.kelondro.util.FileUtils;
+import net.yacy.kelondro.util.kelondroException;
 
 /**
  * wrapper for single HostQueue queues; this is a collection of such queues.
- * All these queues are stored in a common directory for the queue stacks.
+ * The requests of all these queues are stored in one {@link FrontierStore} in the directory for the queue stacks.
  * 
  * ATTENTION: the order of urls returned by this balancer must strictly follow the clickdepth order.
  * That means that all links from a given host must be returned from the lowest crawldepth only.
  * The crawldepth is interpreted as clickdepth and the crawler is producing that semantic using a
  * correct crawl ordering.
+ *
+ * The hosts are scheduled in a {@link HostSchedule} ordered by the time when each host may be accessed again.
+ * The schedule is updated when a host is popped and when a load has finished (see {@link Latency.LoadListener}),
+ * so the next host is found without computing the waiting time of all hosts.
  */
-public class HostBalancer implements Balancer {
+public class HostBalancer implements Balancer, Latency.LoadListener {
 
     private final static ConcurrentLog log = new ConcurrentLog("HostBalancer");
     public final static HandleMap depthCache = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache");
     
     private final File hostsPath;
+    private final FrontierStore store;
     private final boolean exceed134217727;
     private final Map<String, HostQueue> queues;
-    private final Set<String> roundRobinHostHashes;
+    private final HostSchedule schedule; // hosts with non-empty queues, ordered by the time when they may be accessed again
+    private final Object[] hostLocks; // lock stripes which protect creation and removal of the queue of a host
     private final int onDemandLimit;
+    private volatile RobotsTxt robots; // as given with the latest push or pop; used to compute due times of loaded hosts
 
     /**
-     * Create a new instance and asynchronously fills the queue by scanning the hostsPath directory.
+     * Create a new instance and asynchronously fills the queue with the hosts of the frontier store.
      * @param hostsPath path with persisted hosts queues
      * @param onDemandLimit
      * @param exceed134217727
@@ -85,7 +94,7 @@ public class HostBalancer implements Balancer {
     }
     
     /**
-     * Create a new instance and fills the queue by scanning the hostsPath directory.
+     * Create a new instance and fills the queue with the hosts of the frontier store.
      * @param hostsPath
      * @param onDemandLimit
      * @param exceed134217727
@@ -102,13 +111,22 @@ public class HostBalancer implements Balancer {
         
         // create a stack for newly entered entries
         if (!(hostsPath.exists())) hostsPath.mkdirs(); // make the path
+        try {
+            this.store = new FrontierStore(hostsPath, Request.rowdef);
+        } catch (final IOException | SpaceExceededException e) {
+            throw new kelondroException(hostsPath.getAbsolutePath(), "cannot open the frontier store: " + e.getMessage());
+        }
         this.queues = new ConcurrentHashMap<String, HostQueue>();
-        this.roundRobinHostHashes = new HashSet<String>();
+        this.schedule = new HostSchedule();
+        this.hostLocks = new Object[64];
+        for (int i = 0; i < this.hostLocks.length; i++) this.hostLocks[i] = new Object();
+        this.robots = null;
+        Latency.addLoadListener(this);
         init(asyncInit); // return without wait but starts a thread to fill the queues
     }
 
     /**
-     * Fills the queue by scanning the hostsPath directory. 
+     * Fills the queue with the hosts of the frontier store.
      * @param async when true, launch in a dedicated thread to
      * return immediately (as large unfinished crawls may take longer to load)
      */
@@ -128,35 +146,81 @@ public class HostBalancer implements Balancer {
     }
 
     /**
-     * Fills the queue by scanning the hostsPath directory. 
+     * Fills the queue with the hosts of the frontier store. Queue directories of a previous
+     * version, which had one stack file for each host and depth, are moved into the store.
      */
     private void runInit() {
-        final String[] hostlist = hostsPath.list();
-        for (String hoststr : hostlist) {
+        final String[] hostlist = this.hostsPath.list();
+        if (hostlist != null) for (String hoststr : hostlist) {
+            File queuePath = new File(this.hostsPath, hoststr);
+            if (queuePath.isDirectory()) migrate(queuePath);
+        }
+        for (String hosthash : this.store.hosts()) {
             try {
-                File queuePath = new File(hostsPath, hoststr);
-                HostQueue queue = new HostQueue(queuePath, queues.size() > onDemandLimit, exceed134217727);
-                if (queue.isEmpty()) {
-                    queue.close();
-                    FileUtils.deletedelete(queuePath);
-                } else {
-                    queues.put(queue.getHostHash(), queue);
+                HostQueue queue;
+                synchronized (hostLock(hosthash)) {
+                    if (this.queues.containsKey(hosthash)) continue; // created meanwhile by a push
+                    queue = new HostQueue(this.store, hosthash, this.exceed134217727);
+                    this.queues.put(hosthash, queue);
                 }
-            } catch (MalformedURLException | RuntimeException e) {
-                log.warn("delete queue due to init error for " + hostsPath.getName() + " host=" + hoststr + " " + e.getLocalizedMessage());
-                // if exception thrown we can't init the queue, maybe due to name violation. That won't get better, delete it.
-                FileUtils.deletedelete(new File(hostsPath, hoststr));
+                this.schedule.offer(hosthash, dueTime(queue, null));
+            } catch (IOException | RuntimeException e) {
+                log.warn("delete queue due to init error for " + this.hostsPath.getName() + " hosthash=" + hosthash + " " + e.getLocalizedMessage());
+                // if exception thrown we can't init the queue, maybe the url can't be parsed. That won't get better, delete it.
+                try {
+                    this.store.clear(hosthash);
+                } catch (IOException ee) {}
             }
         }
     }
 
+    /**
+     * move the requests of a queue directory with one stack file for each depth into the store and delete the directory.
+     * A stack file which cannot be moved is kept with the directory, so the migration is tried again at the next start.
+     * @param queuePath
+     */
+    private void migrate(final File queuePath) {
+        final String[] stacks = queuePath.list();
+        int c = 0;
+        boolean failed = false;
+        if (stacks != null) for (String s : stacks) {
+            if (!s.endsWith(".stack")) continue;
+            final File f = new File(queuePath, s);
+            try {
+                final Table table = new Table(f, Request.rowdef, 0, 0, false, this.exceed134217727, false);
+                try {
+                    final Iterator<Row.Entry> i = table.rows();
+                    while (i.hasNext()) {
+                        final Row.Entry row = i.next();
+                        if (this.store.put(new Request(row).depth(), row)) c++;
+                    }
+                } finally {
+                    table.close();
+                }
+                FileUtils.deletedelete(f);
+            } catch (IOException | SpaceExceededException | RuntimeException e) {
+                log.warn("cannot migrate " + f.getAbsolutePath() + ": " + e.getLocalizedMessage());
+                failed = true;
+            }
+        }
+        if (failed) {
+            log.warn("kept " + queuePath.getAbsolutePath() + " because not all urls could be moved into the frontier store");
+        } else {
+            FileUtils.deletedelete(queuePath);
+        }
+        if (log.isInfo()) log.info("moved " + c + " urls from " + queuePath.getAbsolutePath() + " into the frontier store");
+    }
+
     @Override
     public synchronized void close() {
+        Latency.removeLoadListener(this);
         if (depthCache != null) {
             depthCache.clear();
         }
         for (HostQueue queue: this.queues.values()) queue.close();
         this.queues.clear();
+        this.schedule.clear();
+        this.store.close();
     }
 
     @Override
@@ -164,16 +228,45 @@ public class HostBalancer implements Balancer {
         if (depthCache != null) {
             depthCache.clear();
         }
-        for (HostQueue queue: this.queues.values()) queue.clear();
         this.queues.clear();
+        this.schedule.clear();
+        try {
+            this.store.clear();
+        } catch (IOException e) {
+            log.warn("cannot clear " + this.hostsPath.getName() + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private Object hostLock(final String hosthash) {
+        return this.hostLocks[(hosthash.hashCode() & Integer.MAX_VALUE) % this.hostLocks.length];
+    }
+
+    /**
+     * compute the time when a host may be accessed again
+     * @param queue the queue of the host
+     * @param robots the robots.txt database or null if the robots.txt crawl-delay shall be ignored
+     * @return the time in milliseconds; 0 for hosts which were not accessed recently, so these come first
+     */
+    private static long dueTime(final HostQueue queue, final RobotsTxt robots) {
+        final int delta = Latency.waitingRemainingGuessed(queue.getHost(), queue.getPort(), queue.getHostHash(), robots, ClientIdentification.yacyInternetCrawlerAgent);
+        return delta == Integer.MIN_VALUE ? 0 : System.currentTimeMillis() + delta;
+    }
+
+    /**
+     * move a loaded host to its new position in the schedule
+     */
+    @Override
+    public void hostLoaded(final String hosthash) {
+        final HostQueue queue = this.queues.get(hosthash);
+        if (queue == null || !this.schedule.contains(hosthash)) return;
+        this.schedule.update(hosthash, dueTime(queue, this.robots));
     }
 
     @Override
     public Request get(final byte[] urlhash) throws IOException {
-        String hosthash = ASCII.String(urlhash, 6, 6);
-        HostQueue queue = this.queues.get(hosthash);
-        if (queue == null) return null;
-        return queue.get(urlhash);
+        final Row.Entry entry = this.store.get(urlhash);
+        if (entry == null) return null;
+        return new Request(entry);
     }
 
     @Override
@@ -237,27 +330,17 @@ public class HostBalancer implements Balancer {
     @Override
     public boolean has(final byte[] urlhashb) {
         if (depthCache.has(urlhashb)) return true;
-        String hosthash = ASCII.String(urlhashb, 6, 6);
-        HostQueue queue = this.queues.get(hosthash);
-        if (queue == null) return false;
-        return queue.has(urlhashb);
+        return this.store.has(urlhashb);
     }
 
     @Override
     public int size() {
-        int c = 0;
-        for (HostQueue queue: this.queues.values()) {
-            c += queue.size();
-        }
-        return c;
+        return this.store.size();
     }
 
     @Override
     public boolean isEmpty() {
-        for (HostQueue queue: this.queues.values()) {
-            if (!queue.isEmpty()) return false;
-        }
-        return true;
+        return this.store.isEmpty();
     }
 
     @Override
@@ -282,202 +365,72 @@ public class HostBalancer implements Balancer {
     public String push(final Request entry, CrawlProfile profile, final RobotsTxt robots) throws IOException, SpaceExceededException {
         if (this.has(entry.url().hash())) return "double occurrence";
         depthCache.put(entry.url().hash(), entry.depth());
+        this.robots = robots;
         String hosthash = entry.url().hosthash();
-        synchronized (this) {
-            HostQueue queue = this.queues.get(hosthash);
+        HostQueue queue;
+        String error;
+        synchronized (hostLock(hosthash)) {
+            queue = this.queues.get(hosthash);
             if (queue == null) {
-                queue = new HostQueue(this.hostsPath, entry.url(), this.queues.size() > this.onDemandLimit, this.exceed134217727);
+                queue = new HostQueue(this.store, entry.url(), this.exceed134217727);
                 this.queues.put(hosthash, queue);
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
             }
-            return queue.push(entry, profile, robots);
+            error = queue.push(entry, profile, robots);
         }
+        if (error == null && !this.schedule.contains(hosthash)) this.schedule.offer(hosthash, dueTime(queue, robots));
+        return error;
     }
 
     /**
      * get the next entry in this crawl queue in such a way that the domain access time delta is maximized
      * and always above the given minimum delay time. An additional delay time is computed using the robots.txt
-     * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method pauses
-     * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
-     * for the computed Entry does not exist, null is returned
-     * @param delay true if the requester demands forced delays using explicit thread sleep
+     * crawl-delay time which is always respected. If delay is true, only hosts which are due are considered;
+     * a request of a host which may not be accessed yet is deferred in its queue and the host is scheduled
+     * again at the time when it is due, so this method never waits for a crawl-delay.
+     * @param delay true if the crawl-delay of the hosts shall be respected
      * @param profile
-     * @return a url in a CrawlEntry object
+     * @return a url in a CrawlEntry object or null if no request is available or, if delay is true, no host is due
      * @throws IOException
      * @throws SpaceExceededException
      */
     @Override
     public Request pop(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
+        this.robots = robots;
         tryagain: while (true) try {
-            HostQueue rhq = null;
-            String rhh = null;
-        
-            synchronized (this) {
-                if (this.roundRobinHostHashes.size() == 0) {
-                    // refresh the round-robin cache
-                    this.roundRobinHostHashes.addAll(this.queues.keySet());
-                    // quickly get rid of small stacks to reduce number of files:
-                    // remove all stacks with more than 10 entries
-                    // this shall kick out small stacks to prevent that too many files are opened for very wide crawls
-                    boolean smallStacksExist = false;
-                    boolean singletonStacksExist = false;
-                    smallsearch: for (String s: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(s);
-                        if (hq != null) {
-                            int size = hq.size();
-                            if (size ==  1) {singletonStacksExist = true; break smallsearch;}
-                            if (size <= 10) {smallStacksExist = true; break smallsearch;}
-                        }
-                    }
-                    if (singletonStacksExist || smallStacksExist) {
-                        Iterator<String> i = this.roundRobinHostHashes.iterator();
-                        smallstacks: while (i.hasNext()) {
-                            if (this.roundRobinHostHashes.size() <= 10) break smallstacks; // don't shrink the hosts until nothing is left
-                            String s = i.next();
-                            HostQueue hq = this.queues.get(s);
-                            if (hq == null) {i.remove(); continue smallstacks;}
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                            if (delta < 0) continue; // keep all non-waiting stacks; they are useful to speed up things
-                            // to protect all small stacks which have a fast throughput, remove all with long waiting time
-                            if (delta >= 1000) {i.remove(); continue smallstacks;}
-                            int size = hq.size();
-                            if (singletonStacksExist) {
-                                if (size != 1) {i.remove(); continue smallstacks;} // remove all non-singletons
-                            } else /*smallStacksExist*/ {
-                                if (size > 10) {i.remove(); continue smallstacks;} // remove all large stacks
-                            }
-                        }
-                    }
-                    if (this.roundRobinHostHashes.size() == 1) {
-                        if (log.isFine()) log.fine("(re-)initialized the round-robin queue with one host");
-                    } else {
-                        log.info("(re-)initialized the round-robin queue; " + this.roundRobinHostHashes.size() + " hosts.");
-                    }
-                }
-                if (this.roundRobinHostHashes.size() == 0) return null;
-                
-                // if the queue size is 1, just take that
-                if (this.roundRobinHostHashes.size() == 1) {
-                    rhh = this.roundRobinHostHashes.iterator().next();
-                    rhq = this.queues.get(rhh);
+            // take the host with the smallest due time; no other thread pops from that host until it is released
+            String rhh = this.schedule.take(delay ? System.currentTimeMillis() : Long.MAX_VALUE);
+            if (rhh == null) {
+                // the scheduled hosts are not due yet; this is the common case while all hosts wait for their crawl-delay
+                if (this.schedule.size() > 0 || this.queues.isEmpty()) return null;
+                // no host is scheduled: all hosts are taken by other threads, or a host was not scheduled again;
+                // only such a host is offered, so the due time is not computed for hosts which are taken
+                boolean offered = false;
+                for (Map.Entry<String, HostQueue> entry: this.queues.entrySet()) {
+                    if (!this.schedule.contains(entry.getKey()) && this.schedule.offer(entry.getKey(), dueTime(entry.getValue(), robots))) offered = true;
                 }
-                
-                if (rhq == null) {
-                    // mixed minimum sleep time / largest queue strategy:
-                    // create a map of sleep time / queue relations with a fuzzy sleep time (ms / 500).
-                    // if the entry with the smallest sleep time contains at least two entries,
-                    // then the larger one from these queues are selected.
-                    TreeMap<Integer, List<String>> fastTree = new TreeMap<>();
-                    mixedstrategy: for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), h, robots, ClientIdentification.yacyInternetCrawlerAgent) / 200;
-                            if (delta < 0) delta = 0;
-                            List<String> queueHashes = fastTree.get(delta);
-                            if (queueHashes == null) {
-                                queueHashes = new ArrayList<>(2);
-                                fastTree.put(delta, queueHashes);
-                            }
-                            queueHashes.add(h);
-                            // check stop criteria
-                            List<String> firstEntries = fastTree.firstEntry().getValue();
-                            if (firstEntries.size() > 1) {
-                                // select larger queue from that list
-                                int largest = Integer.MIN_VALUE;
-                                for (String hh: firstEntries) {
-                                    HostQueue hhq = this.queues.get(hh);
-                                    if (hhq != null) {
-                                        int s = hhq.size();
-                                        if (s > largest) {
-                                            largest = s;
-                                            rhh = hh;
-                                        }
-                                    }
-                                }
-                                rhq = this.queues.get(rhh);
-                                break mixedstrategy;
-                            }
-                        }
-                    }
-                    if (rhq == null && fastTree.size() > 0) {
-                        // it may be possible that the lowest entry never has more than one queues assigned
-                        // in this case just take the smallest entry
-                        List<String> firstEntries = fastTree.firstEntry().getValue();
-                        assert firstEntries.size() == 1;
-                        rhh = firstEntries.get(0);
-                        rhq = this.queues.get(rhh);
-                    }
-                    // to prevent that the complete roundrobinhosthashes are taken for each round, we remove the entries from the top of the fast queue
-                    List<String> lastEntries = fastTree.size() > 0 ? fastTree.lastEntry().getValue() : null;
-                    if (lastEntries != null) {
-                        for (String h: lastEntries) this.roundRobinHostHashes.remove(h);
-                    }
-                }
-
-                /*
-                // first strategy: get one entry which does not need sleep time
-                Iterator<String> nhhi = this.roundRobinHostHashes.iterator();
-                nosleep: while (nhhi.hasNext()) {
-                    rhh = nhhi.next();
-                    rhq = this.queues.get(rhh);
-                    if (rhq == null) {
-                        nhhi.remove();
-                        continue nosleep;
-            }
-                    int delta = Latency.waitingRemainingGuessed(rhq.getHost(), rhh, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                    if (delta <= 10 || this.roundRobinHostHashes.size() == 1 || rhq.size() == 1) {
-                        nhhi.remove();
-                        break nosleep;
-                    }
-                }
-                if (rhq == null) {
-                    // second strategy: take from the largest stack
-                    int largest = Integer.MIN_VALUE;
-                    for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int s = hq.size();
-                            if (s > largest) {
-                                largest = s;
-                                rhh = h;
-                            }
-                        }
-                    }
-                    rhq = this.queues.get(rhh);
-                }
-                */
-            }
-            
-            if (rhq == null) {
-                this.roundRobinHostHashes.clear(); // force re-initialization
+                if (!offered) return null; // all hosts are currently taken by other threads
                 continue tryagain;
             }
-            this.roundRobinHostHashes.remove(rhh); // prevent that the queue is used again
-            long timestamp = System.currentTimeMillis();
-            Request request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
-            long actualwaiting = System.currentTimeMillis() - timestamp;
-            
-            if (actualwaiting > 1000) {
-                synchronized (this) {
-                    // to prevent that this occurs again, remove all stacks with positive delay times (which may be less after that waiting)
-                    Iterator<String> i = this.roundRobinHostHashes.iterator();
-                    protectcheck: while (i.hasNext()) {
-                        if (this.roundRobinHostHashes.size() <= 3) break protectcheck; // don't shrink the hosts until nothing is left
-                        String s = i.next();
-                        HostQueue hq = this.queues.get(s);
-                        if (hq == null) {i.remove(); continue protectcheck;}
-                        int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                        if (delta >= 0) {i.remove();}
+            Request request = null;
+            try {
+                HostQueue rhq = this.queues.get(rhh);
+                if (rhq == null) continue tryagain;
+                request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
+                boolean empty = false;
+                synchronized (hostLock(rhh)) {
+                    if (rhq.isEmpty()) {
+                        this.queues.remove(rhh);
+                        empty = true;
                     }
                 }
-            }
-            
-            if (rhq.isEmpty()) {
-                synchronized (this) {
-                    this.queues.remove(rhh);
-                }
-                rhq.close();
+                if (empty) rhq.close();
+            } finally {
+                // schedule the host again; the queue may also have been created again by a concurrent push
+                this.schedule.release(rhh);
+                HostQueue queue = this.queues.get(rhh);
+                if (queue != null) this.schedule.offer(rhh, request == null ? Math.max(dueTime(queue, robots), queue.getDueTime()) : dueTime(queue, robots));
             }
             if (request == null) continue tryagain;
             return request;
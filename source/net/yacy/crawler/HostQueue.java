@@ -20,12 +20,8 @@
 
 package net.yacy.crawler;
 
-import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Array;
-import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -45,103 +41,67 @@ import net.yacy.crawler.data.Latency;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.kelondro.data.word.Word;
-import net.yacy.kelondro.index.BufferedObjectIndex;
-import net.yacy.kelondro.index.Index;
-import net.yacy.kelondro.index.OnDemandOpenFileIndex;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowHandleSet;
-import net.yacy.kelondro.table.Table;
-import static net.yacy.kelondro.util.FileUtils.deletedelete;
-import net.yacy.kelondro.util.kelondroException;
 import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.search.Switchboard;
 
+/**
+ * The crawl queue of a single host. The requests of all hosts of a {@link HostBalancer} are stored
+ * in a common {@link FrontierStore}; a host queue reads and writes only the requests of its own host.
+ */
 public class HostQueue implements Balancer {
 
     private final static ConcurrentLog log = new ConcurrentLog("HostQueue");
-    
-    public  static final String indexSuffix           = ".stack";
-    private static final int    EcoFSBufferSize       = 1000;
-    private static final int    objectIndexBufferSize = 1000;
 
-    private final File          hostPath; // path to the stack files
+    private final FrontierStore store; // the store of the requests of all hosts
     private final String        hostName;
     private final String        hostHash;
     private final int           port;
     private final boolean       exceed134217727;
-    private final boolean       onDemand;
-    private       TreeMap<Integer, Index> depthStacks;
+    private volatile long       dueTime; // the time when a request which was deferred because of the crawl-delay may be loaded, 0 if none
 
     /**
-     * Create or open host queue. The host part of the hostUrl parameter is used
-     * to calculate the stack directory name.
+     * Create a host queue. The host part of the hostUrl parameter is used
+     * to calculate the hosthash which identifies the requests of the queue in the store.
      *
-     * @param hostsPath
+     * @param store
      * @param hostUrl
-     * @param onDemand
      * @param exceed134217727
-     * @throws MalformedURLException
      */
     public HostQueue (
-            final File hostsPath,
+            final FrontierStore store,
             final DigestURL hostUrl, // any url from that host (only host data are extracted)
-            final boolean onDemand,
-            final boolean exceed134217727) throws MalformedURLException {
-        this.onDemand = onDemand;
+            final boolean exceed134217727) {
+        this.store = store;
         this.exceed134217727 = exceed134217727;
-        this.hostName = (hostUrl.getHost() == null)  ? "localhost" : hostUrl.getHost(); // might be null (file://) but hostqueue needs a name (for queue file)
+        this.hostName = (hostUrl.getHost() == null)  ? "localhost" : hostUrl.getHost(); // might be null (file://) but hostqueue needs a name
         this.port = hostUrl.getPort();
         this.hostHash = hostUrl.hosthash(); // hosthash is calculated by protocol + hostname + port
-        // hostName/port included just for human readability (& historically), "-#" marker used to define begin of hosthash in directoryname
-        this.hostPath = new File(hostsPath, this.hostName + "-#"+ this.hostHash + "." + this.port);
-        init();
     }
 
     /**
-     * Initializes host queue from cache files. The internal id of the queue is
-     * extracted form the path name an must match the key initially generated
-     * currently the hosthash is used as id.
-     * @param hostPath path of the stack directory (containing the primary key/id of the queue)
-     * @param onDemand
+     * Open the queue of a host which has requests in the store. The host name and port
+     * are taken from the next request of the host.
+     * @param store
+     * @param hostHash
      * @param exceed134217727
-     * @throws MalformedURLException
+     * @throws IOException if the store has no request of the host
      */
     public HostQueue (
-            final File hostPath,
-            final boolean onDemand,
-            final boolean exceed134217727) throws MalformedURLException {
-        this.onDemand = onDemand;
+            final FrontierStore store,
+            final String hostHash,
+            final boolean exceed134217727) throws IOException {
+        this.store = store;
         this.exceed134217727 = exceed134217727;
-        this.hostPath = hostPath;
-        // parse the hostName and port from the file name
-        String filename = hostPath.getName();
-        int pdot = filename.lastIndexOf('.');
-        if (pdot < 0) throw new RuntimeException("hostPath name must contain a dot: " + filename);
-        this.port = Integer.parseInt(filename.substring(pdot + 1)); // consider "host.com" contains dot but no required port -> will throw exception
-        int p1 = filename.lastIndexOf("-#");
-        if (p1 >= 0) {
-            this.hostName = filename.substring(0,p1);
-            this.hostHash = filename.substring(p1+2,pdot);
-        } else throw new RuntimeException("hostPath name must contain -# followd by hosthash: " + filename);
-        init();
+        this.hostHash = hostHash;
+        final Row.Entry row = store.peek(hostHash);
+        if (row == null) throw new IOException("no request for host hash " + hostHash);
+        final DigestURL url = new Request(row).url();
+        this.hostName = (url.getHost() == null)  ? "localhost" : url.getHost();
+        this.port = url.getPort();
     }
 
-    /**
-     * Opens and initializes the host queue
-     * @throws MalformedURLException if directory for the host could not be created
-     */
-    private final void init() throws MalformedURLException {
-        if (!(this.hostPath.exists())) {
-            this.hostPath.mkdirs();
-            if (!this.hostPath.exists()) { // check if directory created (if not, likely a name violation)
-                throw new MalformedURLException("hostPath could not be created: " + this.hostPath.toString());
-            }
-        }
-        this.depthStacks = new TreeMap<Integer, Index>();
-        int size = openAllStacks();
-        if (log.isInfo()) log.info("opened HostQueue " + this.hostPath.getAbsolutePath() + " with " + size + " urls.");
-    }
-    
     public String getHost() {
         return this.hostName;
     }
@@ -159,140 +119,39 @@ public class HostQueue implements Balancer {
         return this.hostHash;
     }
 
-    private int openAllStacks() {
-        String[] l = this.hostPath.list();
-        int c = 0;
-        if (l != null) for (String s: l) {
-            if (s.endsWith(indexSuffix)) try {
-                int depth = Integer.parseInt(s.substring(0, s.length() - indexSuffix.length()));
-                File stackFile = new File(this.hostPath, s);
-                Index depthStack = openStack(stackFile);
-                if (depthStack != null) {
-                    int sz = depthStack.size();
-                    if (sz == 0) {
-                        depthStack.close();
-                        deletedelete(stackFile);
-                    } else {
-                        this.depthStacks.put(depth, depthStack);
-                        c += sz;
-                    }
-                }
-            } catch (NumberFormatException e) {}
-            }
-        return c;
-    }
-
-    private Index getLowestStack() {
-        while (this.depthStacks.size() > 0) {
-            Map.Entry<Integer, Index> entry;
-            synchronized (this) {
-                entry = this.depthStacks.firstEntry();
-            }
-            if (entry == null) return null; // happens only if map is empty
-            if (entry.getValue().size() == 0) {
-                entry.getValue().close();
-                deletedelete(getFile(entry.getKey()));
-                this.depthStacks.remove(entry.getKey());
-                continue;
-            }
-            return entry.getValue();
-        }
-        // this should not happen
-        //assert false;
-        return null;
-    }
-
     /**
-     * Get existing url stack with crawl depth or create a new (empty) stack
+     * Get the time when the request which was deferred with the latest {@link #pop(boolean, CrawlSwitchboard, RobotsTxt)}
+     * may be loaded without violation of the crawl-delay.
      *
-     * @param depth
-     * @return existing or new/empty stack
+     * @return the time in milliseconds or 0 if the latest pop did not defer a request
      */
-    private Index getStack(int depth) {
-        Index depthStack;
-        // create a new stack
-        synchronized (this) {
-            depthStack = this.depthStacks.get(depth);
-            if (depthStack != null) return depthStack;
-            // now actually create a new stack
-            final File f = getFile(depth);
-            depthStack = openStack(f);
-            if (depthStack != null) this.depthStacks.put(depth, depthStack);
-        }
-        return depthStack;
-    }
-    
-    private File getFile(int depth) {
-        String name = Integer.toString(depth);
-        while (name.length() < 4) name = "0" + name;
-        final File f = new File(this.hostPath, name + indexSuffix);
-        return f;
-    }
-    
-    private Index openStack(File f) {
-        for (int i = 0; i < 10; i++) {
-            // we try that again if it fails because it shall not fail
-            if (this.onDemand && (!f.exists() || f.length() < 10000)) {
-                try {
-                    return new BufferedObjectIndex(new OnDemandOpenFileIndex(f, Request.rowdef, exceed134217727), objectIndexBufferSize);
-                } catch (kelondroException e) {
-                    // possibly the file was closed meanwhile
-                    ConcurrentLog.logException(e);
-                }
-            } else {
-                    try {
-                    return new BufferedObjectIndex(new Table(f, Request.rowdef, EcoFSBufferSize, 0, false, exceed134217727, true), objectIndexBufferSize);
-                } catch (final SpaceExceededException e) {
-                    try {
-                        return new BufferedObjectIndex(new Table(f, Request.rowdef, 0, 0, false, exceed134217727, true), objectIndexBufferSize);
-                    } catch (final SpaceExceededException e1) {
-                        ConcurrentLog.logException(e1);
-                    }
-                } catch (kelondroException e) {
-                    // possibly the file was closed meanwhile
-                    ConcurrentLog.logException(e);
-            }
-        }
-        }
-        return null;
+    public long getDueTime() {
+        return this.dueTime;
     }
 
+    /**
+     * the requests are kept in the store, which is closed by the balancer
+     */
     @Override
-    public synchronized void close() {
-        for (Map.Entry<Integer, Index> entry: this.depthStacks.entrySet()) {
-            int size = entry.getValue().size();
-            entry.getValue().close();
-            if (size == 0) deletedelete(getFile(entry.getKey()));
-        }
-        this.depthStacks.clear();
-        String[] l = this.hostPath.list();
-        if ((l == null || l.length == 0) && this.hostPath != null) deletedelete(this.hostPath);
+    public void close() {
     }
 
     @Override
-    public synchronized void clear() {
-        for (Map.Entry<Integer, Index> entry: this.depthStacks.entrySet()) {
-            entry.getValue().close();
-            deletedelete(getFile(entry.getKey()));
-        }
-        this.depthStacks.clear();
-        String[] l = this.hostPath.list();
-        if (l != null) for (String s: l) {
-            deletedelete(new File(this.hostPath, s));
+    public void clear() {
+        try {
+            this.store.clear(this.hostHash);
+        } catch (final IOException e) {
+            log.warn("cannot clear queue of " + this.hostName + ": " + e.getMessage());
         }
-        deletedelete(this.hostPath);
     }
 
     @Override
     public Request get(final byte[] urlhash) throws IOException {
         assert urlhash != null;
-        if (this.depthStacks == null) return null; // case occurs during shutdown
-        for (Index depthStack: this.depthStacks.values()) {
-            final Row.Entry entry = depthStack.get(urlhash, false);
-            if (entry == null) return null;
-            return new Request(entry);
-        }
-        return null;
+        if (!this.hostHash.equals(ASCII.String(urlhash, 6, 6))) return null;
+        final Row.Entry entry = this.store.get(urlhash);
+        if (entry == null) return null;
+        return new Request(entry);
     }
 
     @Override
@@ -301,23 +160,20 @@ public class HostQueue implements Balancer {
         final long terminate = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : (timeout > 0) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
         int count = 0;
         synchronized (this) {
-            for (Index depthStack: this.depthStacks.values()) {
-                final HandleSet urlHashes = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 100);
-                final Iterator<Row.Entry> i = depthStack.rows();
-                Row.Entry rowEntry;
-                Request crawlEntry;
-                while (i.hasNext() && (System.currentTimeMillis() < terminate)) {
-                    rowEntry = i.next();
-                    crawlEntry = new Request(rowEntry);
-                    if (crawlEntry.profileHandle().equals(profileHandle)) {
-                        urlHashes.put(crawlEntry.url().hash());
-                    }
-                    if (System.currentTimeMillis() > terminate) break;
-                }
-                for (final byte[] urlhash: urlHashes) {
-                    depthStack.remove(urlhash);
-                    count++;
+            final HandleSet urlHashes = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 100);
+            final Iterator<Row.Entry> i = this.store.rows(this.hostHash);
+            Row.Entry rowEntry;
+            Request crawlEntry;
+            while (i.hasNext() && (System.currentTimeMillis() < terminate)) {
+                rowEntry = i.next();
+                crawlEntry = new Request(rowEntry);
+                if (crawlEntry.profileHandle().equals(profileHandle)) {
+                    urlHashes.put(crawlEntry.url().hash());
                 }
+                if (System.currentTimeMillis() > terminate) break;
+            }
+            for (final byte[] urlhash: urlHashes) {
+                if (this.store.remove(urlhash)) count++;
             }
         }
         return count;
@@ -349,46 +205,25 @@ public class HostQueue implements Balancer {
     @Override
     public synchronized int remove(final HandleSet urlHashes) throws IOException {
         int removedCounter = 0;
-        for (Index depthStack: this.depthStacks.values()) {
-            final int s = depthStack.size();
-            for (final byte[] urlhash: urlHashes) {
-                final Row.Entry entry = depthStack.remove(urlhash);
-                if (entry != null) removedCounter++;
-            }
-            if (removedCounter == 0) return 0;
-            assert depthStack.size() + removedCounter == s : "urlFileIndex.size() = " + depthStack.size() + ", s = " + s;
+        for (final byte[] urlhash: urlHashes) {
+            if (this.hostHash.equals(ASCII.String(urlhash, 6, 6)) && this.store.remove(urlhash)) removedCounter++;
         }
         return removedCounter;
     }
 
     @Override
     public boolean has(final byte[] urlhashb) {
-        for (int retry = 0; retry < 3; retry++) {
-            try {
-                for (Index depthStack: this.depthStacks.values()) {
-                    if (depthStack.has(urlhashb)) return true;
-                }
-                return false;
-            } catch (ConcurrentModificationException e) {}
-        }
-        return false;
+        return this.hostHash.equals(ASCII.String(urlhashb, 6, 6)) && this.store.has(urlhashb);
     }
 
     @Override
     public int size() {
-        int size = 0;
-        for (Index depthStack: this.depthStacks.values()) {
-            size += depthStack.size();
-        }
-        return size;
+        return this.store.size(this.hostHash);
     }
 
     @Override
     public boolean isEmpty() {
-        for (Index depthStack: this.depthStacks.values()) {
-            if (!depthStack.isEmpty()) return false;
-        }
-        return true;
+        return this.store.size(this.hostHash) == 0;
     }
 
     @Override
@@ -408,12 +243,9 @@ public class HostQueue implements Balancer {
                 }
             }
             
-            // add to index
-            Index depthStack = getStack(entry.depth());
-            final int s = depthStack.size();
-            depthStack.put(entry.toRow());
-            assert s < depthStack.size() : "hash = " + ASCII.String(hash) + ", s = " + s + ", size = " + depthStack.size();
-            assert depthStack.has(hash) : "hash = " + ASCII.String(hash);
+            // add to store
+            if (!this.store.put(entry.depth(), entry.toRow())) return "double occurrence in urlFileIndex";
+            assert this.store.has(hash) : "hash = " + ASCII.String(hash);
         }
         return null;
     }
@@ -427,19 +259,14 @@ public class HostQueue implements Balancer {
         CrawlProfile profileEntry = null;
         synchronized (this) {
             mainloop: while (true) {
-                Index depthStack = getLowestStack();
-                if (depthStack == null) return null;
-                Row.Entry rowEntry = null;
-                while (depthStack.size() > 0) {
-                    rowEntry = depthStack.removeOne();
-                    if (rowEntry != null) break;
-                }
-                if (rowEntry == null) continue mainloop;
+                final Row.Entry rowEntry = this.store.peek(this.hostHash);
+                if (rowEntry == null) return null;
                 crawlEntry = new Request(rowEntry);
 
                 // check blacklist (again) because the user may have created blacklist entries after the queue has been filled
                 if (Switchboard.urlBlacklist.isListed(BlacklistType.CRAWLER, crawlEntry.url())) {
                     if (log.isFine()) log.fine("URL '" + crawlEntry.url() + "' is in blacklist.");
+                    this.store.remove(rowEntry.getPrimaryKeyBytes());
                     continue mainloop;
                 }
 
@@ -448,11 +275,21 @@ public class HostQueue implements Balancer {
                 profileEntry = cs.get(UTF8.getBytes(crawlEntry.profileHandle()));
                 if (profileEntry == null) {
                     if (log.isFine()) log.fine("no profile entry for handle " + crawlEntry.profileHandle());
+                    this.store.remove(rowEntry.getPrimaryKeyBytes());
                     continue mainloop;
                 }
                 
                 // depending on the caching policy we need sleep time to avoid DoS-like situations
                 sleeptime = Latency.getDomainSleepTime(robots, profileEntry, crawlEntry.url());
+                if (delay && sleeptime > 0) {
+                    // the host may not be accessed yet: do not wait here but leave the request at the cursor
+                    // and tell the caller when it is due, so the calling thread can go on with another host
+                    this.dueTime = System.currentTimeMillis() + sleeptime;
+                    if (log.isFine()) log.fine("deferred " + crawlEntry.url().toNormalform(true) + " for " + sleeptime + " milliseconds because of the crawl-delay");
+                    return null;
+                }
+                this.store.remove(rowEntry.getPrimaryKeyBytes());
+                this.dueTime = 0;
                 break;
             }
         }
@@ -460,63 +297,28 @@ public class HostQueue implements Balancer {
         ClientIdentification.Agent agent = profileEntry == null ? ClientIdentification.yacyInternetCrawlerAgent : profileEntry.getAgent();
         long robotsTime = Latency.getRobotsTime(robots, crawlEntry.url(), agent);
         Latency.updateAfterSelection(crawlEntry.url(), profileEntry == null ? 0 : robotsTime);
-        if (delay && sleeptime > 0) {
-            // force a busy waiting here
-            // in best case, this should never happen if the balancer works properly
-            // this is only to protection against the worst case, where the crawler could
-            // behave in a DoS-manner
-            if (log.isInfo()) log.info("forcing crawl-delay of " + sleeptime + " milliseconds for " + crawlEntry.url().getHost() + ": " + Latency.waitingRemainingExplain(crawlEntry.url(), robots, agent));
-            long loops = sleeptime / 1000;
-            long rest = sleeptime % 1000;
-            if (loops < 3) {
-                rest = rest + 1000 * loops;
-                loops = 0;
-            }
-            Thread.currentThread().setName("Balancer waiting for " + crawlEntry.url().getHost() + ": " + sleeptime + " milliseconds");
-            synchronized(this) {
-                // must be synchronized here to avoid 'takeover' moves from other threads which then idle the same time which would not be enough
-                if (rest > 0) {try {this.wait(rest);} catch (final InterruptedException e) {}}
-                for (int i = 0; i < loops; i++) {
-                    if (log.isInfo()) log.info("waiting for " + crawlEntry.url().getHost() + ": " + (loops - i) + " seconds remaining...");
-                    try {this.wait(1000); } catch (final InterruptedException e) {}
-                }
-            }
-            Latency.updateAfterSelection(crawlEntry.url(), robotsTime);
-        }
         return crawlEntry;
     }
 
     @Override
     public Iterator<Request> iterator() throws IOException {
-        final Iterator<Map.Entry<Integer, Index>> depthIterator = this.depthStacks.entrySet().iterator();
-        @SuppressWarnings("unchecked")
-        final Iterator<Row.Entry>[] rowIterator = (Iterator<Row.Entry>[]) Array.newInstance(Iterator.class, 1);
-        rowIterator[0] = null;
+        final Iterator<Row.Entry> rowIterator = this.store.rows(this.hostHash);
         return new Iterator<Request>() {
             @Override
             public boolean hasNext() {
-                return depthIterator.hasNext() || (rowIterator[0] != null && rowIterator[0].hasNext());
+                return rowIterator.hasNext();
             }
             @Override
             public Request next() {
-                synchronized (HostQueue.this) {
-                    try {
-                        while (rowIterator[0] == null || !rowIterator[0].hasNext()) {
-                            Map.Entry<Integer, Index> entry = depthIterator.next();
-                            rowIterator[0] = entry.getValue().iterator();
-                        }
-                        if (!rowIterator[0].hasNext()) return null;
-                        Row.Entry rowEntry = rowIterator[0].next();
-                        if (rowEntry == null) return null;
-                        return new Request(rowEntry);
-                    } catch (Throwable e) {
-                        return null;
-                    }
+                try {
+                    return new Request(rowIterator.next());
+                } catch (Throwable e) {
+                    return null;
                 }
             }
             @Override
             public void remove() {
-                rowIterator[0].remove();
+                rowIterator.remove();
             }
         };
     }
@@ -0,0 +1,173 @@
+/**
+ *  HostSchedule
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A priority structure of host hashes ordered by the time when the host may be accessed again.
+ * Every host is either scheduled once, taken by a single consumer, or not contained at all.
+ * All operations are lock-free and take O(log hosts).
+ */
+public class HostSchedule {
+
+    private final static Slot TAKEN = new Slot(null, Long.MIN_VALUE, Long.MIN_VALUE); // marker for hosts which are taken by a consumer
+
+    private final ConcurrentSkipListSet<Slot> slots; // the schedule, ordered by due time
+    private final ConcurrentHashMap<String, Slot> state; // host hash -> current slot of the host or TAKEN
+    private final AtomicLong sequence; // tie-break for equal due times; keeps the insertion order
+
+    public HostSchedule() {
+        this.slots = new ConcurrentSkipListSet<Slot>();
+        this.state = new ConcurrentHashMap<String, Slot>();
+        this.sequence = new AtomicLong(0);
+    }
+
+    /**
+     * schedule a host if it is neither scheduled nor taken
+     * @param hosthash
+     * @param due the time in milliseconds when the host may be accessed again
+     * @return true if the host was added to the schedule
+     */
+    public boolean offer(final String hosthash, final long due) {
+        final Slot slot = new Slot(hosthash, due, this.sequence.incrementAndGet());
+        if (this.state.putIfAbsent(hosthash, slot) != null) return false;
+        this.slots.add(slot);
+        return true;
+    }
+
+    /**
+     * move a scheduled host to a new due time; hosts which are taken or not scheduled are not changed
+     * @param hosthash
+     * @param due the time in milliseconds when the host may be accessed again
+     * @return true if the due time was changed
+     */
+    public boolean update(final String hosthash, final long due) {
+        while (true) {
+            final Slot old = this.state.get(hosthash);
+            if (old == null || old == TAKEN) return false;
+            if (old.due == due) return true;
+            final Slot slot = new Slot(hosthash, due, this.sequence.incrementAndGet());
+            if (this.state.replace(hosthash, old, slot)) {
+                this.slots.add(slot);
+                this.slots.remove(old);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * take the host with the smallest due time out of the schedule. The host stays taken until
+     * it is released with {@link #release(String)}; until then it is not scheduled again.
+     * @return the host hash or null if no host is scheduled
+     */
+    public String take() {
+        return take(Long.MAX_VALUE);
+    }
+
+    /**
+     * take the host with the smallest due time out of the schedule if it is due not later than the given time.
+     * The host stays taken until it is released with {@link #release(String)}.
+     * @param maxDue the latest accepted due time in milliseconds
+     * @return the host hash or null if no host is scheduled with a due time up to maxDue
+     */
+    public String take(final long maxDue) {
+        while (true) {
+            final Slot slot;
+            try {
+                slot = this.slots.first();
+            } catch (final NoSuchElementException e) {
+                return null;
+            }
+            if (slot.due > maxDue) return null;
+            if (!this.slots.remove(slot)) continue; // taken concurrently
+            if (this.state.replace(slot.hosthash, slot, TAKEN)) return slot.hosthash;
+            // the slot was replaced by an update or removed concurrently; skip it
+        }
+    }
+
+    /**
+     * release a host which was taken with {@link #take()}; afterwards it can be scheduled again
+     * @param hosthash
+     */
+    public void release(final String hosthash) {
+        this.state.remove(hosthash, TAKEN);
+    }
+
+    /**
+     * remove a host from the schedule
+     * @param hosthash
+     */
+    public void remove(final String hosthash) {
+        final Slot old = this.state.get(hosthash);
+        if (old != null && old != TAKEN && this.state.remove(hosthash, old)) this.slots.remove(old);
+    }
+
+    /**
+     * @param hosthash
+     * @return true if the host is scheduled or taken
+     */
+    public boolean contains(final String hosthash) {
+        return this.state.containsKey(hosthash);
+    }
+
+    /**
+     * @return the number of scheduled hosts, not counting the hosts that are taken
+     */
+    public int size() {
+        return this.slots.size();
+    }
+
+    public void clear() {
+        this.state.clear();
+        this.slots.clear();
+    }
+
+    private final static class Slot implements Comparable<Slot> {
+        private final String hosthash;
+        private final long due;
+        private final long seq;
+
+        private Slot(final String hosthash, final long due, final long seq) {
+            this.hosthash = hosthash;
+            this.due = due;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(final Slot o) {
+            if (this.due != o.due) return this.due < o.due ? -1 : 1;
+            return this.seq < o.seq ? -1 : this.seq == o.seq ? 0 : 1;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (this.seq ^ (this.seq >>> 32));
+        }
+    }
+}
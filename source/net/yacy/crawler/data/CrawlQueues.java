@@ -56,6 +56,7 @@ import net.yacy.cora.protocol.ConnectionInfo;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.HarvestProcess;
 import net.yacy.crawler.data.NoticedURL.StackType;
+import net.yacy.crawler.retrieval.AsyncHTTPLoader;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.crawler.robots.RobotsTxtEntry;
@@ -78,6 +79,7 @@ public class CrawlQueues {
     private final Switchboard sb;
     private final Loader[] worker;
     private final ArrayBlockingQueue<Request> workerQueue;
+    private final int maxAsyncLoads; // the maximum number of loads of the asynchronous http loader
     private ArrayList<String> remoteCrawlProviderHashes;
 
     public  NoticedURL noticeURL;
@@ -91,6 +93,7 @@ public class CrawlQueues {
         /* We initialize workerQueue with the same capacity as worker array, because this same queue 
          * will be used to send POISON_REQUEST items consumed by all eventually running workers in the close() function*/
         this.workerQueue = new ArrayBlockingQueue<Request>(maxWorkers);
+        this.maxAsyncLoads = sb.getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_MAX_ACTIVE, SwitchboardConstants.CRAWLER_ASYNC_MAX_ACTIVE_DEFAULT);
         this.remoteCrawlProviderHashes = null;
 
         // start crawling management
@@ -254,6 +257,8 @@ public class CrawlQueues {
                     if (r != null) map.put(r.url(), r);
                 }
             }
+            final AsyncHTTPLoader async = this.sb.loader.asyncLoader();
+            if (async != null) map.putAll(async.active());
             return map;
         }
     }
@@ -306,7 +311,8 @@ public class CrawlQueues {
                     // get one entry that will not be loaded, just indexed
                     urlEntry = this.noticeURL.pop(NoticedURL.StackType.NOLOAD, true, this.sb.crawler, this.sb.robots);
                     if (urlEntry == null) {
-                        continue;
+                        // no host of the noload stack may be accessed now because of the crawl-delay
+                        return false;
                     }
                     final String profileHandle = urlEntry.profileHandle();
                     if (profileHandle == null) {
@@ -325,7 +331,8 @@ public class CrawlQueues {
 
                 urlEntry = this.noticeURL.pop(NoticedURL.StackType.LOCAL, true, this.sb.crawler, this.sb.robots);
                 if (urlEntry == null) {
-                    continue;
+                    // no host of the local stack may be accessed now because of the crawl-delay
+                    return false;
                 }
                 // System.out.println("DEBUG plasmaSwitchboard.processCrawling:
                 // profileHandle = " + profileHandle + ", urlEntry.url = " + urlEntry.url());
@@ -429,6 +436,10 @@ public class CrawlQueues {
         if (this.workerQueue.remainingCapacity() == 0) {
             return "too many workers active: " + this.workerQueue.size();
         }
+        final AsyncHTTPLoader async = this.sb.loader.asyncLoader();
+        if (async != null && async.activeCount() >= this.maxAsyncLoads) {
+            return "too many asynchronous loads active: " + async.activeCount();
+        }
 
         final String cautionCause = this.sb.onlineCaution();
         if (cautionCause != null) {
@@ -710,6 +721,55 @@ public class CrawlQueues {
         }
     }
     
+    /**
+     * push a loaded resource to the indexer
+     * @param request
+     * @param response the loaded resource or null if there is no content
+     * @return null if everything went fine, a fail reason string if a problem occurred
+     */
+    private String toIndexer(final Request request, final Response response) {
+        if (response == null) {
+            request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+            if (CrawlQueues.log.isFine()) {
+                CrawlQueues.log.fine("problem loading " + request.url().toString() + ": no content (possibly caused by cache policy)");
+            }
+            return "no content (possibly caused by cache policy)";
+        }
+        request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
+        final String storedFailMessage = this.sb.toIndexer(response);
+        request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
+        return (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
+    }
+
+    private String loadError(final Request request, final String message) {
+        request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+        if (CrawlQueues.log.isFine()) {
+            CrawlQueues.log.fine("problem loading " + request.url().toString() + ": " + message);
+        }
+        return "load error - " + message;
+    }
+
+    /**
+     * record the result of a load
+     * @param request
+     * @param profile
+     * @param error null if everything went fine, a fail reason string if a problem occurred
+     */
+    private void finishLoad(final Request request, final CrawlProfile profile, String error) {
+        if (error != null) {
+            if (error.endsWith("$")) {
+                // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
+                // thus we only push this message if we don't have that mark
+                error = error.substring(0, error.length() - 1).trim();
+            } else {
+                this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
+            }
+            request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+        } else {
+            request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
+        }
+    }
+
     private final class Loader extends Thread {
 
         private Request request = null;
@@ -742,44 +802,32 @@ public class CrawlQueues {
                         } else {
                             // starting a load from the internet
                             request.setStatus("worker-loading", WorkflowJob.STATUS_RUNNING);
-                            String error = null;
-   
-                            // load a resource and push queue entry to switchboard queue
-                            // returns null if everything went fine, a fail reason string if a problem occurred
-                            try {
-                                request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
-                                final Response response = CrawlQueues.this.sb.loader.load(request, profile == null ? CacheStrategy.IFEXIST : profile.cacheStrategy(), BlacklistType.CRAWLER, profile.getAgent());
-                                if (response == null) {
-                                    request.setStatus("error", WorkflowJob.STATUS_FINISHED);
-                                    if (CrawlQueues.log.isFine()) {
-                                        CrawlQueues.log.fine("problem loading " + request.url().toString() + ": no content (possibly caused by cache policy)");
+                            final CacheStrategy cacheStrategy = profile == null ? CacheStrategy.IFEXIST : profile.cacheStrategy();
+                            request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
+                            if (CrawlQueues.this.sb.loader.asyncLoader() != null) {
+                                // the loader thread is not blocked while the resource is loaded; the result is processed by the asynchronous loader
+                                final Request asyncRequest = request;
+                                final CrawlProfile asyncProfile = profile;
+                                CrawlQueues.this.sb.loader.loadAsync(request, cacheStrategy, BlacklistType.CRAWLER, profile.getAgent(), new AsyncHTTPLoader.Callback() {
+                                    @Override
+                                    public void loaded(final Response response) {
+                                        finishLoad(asyncRequest, asyncProfile, toIndexer(asyncRequest, response));
                                     }
-                                    error = "no content (possibly caused by cache policy)";
-                                } else {
-                                    request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
-                                    final String storedFailMessage = CrawlQueues.this.sb.toIndexer(response);
-                                    request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
-                                    error = (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
-                                }
-                            } catch (final IOException e) {
-                                request.setStatus("error", WorkflowJob.STATUS_FINISHED);
-                                if (CrawlQueues.log.isFine()) {
-                                    CrawlQueues.log.fine("problem loading " + request.url().toString() + ": " + e.getMessage());
-                                }
-                                error = "load error - " + e.getMessage();
-                            }
-   
-                            if (error != null) {
-                                if (error.endsWith("$")) {
-                                    // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
-                                    // thus we only push this message if we don't have that mark
-                                    error = error.substring(0, error.length() - 1).trim();
-                                } else {
-                                    CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
-                                }
-                                request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+                                    @Override
+                                    public void failed(final Request failedRequest, final String error) {
+                                        finishLoad(asyncRequest, asyncProfile, loadError(asyncRequest, error));
+                                    }
+                                });
                             } else {
-                                request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
+                                // load a resource and push queue entry to switchboard queue
+                                // returns null if everything went fine, a fail reason string if a problem occurred
+                                String error;
+                                try {
+                                    error = toIndexer(request, CrawlQueues.this.sb.loader.load(request, cacheStrategy, BlacklistType.CRAWLER, profile.getAgent()));
+                                } catch (final IOException e) {
+                                    error = loadError(request, e.getMessage());
+                                }
+                                finishLoad(request, profile, error);
                             }
                         }
                     } catch (final Exception e) {
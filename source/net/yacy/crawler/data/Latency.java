@@ -23,9 +23,12 @@
 
 package net.yacy.crawler.data;
 
+import java.net.MalformedURLException;
+import java.util.EventListener;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -33,6 +36,7 @@ import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.http.HostPolicy;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.crawler.robots.RobotsTxtEntry;
 import net.yacy.kelondro.util.MemoryControl;
@@ -45,6 +49,22 @@ public class Latency {
     // the map is a mapping from host names to host configurations
     private static final int mapMaxSize = 1000;
     private static final ConcurrentHashMap<String, Host> map = new ConcurrentHashMap<String, Host>();
+    private static final CopyOnWriteArrayList<LoadListener> listeners = new CopyOnWriteArrayList<LoadListener>();
+
+    /**
+     * a listener is informed after a host was accessed, which changes the waiting time for the next access of that host
+     */
+    public interface LoadListener extends EventListener {
+        public void hostLoaded(final String hosthash);
+    }
+
+    public static void addLoadListener(final LoadListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeLoadListener(final LoadListener listener) {
+        listeners.remove(listener);
+    }
 
     /**
      * update the latency entry after a host was selected for queueing into the loader
@@ -99,8 +119,27 @@ public class Latency {
         } else {
             h.update(time);
         }
+        for (LoadListener listener: listeners) listener.hostLoaded(hosthash);
     }
 
+    /**
+     * the latency of the hosts as statistics for the connection policy of the http client
+     */
+    public static final HostPolicy.Statistics hostStatistics = new HostPolicy.Statistics() {
+        @Override
+        public int averageLatency(final String scheme, final String host, final int port) {
+            if (map.isEmpty()) return -1;
+            final Host h;
+            try {
+                h = map.get(new DigestURL(scheme + "://" + host + (port < 0 ? "" : ":" + port) + "/").hosthash());
+            } catch (final MalformedURLException e) {
+                return -1;
+            }
+            // the first entry may be a guessed default; use only hosts which have been loaded some times
+            return h == null || h.count() < 3 ? -1 : h.average();
+        }
+    };
+
     private static Host host(final DigestURL url) {
         final String host = url.getHost();
         if (host == null) return null;
@@ -332,6 +332,9 @@ public class NoticedURL {
             entry = balancer.pop(delay, cs, robots);
             if (entry != null) return entry;
 
+            // with delay, the balancer returns null if no host may be accessed now; try again later
+            if (delay) return null;
+
             // the balancer was supposed to be not empty. Check this again
             // it may be possible that another process has taken all
             s = balancer.size(); // this time read the size to find errors
@@ -0,0 +1,378 @@
+/**
+ *  AsyncHTTPLoader
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler.retrieval;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.message.BasicStatusLine;
+import org.eclipse.jetty.client.ContentDecoder;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.HttpCookieStore;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.FailCategory;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.data.Latency;
+import net.yacy.kelondro.io.ByteCount;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.search.Switchboard;
+import net.yacy.server.http.AlternativeDomainNames;
+
+/**
+ * An event-driven loader for http and https resources. The requests are sent with the non-blocking jetty
+ * http client, so a load does not occupy a thread while it waits for the server; a small pool of threads
+ * handles the network events of all loads and a second pool processes the completed responses, so that
+ * slow callbacks do not stall the network events. The responses are the same as the
+ * responses of the {@link HTTPLoader}: the redirection handling, the error records, the {@link Latency}
+ * accounting and the maximum file size are shared with the blocking loader.
+ * Without a switchboard, the requests are sent with the default request header, redirections are followed
+ * directly and errors are not recorded in the error cache.
+ */
+public final class AsyncHTTPLoader {
+
+    /**
+     * receiver of the result of an asynchronous load. The methods are called by a thread of the loader
+     * which processes the completed responses, not by a thread of the http client. They may block, i.e. on
+     * a full indexing queue; the load counts as active until the callback returns.
+     */
+    public interface Callback {
+
+        /**
+         * @param response the loaded resource
+         */
+        public void loaded(Response response);
+
+        /**
+         * @param request the request that failed
+         * @param error the reason; it ends with "$" if the error was already recorded in the error cache
+         */
+        public void failed(Request request, String error);
+    }
+
+    private final Switchboard sb;
+    private final ConcurrentLog log;
+    private final HTTPLoader httpLoader; // shared request header and redirection handling; null without a switchboard
+    private final int socketTimeout;
+    private final HttpClient client;
+    private final ThreadPoolExecutor completer; // processes the completed responses and calls the callbacks
+    private final Map<DigestURL, Request> active; // the requests which are currently loaded
+
+    /**
+     * create and start a loader
+     * @param sb the switchboard or null
+     * @param theLog
+     * @param maxThreads the maximum number of threads which handle network events, and of threads which process responses
+     * @param maxConnectionsPerHost the maximum number of open connections to a single host
+     * @throws IOException if the http client cannot be started
+     */
+    public AsyncHTTPLoader(final Switchboard sb, final ConcurrentLog theLog, final int maxThreads, final int maxConnectionsPerHost) throws IOException {
+        this.sb = sb;
+        this.log = theLog;
+        this.httpLoader = sb == null ? null : new HTTPLoader(sb, theLog);
+        this.socketTimeout = sb == null ? 30000 : (int) sb.getConfigLong("crawler.clientTimeout", 30000);
+        this.active = new ConcurrentHashMap<DigestURL, Request>();
+        this.completer = new ThreadPoolExecutor(
+                Math.max(2, maxThreads), Math.max(2, maxThreads), 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamePrefixThreadFactory(AsyncHTTPLoader.class.getSimpleName() + ".complete"));
+        this.completer.allowCoreThreadTimeOut(true);
+
+        final QueuedThreadPool executor = new QueuedThreadPool(Math.max(8, maxThreads), 2);
+        executor.setName("AsyncHTTPLoader");
+        executor.setDaemon(true);
+        this.client = new HttpClient(new SslContextFactory(true)); // like the HTTPClient, the crawler accepts all certificates
+        this.client.setExecutor(executor);
+        this.client.setFollowRedirects(false); // we want to handle redirection ourselves, so we don't index pages twice
+        this.client.setMaxConnectionsPerDestination(Math.max(1, maxConnectionsPerHost));
+        // the number of loads is limited by the caller; jetty allocates the queue of each host with its maximum size
+        this.client.setMaxRequestsQueuedPerDestination(1024);
+        this.client.setConnectTimeout(this.socketTimeout);
+        this.client.setIdleTimeout(this.socketTimeout);
+        this.client.setUserAgentField(null); // set with the request header
+        this.client.setCookieStore(new HttpCookieStore.Empty());
+        this.client.setRemoveIdleDestinations(true);
+        try {
+            this.client.start();
+        } catch (final Exception e) {
+            throw new IOException("cannot start http client: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the number of requests which are currently loaded
+     */
+    public int activeCount() {
+        return this.active.size();
+    }
+
+    /**
+     * @return a copy of the map of the urls which are currently loaded to their requests
+     */
+    public Map<DigestURL, Request> active() {
+        return new HashMap<DigestURL, Request>(this.active);
+    }
+
+    /**
+     * start to load a http or https resource. The method returns immediately; the result is given to the callback.
+     * @param request
+     * @param profile
+     * @param maxFileSize the maximum size of the content, -1 means no limit
+     * @param blacklistType
+     * @param agent
+     * @param callback
+     */
+    public void load(final Request request, final CrawlProfile profile, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Callback callback) {
+        final DigestURL url = request.url(); // the url of the request changes when a redirection is followed
+        final long start = System.currentTimeMillis();
+        this.active.put(url, request);
+        Latency.updateBeforeLoad(url);
+        load(request, profile, HTTPLoader.DEFAULT_CRAWLING_RETRY_COUNT, maxFileSize, blacklistType, agent, new Callback() {
+            @Override
+            public void loaded(final Response response) {
+                Latency.updateAfterLoad(url, System.currentTimeMillis() - start);
+                try {
+                    callback.loaded(response);
+                } finally {
+                    AsyncHTTPLoader.this.active.remove(url);
+                }
+            }
+            @Override
+            public void failed(final Request failedRequest, final String error) {
+                Latency.updateAfterLoad(url, System.currentTimeMillis() - start);
+                try {
+                    callback.failed(failedRequest, error);
+                } finally {
+                    AsyncHTTPLoader.this.active.remove(url);
+                }
+            }
+        });
+    }
+
+    private void load(final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Callback callback) {
+        if (retryCount < 0) {
+            pushError(request, profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "retry counter exceeded", -1);
+            callback.failed(request, "retry counter exceeded for URL " + request.url().toString() + ". Processing aborted.$");
+            return;
+        }
+
+        DigestURL url = request.url();
+        final String host = url.getHost();
+        if (host == null || host.length() < 2) {
+            callback.failed(request, "host is not well-formed: '" + host + "'");
+            return;
+        }
+        final String path = url.getFile();
+
+        // check if url is in blacklist
+        if (blacklistType != null && Switchboard.urlBlacklist != null && Switchboard.urlBlacklist.isListed(blacklistType, host.toLowerCase(Locale.ROOT), path)) {
+            pushError(request, profile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+            callback.failed(request, "CRAWLER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            return;
+        }
+
+        final RequestHeader requestHeader;
+        final org.eclipse.jetty.client.api.Request httpRequest;
+        try {
+            // resolve yacy and yacyh domains
+            final AlternativeDomainNames yacyResolver = this.sb == null ? null : this.sb.peers;
+            if (yacyResolver != null) {
+                final String yAddress = yacyResolver.resolve(host);
+                if (yAddress != null) url = new DigestURL(url.getProtocol() + "://" + yAddress + path);
+            }
+            requestHeader = this.httpLoader == null ? HTTPLoader.createDefaultRequestheader(agent) : this.httpLoader.createRequestheader(request, agent);
+            requestHeader.put(HeaderFramework.ACCEPT_ENCODING, acceptEncoding(requestHeader.get(HeaderFramework.ACCEPT_ENCODING)));
+            httpRequest = this.client.newRequest(url.toNormalform(true)).method(HttpMethod.GET).timeout(this.socketTimeout, TimeUnit.MILLISECONDS);
+        } catch (final IOException | IllegalArgumentException e) {
+            callback.failed(request, e.getMessage());
+            return;
+        }
+        for (final Map.Entry<String, String> entry: requestHeader.entrySet()) httpRequest.header(entry.getKey(), entry.getValue());
+
+        final DigestURL requestedURL = url;
+        httpRequest.send(new BufferingResponseListener(maxFileSize < 0 ? Integer.MAX_VALUE : maxFileSize) {
+            @Override
+            public void onComplete(final Result result) {
+                // the response is processed by the completer, the thread of the http client returns to the network events
+                final byte[] content = this.getContent();
+                try {
+                    AsyncHTTPLoader.this.completer.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                complete(request, profile, retryCount, maxFileSize, blacklistType, agent, callback, requestedURL, requestHeader, result, content);
+                            } catch (final Throwable e) {
+                                AsyncHTTPLoader.this.log.warn("cannot process response of " + request.url().toNormalform(true) + ": " + e.getMessage(), e);
+                                callback.failed(request, "load error - " + e.getMessage());
+                            }
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    callback.failed(request, "loader is closed");
+                }
+            }
+        });
+    }
+
+    private void complete(
+            final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize,
+            final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Callback callback,
+            final DigestURL url, final RequestHeader requestHeader, final Result result, final byte[] content) {
+        final String requestURLString = request.url().toNormalform(true);
+        if (result.isFailed()) {
+            final Throwable failure = result.getFailure();
+            if (failure instanceof IllegalArgumentException && maxFileSize >= 0) {
+                // the buffering listener aborts a response which exceeds the maximum file size
+                final int statusCode = result.getResponse() == null ? -1 : result.getResponse().getStatus();
+                pushError(request, profile, FailCategory.FINAL_PROCESS_CONTEXT, "file size limit exceeded", statusCode);
+                callback.failed(request, "REJECTED URL " + request.url() + " because file size exceeds max filesize limit of " + maxFileSize + " bytes. (GET)$");
+            } else {
+                callback.failed(request, failure == null ? "unknown failure" : failure.toString());
+            }
+            return;
+        }
+
+        final org.eclipse.jetty.client.api.Response httpResponse = result.getResponse();
+        final int statusCode = httpResponse.getStatus();
+        final StatusLine statusline = new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode, httpResponse.getReason());
+        final ResponseHeader responseHeader = new ResponseHeader(statusCode);
+        // the http client decodes a compressed content: like the blocking http client, remove the headers which describe the compressed content
+        final boolean decoded = isDecoded(httpResponse.getHeaders().getField(HttpHeader.CONTENT_ENCODING));
+        for (final HttpField field: httpResponse.getHeaders()) {
+            if (decoded && (field.getHeader() == HttpHeader.CONTENT_ENCODING || field.getHeader() == HttpHeader.CONTENT_LENGTH)) continue;
+            responseHeader.add(field.getName(), field.getValue());
+        }
+
+        // check redirection
+        if (statusCode > 299 && statusCode < 310) {
+            try {
+                if (this.httpLoader == null) {
+                    followRedirect(request, statusline, responseHeader, requestURLString);
+                } else {
+                    this.httpLoader.followRedirect(request, profile, url, statusline, responseHeader, requestURLString);
+                }
+            } catch (final IOException e) {
+                callback.failed(request, e.getMessage());
+                return;
+            }
+            // retry crawling with new url
+            load(request, profile, retryCount - 1, maxFileSize, blacklistType, agent, callback);
+        } else if (content == null) {
+            // no response, reject file
+            pushError(request, profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
+            callback.failed(request, "REJECTED EMPTY RESPONSE BODY '" + statusline + "' for URL '" + requestURLString + "'$");
+        } else if (statusCode == 200 || statusCode == 203) {
+            // the transfer is ok
+            ByteCount.addAccountCount(ByteCount.CRAWLER, content.length);
+            callback.loaded(new Response(request, requestHeader, responseHeader, profile, false, content));
+        } else {
+            // if the response has not the right response type then reject file
+            pushError(request, profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
+            callback.failed(request, "REJECTED WRONG STATUS TYPE '" + statusline + "' for URL '" + requestURLString + "'$");
+        }
+    }
+
+    /**
+     * follow a redirection without a switchboard: the redirection url is set as new url of the request
+     * @throws IOException if the response has no redirection url
+     */
+    private static void followRedirect(final Request request, final StatusLine statusline, final ResponseHeader responseHeader, final String requestURLString) throws IOException {
+        final String redirectionUrlString = responseHeader.get(HeaderFramework.LOCATION);
+        if (redirectionUrlString == null || redirectionUrlString.trim().isEmpty()) {
+            throw new IOException("REJECTED EMPTY REDIRECTION '" + statusline + "' for URL '" + requestURLString + "'");
+        }
+        request.redirectURL(DigestURL.newURL(request.url(), redirectionUrlString.trim()));
+    }
+
+    private void pushError(final Request request, final CrawlProfile profile, final FailCategory failCategory, final String reason, final int statusCode) {
+        if (this.sb != null) this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, failCategory, reason, statusCode);
+    }
+
+    /**
+     * @param contentEncoding the content encoding header of a response or null
+     * @return true if the http client decodes the content of the response
+     */
+    private boolean isDecoded(final HttpField contentEncoding) {
+        if (contentEncoding == null) return false;
+        for (final ContentDecoder.Factory factory: this.client.getContentDecoderFactories()) {
+            if (contentEncoding.contains(factory.getEncoding())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * restrict the accepted content encodings to the encodings which the http client can decode;
+     * the jetty http client decodes gzip but not deflate
+     * @param acceptEncoding the value of the accept encoding header or null
+     * @return the accepted encodings which can be decoded or "identity" if there is none
+     */
+    private String acceptEncoding(final String acceptEncoding) {
+        final StringBuilder accepted = new StringBuilder();
+        if (acceptEncoding != null) for (final String token: acceptEncoding.split(",")) {
+            final String value = token.trim();
+            final int p = value.indexOf(';');
+            final String encoding = (p < 0 ? value : value.substring(0, p)).trim();
+            boolean decodable = "identity".equalsIgnoreCase(encoding);
+            for (final ContentDecoder.Factory factory: this.client.getContentDecoderFactories()) {
+                if (factory.getEncoding().equalsIgnoreCase(encoding)) decodable = true;
+            }
+            if (decodable) {
+                if (accepted.length() > 0) accepted.append(',');
+                accepted.append(value);
+            }
+        }
+        return accepted.length() == 0 ? "identity" : accepted.toString();
+    }
+
+    /**
+     * stop the http client; loads which are still running are aborted and completed responses which are not yet processed are dropped
+     */
+    public void close() {
+        try {
+            this.client.stop();
+        } catch (final Exception e) {
+            this.log.warn("cannot stop http client: " + e.getMessage());
+        }
+        this.completer.shutdownNow();
+        this.active.clear();
+    }
+}
@@ -261,7 +261,7 @@ public final class HTTPLoader {
 	 * @return redirect URL
 	 * @throws IOException when an error occured
 	 */
-	private DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
+	DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
 			final StatusLine statusline, final ResponseHeader responseHeader, String requestURLString)
 					throws IOException {
 		// read redirection URL
@@ -300,7 +300,7 @@ public final class HTTPLoader {
 	 * @return a request header
 	 * @throws IOException when an error occured
 	 */
-	private RequestHeader createRequestheader(final Request request, final ClientIdentification.Agent agent)
+	RequestHeader createRequestheader(final Request request, final ClientIdentification.Agent agent)
 			throws IOException {
 		final RequestHeader requestHeader = new RequestHeader();
 		requestHeader.put(HeaderFramework.USER_AGENT, agent.userAgent);
@@ -321,6 +321,20 @@ public final class HTTPLoader {
 		return requestHeader;
 	}
 
+	/**
+	 * Create request header for loading content without a switchboard, with the default accept values.
+	 * @param agent agent identification information
+	 * @return a request header
+	 */
+	static RequestHeader createDefaultRequestheader(final ClientIdentification.Agent agent) {
+		final RequestHeader requestHeader = new RequestHeader();
+		requestHeader.put(HeaderFramework.USER_AGENT, agent.userAgent);
+		requestHeader.put(HeaderFramework.ACCEPT_LANGUAGE, DEFAULT_LANGUAGE);
+		requestHeader.put(HeaderFramework.ACCEPT_CHARSET, DEFAULT_CHARSET);
+		requestHeader.put(HeaderFramework.ACCEPT_ENCODING, DEFAULT_ENCODING);
+		return requestHeader;
+	}
+
     private Response load(final Request request, CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) throws IOException {
 
         if (retryCount < 0) {
@@ -373,47 +387,9 @@ public final class HTTPLoader {
 
         // check redirection
     	if (statusCode > 299 && statusCode < 310) {
-
-    	    final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, client.getHttpResponse().getStatusLine(),
-					responseHeader, requestURLString);
-
-    	    if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
-    	        // we have two use cases here: loading from a crawl or just loading the url. Check this:
-    	        if (profile != null && !CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) {
-                    // put redirect url on the crawler queue to repeat a double-check
-    	        	/* We have to clone the request instance and not to modify directly its URL, 
-    	        	 * otherwise the stackCrawl() function would reject it, because detecting it as already in the activeWorkerEntries */
-                    Request redirectedRequest = new Request(request.initiator(),
-                    		redirectionUrl,
-                    		request.referrerhash(),
-                    		request.name(),
-                    		request.appdate(),
-                    		request.profileHandle(),
-                    		request.depth(),
-                    		request.timezoneOffset());
-    	            String rejectReason = this.sb.crawlStacker.stackCrawl(redirectedRequest);
-    	            // in the end we must throw an exception (even if this is not an error, just to abort the current process
-    	            if(rejectReason != null) {
-                        throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted. Reason : " + rejectReason);
-    	            }
-                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " to " + redirectionUrl.toNormalform(false) + " placed on crawler queue for double-check");
-    	            
-
-    	        }
-    	        
-                // if we are already doing a shutdown we don't need to retry crawling
-                if (Thread.currentThread().isInterrupted()) {
-                    this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "server shutdown", statusCode);
-                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted because of server shutdown.$");
-                }
-
-                // retry crawling with new url
-                request.redirectURL(redirectionUrl);
-                return load(request, profile, retryCount - 1, maxFileSize, blacklistType, agent);
-    	    }
-            // we don't want to follow redirects
-            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
-            throw new IOException("REJECTED UNWANTED REDIRECTION '" + client.getHttpResponse().getStatusLine() + "' for URL '" + requestURLString + "'$");
+    	    followRedirect(request, profile, url, client.getHttpResponse().getStatusLine(), responseHeader, requestURLString);
+    	    // retry crawling with new url
+    	    return load(request, profile, retryCount - 1, maxFileSize, blacklistType, agent);
         } else if (responseBody == null) {
     	    // no response, reject file
             this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
@@ -449,6 +425,52 @@ public final class HTTPLoader {
         }
     }
 
+    /**
+     * Handle a redirection response: the redirection is recorded and, depending on the crawler configuration and the profile,
+     * the redirection url is either placed on the crawler queue or set as new url of the request.
+     * If this method returns normally, the request shall be loaded again with its new url.
+     * @throws IOException if the request shall not be loaded again; the message ends with "$" if the error is already recorded
+     */
+    void followRedirect(final Request request, final CrawlProfile profile, final DigestURL url, final StatusLine statusline,
+            final ResponseHeader responseHeader, final String requestURLString) throws IOException {
+        final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, statusline, responseHeader, requestURLString);
+        final int statusCode = statusline.getStatusCode();
+        if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
+            // we have two use cases here: loading from a crawl or just loading the url. Check this:
+            if (profile != null && !CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) {
+                // put redirect url on the crawler queue to repeat a double-check
+                /* We have to clone the request instance and not to modify directly its URL, 
+                 * otherwise the stackCrawl() function would reject it, because detecting it as already in the activeWorkerEntries */
+                Request redirectedRequest = new Request(request.initiator(),
+                        redirectionUrl,
+                        request.referrerhash(),
+                        request.name(),
+                        request.appdate(),
+                        request.profileHandle(),
+                        request.depth(),
+                        request.timezoneOffset());
+                String rejectReason = this.sb.crawlStacker.stackCrawl(redirectedRequest);
+                // in the end we must throw an exception (even if this is not an error, just to abort the current process
+                if(rejectReason != null) {
+                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted. Reason : " + rejectReason);
+                }
+                throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " to " + redirectionUrl.toNormalform(false) + " placed on crawler queue for double-check");
+            }
+
+            // if we are already doing a shutdown we don't need to retry crawling
+            if (Thread.currentThread().isInterrupted()) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "server shutdown", statusCode);
+                throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted because of server shutdown.$");
+            }
+
+            request.redirectURL(redirectionUrl);
+            return;
+        }
+        // we don't want to follow redirects
+        this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
+        throw new IOException("REJECTED UNWANTED REDIRECTION '" + statusline + "' for URL '" + requestURLString + "'$");
+    }
+
     public static Response load(final Request request, ClientIdentification.Agent agent) throws IOException {
         return load(request, agent, 3);
     }
@@ -476,11 +498,7 @@ public final class HTTPLoader {
         Response response = null;
 
         // create a request header
-        final RequestHeader requestHeader = new RequestHeader();
-        requestHeader.put(HeaderFramework.USER_AGENT, agent.userAgent);
-        requestHeader.put(HeaderFramework.ACCEPT_LANGUAGE, DEFAULT_LANGUAGE);
-        requestHeader.put(HeaderFramework.ACCEPT_CHARSET, DEFAULT_CHARSET);
-        requestHeader.put(HeaderFramework.ACCEPT_ENCODING, DEFAULT_ENCODING);
+        final RequestHeader requestHeader = createDefaultRequestheader(agent);
 
         final HTTPClient client = new HTTPClient(agent);
         client.setTimout(20000);
@@ -0,0 +1,153 @@
+/**
+ *  SentenceTable
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * The sentences of a document in a compact form which can be stored and used for the computation of snippets
+ * without loading and parsing the document again. The sentences are kept as one text with the end offset of
+ * each sentence. For each sentence, a 64 bit filter holds one bit for each of the word hashes which the
+ * {@link SnippetExtractor} finds in the sentence, so sentences which cannot contain a query word are skipped
+ * without tokenizing them.
+ */
+public final class SentenceTable {
+
+    /** the number of words of a sentence which are considered by the snippet extractor */
+    public static final int MAX_SENTENCE_WORDS = 100;
+
+    private final String text;
+    private final int[] ends;
+    private final long[] filters;
+
+    private SentenceTable(final String text, final int[] ends, final long[] filters) {
+        this.text = text;
+        this.ends = ends;
+        this.filters = filters;
+    }
+
+    /**
+     * compute the table of sentences
+     * @param sentences the sentences of a document as produced by Document.getSentences()
+     */
+    public SentenceTable(final List<StringBuilder> sentences) {
+        final StringBuilder text = new StringBuilder();
+        this.ends = new int[sentences.size()];
+        this.filters = new long[sentences.size()];
+        for (int i = 0; i < this.ends.length; i++) {
+            final String sentence = sentences.get(i).toString();
+            text.append(sentence);
+            this.ends[i] = text.length();
+            long filter = 0;
+            for (final byte[] hash: WordTokenizer.hashSentence(sentence, MAX_SENTENCE_WORDS).keySet()) filter |= bit(hash);
+            this.filters[i] = filter;
+        }
+        this.text = text.toString();
+    }
+
+    private static long bit(final byte[] wordhash) {
+        return 1L << (Base64Order.enhancedCoder.decodeByte((byte) (wordhash[2] & 0x7f)) & 63);
+    }
+
+    /**
+     * @param wordhashes a set of word hashes
+     * @return the filter bits of the word hashes, to be used with mayContain()
+     */
+    public static long filter(final Iterable<byte[]> wordhashes) {
+        long filter = 0;
+        for (final byte[] hash: wordhashes) filter |= bit(hash);
+        return filter;
+    }
+
+    public int size() {
+        return this.ends.length;
+    }
+
+    public StringBuilder sentence(final int i) {
+        return new StringBuilder(this.text.substring(i == 0 ? 0 : this.ends[i - 1], this.ends[i]));
+    }
+
+    /**
+     * @param i the number of a sentence
+     * @param filter the filter of some word hashes
+     * @return false if none of the words is in the sentence; true if any of the words may be in the sentence
+     */
+    public boolean mayContain(final int i, final long filter) {
+        return (this.filters[i] & filter) != 0;
+    }
+
+    /**
+     * @return all sentences, like Document.getSentences()
+     */
+    public List<StringBuilder> getSentences() {
+        final List<StringBuilder> sentences = new ArrayList<StringBuilder>(this.ends.length);
+        for (int i = 0; i < this.ends.length; i++) sentences.add(sentence(i));
+        return sentences;
+    }
+
+    /**
+     * @return the table in binary form: the number of sentences, the end offset and the filter of each
+     * sentence and finally the chars of the text of all sentences; the text is not converted to UTF-8 because
+     * that would move the offsets of a text with unpaired surrogates. The table is compressed by the store.
+     */
+    public byte[] encode() {
+        final ByteBuffer b = ByteBuffer.allocate(4 + this.ends.length * 12 + this.text.length() * 2);
+        b.putInt(this.ends.length);
+        for (int i = 0; i < this.ends.length; i++) {
+            b.putInt(this.ends[i]);
+            b.putLong(this.filters[i]);
+        }
+        for (int i = 0; i < this.text.length(); i++) b.putChar(this.text.charAt(i));
+        return b.array();
+    }
+
+    /**
+     * @param b a table in binary form as produced by encode()
+     * @return the table or null if b is not a valid table
+     */
+    public static SentenceTable decode(final byte[] b) {
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(b);
+            final int n = buffer.getInt();
+            if (n < 0 || n > (b.length - 4) / 12) return null;
+            final int[] ends = new int[n];
+            final long[] filters = new long[n];
+            for (int i = 0; i < n; i++) {
+                ends[i] = buffer.getInt();
+                filters[i] = buffer.getLong();
+            }
+            final char[] chars = new char[buffer.remaining() / 2];
+            buffer.asCharBuffer().get(chars);
+            final String text = new String(chars);
+            int last = 0;
+            for (final int end: ends) {
+                if (end < last || end > text.length()) return null;
+                last = end;
+            }
+            return new SentenceTable(text, ends, filters);
+        } catch (final BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -37,20 +37,78 @@ public class SnippetExtractor {
     String snippetString;
     HandleSet remainingHashes;
 
-    public SnippetExtractor(final Collection<StringBuilder> sentences, final HandleSet queryhashes, int maxLength) throws UnsupportedOperationException {
+    public SnippetExtractor(final Collection<StringBuilder> sentences, final HandleSet queryhashes, final int maxLength) throws UnsupportedOperationException {
         if (sentences == null) throw new UnsupportedOperationException("sentence == null");
         if (queryhashes == null || queryhashes.isEmpty()) throw new UnsupportedOperationException("queryhashes == null");
-        SortedMap<byte[], Integer> hs;
-        final TreeMap<Long, StringBuilder> order = new TreeMap<Long, StringBuilder>();
-        long uniqCounter = 999L;
-        Integer pos;
-        TreeSet<Integer> positions;
-        int linenumber = 0;
-        int fullmatchcounter = 0;
-        lookup: for (final StringBuilder sentence: sentences) {
-            hs = WordTokenizer.hashSentence(sentence.toString(), 100);
-            positions = new TreeSet<Integer>();
-            for (final byte[] word: queryhashes) {
+        final Ranking ranking = new Ranking(queryhashes, maxLength);
+        for (final StringBuilder sentence: sentences) {
+            if (ranking.add(sentence)) break;
+        }
+        extract(ranking.order, queryhashes, maxLength);
+    }
+
+    /**
+     * compute a snippet from a stored table of sentences. Sentences which cannot contain any of the
+     * query words according to the filters of the table are skipped without tokenizing them.
+     */
+    public SnippetExtractor(final SentenceTable sentences, final HandleSet queryhashes, final int maxLength) throws UnsupportedOperationException {
+        this(null, sentences, queryhashes, maxLength);
+    }
+
+    /**
+     * compute a snippet from some sentences followed by a stored table of sentences
+     * @param leading sentences which are not part of the table, like the description of the document; may be null
+     * @param sentences the stored sentences of the document text
+     */
+    public SnippetExtractor(final Collection<StringBuilder> leading, final SentenceTable sentences, final HandleSet queryhashes, final int maxLength) throws UnsupportedOperationException {
+        if (sentences == null) throw new UnsupportedOperationException("sentence == null");
+        if (queryhashes == null || queryhashes.isEmpty()) throw new UnsupportedOperationException("queryhashes == null");
+        final Ranking ranking = new Ranking(queryhashes, maxLength);
+        if (leading != null) {
+            for (final StringBuilder sentence: leading) {
+                if (ranking.add(sentence)) {
+                    extract(ranking.order, queryhashes, maxLength);
+                    return;
+                }
+            }
+        }
+        final long filter = SentenceTable.filter(queryhashes);
+        for (int i = 0; i < sentences.size(); i++) {
+            if (!sentences.mayContain(i, filter)) {
+                ranking.skip();
+            } else if (ranking.add(sentences.sentence(i))) {
+                break;
+            }
+        }
+        extract(ranking.order, queryhashes, maxLength);
+    }
+
+    /**
+     * the best sentences for a snippet, in the order of their score
+     */
+    private static class Ranking {
+        private final HandleSet queryhashes;
+        private final int maxLength;
+        private final TreeMap<Long, StringBuilder> order = new TreeMap<Long, StringBuilder>();
+        private long uniqCounter = 999L;
+        private int linenumber = 0;
+        private int fullmatchcounter = 0;
+
+        private Ranking(final HandleSet queryhashes, final int maxLength) {
+            this.queryhashes = queryhashes;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * score the next sentence
+         * @param sentence
+         * @return true if enough sentences with all query words are found
+         */
+        private boolean add(final StringBuilder sentence) {
+            final SortedMap<byte[], Integer> hs = WordTokenizer.hashSentence(sentence.toString(), SentenceTable.MAX_SENTENCE_WORDS);
+            final TreeSet<Integer> positions = new TreeSet<Integer>();
+            Integer pos;
+            for (final byte[] word: this.queryhashes) {
                 pos = hs.get(word);
                 if (pos != null) {
                     positions.add(pos);
@@ -63,14 +121,24 @@ public class SnippetExtractor {
             // - 3th order: line length (not too short and not too long)
             // - 4rd order: line number
             if (!positions.isEmpty()) {
-                order.put(Long.valueOf(-100000000L * (linenumber == 0 ? 1 : 0) + 10000000L * positions.size() + 1000000L * worddistance + 100000L * linelengthKey(sentence.length(), maxLength) - 10000L * linenumber + uniqCounter--), sentence);
-                if (order.size() > 5) order.remove(order.firstEntry().getKey());
-                if (positions.size() == queryhashes.size()) fullmatchcounter++;
-                if (fullmatchcounter >= 3) break lookup;
+                this.order.put(Long.valueOf(-100000000L * (this.linenumber == 0 ? 1 : 0) + 10000000L * positions.size() + 1000000L * worddistance + 100000L * linelengthKey(sentence.length(), this.maxLength) - 10000L * this.linenumber + this.uniqCounter--), sentence);
+                if (this.order.size() > 5) this.order.remove(this.order.firstEntry().getKey());
+                if (positions.size() == this.queryhashes.size()) this.fullmatchcounter++;
+                if (this.fullmatchcounter >= 3) return true;
             }
-            linenumber++;
+            this.linenumber++;
+            return false;
         }
 
+        /**
+         * pass over a sentence which does not contain any of the query words
+         */
+        private void skip() {
+            this.linenumber++;
+        }
+    }
+
+    private void extract(final TreeMap<Long, StringBuilder> order, final HandleSet queryhashes, int maxLength) throws UnsupportedOperationException {
         StringBuilder sentence;
         SnippetExtractor tsr;
         while (!order.isEmpty()) {
@@ -127,7 +195,7 @@ public class SnippetExtractor {
             byte[] hash;
 
             // find all hashes that appear in the sentence
-            final Map<byte[], Integer> hs = WordTokenizer.hashSentence(sentence, 100);
+            final Map<byte[], Integer> hs = WordTokenizer.hashSentence(sentence, SentenceTable.MAX_SENTENCE_WORDS);
             final Iterator<byte[]> j = queryhashes.iterator();
             Integer pos;
             int p, minpos = sentence.length(), maxpos = -1;
@@ -34,6 +34,7 @@ import java.util.TreeMap;
 
 import net.yacy.cora.document.WordCache;
 import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.language.synonyms.AutotaggingMatcher;
 import net.yacy.cora.language.synonyms.SynonymLibrary;
 import net.yacy.cora.lod.vocabulary.Tagging;
 import net.yacy.cora.order.NaturalOrder;
@@ -68,10 +69,6 @@ public class Tokenizer {
         this.words = new TreeMap<String, Word>(NaturalOrder.naturalComparator);
         this.synonyms = new LinkedHashSet<String>();
         assert text != null;
-        final String[] wordcache = new String[LibraryProvider.autotagging.getMaxWordsInTerm() - 1];
-        for (int i = 0; i < wordcache.length; i++) {
-        	wordcache[i] = "";
-        }
         String k;
         int wordlen;
         int allwordcounter = 0;
@@ -80,6 +77,14 @@ public class Tokenizer {
         boolean comb_indexof = false, last_last = false, last_index = false;
         //final Map<StringBuilder, Phrase> sentences = new HashMap<StringBuilder, Phrase>(100);
         if (LibraryProvider.autotagging.isEmpty()) doAutotagging = false;
+        AutotaggingMatcher matcher = null;
+        Set<String> extendedVocabularies = null;
+        int tagState = 0;
+        if (doAutotagging) {
+            extendedVocabularies = extendVocabularies(root, scraper);
+            matcher = LibraryProvider.autotagging.getMatcher();
+            tagState = matcher.start();
+        }
 
         // read source
         WordTokenizer wordenum = new WordTokenizer(new SentenceReader(text), meaningLib);
@@ -98,14 +103,9 @@ public class Tokenizer {
 
                 // get tags from autotagging
                 if (doAutotagging) {
-                    Set<String> vocabularyNames = LibraryProvider.autotagging.getVocabularyNames();
-                    extendVocabularies(root, scraper, vocabularyNames);
-                    
-                    extractAutoTagsFromText(wordcache, word, vocabularyNames);
+                    tagState = matcher.next(tagState, word);
+                    extractAutoTags(matcher.matches(tagState), extendedVocabularies);
                 }
-                // shift wordcache
-                System.arraycopy(wordcache, 1, wordcache, 0, wordcache.length - 1);
-                wordcache[wordcache.length - 1] = word;
 
                 // check index.of detection
                 if (last_last && comb_indexof && word.equals("modified")) {
@@ -175,69 +175,51 @@ public class Tokenizer {
     }
 
 	/**
-	 * Check whether a single word or multiple ones match tags
-	 * from the given autotagging vocabularies. Then fill this instance "tags" map
-	 * with the eventually matching tags found.
+	 * Fill this instance "tags" map with the tags of the synonyms which the
+	 * autotagging matcher found ending at the current word.
 	 * 
-	 * @param wordcache
-	 *            the words to be checked for matching a tag as a single word or as combination of words 
-	 * @param word
-	 *            an additional word to be considered for tag matching
-	 * @param vocabularyNames
-	 *            names of the autotagging vocabularies to check
+	 * @param matches
+	 *            the synonyms found by the autotagging matcher
+	 * @param extendedVocabularies
+	 *            names of the vocabularies which were extended with scraped terms;
+	 *            these are not used for auto-annotation
 	 */
-	protected void extractAutoTagsFromText(final String[] wordcache, final String word, final Set<String> vocabularyNames) {
-		Tagging.Metatag tag;
-		if (vocabularyNames.size() > 0) {
-			for (int wordc = 1; wordc <= wordcache.length + 1; wordc++) {
-				// wordc is number of words that are tested
-				StringBuilder sb = new StringBuilder();
-				if (wordc == 1) {
-					sb.append(word);
-				} else {
-					for (int w = 0; w < wordc - 1; w++) {
-						sb.append(wordcache[wordcache.length - wordc + w + 1]).append(' ');
-					}
-					sb.append(word);
-				}
-				String testterm = sb.toString().trim();
-				tag = LibraryProvider.autotagging.getTagFromTerm(vocabularyNames, testterm);
-				if (tag != null) {
-					String navigatorName = tag.getVocabularyName();
-					Set<Tagging.Metatag> tagset = this.tags.get(navigatorName);
-					if (tagset == null) {
-						tagset = new HashSet<Tagging.Metatag>();
-						this.tags.put(navigatorName, tagset);
-					}
-					tagset.add(tag);
-				}
+	protected void extractAutoTags(final AutotaggingMatcher.Match[] matches, final Set<String> extendedVocabularies) {
+		for (final AutotaggingMatcher.Match match: matches) {
+			final String navigatorName = match.vocabulary.getName();
+			if (extendedVocabularies.contains(navigatorName)) continue;
+			final Tagging.Metatag tag = match.vocabulary.getMetatagFromSynonym(match.synonym);
+			if (tag == null) continue; // the vocabulary was changed meanwhile
+			Set<Tagging.Metatag> tagset = this.tags.get(navigatorName);
+			if (tagset == null) {
+				tagset = new HashSet<Tagging.Metatag>();
+				this.tags.put(navigatorName, tagset);
 			}
+			tagset.add(tag);
 		}
 	}
 
 	/**
-	 * Extend the specified vocabularies, with terms eventually found by the
+	 * Extend the vocabularies with terms eventually found by the
 	 * vocabulary scraper for these vocabularies. The scraper is emptied after
-	 * processing, and extended vocabularies names are removed from the
-	 * vocabularyNames.
+	 * processing.
 	 * 
 	 * @param root
 	 *            the document URL
 	 * @param scraper
 	 *            the vocabulary scraper, eventually containing new terms scraped
 	 *            for the registered vocabularies
-	 * @param vocabularyNames
-	 *            vocabularies names to be extended
+	 * @return the names of the extended vocabularies
 	 */
-	protected void extendVocabularies(final DigestURL root, final VocabularyScraper scraper,
-			final Set<String> vocabularyNames) {
+	protected Set<String> extendVocabularies(final DigestURL root, final VocabularyScraper scraper) {
 		Tagging.Metatag tag;
+		final Set<String> extendedVocabularies = new HashSet<String>();
 		Map<String, String> vocMap = scraper == null ? null : scraper.removeVocMap(root);
 		if (vocMap != null && vocMap.size() > 0) {
 		    for (Map.Entry<String, String> entry: vocMap.entrySet()) {
 		        String navigatorName = entry.getKey();
 		        String term = entry.getValue();
-		        vocabularyNames.remove(navigatorName); // prevent that this is used again for auto-annotation
+		        extendedVocabularies.add(navigatorName); // prevent that this is used again for auto-annotation
 		        Tagging vocabulary = LibraryProvider.autotagging.getVocabulary(navigatorName);
 		        if (vocabulary != null) {
 		            // extend the vocabulary
@@ -255,6 +237,7 @@ public class Tokenizer {
 		        }
 		    }
 		}
+		return extendedVocabularies;
 	}
 
     /**
@@ -0,0 +1,182 @@
+// CharsetSniffer.java
+// -----------------------------
+// part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.document.parser.html;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Finds the charset of a html document in the raw bytes of its beginning, before anything is decoded:
+ * a byte order mark or, in ASCII compatible encodings, a meta tag in the head of the document.
+ * This replaces a full scraper run over the head, so that the document is decoded only once.
+ */
+public final class CharsetSniffer {
+
+    /** the number of bytes at the beginning of a document which are inspected; like the prefix read by the ICU charset detector */
+    public static final int SNIFF_SIZE = 8000;
+
+    private static final byte[] COMMENT_START = {'<', '!', '-', '-'};
+    private static final byte[] COMMENT_END = {'-', '-', '>'};
+    private static final byte[] META = {'<', 'm', 'e', 't', 'a'};
+    private static final byte[] HEAD_END = {'<', '/', 'h', 'e', 'a', 'd'};
+    private static final byte[] BODY = {'<', 'b', 'o', 'd', 'y'};
+
+    private CharsetSniffer() {
+    }
+
+    /**
+     * @param b the first bytes of a document
+     * @param length the number of valid bytes in b
+     * @return the length of the byte order mark at the beginning of the document or 0 if there is none
+     */
+    public static int bomLength(final byte[] b, final int length) {
+        if (length >= 3 && (b[0] & 0xff) == 0xef && (b[1] & 0xff) == 0xbb && (b[2] & 0xff) == 0xbf) return 3;
+        if (length >= 2 && (((b[0] & 0xff) == 0xfe && (b[1] & 0xff) == 0xff) || ((b[0] & 0xff) == 0xff && (b[1] & 0xff) == 0xfe))) return 2;
+        return 0;
+    }
+
+    /**
+     * find the charset of a document from its byte order mark or from a meta tag
+     * like &lt;meta charset="utf-8"&gt; or &lt;meta http-equiv="content-type" content="text/html; charset=ISO-8859-1"&gt;
+     * @param b the first bytes of a document; only the first SNIFF_SIZE bytes are inspected
+     * @param length the number of valid bytes in b
+     * @return the charset name as given in the document or null if the document does not declare a charset
+     */
+    public static String sniff(final byte[] b, final int length) {
+        final int end = Math.min(length, Math.min(b.length, SNIFF_SIZE));
+        final int bom = bomLength(b, end);
+        if (bom == 3) return StandardCharsets.UTF_8.name();
+        if (bom == 2) return (b[0] & 0xff) == 0xfe ? StandardCharsets.UTF_16BE.name() : StandardCharsets.UTF_16LE.name();
+
+        int p = 0;
+        while (p < end) {
+            if (b[p] != '<') {
+                p++;
+            } else if (startsWith(b, p, end, COMMENT_START)) {
+                p = indexOf(b, p + COMMENT_START.length, end, COMMENT_END);
+                if (p < 0) return null;
+                p += COMMENT_END.length;
+            } else if (startsWith(b, p, end, META) && p + META.length < end && isAttributeSeparator(b[p + META.length])) {
+                final String charset = meta(b, p + META.length, end);
+                if (charset != null) return charset;
+                p += META.length;
+            } else if (startsWith(b, p, end, HEAD_END) || startsWith(b, p, end, BODY)) {
+                return null; // the charset must be declared in the head
+            } else {
+                // skip any other tag, declaration or processing instruction
+                p++;
+                while (p < end && b[p] != '>') p++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * parse the attributes of a meta tag
+     * @param b the document bytes
+     * @param p the position after the tag name
+     * @param end the end of the valid bytes
+     * @return the declared charset or null if the meta tag does not declare a charset
+     */
+    private static String meta(final byte[] b, int p, final int end) {
+        String charset = null, httpEquiv = null, content = null;
+        while (p < end && b[p] != '>') {
+            // attribute name
+            while (p < end && (isAttributeSeparator(b[p]))) p++;
+            if (p >= end || b[p] == '>') break;
+            final int nameStart = p;
+            while (p < end && b[p] != '=' && b[p] != '>' && !isAttributeSeparator(b[p])) p++;
+            final String name = lowerCase(b, nameStart, p);
+            while (p < end && isWhitespace(b[p])) p++;
+            if (p >= end || b[p] != '=') continue; // attribute without value
+            p++;
+            while (p < end && isWhitespace(b[p])) p++;
+            if (p >= end) break;
+
+            // attribute value
+            final int valueStart, valueEnd;
+            if (b[p] == '"' || b[p] == '\'') {
+                final byte quote = b[p++];
+                valueStart = p;
+                while (p < end && b[p] != quote) p++;
+                if (p >= end) return null; // the tag is not complete within the inspected bytes
+                valueEnd = p++;
+            } else {
+                valueStart = p;
+                while (p < end && b[p] != '>' && !isWhitespace(b[p])) p++;
+                valueEnd = p;
+            }
+            final String value = new String(b, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1).trim();
+            if ("charset".equals(name)) charset = value;
+            else if ("http-equiv".equals(name)) httpEquiv = value;
+            else if ("content".equals(name)) content = value;
+        }
+        if (charset != null && charset.length() > 0) return charset;
+        if (content != null && "content-type".equalsIgnoreCase(httpEquiv)) return charsetOfContentType(content);
+        return null;
+    }
+
+    /**
+     * @param contentType a mime type like "text/html; charset=ISO-8859-1"
+     * @return the charset parameter of the mime type or null if there is none
+     */
+    private static String charsetOfContentType(final String contentType) {
+        final int c = contentType.toLowerCase(Locale.ROOT).indexOf("charset");
+        if (c < 0) return null;
+        int p = c + "charset".length();
+        while (p < contentType.length() && contentType.charAt(p) <= ' ') p++;
+        if (p >= contentType.length() || contentType.charAt(p) != '=') return null;
+        p++;
+        while (p < contentType.length() && (contentType.charAt(p) <= ' ' || contentType.charAt(p) == '"' || contentType.charAt(p) == '\'')) p++;
+        final int start = p;
+        while (p < contentType.length() && contentType.charAt(p) > ' ' && contentType.charAt(p) != ';' && contentType.charAt(p) != '"' && contentType.charAt(p) != '\'') p++;
+        return p > start ? contentType.substring(start, p) : null;
+    }
+
+    private static boolean startsWith(final byte[] b, final int p, final int end, final byte[] pattern) {
+        if (p + pattern.length > end) return false;
+        for (int i = 0; i < pattern.length; i++) {
+            byte c = b[p + i];
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != pattern[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(final byte[] b, final int p, final int end, final byte[] pattern) {
+        for (int i = p; i + pattern.length <= end; i++) {
+            if (startsWith(b, i, end, pattern)) return i;
+        }
+        return -1;
+    }
+
+    private static String lowerCase(final byte[] b, final int start, final int end) {
+        return new String(b, start, end - start, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isWhitespace(final byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAttributeSeparator(final byte c) {
+        return isWhitespace(c) || c == '/';
+    }
+}
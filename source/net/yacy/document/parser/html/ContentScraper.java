@@ -28,7 +28,6 @@ import java.io.Writer;
 import java.lang.reflect.Array;
 import java.net.MalformedURLException;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -1598,16 +1597,15 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         final byte[] page = FileUtils.read(file);
         if (page == null) throw new IOException("no content in file " + file.toString());
 
-        // scrape document to look up charset
-        final ScraperInputStream htmlFilter = new ScraperInputStream(new ByteArrayInputStream(page), StandardCharsets.UTF_8.name(), new HashSet<String>(), new VocabularyScraper(), new DigestURL("http://localhost"), null, false, maxLinks, timezoneOffset);
-        String charset = htmlParser.patchCharsetEncoding(htmlFilter.detectCharset());
-        htmlFilter.close();
+        // look up charset in the raw bytes of the document
+        String charset = htmlParser.patchCharsetEncoding(CharsetSniffer.sniff(page, page.length));
         if (charset == null) charset = Charset.defaultCharset().toString();
+        final int bom = CharsetSniffer.bomLength(page, page.length);
 
         // scrape content
         final ContentScraper scraper = new ContentScraper(new DigestURL("http://localhost"), maxLinks, new HashSet<String>(), new VocabularyScraper(), timezoneOffset);
         final Writer writer = new TransformerWriter(null, null, scraper, null, false);
-        FileUtils.copy(new ByteArrayInputStream(page), writer, Charset.forName(charset));
+        FileUtils.copy(new ByteArrayInputStream(page, bom, page.length - bom), writer, Charset.forName(charset));
         writer.close();
         return scraper;
     }
@@ -501,11 +501,37 @@ public final class TransformerWriter extends Writer {
         write(b, 0, b.length);
     }
 
+    /**
+     * write a block of characters. Runs of characters which cannot change the state of the
+     * tokenizer are appended to the token buffer at once; only the characters which may end
+     * or start a token are passed through write(int)
+     */
     @Override
     public void write(final char b[], final int off, final int len) throws IOException {
 //      System.out.println(UTF8.String(b, off, len));
         if ((off | len | (b.length - (len + off)) | (off + len)) < 0) throw new IndexOutOfBoundsException();
-        for (int i = off ; i < (len - off) ; i++) this.write(b[i]);
+        final int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (this.buffer != null && !this.buffer.isEmpty() && (this.binaryUnsuspect || !this.passbyIfBinarySuspect)) {
+                int j = i;
+                while (j < end && !isTokenBoundary(b[j])) j++;
+                if (j > i) {
+                    this.buffer.append(b, i, j - i);
+                    i = j;
+                    continue;
+                }
+            }
+            this.write(b[i++]);
+        }
+    }
+
+    /**
+     * @param c a character
+     * @return false if appending c to a non-empty token buffer is all that write(c) would do
+     */
+    private static boolean isTokenBoundary(final char c) {
+        return c == lb || c == rb || c == singlequote || c == doublequote || c == dash || binaryHint(c);
     }
 
     @Override
@@ -36,6 +36,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Locale;
@@ -44,6 +45,7 @@ import java.util.Set;
 import org.apache.commons.io.IOUtils;
 
 import com.ibm.icu.text.CharsetDetector;
+import com.ibm.icu.text.CharsetMatch;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.DigestURL;
@@ -54,9 +56,9 @@ import net.yacy.document.AbstractParser;
 import net.yacy.document.Document;
 import net.yacy.document.Parser;
 import net.yacy.document.VocabularyScraper;
+import net.yacy.document.parser.html.CharsetSniffer;
 import net.yacy.document.parser.html.ContentScraper;
 import net.yacy.document.parser.html.ImageEntry;
-import net.yacy.document.parser.html.ScraperInputStream;
 import net.yacy.document.parser.html.TransformerWriter;
 
 
@@ -272,28 +274,32 @@ public class htmlParser extends AbstractParser implements Parser {
             charset = patchCharsetEncoding(documentCharset);
         }
 
-        // nothing found: try to find a meta-tag
+        // nothing found: look at the raw bytes at the beginning of the document for a byte order mark or a meta-tag;
+        // the stream is reset afterwards, so that the document is decoded only once
         if (charset == null) {
-            ScraperInputStream htmlFilter = null;
+            final BufferedInputStream bufferedStream = new BufferedInputStream(sourceStream, CharsetSniffer.SNIFF_SIZE);
+            final byte[] head = new byte[CharsetSniffer.SNIFF_SIZE];
+            final int headLength;
             try {
-                htmlFilter = new ScraperInputStream(sourceStream, documentCharset, ignore_class_name, vocabularyScraper, location, null, false, maxLinks, timezoneOffset);
-                sourceStream = htmlFilter;
-                charset = htmlFilter.detectCharset();
+                bufferedStream.mark(CharsetSniffer.SNIFF_SIZE);
+                headLength = IOUtils.read(bufferedStream, head);
+                bufferedStream.reset();
+                // the byte order mark is not part of the content
+                IOUtils.skipFully(bufferedStream, CharsetSniffer.bomLength(head, headLength));
             } catch (final IOException e1) {
                 throw new Parser.Failure("Charset error:" + e1.getMessage(), location);
-            } finally {
-                if (htmlFilter != null) htmlFilter.close();
             }
-        }
-
-        // the author didn't tell us the encoding, try the mozilla-heuristic
-        if (charset == null) {
-            final CharsetDetector det = new CharsetDetector();
-            det.enableInputFilter(true);
-            final InputStream detStream = new BufferedInputStream(sourceStream);
-            det.setText(detStream);
-            charset = det.detect().getName();
-            sourceStream = detStream;
+            sourceStream = bufferedStream;
+            charset = patchCharsetEncoding(CharsetSniffer.sniff(head, headLength));
+
+            // the author didn't tell us the encoding, try the mozilla-heuristic on the same bytes
+            if (charset == null && headLength > 0) {
+                final CharsetDetector det = new CharsetDetector();
+                det.enableInputFilter(true);
+                det.setText(Arrays.copyOf(head, headLength));
+                final CharsetMatch match = det.detect();
+                if (match != null) charset = match.getName();
+            }
         }
 
         // wtf? still nothing, just take system-standard
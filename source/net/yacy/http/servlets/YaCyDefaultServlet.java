@@ -20,11 +20,7 @@ package net.yacy.http.servlets;
 
 import java.awt.Image;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -1075,38 +1071,18 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 
                 String mimeType = Classification.ext2mime(targetExt, MimeTypes.Type.TEXT_HTML.asString());
 
-                InputStream fis;
-                long fileSize = targetFile.length();
-
-                if (fileSize <= Math.min(4 * 1024 * 1204, MemoryControl.available() / 100)) {
-                    // read file completely into ram, avoid that too many files are open at the same time
-                    fis = new ByteArrayInputStream(FileUtils.read(targetFile));
-                } else {
-                    fis = new BufferedInputStream(new FileInputStream(targetFile));
-                }
-
                 // set response header
                 response.setContentType(mimeType);
                 response.setStatus(HttpServletResponse.SC_OK);
-                ByteArrayOutputStream bas = new ByteArrayOutputStream(4096);
+
+                // apply templates and handle SSI while the result is written
+                final SSIOutputStream out = new SSIOutputStream(request, response);
                 try {
-                	// apply templates
-                	TemplateEngine.writeTemplate(targetFile.getName(), fis, bas, templatePatterns);
-                	
-                    // handle SSI
-                    parseSSI (bas.toByteArray(),request,response);
+                    TemplateEngine.writeTemplate(targetFile.getName(), targetFile, out, templatePatterns);
+                } catch (final SSIException e) {
+                    throw (ServletException) e.getCause();
                 } finally {
-                	try {
-                		fis.close();
-                	} catch(IOException ignored) {
-                		ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: could not close target file " + targetFile.getName());
-                	}
-                	
-                	try {
-                		bas.close();
-                	} catch(IOException ignored) {
-                		/* Should never happen with a ByteArrayOutputStream */
-                	}
+                    out.close();
                 }
             }
         }
@@ -1200,38 +1176,113 @@ public class YaCyDefaultServlet extends HttpServlet  {
     }
     
     /**
-     * parse SSI line and include resource (<!--#include virtual="file.html" -->)
+     * thrown by the SSIOutputStream if an included resource fails with a ServletException
      */
-    protected void parseSSI(final byte[] in, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
-        ByteBuffer buffer = new ByteBuffer(in);
-        OutputStream out = response.getOutputStream();
-        final byte[] inctxt ="<!--#include virtual=\"".getBytes();
-        int offset = 0;
-        int p = buffer.indexOf(inctxt, offset);
-        int end;
-        while (p >= 0 && (end = buffer.indexOf("-->".getBytes(), p + 24)) > 0 ) { // min length 24; <!--#include virtual="a"
-            out.write(in, offset, p - offset);
-            out.flush();
+    private static class SSIException extends IOException {
+        private static final long serialVersionUID = 1L;
+        public SSIException(final ServletException e) {
+            super(e);
+        }
+    }
+
+    /**
+     * An output stream to the response which includes resources for SSI lines (<!--#include virtual="file.html" -->)
+     * in the written content. Only the text of a SSI line is buffered, everything else is written through.
+     */
+    private static class SSIOutputStream extends OutputStream {
+
+        private final static byte[] inctxt = "<!--#include virtual=\"".getBytes();
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final OutputStream out;
+        private final ByteBuffer pending; // the text of a (possible) SSI line
+        private boolean inSSI; // true if pending contains the complete inctxt
+
+        public SSIOutputStream(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+            this.request = request;
+            this.response = response;
+            this.out = response.getOutputStream();
+            this.pending = new ByteBuffer(64);
+            this.inSSI = false;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            final int end = off + len;
+            int p = off;
+            while (p < end) {
+                if (!this.inSSI && this.pending.length() == 0) {
+                    // write everything up to the next possible SSI line
+                    int q = p;
+                    while (q < end && b[q] != inctxt[0]) q++;
+                    this.out.write(b, p, q - p);
+                    p = q;
+                    if (p == end) break;
+                }
+                write(b[p++]);
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (this.inSSI) {
+                this.pending.write(b);
+                final int length = this.pending.length();
+                // min length 24; <!--#include virtual="a"
+                if (b == '>' && length >= 27 && this.pending.byteAt(length - 2) == '-' && this.pending.byteAt(length - 3) == '-') {
+                    include(this.pending.getBytes(), length - 3);
+                    this.pending.clear();
+                    this.inSSI = false;
+                }
+                return;
+            }
+            final int matched = this.pending.length();
+            if ((byte) b == inctxt[matched]) {
+                this.pending.write(b);
+                if (matched + 1 == inctxt.length) this.inSSI = true;
+                return;
+            }
+            if (matched > 0) {
+                this.out.write(this.pending.getBytes());
+                this.pending.clear();
+            }
+            if ((byte) b == inctxt[0]) this.pending.write(b); else this.out.write(b);
+        }
+
+        private void include(final byte[] ssi, final int end) throws IOException {
+            this.out.flush();
             // find right end quote
-            final int rightquote = buffer.indexOf("\"".getBytes(), p + 23);
-            if (rightquote > 0 && rightquote < end) {
-                final String path = buffer.toString(p + 22, rightquote - p - 22);
-                RequestDispatcher dispatcher = request.getRequestDispatcher(path);
+            int rightquote = -1;
+            for (int i = inctxt.length + 1; i < end; i++) if (ssi[i] == '"') {rightquote = i; break;}
+            if (rightquote > 0) {
+                final String path = new String(ssi, inctxt.length, rightquote - inctxt.length, StandardCharsets.ISO_8859_1);
+                final RequestDispatcher dispatcher = this.request.getRequestDispatcher(path);
                 try {
-                    dispatcher.include(request, response);
-                } catch (IOException ex) {
+                    dispatcher.include(this.request, this.response);
+                } catch (final ServletException e) {
+                    throw new SSIException(e);
+                } catch (final IOException ex) {
                     if (path.indexOf("yacysearch") < 0) ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: parseSSI dispatcher problem - " + ex.getMessage() + ": " + path);
                     // this is probably a time-out; it may occur during search requests; for search requests we consider that normal
                 }
             } else {
-                ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: parseSSI closing quote missing " + buffer.toString(p, end - p) + " in " + request.getPathInfo());
+                ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: parseSSI closing quote missing " + new String(ssi, 0, end, StandardCharsets.ISO_8859_1) + " in " + this.request.getPathInfo());
             }
-            offset = end + 3; // after "-->"
-            p = buffer.indexOf(inctxt, offset);
         }
-        out.write(in, offset, in.length - offset);
-        out.close();
-        buffer.close();
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // an incomplete SSI line is written as it is
+            if (this.pending.length() > 0) this.out.write(this.pending.getBytes());
+            this.pending.close();
+            this.out.close();
+        }
     }
 
     /**
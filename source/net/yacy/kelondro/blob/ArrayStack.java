@@ -28,14 +28,19 @@ package net.yacy.kelondro.blob;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -206,8 +211,11 @@ public class ArrayStack implements BLOB {
                        if (time == maxtime && !trimall) {
                            oneBlob = new Heap(f, keylength, ordering, buffersize);
                        } else {
-                           oneBlob = new HeapModifier(f, keylength, ordering);
-                           oneBlob.optimize(); // no writings here, can be used with minimum memory
+                           final HeapModifier modifier = new HeapModifier(f, keylength, ordering);
+                           modifier.optimize(); // no writings here, can be used with minimum memory
+                           modifier.map(); // and reads can use a memory mapping if that is switched on
+                           modifier.initKeyFilter(); // lookups of missing keys can be rejected without an index access
+                           oneBlob = modifier;
                        }
                        sortedItems.put(Long.valueOf(time), new blobItem(d, f, oneBlob));
                    } catch (final IOException e) {
@@ -261,8 +269,11 @@ public class ArrayStack implements BLOB {
         if (full && this.buffersize > 0 && !this.trimall) {
             oneBlob = new Heap(location, this.keylength, this.ordering, this.buffersize);
         } else {
-            oneBlob = new HeapModifier(location, this.keylength, this.ordering);
-            oneBlob.optimize();
+            final HeapModifier modifier = new HeapModifier(location, this.keylength, this.ordering);
+            modifier.optimize();
+            modifier.map();
+            modifier.initKeyFilter();
+            oneBlob = modifier;
         }
         this.blobs.add(new blobItem(d, location, oneBlob));
     }
@@ -458,6 +469,15 @@ public class ArrayStack implements BLOB {
             this.location = newBLOB(this.creation);
             this.blob = (buffer == 0) ? new HeapModifier(this.location, ArrayStack.this.keylength, ArrayStack.this.ordering) : new Heap(this.location, ArrayStack.this.keylength, ArrayStack.this.ordering, buffer);
         }
+        /**
+         * test the key filter of the blob
+         * @param key
+         * @return false if the blob certainly does not contain the key
+         */
+        public boolean mayContain(final byte[] key) {
+            final BLOB b = this.blob;
+            return !(b instanceof HeapReader) || ((HeapReader) b).mightContainKey(key);
+        }
     }
 
     /**
@@ -579,9 +599,17 @@ public class ArrayStack implements BLOB {
         int bs1 = this.blobs.size() - 1;
         blobItem bi = this.blobs.get(bs1);
         if (bi.blob.containsKey(key)) return bi;
-        if (this.blobs.size() == 2) {
+
+        // select the blobs which may contain the key according to their key filter
+        final List<blobItem> candidates = new ArrayList<blobItem>(bs1);
+        for (int i = 0; i < bs1; i++) {
+            bi = this.blobs.get(i);
+            if (bi.mayContain(key)) candidates.add(bi);
+        }
+        if (candidates.isEmpty()) return null;
+        if (candidates.size() == 1) {
             // this should not be done concurrently
-            bi = this.blobs.get(0);
+            bi = candidates.get(0);
             if (bi.blob.containsKey(key)) return bi;
             return null;
         }
@@ -589,8 +617,7 @@ public class ArrayStack implements BLOB {
         // start a concurrent query to database tables
         final CompletionService<blobItem> cs = new ExecutorCompletionService<blobItem>(this.executor);
         int accepted = 0;
-        for (int i = 0; i < bs1; i++) {
-            final blobItem b = this.blobs.get(i);
+        for (final blobItem b: candidates) {
             try {
                 cs.submit(new Callable<blobItem>() {
                     @Override
@@ -695,8 +722,9 @@ public class ArrayStack implements BLOB {
         @Override
         protected byte[] next0() {
             while (this.bii.hasNext()) {
-                final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                final blobItem bi = this.bii.next();
+                final BLOB b = bi.blob;
+                if (b == null || !bi.mayContain(this.key)) continue;
                 try {
                     final byte[] n = b.get(this.key);
                     if (n != null) return n;
@@ -722,6 +750,7 @@ public class ArrayStack implements BLOB {
     public synchronized long length(final byte[] key) throws IOException {
         long l;
         for (final blobItem bi: this.blobs) {
+            if (!bi.mayContain(key)) continue;
             l = bi.blob.length(key);
             if (l >= 0) return l;
         }
@@ -752,8 +781,9 @@ public class ArrayStack implements BLOB {
         @Override
         protected Long next0() {
             while (this.bii.hasNext()) {
-                final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                final blobItem bi = this.bii.next();
+                final BLOB b = bi.blob;
+                if (b == null || !bi.mayContain(this.key)) continue;
                 try {
                     final long l = b.length(this.key);
                     if (l >= 0) return Long.valueOf(l);
@@ -852,10 +882,13 @@ public class ArrayStack implements BLOB {
             final blobItem bi = this.blobs.get(0);
             bi.blob.delete(key);
         } else {
+            // only the blobs which may contain the key according to their key filter are touched
+            final List<blobItem> candidates = new ArrayList<blobItem>(this.blobs.size());
+            for (final blobItem bi: this.blobs) if (bi.mayContain(key)) candidates.add(bi);
             @SuppressWarnings("unchecked")
-            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, this.blobs.size() - 1);
+            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, Math.max(0, candidates.size() - 1));
             int i = 0;
-            for (final blobItem bi: this.blobs) {
+            for (final blobItem bi: candidates) {
                 if (i < t.length) {
                     // run this in a concurrent thread
                     final blobItem bi0 = bi;
@@ -923,10 +956,29 @@ public class ArrayStack implements BLOB {
     public File mergeMount(final File f1, final File f2,
             final ReferenceFactory<? extends Reference> factory,
             final File newFile, final int writeBuffer) {
+        return mergeMount(f1, f2, factory, newFile, writeBuffer, null);
+    }
+
+    /**
+     * merge two blob files into one. If the second file is given as null,
+     * then the first file is only rewritten into a new one.
+     * The input files are read concurrently to the merge.
+     * @param f1
+     * @param f2 (may also be null)
+     * @param factory
+     * @param newFile
+     * @param writeBuffer
+     * @param executor if not null, consecutive key ranges are merged in parallel with this executor
+     *        and written in key order; otherwise the merge is done in the calling thread
+     * @return the target file where the given files are merged in
+     */
+    public File mergeMount(final File f1, final File f2,
+            final ReferenceFactory<? extends Reference> factory,
+            final File newFile, final int writeBuffer, final ExecutorService executor) {
         if (f2 == null) {
             // this is a rewrite
             ConcurrentLog.info("BLOBArray", "rewrite of " + f1.getName());
-            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer);
+            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer, executor);
             if (resultFile == null) {
                 ConcurrentLog.warn("BLOBArray", "rewrite of file " + f1 + " returned null. newFile = " + newFile);
                 return null;
@@ -941,7 +993,7 @@ public class ArrayStack implements BLOB {
             return resultFile;
         }
         ConcurrentLog.info("BLOBArray", "merging " + f1.getName() + " with " + f2.getName());
-        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer);
+        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer, executor);
         if (resultFile == null) {
             ConcurrentLog.warn("BLOBArray", "merge of files " + f1 + ", " + f2 + " returned null. newFile = " + newFile);
             return null;
@@ -958,7 +1010,8 @@ public class ArrayStack implements BLOB {
 
     private static <ReferenceType extends Reference> File mergeWorker(
                     final ReferenceFactory<ReferenceType> factory,
-                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer) {
+                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer,
+                    final ExecutorService executor) {
         // iterate both files and write a new one
         ReferenceIterator<ReferenceType> i1 = null;
         try {
@@ -983,9 +1036,19 @@ public class ArrayStack implements BLOB {
                 assert i1.hasNext();
                 assert i2.hasNext();
                 final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
+                final ReadAheadIterator<ReferenceType> r1 = new ReadAheadIterator<ReferenceType>(i1, factory, f1.getName());
+                final ReadAheadIterator<ReferenceType> r2 = new ReadAheadIterator<ReferenceType>(i2, factory, f2.getName());
                 try {
                     final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-                    merge(i1, i2, order, writer);
+                    final MergeWriter<ReferenceType> mergeWriter = new MergeWriter<ReferenceType>(writer, executor);
+                    try {
+                        merge(r1, r2, order, mergeWriter);
+                        mergeWriter.finish();
+                    } catch (final UncheckedIOException e) {
+                        throw e.getCause(); // the read ahead did not reach the end of an input file
+                    } finally {
+                        mergeWriter.cancel();
+                    }
                     writer.close(true);
                 } catch (final IOException e) {
                     ConcurrentLog.severe("ArrayStack", "cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
@@ -997,6 +1060,9 @@ public class ArrayStack implements BLOB {
                     HeapWriter.delete(tmpFile);
                     HeapWriter.delete(newFile);
                     return null;
+                } finally {
+                    r1.close();
+                    r2.close();
                 }
                 // we don't need the old files any more
                 HeapWriter.delete(f1);
@@ -1018,10 +1084,11 @@ public class ArrayStack implements BLOB {
 
     private static <ReferenceType extends Reference> File rewriteWorker(
             final ReferenceFactory<ReferenceType> factory,
-            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer) {
+            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer,
+            final ExecutorService executor) {
         // iterate both files and write a new one
 
-        CloneableIterator<ReferenceContainer<ReferenceType>> i = null;
+        ReferenceIterator<ReferenceType> i = null;
         try {
             i = new ReferenceIterator<ReferenceType>(f, factory);
         } catch (final IOException e) {
@@ -1034,11 +1101,19 @@ public class ArrayStack implements BLOB {
         }
         assert i.hasNext();
         final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
+        final ReadAheadIterator<ReferenceType> r = new ReadAheadIterator<ReferenceType>(i, factory, f.getName());
         try {
             final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-            rewrite(i, order, writer);
+            final MergeWriter<ReferenceType> mergeWriter = new MergeWriter<ReferenceType>(writer, executor);
+            try {
+                rewrite(r, order, mergeWriter);
+                mergeWriter.finish();
+            } catch (final UncheckedIOException e) {
+                throw e.getCause(); // the read ahead did not reach the end of the input file
+            } finally {
+                mergeWriter.cancel();
+            }
             writer.close(true);
-            i.close();
         } catch (final IOException e) {
             ConcurrentLog.severe("ArrayStack", "cannot writing or close writing rewrite, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
             FileUtils.deletedelete(tmpFile);
@@ -1049,6 +1124,9 @@ public class ArrayStack implements BLOB {
             FileUtils.deletedelete(tmpFile);
             FileUtils.deletedelete(newFile);
             return null;
+        } finally {
+            r.close();
+            i.close();
         }
         // we don't need the old files any more
         FileUtils.deletedelete(f);
@@ -1056,24 +1134,22 @@ public class ArrayStack implements BLOB {
     }
 
     private static <ReferenceType extends Reference> void merge(
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i1,
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i2,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
+            final Iterator<ReferenceContainer<ReferenceType>> i1,
+            final Iterator<ReferenceContainer<ReferenceType>> i2,
+            final ByteOrder ordering, final MergeWriter<ReferenceType> writer) throws IOException, SpaceExceededException {
         assert i1.hasNext();
         assert i2.hasNext();
         byte[] c1lh, c2lh;
         ReferenceContainer<ReferenceType> c1, c2;
         c1 = i1.next();
         c2 = i2.next();
-        int e, s;
+        int e;
         while (true) {
             assert c1 != null;
             assert c2 != null;
             e = ordering.compare(c1.getTermHash(), c2.getTermHash());
             if (e < 0) {
-            	s = c1.shrinkReferences();
-            	if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-                writer.add(c1.getTermHash(), c1.exportCollection());
+                writer.add(c1, null);
                 if (i1.hasNext()) {
                     c1lh = c1.getTermHash();
                     c1 = i1.next();
@@ -1084,9 +1160,7 @@ public class ArrayStack implements BLOB {
                 break;
             }
             if (e > 0) {
-                s = c2.shrinkReferences();
-                if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-                writer.add(c2.getTermHash(), c2.exportCollection());
+                writer.add(c2, null);
                 if (i2.hasNext()) {
                     c2lh = c2.getTermHash();
                     c2 = i2.next();
@@ -1098,10 +1172,7 @@ public class ArrayStack implements BLOB {
             }
             assert e == 0;
             // merge the entries
-            c1 = c1.merge(c2);
-            s = c1.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
+            writer.add(c1, c2);
             c1lh = c1.getTermHash();
             c2lh = c2.getTermHash();
             if (i1.hasNext() && i2.hasNext()) {
@@ -1129,9 +1200,7 @@ public class ArrayStack implements BLOB {
         assert (c1 == null) || (c2 == null);
         while (c1 != null) {
             //System.out.println("FLUSH REMAINING 1: " + c1.getWordHash());
-            s = c1.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
+            writer.add(c1, null);
             if (i1.hasNext()) {
                 c1lh = c1.getTermHash();
                 c1 = i1.next();
@@ -1142,9 +1211,7 @@ public class ArrayStack implements BLOB {
         }
         while (c2 != null) {
             //System.out.println("FLUSH REMAINING 2: " + c2.getWordHash());
-            s = c2.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-            writer.add(c2.getTermHash(), c2.exportCollection());
+            writer.add(c2, null);
             if (i2.hasNext()) {
                 c2lh = c2.getTermHash();
                 c2 = i2.next();
@@ -1157,18 +1224,15 @@ public class ArrayStack implements BLOB {
     }
 
     private static <ReferenceType extends Reference> void rewrite(
-            final CloneableIterator<ReferenceContainer<ReferenceType>> i,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
+            final Iterator<ReferenceContainer<ReferenceType>> i,
+            final ByteOrder ordering, final MergeWriter<ReferenceType> writer) throws IOException, SpaceExceededException {
         assert i.hasNext();
         byte[] clh;
         ReferenceContainer<ReferenceType> c;
         c = i.next();
-        int s;
         while (true) {
             assert c != null;
-            s = c.shrinkReferences();
-            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
-            writer.add(c.getTermHash(), c.exportCollection());
+            writer.add(c, null);
             if (i.hasNext()) {
                 clh = c.getTermHash();
                 c = i.next();
@@ -1180,6 +1244,204 @@ public class ArrayStack implements BLOB {
         // finished with writing
     }
 
+    /**
+     * merge two containers of the same term and shrink the result
+     * @param c1
+     * @param c2 may be null, then only c1 is shrinked
+     * @return the merged container
+     * @throws SpaceExceededException
+     */
+    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> mergeShrink(
+            final ReferenceContainer<ReferenceType> c1,
+            final ReferenceContainer<ReferenceType> c2) throws SpaceExceededException {
+        final ReferenceContainer<ReferenceType> c = c2 == null ? c1 : c1.merge(c2);
+        final int s = c.shrinkReferences();
+        if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
+        return c;
+    }
+
+    /**
+     * writer for merge results. Without executor, each container is merged and written immediately.
+     * With an executor, the containers are collected in batches of consecutive terms; each batch is a key range
+     * that is merged and exported by the executor while the results are written in key order.
+     */
+    private static class MergeWriter<ReferenceType extends Reference> {
+
+        private static final int batchSize = 64; // number of terms in one key range
+
+        private final HeapWriter writer;
+        private final ExecutorService executor;
+        private final int maxPending;
+        private final ArrayDeque<Future<List<byte[][]>>> pending;
+        private List<ReferenceContainer<ReferenceType>[]> batch;
+
+        private MergeWriter(final HeapWriter writer, final ExecutorService executor) {
+            this.writer = writer;
+            this.executor = executor;
+            this.maxPending = 2 * Runtime.getRuntime().availableProcessors();
+            this.pending = new ArrayDeque<Future<List<byte[][]>>>();
+            this.batch = new ArrayList<ReferenceContainer<ReferenceType>[]>(batchSize);
+        }
+
+        /**
+         * write the merge of two containers of the same term
+         * @param c1
+         * @param c2 may be null to write only c1
+         */
+        private void add(final ReferenceContainer<ReferenceType> c1, final ReferenceContainer<ReferenceType> c2) throws IOException, SpaceExceededException {
+            if (this.executor == null) {
+                final ReferenceContainer<ReferenceType> c = mergeShrink(c1, c2);
+                this.writer.add(c.getTermHash(), c.exportCollection());
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            final ReferenceContainer<ReferenceType>[] pair = (ReferenceContainer<ReferenceType>[]) Array.newInstance(ReferenceContainer.class, 2);
+            pair[0] = c1;
+            pair[1] = c2;
+            this.batch.add(pair);
+            if (this.batch.size() >= batchSize) submit();
+        }
+
+        private void submit() throws IOException, SpaceExceededException {
+            final List<ReferenceContainer<ReferenceType>[]> range = this.batch;
+            this.batch = new ArrayList<ReferenceContainer<ReferenceType>[]>(batchSize);
+            final Callable<List<byte[][]>> task = new Callable<List<byte[][]>>() {
+                @Override
+                public List<byte[][]> call() throws SpaceExceededException {
+                    final List<byte[][]> result = new ArrayList<byte[][]>(range.size());
+                    for (final ReferenceContainer<ReferenceType>[] pair: range) {
+                        final ReferenceContainer<ReferenceType> c = mergeShrink(pair[0], pair[1]);
+                        result.add(new byte[][]{c.getTermHash(), c.exportCollection()});
+                    }
+                    return result;
+                }
+            };
+            Future<List<byte[][]>> future;
+            try {
+                future = this.executor.submit(task);
+            } catch (final RejectedExecutionException e) {
+                // the executor is shutting down; merge this range in the current thread
+                final FutureTask<List<byte[][]>> ft = new FutureTask<List<byte[][]>>(task);
+                ft.run();
+                future = ft;
+            }
+            this.pending.addLast(future);
+            while (this.pending.size() >= this.maxPending) writeFirst();
+        }
+
+        private void writeFirst() throws IOException, SpaceExceededException {
+            final Future<List<byte[][]>> future = this.pending.removeFirst();
+            final List<byte[][]> result;
+            try {
+                result = future.get();
+            } catch (final InterruptedException e) {
+                throw new IOException("merge interrupted");
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof SpaceExceededException) throw (SpaceExceededException) cause;
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause == null ? e.getMessage() : cause.getMessage(), cause);
+            }
+            for (final byte[][] entry: result) this.writer.add(entry[0], entry[1]);
+        }
+
+        /**
+         * write all remaining key ranges
+         */
+        private void finish() throws IOException, SpaceExceededException {
+            if (this.executor == null) return;
+            if (!this.batch.isEmpty()) submit();
+            while (!this.pending.isEmpty()) writeFirst();
+        }
+
+        /**
+         * cancel all key ranges that are not written; does nothing after finish()
+         */
+        private void cancel() {
+            for (final Future<List<byte[][]>> future: this.pending) future.cancel(false);
+            this.pending.clear();
+            this.batch.clear();
+        }
+    }
+
+    /**
+     * iterator of the containers of a blob file which are read by a concurrent thread,
+     * so reading and decoding the input files of a merge overlaps with merging and writing
+     */
+    private static class ReadAheadIterator<ReferenceType extends Reference> extends LookAheadIterator<ReferenceContainer<ReferenceType>> {
+
+        private static final int readAhead = 16; // number of containers that are read ahead
+
+        private final BlockingQueue<ReferenceContainer<ReferenceType>> queue;
+        private final ReferenceContainer<ReferenceType> poison;
+        private final String name;
+        private volatile boolean closed;
+        private volatile IOException failure; // set when the reader stops before the end of the source
+
+        private ReadAheadIterator(final ReferenceIterator<ReferenceType> source, final ReferenceFactory<ReferenceType> factory, final String name) {
+            this.queue = new ArrayBlockingQueue<ReferenceContainer<ReferenceType>>(readAhead);
+            this.poison = new ReferenceContainer<ReferenceType>(factory, null);
+            this.name = name;
+            this.closed = false;
+            this.failure = null;
+            final Thread reader = new Thread("ArrayStack.ReadAheadIterator " + name) {
+                @Override
+                public void run() {
+                    try {
+                        while (!ReadAheadIterator.this.closed && source.hasNext()) {
+                            final ReferenceContainer<ReferenceType> c = source.next();
+                            if (c == null) break;
+                            while (!ReadAheadIterator.this.queue.offer(c, 100, TimeUnit.MILLISECONDS)) {
+                                if (ReadAheadIterator.this.closed) return;
+                            }
+                        }
+                    } catch (final InterruptedException e) {
+                        ReadAheadIterator.this.failure = new InterruptedIOException("read ahead of " + name + " interrupted");
+                    } catch (final Throwable e) {
+                        // the source may be closed after an aborted merge
+                        if (!ReadAheadIterator.this.closed) ConcurrentLog.severe("ArrayStack", "read ahead of " + name + " failed: " + e.getMessage(), e);
+                        ReadAheadIterator.this.failure = new IOException("read ahead of " + name + " failed: " + e.getMessage(), e);
+                    } finally {
+                        try {
+                            while (!ReadAheadIterator.this.queue.offer(ReadAheadIterator.this.poison, 100, TimeUnit.MILLISECONDS)) {
+                                if (ReadAheadIterator.this.closed) break;
+                            }
+                        } catch (final InterruptedException e) {}
+                    }
+                }
+            };
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        @Override
+        protected ReferenceContainer<ReferenceType> next0() {
+            if (this.closed) return null;
+            try {
+                final ReferenceContainer<ReferenceType> c = this.queue.take();
+                if (c == this.poison) {
+                    this.closed = true;
+                    if (this.failure != null) throw new UncheckedIOException(this.failure);
+                    return null;
+                }
+                return c;
+            } catch (final InterruptedException e) {
+                // an end of the input here would let the merge write a truncated file and delete its inputs
+                Thread.currentThread().interrupt();
+                this.close();
+                throw new UncheckedIOException(new InterruptedIOException("merge of " + this.name + " interrupted"));
+            }
+        }
+
+        /**
+         * stop the reader thread; the source iterator must be closed by the caller after that
+         */
+        private void close() {
+            this.closed = true;
+            this.queue.clear();
+        }
+    }
+
     public static void main(final String[] args) {
         final File f = new File("/Users/admin/blobarraytest");
         try {
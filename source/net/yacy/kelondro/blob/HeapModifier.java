@@ -64,6 +64,7 @@ public class HeapModifier extends HeapReader implements BLOB {
      */
     @Override
     public synchronized void clear() throws IOException {
+        unmap();
         this.index.clear();
         this.free.clear();
         this.file.close();
@@ -124,6 +125,7 @@ public class HeapModifier extends HeapReader implements BLOB {
                 throw new IOException(this.heapFile.getName() + ": too long size " + size + " in record at " + seek);
             }
             super.deleteFingerprint();
+            unmap();
 
             // add entry to free array
             this.free.put(seek, size);
@@ -233,7 +235,7 @@ public class HeapModifier extends HeapReader implements BLOB {
                 int size = this.free.get(seek).intValue();
                 if (seek.longValue() + size + 4 != this.file.length()) return;
                 // shrink the file
-                this.file.setLength(seek.longValue());
+                truncate(seek.longValue());
                 this.free.remove(seek);
             }
         } catch (final IOException e) {
@@ -277,6 +279,7 @@ public class HeapModifier extends HeapReader implements BLOB {
                 if (!MemoryControl.request(len, true)) return 0; // not enough memory available for this blob
             }
             super.deleteFingerprint();
+            unmap();
 
             // read the key
             final byte[] keyf = new byte[this.keylength];
@@ -25,10 +25,14 @@
 package net.yacy.kelondro.blob;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
@@ -48,11 +52,15 @@ import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.io.CachedFileWriter;
+import net.yacy.kelondro.io.MappedFile;
 import net.yacy.kelondro.io.Writer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.RotateIterator;
 
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
 
 public class HeapReader {
 
@@ -69,7 +77,12 @@ public class HeapReader {
     protected Writer             file;       // a random access to the file
     protected HandleMap          index;      // key/seek relation for used records
     protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records
+    private   volatile MappedFile mapped;    // read-only memory mapping of the heap file or null if not mapped
+    private   volatile boolean   mapping;    // true if the heap file shall be mapped for read access
+    private   final Object       mapLock = new Object();
     private   File               fingerprintFileIdx, fingerprintFileGap; // files with dumped indexes. Will be deleted if file is written
+    private   File               fingerprintFileBloom; // file with the dumped key filter
+    private   volatile BloomFilter<byte[]> keyFilter; // filter of all keys in the heap, only for heaps without further inserts; null if not used
     private   Date               closeDate;  // records a time when the file was closed; used for debugging
 
     public HeapReader(
@@ -135,6 +148,56 @@ public class HeapReader {
         this.index.optimize();
     }
 
+    /**
+     * switch on the memory mapped read path for this heap. This should only be used for heap files
+     * which are not written any more; every write removes the mapping and the file is mapped again
+     * with the next read. If the limit of mapped files is reached, reads fall back to the file access.
+     */
+    public void map() {
+        this.mapping = true;
+        mapped();
+    }
+
+    /**
+     * @return true if the heap file is currently mapped
+     */
+    public boolean isMapped() {
+        return this.mapped != null;
+    }
+
+    private MappedFile mapped() {
+        MappedFile m = this.mapped;
+        if (m != null || !this.mapping) return m;
+        synchronized (this.mapLock) {
+            if (this.mapped == null && this.mapping && this.index != null) this.mapped = MappedFile.map(this.heapFile);
+            return this.mapped;
+        }
+    }
+
+    /**
+     * remove the mapping of the heap file; this must be called before the file is written
+     */
+    protected void unmap() {
+        synchronized (this.mapLock) {
+            final MappedFile m = this.mapped;
+            this.mapped = null;
+            if (m != null) m.close();
+        }
+    }
+
+    /**
+     * truncate the heap file. The mapping is removed first and the file is not mapped again before it is truncated,
+     * because a read of a mapping beyond the end of the file crashes the virtual machine.
+     * @param length the new length of the file
+     * @throws IOException
+     */
+    protected void truncate(final long length) throws IOException {
+        synchronized (this.mapLock) {
+            unmap();
+            this.file.setLength(length);
+        }
+    }
+
     protected byte[] normalizeKey(byte[] key) {
         // check size of key: zero-filled keys are only possible of the ordering is
         // an instance of the natural ordering. Base64-orderings cannot use zeros in keys.
@@ -220,6 +283,84 @@ public class HeapReader {
             FileUtils.deletedelete(this.fingerprintFileGap);
             this.fingerprintFileGap = null;
         }
+        if (this.fingerprintFileBloom != null) {
+            FileUtils.deletedelete(this.fingerprintFileBloom);
+            this.fingerprintFileBloom = null;
+        }
+    }
+
+    /**
+     * initialize a bloom filter of the keys in this heap. With the filter, lookups for keys which are not
+     * in the heap can be rejected before the index is accessed. The filter is read from a dump next to the
+     * idx and gap dumps if that exists, otherwise it is generated from the index and dumped.
+     * Deletions keep the filter valid, but this must not be used for heaps that get new entries.
+     */
+    public void initKeyFilter() {
+        if (this.index == null || this.keyFilter != null) return;
+        synchronized (this.index) {
+            final String fingerprint = fingerprintFileHash(this.heapFile);
+            final File f = fingerprint == null ? null : HeapWriter.fingerprintBloomFile(this.heapFile, fingerprint);
+            if (f != null && f.exists()) {
+                try {
+                    this.keyFilter = readKeyFilter(f);
+                    this.fingerprintFileBloom = f;
+                    return;
+                } catch (final IOException e) {
+                    log.warn("cannot read key filter " + f.getName() + ", generating a new one: " + e.getMessage());
+                }
+            }
+            final long start = System.currentTimeMillis();
+            this.keyFilter = keyFilter(this.index);
+            if (f != null) try {
+                dumpKeyFilter(this.keyFilter, f);
+                this.fingerprintFileBloom = f;
+                log.info("wrote a key filter for the " + this.index.size() + " index entries of " + this.heapFile.getName() + " in " + (System.currentTimeMillis() - start) + " milliseconds.");
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+            }
+        }
+    }
+
+    /**
+     * test if the heap may contain the key. This is always true if no key filter is initialized.
+     * @param key
+     * @return false if the key is certainly not in the heap
+     */
+    public boolean mightContainKey(final byte[] key) {
+        final BloomFilter<byte[]> filter = this.keyFilter;
+        return filter == null || filter.mightContain(normalizeKey(key));
+    }
+
+    /**
+     * generate a bloom filter from all keys of an index
+     * @param index
+     * @return a filter with a false positive probability of 1%
+     */
+    protected static BloomFilter<byte[]> keyFilter(final HandleMap index) {
+        final BloomFilter<byte[]> filter = BloomFilter.create(Funnels.byteArrayFunnel(), Math.max(1000, index.size()), 0.01d);
+        final Iterator<byte[]> i = index.keys(true, null);
+        while (i.hasNext()) filter.put(i.next());
+        return filter;
+    }
+
+    protected static void dumpKeyFilter(final BloomFilter<byte[]> filter, final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024);
+        try {
+            filter.writeTo(os);
+        } finally {
+            os.close();
+        }
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+
+    private static BloomFilter<byte[]> readKeyFilter(final File file) throws IOException {
+        final InputStream is = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            return BloomFilter.readFrom(is, Funnels.byteArrayFunnel());
+        } finally {
+            is.close();
+        }
     }
 
     protected static String fingerprintFileHash(File f) {
@@ -241,6 +382,7 @@ public class HeapReader {
             if (exception2 != null && l[i].equals(exception2)) continue;
             if (l[i].endsWith(".idx") ||
                 l[i].endsWith(".gap") ||
+                l[i].endsWith(".blm") ||
                 l[i].endsWith(".idx.gz") ||
                 l[i].endsWith(".gap.gz")
                ) FileUtils.deletedelete(new File(d, l[i]));
@@ -489,6 +631,15 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        // read from the mapping without a lock if the file is mapped
+        final MappedFile m = mapped();
+        if (m != null) try {
+            return get(m, key);
+        } catch (final IOException e) {
+            if (!m.isClosed()) throw e;
+            // the mapping was removed by a concurrent write: read from the file
+        }
+
         synchronized (this.index) {
             // check if the index contains the key
             final long pos = this.index.get(key);
@@ -549,6 +700,52 @@ public class HeapReader {
         }
     }
 
+    private byte[] get(final MappedFile m, final byte[] key) throws IOException, SpaceExceededException {
+        final long pos;
+        synchronized (this.index) {
+            pos = this.index.get(key);
+        }
+        if (pos < 0) return null;
+
+        final int len = m.readInt(pos) - this.keylength;
+        if (len < 0) {
+            if (m != this.mapped) return null; // the record was changed concurrently
+            log.severe("file " + this.heapFile + " corrupted at " + pos + ": negative len. len = " + len + ", pk.len = " + this.keylength);
+            synchronized (this.index) {this.index.remove(key);}
+            return null;
+        }
+        long memr = len + this.keylength + 64;
+        if (MemoryControl.available() < memr) {
+            if (!MemoryControl.request(memr, true)) throw new SpaceExceededException(memr, "HeapReader.get()/check"); // not enough memory available for this blob
+        }
+
+        // verify the key
+        final byte[] keyf = new byte[this.keylength];
+        m.readFully(pos + 4, keyf, 0, keyf.length);
+        if (!this.ordering.equal(key, keyf)) {
+            if (m != this.mapped) return null; // the record was deleted concurrently
+            log.severe("indexed verification access failed for " + this.heapFile.toString());
+            synchronized (this.index) {this.index.remove(key);}
+            return null;
+        }
+
+        // read the blob
+        byte[] blob;
+        try {
+            blob = new byte[len];
+        } catch (final OutOfMemoryError e) {
+            // try once again after GC
+            MemoryControl.gc(1000, "HeapReader.get()/blob");
+            try {
+                blob = new byte[len];
+            } catch (final OutOfMemoryError ee) {
+                throw new SpaceExceededException(len, "HeapReader.get()/blob");
+            }
+        }
+        m.readFully(pos + 4 + this.keylength, blob, 0, blob.length);
+        return blob;
+    }
+
     public byte[] get(Object key) {
         if (!(key instanceof byte[])) return null;
         try {
@@ -592,6 +789,12 @@ public class HeapReader {
             if (pos < 0) return -1;
 
             // access the file and read the size of the container
+            final MappedFile m = mapped();
+            if (m != null) try {
+                return m.readInt(pos) - this.keylength;
+            } catch (final IOException e) {
+                if (!m.isClosed()) throw e;
+            }
             this.file.seek(pos);
             return this.file.readInt() - this.keylength;
         }
@@ -602,6 +805,8 @@ public class HeapReader {
      */
     public void close(boolean writeIDX) {
         if (this.index == null) return;
+        this.mapping = false;
+        unmap();
         synchronized (this.index) {
             try {
             if (this.file != null)
@@ -643,6 +848,8 @@ public class HeapReader {
                             this.index.dump(newFingerprintFileIdx);
                             log.info("wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFile.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
                         }
+                        File newFingerprintFileBloom = HeapWriter.fingerprintBloomFile(this.heapFile, fingerprint);
+                        if (this.keyFilter != null && !newFingerprintFileBloom.exists()) dumpKeyFilter(this.keyFilter, newFingerprintFileBloom);
                     }
                     this.index.close();
                     this.index = null;
@@ -654,6 +861,7 @@ public class HeapReader {
             this.free = null;
             if (this.index != null) this.index.close();
             this.index = null;
+            this.keyFilter = null;
             this.closeDate = new Date();
             } catch (Throwable e) {ConcurrentLog.logException(e);}
             log.info("close HeapFile " + this.heapFile.getName() + "; trace: " + ConcurrentLog.stackTrace());
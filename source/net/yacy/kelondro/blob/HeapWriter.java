@@ -162,6 +162,7 @@ public final class HeapWriter {
             } else {
                 new Gap().dump(fingerprintGapFile(this.heapFileREADY, fingerprint));
                 this.index.dump(fingerprintIndexFile(this.heapFileREADY, fingerprint));
+                HeapReader.dumpKeyFilter(HeapReader.keyFilter(this.index), fingerprintBloomFile(this.heapFileREADY, fingerprint));
                 log.info("wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFileREADY.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
             }
             this.index.close();
@@ -180,7 +181,7 @@ public final class HeapWriter {
         FileUtils.deletedelete(f);
         for (String s: l) {
             if (s.startsWith(n) &&
-                (s.endsWith(".idx") || s.endsWith(".gap")))
+                (s.endsWith(".idx") || s.endsWith(".gap") || s.endsWith(".blm")))
                FileUtils.deletedelete(new File(p, s));
         }
     }
@@ -194,4 +195,9 @@ public final class HeapWriter {
         assert f != null;
         return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".gap");
     }
+
+    protected static File fingerprintBloomFile(File f, String fingerprint) {
+        assert f != null;
+        return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".blm");
+    }
 }
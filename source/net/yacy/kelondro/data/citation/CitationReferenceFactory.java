@@ -24,6 +24,7 @@ import java.io.Serializable;
 
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.rwi.ReferenceBlocks;
 import net.yacy.kelondro.rwi.ReferenceFactory;
 
 public class CitationReferenceFactory implements ReferenceFactory<CitationReference>, Serializable {
@@ -45,4 +46,9 @@ public class CitationReferenceFactory implements ReferenceFactory<CitationRefere
         return CitationReference.citationRow;
     }
 
+    @Override
+    public int impact(final CitationReference r) {
+        return Math.min(r.virtualAge(), ReferenceBlocks.MAX_IMPACT); // newer citations first
+    }
+
 }
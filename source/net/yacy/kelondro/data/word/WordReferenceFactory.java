@@ -26,26 +26,42 @@
 
 package net.yacy.kelondro.data.word;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.util.ByteBuffer;
+import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.rwi.ReferenceFactory;
+import net.yacy.kelondro.util.Bitfield;
 
 public class WordReferenceFactory implements ReferenceFactory<WordReference>, Serializable {
 
     private static final long serialVersionUID=-7168706947127349876L;
 
+    /** version tag of the binary transfer format written by {@link #encodeTransfer(Iterable)} */
+    public static final byte TRANSFER_FORMAT_VERSION = 1;
+
     @Override
     public WordReference produceSlow(final Entry e) {
         return new WordReferenceRow(e);
@@ -62,6 +78,22 @@ public class WordReferenceFactory implements ReferenceFactory<WordReference>, Se
         return WordReferenceRow.urlEntryRow;
     }
 
+    /**
+     * the impact of a word reference prefers words which appear often, early in the text, in the title,
+     * in the url or emphasized, and documents with short urls; it follows the default ranking profile
+     */
+    @Override
+    public int impact(final WordReference r) {
+        final Bitfield flags = r.flags();
+        return (Math.min(r.hitcount(), 63) << 4)
+             + (256 - Math.min(r.posintext(), 256))
+             + (256 - Math.min(r.urlcomps() << 5, 256))
+             + (flags.get(WordReferenceRow.flag_app_dc_title) ? 512 : 0)
+             + (flags.get(WordReferenceRow.flag_app_dc_identifier) ? 512 : 0)
+             + (flags.get(WordReferenceRow.flag_app_dc_description) ? 256 : 0)
+             + (flags.get(WordReferenceRow.flag_app_emphasized) ? 256 : 0);
+    }
+
     /**
      * create an index abstract for a given WordReference ReferenceContainer
      * This extracts all the host hashes from a reference Container and returns a byte buffer
@@ -153,4 +185,98 @@ public class WordReferenceFactory implements ReferenceFactory<WordReference>, Se
         //System.out.println("DEBUG-DECOMPRESS: " + target);
         return target;
     }
+
+    /**
+     * encode a set of reference containers into the binary DHT transfer format.
+     * For every term the raw row bytes of its references are written, sorted by url hash.
+     * Each url hash is stored as the length of the prefix it shares with the previous url hash
+     * of the same term followed by the remaining suffix, the whole stream is deflate-compressed.
+     * @param containers the containers to encode
+     * @return the compressed transfer bytes
+     * @throws IOException
+     */
+    public static final byte[] encodeTransfer(final Iterable<ReferenceContainer<WordReference>> containers) throws IOException {
+        final Row rowdef = WordReferenceRow.urlEntryRow;
+        final int keylength = rowdef.primaryKeyLength;
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            final DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(baos, deflater, 4096));
+            out.writeByte(TRANSFER_FORMAT_VERSION);
+            out.writeShort(rowdef.objectsize);
+            int termCount = 0;
+            for (final ReferenceContainer<WordReference> container: containers) if (!container.isEmpty()) termCount++;
+            out.writeInt(termCount);
+            for (final ReferenceContainer<WordReference> container: containers) {
+                if (container.isEmpty()) continue;
+                out.write(container.getTermHash(), 0, keylength);
+                out.writeInt(container.size());
+                byte[] previous = null;
+                byte[] row;
+                int prefix;
+                for (final Row.Entry entry: container) { // iterates in sorted order
+                    row = entry.bytes();
+                    prefix = 0;
+                    if (previous != null) while (prefix < keylength && previous[prefix] == row[prefix]) prefix++;
+                    out.writeByte(prefix);
+                    out.write(row, prefix, rowdef.objectsize - prefix);
+                    previous = row;
+                }
+            }
+            out.close();
+        } finally {
+            deflater.end();
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * decode containers from the binary DHT transfer format written by {@link #encodeTransfer(Iterable)}
+     * @param transfer the compressed transfer bytes
+     * @param maxReferences the maximum number of references to decode, the remaining are dropped
+     * @return the decoded reference containers
+     * @throws IOException if the input is not a well-formed transfer stream
+     */
+    public static final List<ReferenceContainer<WordReference>> decodeTransfer(final byte[] transfer, final int maxReferences) throws IOException {
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        final Row rowdef = WordReferenceRow.urlEntryRow;
+        final int keylength = rowdef.primaryKeyLength;
+        final DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(transfer)));
+        try {
+            final int version = in.readByte();
+            if (version != TRANSFER_FORMAT_VERSION) throw new IOException("unsupported transfer format version " + version);
+            final int objectsize = in.readUnsignedShort();
+            if (objectsize != rowdef.objectsize) throw new IOException("row size mismatch: " + objectsize + ", expected " + rowdef.objectsize);
+            final int termCount = in.readInt();
+            if (termCount < 0) throw new IOException("negative term count");
+            final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>(Math.min(termCount, 1000));
+            int remaining = maxReferences;
+            for (int t = 0; t < termCount && remaining > 0; t++) {
+                final byte[] termHash = new byte[keylength];
+                in.readFully(termHash);
+                final int size = in.readInt();
+                if (size < 0) throw new IOException("negative reference count");
+                final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(factory, termHash, Math.min(size, remaining));
+                byte[] previous = null;
+                for (int r = 0; r < size && remaining > 0; r++) {
+                    final int prefix = in.readUnsignedByte();
+                    if (prefix > keylength || (prefix > 0 && previous == null)) throw new IOException("bad url hash prefix length " + prefix);
+                    final byte[] row = new byte[objectsize];
+                    if (prefix > 0) System.arraycopy(previous, 0, row, 0, prefix);
+                    in.readFully(row, prefix, objectsize - prefix);
+                    container.add(new WordReferenceRow(rowdef.newEntry(row)));
+                    previous = row;
+                    remaining--;
+                }
+                containers.add(container);
+            }
+            return containers;
+        } catch (final EOFException e) {
+            throw new IOException("truncated transfer stream");
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/**
+ *  MappedFile
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A read-only memory mapping of a file which is not changed any more, like the older generations
+ * of an ArrayStack. Reads are done with absolute positions and do not need a file pointer, a
+ * file descriptor or a system call, so concurrent readers do not block each other. A file must not be
+ * truncated before its mapping is closed: {@link #close()} waits until running reads are finished, and
+ * reads after the close fail instead of touching pages which may be beyond the end of the file.
+ * Files larger than the maximum size of a mapped buffer are mapped in several chunks.
+ * The number of files which are mapped at the same time is limited with {@link #setMaxMappedFiles(int)};
+ * by default no file is mapped at all.
+ */
+public final class MappedFile {
+
+    private final static ConcurrentLog log = new ConcurrentLog("MappedFile");
+
+    private final static int defaultChunkSize = 1 << 30;
+
+    private static volatile int maxMappedFiles = 0;
+    private final static AtomicInteger mappedFiles = new AtomicInteger(0);
+    private final static AtomicLong mappedBytes = new AtomicLong(0);
+
+    private final File file;
+    private final long length;
+    private final int chunkSize;
+    private volatile MappedByteBuffer[] chunks; // set to null by close()
+    private final ReentrantReadWriteLock lock; // shared by the reads, exclusive for close()
+
+    /**
+     * set the maximum number of files that are mapped at the same time
+     * @param max the maximum number, 0 to switch off memory mapping
+     */
+    public static void setMaxMappedFiles(final int max) {
+        maxMappedFiles = Math.max(0, max);
+    }
+
+    public static int getMaxMappedFiles() {
+        return maxMappedFiles;
+    }
+
+    /**
+     * @return the number of currently mapped files
+     */
+    public static int mappedFiles() {
+        return mappedFiles.get();
+    }
+
+    /**
+     * @return the sum of the length of all currently mapped files
+     */
+    public static long mappedBytes() {
+        return mappedBytes.get();
+    }
+
+    /**
+     * map a file if the limit of mapped files allows that
+     * @param file
+     * @return the mapping or null if memory mapping is switched off, the limit is reached or the file cannot be mapped
+     */
+    public static MappedFile map(final File file) {
+        return map(file, defaultChunkSize);
+    }
+
+    static MappedFile map(final File file, final int chunkSize) {
+        // reserve a slot
+        while (true) {
+            final int c = mappedFiles.get();
+            if (c >= maxMappedFiles) return null;
+            if (mappedFiles.compareAndSet(c, c + 1)) break;
+        }
+        try {
+            final MappedFile mf = new MappedFile(file, chunkSize);
+            mappedBytes.addAndGet(mf.length);
+            return mf;
+        } catch (final IOException e) {
+            mappedFiles.decrementAndGet();
+            log.warn("cannot map file " + file.toString() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private MappedFile(final File file, final int chunkSize) throws IOException {
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.lock = new ReentrantReadWriteLock();
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            this.length = channel.size();
+            final int count = (int) ((this.length + chunkSize - 1) / chunkSize);
+            this.chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                final long start = (long) i * chunkSize;
+                this.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, this.length - start));
+            }
+        } finally {
+            // a mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    public File file() {
+        return this.file;
+    }
+
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * read bytes at an absolute position. This does not change any shared state and can be called concurrently.
+     * @param pos the position in the file
+     * @param b the target array
+     * @param off the offset in the target array
+     * @param len the number of bytes to read
+     * @throws IOException if the mapping is closed or the range exceeds the file
+     */
+    public void readFully(final long pos, final byte[] b, final int off, final int len) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            readFully(chunks(), pos, b, off, len);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private MappedByteBuffer[] chunks() throws IOException {
+        final MappedByteBuffer[] c = this.chunks;
+        if (c == null) throw new IOException("mapping of " + this.file.toString() + " is closed");
+        return c;
+    }
+
+    private void readFully(final MappedByteBuffer[] c, long pos, final byte[] b, int off, int len) throws IOException {
+        if (pos < 0 || pos + len > this.length) throw new EOFException("read of " + len + " bytes at " + pos + " exceeds " + this.file.toString() + " with length " + this.length);
+        while (len > 0) {
+            final int chunk = (int) (pos / this.chunkSize);
+            final int p = (int) (pos % this.chunkSize);
+            final int l = Math.min(len, this.chunkSize - p);
+            final ByteBuffer bb = c[chunk].duplicate(); // own position for this reader
+            bb.position(p);
+            bb.get(b, off, l);
+            pos += l;
+            off += l;
+            len -= l;
+        }
+    }
+
+    /**
+     * read a big-endian int at an absolute position, like {@link Reader#readInt()}
+     * @param pos the position in the file
+     * @return the int value
+     * @throws IOException if the mapping is closed or the range exceeds the file
+     */
+    public int readInt(final long pos) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            final MappedByteBuffer[] c = chunks();
+            if (pos < 0 || pos + 4 > this.length) throw new EOFException("read of int at " + pos + " exceeds " + this.file.toString() + " with length " + this.length);
+            final int p = (int) (pos % this.chunkSize);
+            if (p + 4 <= this.chunkSize) return c[(int) (pos / this.chunkSize)].getInt(p);
+            final byte[] b = new byte[4];
+            readFully(c, pos, b, 0, 4);
+            return (((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the mapping is closed; reads fail then and must be done on the file
+     */
+    public boolean isClosed() {
+        return this.chunks == null;
+    }
+
+    /**
+     * release the mapping. This waits until all running reads are finished, so the file can be truncated afterwards.
+     * There is no explicit unmap in java: the memory is unmapped by the garbage collector.
+     */
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            if (this.chunks == null) return;
+            this.chunks = null;
+            mappedFiles.decrementAndGet();
+            mappedBytes.addAndGet(-this.length);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,706 @@
+/**
+ *  CompactReferenceContainerCache
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.sorting.Rating;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ByteArray;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.blob.HeapWriter;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A compact alternative to the ReferenceContainerCache as ram buffer of an IndexCell.
+ * Instead of a map from term objects to ReferenceContainer objects, the terms are stored in
+ * an open-addressing hash table made of primitive arrays. The references of all terms are stored
+ * in a shared arena of fixed-size pages, where the references of one term are chained from the
+ * newest to the oldest one. That saves the objects and the growing slack of a RowSet for each term,
+ * and the used memory can be computed exactly from the sizes of the arrays.
+ *
+ * References are appended without a check for a double occurrence of the same url hash within a term.
+ * Double entries are resolved when a container is read or dumped: the most recently added reference
+ * wins. Therefore count() may report a slightly larger number than the size of the container returned by get().
+ *
+ * @param <ReferenceType>
+ */
+public final class CompactReferenceContainerCache<ReferenceType extends Reference> extends AbstractIndex<ReferenceType> implements ReferenceBuffer<ReferenceType> {
+
+    private static final ConcurrentLog log = new ConcurrentLog("CompactReferenceContainerCache");
+
+    private static final int pageShift = 12; // 4096 references on each arena page
+    private static final int pageSize  = 1 << pageShift;
+    private static final int pageMask  = pageSize - 1;
+    private static final int initialCapacity = 1024; // number of term slots, must be a power of 2
+    private static final int arrayOverhead = 16; // header of a java array
+
+    private final int termSize;
+    private final ByteOrder termOrder;
+    private final Row rowdef;
+    private final int rowSize; // size of a reference
+    private final int keySize; // size of the url hash at the beginning of a reference
+
+    // term table with linear probing
+    private byte[] terms;   // the term hashes, termSize bytes for each slot
+    private int[]  heads;   // the newest reference of the term or -1 if the slot is empty
+    private int[]  counts;  // the number of references of the term
+    private int    termCount;
+
+    // reference arena
+    private byte[][] rows;  // pages of references
+    private int[][]  links; // for each reference the next older reference of the same term or the next free reference; -1 terminates
+    private int      allocated; // number of references taken from the arena
+    private int      free;      // first free reference or -1
+    private int      references;
+    private boolean  closed;
+
+    public CompactReferenceContainerCache(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize) {
+        super(factory);
+        assert termOrder != null;
+        this.termOrder = termOrder;
+        this.termSize = termSize;
+        this.rowdef = factory.getRow();
+        this.rowSize = this.rowdef.objectsize;
+        this.keySize = this.rowdef.primaryKeyLength;
+        this.closed = false;
+        init();
+    }
+
+    private void init() {
+        this.terms = new byte[initialCapacity * this.termSize];
+        this.heads = new int[initialCapacity];
+        Arrays.fill(this.heads, -1);
+        this.counts = new int[initialCapacity];
+        this.termCount = 0;
+        this.rows = new byte[0][];
+        this.links = new int[0][];
+        this.allocated = 0;
+        this.free = -1;
+        this.references = 0;
+    }
+
+    @Override
+    public Row rowdef() {
+        return this.rowdef;
+    }
+
+    @Override
+    public int termKeyLength() {
+        return this.termSize;
+    }
+
+    @Override
+    public ByteOrder termKeyOrdering() {
+        return this.termOrder;
+    }
+
+    @Override
+    public int minMem() {
+        return 0;
+    }
+
+    @Override
+    public synchronized void clear() {
+        init();
+    }
+
+    @Override
+    public synchronized void close() {
+        init();
+        this.closed = true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.termCount;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return this.termCount == 0;
+    }
+
+    /**
+     * @return the number of references in the buffer, including double entries
+     */
+    public synchronized int references() {
+        return this.references;
+    }
+
+    @Override
+    public synchronized long usedMemory() {
+        long b = arrayOverhead + this.terms.length + 2L * (arrayOverhead + 4L * this.heads.length);
+        b += 2L * (arrayOverhead + 8L * this.rows.length);
+        for (int p = 0; p < this.rows.length; p++) b += arrayOverhead + this.rows[p].length + arrayOverhead + 4L * this.links[p].length;
+        return b;
+    }
+
+    @Override
+    public synchronized int maxReferences() {
+        int max = 0;
+        for (int i = 0; i < this.counts.length; i++) if (this.counts[i] > max) max = this.counts[i];
+        return max;
+    }
+
+    // term table
+
+    private int hash(final byte[] b, final int offset) {
+        int h = 0;
+        for (int i = 0; i < this.termSize; i++) h = 31 * h + b[offset + i];
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private boolean termEquals(final int slot, final byte[] term) {
+        final int offset = slot * this.termSize;
+        for (int i = 0; i < this.termSize; i++) if (this.terms[offset + i] != term[i]) return false;
+        return true;
+    }
+
+    /**
+     * @param term
+     * @return the slot of the term or -(insertion slot) - 1 if the term is not in the table
+     */
+    private int slot(final byte[] term) {
+        final int mask = this.heads.length - 1;
+        int i = hash(term, 0) & mask;
+        while (this.heads[i] >= 0) {
+            if (termEquals(i, term)) return i;
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    private int find(final byte[] term) {
+        if (term == null || term.length != this.termSize) return -1;
+        final int slot = slot(term);
+        return slot < 0 ? -1 : slot;
+    }
+
+    private byte[] term(final int slot) {
+        final byte[] term = new byte[this.termSize];
+        System.arraycopy(this.terms, slot * this.termSize, term, 0, this.termSize);
+        return term;
+    }
+
+    private void grow() {
+        final byte[] oldTerms = this.terms;
+        final int[] oldHeads = this.heads;
+        final int[] oldCounts = this.counts;
+        final int capacity = oldHeads.length * 2;
+        this.terms = new byte[capacity * this.termSize];
+        this.heads = new int[capacity];
+        Arrays.fill(this.heads, -1);
+        this.counts = new int[capacity];
+        final int mask = capacity - 1;
+        for (int s = 0; s < oldHeads.length; s++) {
+            if (oldHeads[s] < 0) continue;
+            int i = hash(oldTerms, s * this.termSize) & mask;
+            while (this.heads[i] >= 0) i = (i + 1) & mask;
+            System.arraycopy(oldTerms, s * this.termSize, this.terms, i * this.termSize, this.termSize);
+            this.heads[i] = oldHeads[s];
+            this.counts[i] = oldCounts[s];
+        }
+    }
+
+    /**
+     * remove a term from the table without tombstones: following entries of the probe sequence are shifted back
+     * @param slot
+     */
+    private void removeSlot(int slot) {
+        final int mask = this.heads.length - 1;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            if (this.heads[j] < 0) break;
+            final int k = hash(this.terms, j * this.termSize) & mask;
+            // move the entry at j if its home position k is not cyclically within (slot, j]
+            if (slot <= j ? (slot < k && k <= j) : (slot < k || k <= j)) continue;
+            System.arraycopy(this.terms, j * this.termSize, this.terms, slot * this.termSize, this.termSize);
+            this.heads[slot] = this.heads[j];
+            this.counts[slot] = this.counts[j];
+            slot = j;
+        }
+        this.heads[slot] = -1;
+        this.counts[slot] = 0;
+        this.termCount--;
+    }
+
+    // reference arena
+
+    private int link(final int e) {
+        return this.links[e >>> pageShift][e & pageMask];
+    }
+
+    private void setLink(final int e, final int next) {
+        this.links[e >>> pageShift][e & pageMask] = next;
+    }
+
+    private int allocate() throws SpaceExceededException {
+        if (this.free >= 0) {
+            final int e = this.free;
+            this.free = link(e);
+            return e;
+        }
+        final int page = this.allocated >>> pageShift;
+        if (page == this.rows.length) {
+            try {
+                this.rows = Arrays.copyOf(this.rows, page + 1);
+                this.links = Arrays.copyOf(this.links, page + 1);
+                this.rows[page] = new byte[pageSize * this.rowSize];
+                this.links[page] = new int[pageSize];
+            } catch (final OutOfMemoryError e) {
+                this.rows = Arrays.copyOf(this.rows, page);
+                this.links = Arrays.copyOf(this.links, page);
+                throw new SpaceExceededException((long) pageSize * this.rowSize, "CompactReferenceContainerCache.allocate()");
+            }
+        }
+        return this.allocated++;
+    }
+
+    private void release(final int e) {
+        setLink(e, this.free);
+        this.free = e;
+        this.references--;
+    }
+
+    private boolean keyEquals(final int e, final byte[] key) {
+        final byte[] page = this.rows[e >>> pageShift];
+        final int offset = (e & pageMask) * this.rowSize;
+        for (int i = 0; i < this.keySize; i++) if (page[offset + i] != key[i]) return false;
+        return true;
+    }
+
+    private boolean keyEquals(final int e, final int f) {
+        final byte[] pe = this.rows[e >>> pageShift];
+        final byte[] pf = this.rows[f >>> pageShift];
+        final int oe = (e & pageMask) * this.rowSize;
+        final int of = (f & pageMask) * this.rowSize;
+        for (int i = 0; i < this.keySize; i++) if (pe[oe + i] != pf[of + i]) return false;
+        return true;
+    }
+
+    private int keyHash(final int e) {
+        final byte[] page = this.rows[e >>> pageShift];
+        final int offset = (e & pageMask) * this.rowSize;
+        int h = 0;
+        for (int i = 0; i < this.keySize; i++) h = 31 * h + page[offset + i];
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private byte[] key(final int e) {
+        final byte[] key = new byte[this.keySize];
+        System.arraycopy(this.rows[e >>> pageShift], (e & pageMask) * this.rowSize, key, 0, this.keySize);
+        return key;
+    }
+
+    private void addRow(final byte[] term, final Row.Entry row) throws SpaceExceededException {
+        assert row.objectsize() == this.rowSize;
+        int slot = slot(term);
+        if (slot < 0) {
+            if ((this.termCount + 1) * 4 > this.heads.length * 3) {
+                grow();
+                slot = slot(term);
+            }
+            slot = -slot - 1;
+            System.arraycopy(term, 0, this.terms, slot * this.termSize, this.termSize);
+            this.termCount++;
+        }
+        final int e;
+        try {
+            e = allocate();
+        } catch (final SpaceExceededException ee) {
+            if (this.heads[slot] < 0) {
+                this.termCount++; // compensate the decrement in removeSlot
+                removeSlot(slot);
+                this.termCount--;
+            }
+            throw ee;
+        }
+        row.writeToArray(this.rows[e >>> pageShift], (e & pageMask) * this.rowSize);
+        setLink(e, this.heads[slot]);
+        this.heads[slot] = e;
+        this.counts[slot]++;
+        this.references++;
+    }
+
+    // index methods
+
+    @Override
+    public void add(final ReferenceContainer<ReferenceType> container) throws SpaceExceededException {
+        if (container == null || container.isEmpty()) return;
+        final byte[] term = container.getTermHash();
+        if (term == null || term.length != this.termSize) return;
+        synchronized (this) {
+            if (this.closed) return;
+            final Iterator<Row.Entry> i = container.iterator();
+            while (i.hasNext()) addRow(term, i.next());
+        }
+    }
+
+    @Override
+    public void add(final byte[] termHash, final ReferenceType newEntry) throws SpaceExceededException {
+        if (termHash == null || termHash.length != this.termSize) return;
+        final Row.Entry row = newEntry.toKelondroEntry();
+        synchronized (this) {
+            if (this.closed) return;
+            addRow(termHash, row);
+        }
+    }
+
+    @Override
+    public synchronized boolean has(final byte[] termHash) {
+        return find(termHash) >= 0;
+    }
+
+    /**
+     * the number of references of a term, including double entries which are removed when the container is read
+     */
+    @Override
+    public synchronized int count(final byte[] termHash) {
+        final int slot = find(termHash);
+        return slot < 0 ? 0 : this.counts[slot];
+    }
+
+    /**
+     * get a copy of the container of a term
+     * @param termHash
+     * @param urlselection if not null, only the references with these url hashes are returned
+     * @return the container or null if the term is not in the buffer
+     */
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) {
+        final int slot = find(termHash);
+        if (slot < 0) return null;
+        return container(slot, urlselection);
+    }
+
+    private ReferenceContainer<ReferenceType> container(final int slot, final HandleSet urlselection) {
+        final int n = this.counts[slot];
+        final byte[] chunk = new byte[n * this.rowSize];
+        // the table of references which have been copied, to skip older double entries
+        final int[] seen = n > 1 ? new int[Integer.highestOneBit(n * 2 - 1) << 1] : null;
+        final int mask = seen == null ? 0 : seen.length - 1;
+        int c = 0;
+        references: for (int e = this.heads[slot]; e >= 0; e = link(e)) {
+            if (seen != null) {
+                int i = keyHash(e) & mask;
+                while (seen[i] != 0) {
+                    if (keyEquals(seen[i] - 1, e)) continue references;
+                    i = (i + 1) & mask;
+                }
+                seen[i] = e + 1;
+            }
+            if (urlselection != null && !urlselection.has(key(e))) continue;
+            System.arraycopy(this.rows[e >>> pageShift], (e & pageMask) * this.rowSize, chunk, c * this.rowSize, this.rowSize);
+            c++;
+        }
+        return new ReferenceContainer<ReferenceType>(this.factory, term(slot), new RowSet(this.rowdef, c, chunk, 0));
+    }
+
+    private void deleteSlot(final int slot) {
+        int e = this.heads[slot];
+        while (e >= 0) {
+            final int next = link(e);
+            release(e);
+            e = next;
+        }
+        removeSlot(slot);
+    }
+
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> remove(final byte[] termHash) {
+        final int slot = find(termHash);
+        if (slot < 0) return null;
+        final ReferenceContainer<ReferenceType> c = container(slot, null);
+        deleteSlot(slot);
+        return c;
+    }
+
+    @Override
+    public synchronized void delete(final byte[] termHash) {
+        final int slot = find(termHash);
+        if (slot >= 0) deleteSlot(slot);
+    }
+
+    @Override
+    public void removeDelayed(final byte[] termHash, final byte[] urlHashBytes) {
+        remove(termHash, urlHashBytes);
+    }
+
+    @Override
+    public void removeDelayed() {}
+
+    @Override
+    public synchronized boolean remove(final byte[] termHash, final byte[] urlHashBytes) {
+        final int slot = find(termHash);
+        if (slot < 0) return false;
+        return removeReferences(slot, urlHashBytes, null) > 0;
+    }
+
+    @Override
+    public synchronized int remove(final byte[] termHash, final HandleSet urlHashes) {
+        if (urlHashes.isEmpty()) return 0;
+        final int slot = find(termHash);
+        if (slot < 0) return 0;
+        return removeReferences(slot, null, urlHashes);
+    }
+
+    private int removeReferences(final int slot, final byte[] urlHash, final HandleSet urlHashes) {
+        int removed = 0;
+        int prev = -1;
+        int e = this.heads[slot];
+        while (e >= 0) {
+            final int next = link(e);
+            if (urlHash != null ? keyEquals(e, urlHash) : urlHashes.has(key(e))) {
+                if (prev < 0) this.heads[slot] = next; else setLink(prev, next);
+                release(e);
+                this.counts[slot]--;
+                removed++;
+            } else {
+                prev = e;
+            }
+            e = next;
+        }
+        if (this.heads[slot] < 0) removeSlot(slot);
+        return removed;
+    }
+
+    // iteration
+
+    private byte[][] sortedTerms() {
+        final byte[][] t = new byte[this.termCount][];
+        int c = 0;
+        for (int s = 0; s < this.heads.length; s++) if (this.heads[s] >= 0) t[c++] = term(s);
+        Arrays.sort(t, this.termOrder);
+        return t;
+    }
+
+    @Override
+    public synchronized Iterator<ByteArray> keys() {
+        final List<ByteArray> keys = new ArrayList<ByteArray>(this.termCount);
+        for (int s = 0; s < this.heads.length; s++) if (this.heads[s] >= 0) keys.add(new ByteArray(term(s)));
+        return keys.iterator();
+    }
+
+    @Override
+    public Iterator<ReferenceContainer<ReferenceType>> iterator() {
+        return referenceContainerIterator(null, false, false);
+    }
+
+    /**
+     * dump the buffer to a file. The containers are created one after another from the arena, so the dump
+     * needs only memory for a single container in addition to the buffer. If the dump is destructive,
+     * the buffer is cleared afterwards.
+     * @param heapFile
+     * @param writeBuffer
+     * @param destructive
+     */
+    @Override
+    public void dump(final File heapFile, final int writeBuffer, final boolean destructive) {
+        final byte[][] sorted;
+        synchronized (this) {
+            sorted = sortedTerms();
+            log.info("creating rwi heap dump '" + heapFile.getName() + "', " + sorted.length + " rwi's, " + this.references + " references");
+        }
+        if (heapFile.exists()) FileUtils.deletedelete(heapFile);
+        final File tmpFile = new File(heapFile.getParentFile(), heapFile.getName() + ".prt");
+        HeapWriter dump;
+        try {
+            dump = new HeapWriter(tmpFile, heapFile, this.termSize, this.termOrder, writeBuffer);
+        } catch (final IOException e1) {
+            ConcurrentLog.logException(e1);
+            return;
+        }
+        final long startTime = System.currentTimeMillis();
+        long urlcount = 0;
+        for (final byte[] term: sorted) {
+            final ReferenceContainer<ReferenceType> container = get(term, null);
+            if (container == null || container.isEmpty()) continue;
+            try {
+                dump.add(term, container.exportCollection());
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.logException(e);
+            }
+            urlcount += container.size();
+        }
+        if (destructive) clear();
+        try {
+            dump.close(true);
+            log.info("finished rwi heap dump: " + sorted.length + " terms, " + urlcount + " term/data relations in " + (System.currentTimeMillis() - startTime) + " milliseconds");
+        } catch (final IOException e) {
+            log.severe("failed rwi heap dump: " + e.getMessage(), e);
+        } finally {
+            dump = null;
+        }
+    }
+
+    @Override
+    public synchronized CloneableIterator<ReferenceContainer<ReferenceType>> referenceContainerIterator(final byte[] startWordHash, final boolean rot, final boolean excludePrivate) {
+        return new ReferenceContainerIterator(sortedTerms(), startWordHash, rot, excludePrivate);
+    }
+
+    /**
+     * iterator over copies of the containers, in the order of the terms at the time when the iterator was created
+     */
+    private class ReferenceContainerIterator implements CloneableIterator<ReferenceContainer<ReferenceType>> {
+
+        private final boolean rot, excludePrivate;
+        private final byte[][] sorted;
+        private int p;
+        private byte[] latestTermHash;
+
+        private ReferenceContainerIterator(final byte[][] sorted, byte[] startWordHash, final boolean rot, final boolean excludePrivate) {
+            this.sorted = sorted;
+            this.rot = rot;
+            this.excludePrivate = excludePrivate;
+            if (startWordHash != null && startWordHash.length == 0) startWordHash = null;
+            this.p = 0;
+            if (startWordHash != null) {
+                while (this.p < this.sorted.length && CompactReferenceContainerCache.this.termOrder.compare(this.sorted[this.p], startWordHash) < 0) this.p++;
+            }
+            this.latestTermHash = null;
+        }
+
+        @Override
+        public ReferenceContainerIterator clone(final Object secondWordHash) {
+            return new ReferenceContainerIterator(this.sorted, (byte[]) secondWordHash, this.rot, this.excludePrivate);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.rot) return this.sorted.length > 0;
+            return this.p < this.sorted.length;
+        }
+
+        @Override
+        public ReferenceContainer<ReferenceType> next() {
+            for (int round = 0; round < 2; round++) {
+                while (this.p < this.sorted.length) {
+                    this.latestTermHash = this.sorted[this.p++];
+                    if (this.excludePrivate && Word.isPrivate(this.latestTermHash)) continue;
+                    final ReferenceContainer<ReferenceType> c = get(this.latestTermHash, null);
+                    if (c != null) return c;
+                }
+                // rotation iteration
+                if (!this.rot || this.sorted.length == 0) return null;
+                this.p = 0;
+            }
+            return null;
+        }
+
+        @Override
+        public void remove() {
+            if (this.latestTermHash != null) delete(this.latestTermHash);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    public synchronized CloneableIterator<Rating<byte[]>> referenceCountIterator(final byte[] startHash, final boolean rot, final boolean excludePrivate) {
+        final byte[][] sorted = sortedTerms();
+        final List<Rating<byte[]>> ratings = new ArrayList<Rating<byte[]>>(sorted.length);
+        for (final byte[] term: sorted) {
+            if (startHash != null && startHash.length > 0 && this.termOrder.compare(term, startHash) < 0) continue;
+            if (excludePrivate && Word.isPrivate(term)) continue;
+            ratings.add(new Rating<byte[]>(term, this.counts[slot(term)]));
+        }
+        return new ReferenceCountIterator(ratings, rot);
+    }
+
+    private static class ReferenceCountIterator implements CloneableIterator<Rating<byte[]>> {
+
+        private final List<Rating<byte[]>> ratings;
+        private final boolean rot;
+        private int p;
+
+        private ReferenceCountIterator(final List<Rating<byte[]>> ratings, final boolean rot) {
+            this.ratings = ratings;
+            this.rot = rot;
+            this.p = 0;
+        }
+
+        @Override
+        public ReferenceCountIterator clone(final Object modifier) {
+            return new ReferenceCountIterator(this.ratings, this.rot);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.rot) return !this.ratings.isEmpty();
+            return this.p < this.ratings.size();
+        }
+
+        @Override
+        public Rating<byte[]> next() {
+            if (this.p >= this.ratings.size()) {
+                if (!this.rot || this.ratings.isEmpty()) return null;
+                this.p = 0;
+            }
+            return this.ratings.get(this.p++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * return a string with the key as a list
+     */
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder(this.termCount * 13 + 2);
+        sb.append('[');
+        for (int s = 0; s < this.heads.length; s++) {
+            if (this.heads[s] >= 0) sb.append(ASCII.String(this.terms, s * this.termSize, this.termSize)).append(',');
+        }
+        if (sb.length() == 1) sb.append(']'); else sb.setCharAt(sb.length() - 1, ']');
+        return sb.toString();
+    }
+}
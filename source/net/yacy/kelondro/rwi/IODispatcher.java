@@ -27,20 +27,28 @@ package net.yacy.kelondro.rwi;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
 /**
  * this is a concurrent merger that can merge single files that are queued for merging.
  * when several ReferenceContainerArray classes host their ReferenceContainer file arrays,
  * they may share a single ReferenceContainerMerger object which does the sharing for all
- * of them. This is the best way to do the merging, because it does heavy IO access and
- * such access should not be performed concurrently, but queued. This class is the
- * manaagement class for queueing of merge jobs.
+ * of them. This class is the management class for queueing of dump and merge jobs.
+ *
+ * Dumps are done by this thread, one at a time, so a dump of the RAM cache is never blocked by a merge.
+ * Merges are done by a configurable number of merge workers. Merges of large files are split into key ranges
+ * which are merged in parallel by a shared executor.
  *
  * to use this class, first instantiate a object and then start the concurrent execution
  * of merging with a call to the start() - method. To shut down all mergings, call terminate()
@@ -50,23 +58,58 @@ public class IODispatcher extends Thread {
 
     private static final ConcurrentLog log = new ConcurrentLog("IODispatcher");
 
-    private   Semaphore                    controlQueue; // controls that only one io job is running
+    /** merges with input files larger than this are split into key ranges which are merged in parallel */
+    public static final long parallelMergeThreshold = 256L * 1024L * 1024L;
+
+    private   Semaphore                    controlQueue; // controls that only one dump job is running
     private   final Semaphore              termination; // released if thread is safe to terminate
     private   ArrayBlockingQueue<MergeJob> mergeQueue;
     private   ArrayBlockingQueue<DumpJob<? extends Reference>> dumpQueue;
-    private   boolean                      terminate;
+    private   volatile boolean             terminate;
     private final int                      writeBufferSize;
+    private final MergeWorker[]            mergeWorkers;
+    private final ExecutorService          mergeExecutor; // merges key ranges of large files in parallel
+
+    // queue metrics
+    private final AtomicInteger activeMerges;
+    private final AtomicLong dumpCount, dumpTime, mergeCount, mergeTime, mergeBytes, mergeFailures;
 
     public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize) {
+        this(dumpQueueLength, mergeQueueLength, writeBufferSize, 1);
+    }
+
+    /**
+     * @param dumpQueueLength maximum number of waiting dump jobs
+     * @param mergeQueueLength maximum number of waiting merge jobs
+     * @param writeBufferSize maximum write buffer size of one dump or merge job
+     * @param mergeWorkers number of merge jobs which run concurrently
+     */
+    public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize, final int mergeWorkers) {
         this.termination = new Semaphore(0);
         this.controlQueue = new Semaphore(0);
         this.dumpQueue = new ArrayBlockingQueue<DumpJob<? extends Reference>>(dumpQueueLength);
-        this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
+        this.mergeQueue = new ArrayBlockingQueue<MergeJob>(Math.max(mergeQueueLength, mergeWorkers));
         this.writeBufferSize = writeBufferSize;
         this.terminate = false;
+        this.mergeWorkers = new MergeWorker[Math.max(1, mergeWorkers)];
+        for (int i = 0; i < this.mergeWorkers.length; i++) this.mergeWorkers[i] = new MergeWorker(i);
+        this.mergeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new NamePrefixThreadFactory("IODispatcher.merge"));
+        this.activeMerges = new AtomicInteger(0);
+        this.dumpCount = new AtomicLong(0);
+        this.dumpTime = new AtomicLong(0);
+        this.mergeCount = new AtomicLong(0);
+        this.mergeTime = new AtomicLong(0);
+        this.mergeBytes = new AtomicLong(0);
+        this.mergeFailures = new AtomicLong(0);
         this.setName("IODispatcher");
     }
 
+    @Override
+    public synchronized void start() {
+        super.start();
+        for (final MergeWorker worker: this.mergeWorkers) worker.start();
+    }
+
     public void terminate() {
         this.terminate = true; // asure current run() loop will termiate
         if (this.termination != null && this.controlQueue != null && isAlive()) {
@@ -78,10 +121,19 @@ public class IODispatcher extends Thread {
                 ConcurrentLog.logException(e);
             }
         }
+        // the merge workers finish all queued merge jobs before they terminate
+        for (final MergeWorker worker: this.mergeWorkers) {
+            try {
+                worker.join();
+            } catch (final InterruptedException e) {
+                ConcurrentLog.logException(e);
+            }
+        }
+        this.mergeExecutor.shutdown();
     }
 
     @SuppressWarnings("unchecked")
-	protected synchronized void dump(final ReferenceContainerCache<? extends Reference> cache, final File file, final ReferenceContainerArray<? extends Reference> array) {
+	protected synchronized void dump(final ReferenceBuffer<? extends Reference> cache, final File file, final ReferenceContainerArray<? extends Reference> array) {
         if (this.dumpQueue == null || this.controlQueue == null || !isAlive()) {
             log.warn("emergency dump of file " + file.getName());
              if (!cache.isEmpty()) cache.dump(file, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), true);
@@ -107,12 +159,17 @@ public class IODispatcher extends Thread {
         }
     }
 
+    /**
+     * @return the number of dump and merge jobs which are waiting for execution
+     */
     protected synchronized int queueLength() {
-        return (this.controlQueue == null || !isAlive()) ? 0 : this.controlQueue.availablePermits();
+        final ArrayBlockingQueue<DumpJob<? extends Reference>> dq = this.dumpQueue;
+        final ArrayBlockingQueue<MergeJob> mq = this.mergeQueue;
+        return (dq == null || mq == null || !isAlive()) ? 0 : dq.size() + mq.size();
     }
 
     protected synchronized void merge(final File f1, final File f2, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
-        if (this.mergeQueue == null || this.controlQueue == null || !isAlive()) {
+        if (this.mergeQueue == null || this.terminate || !isAlive()) {
             if (f2 == null) {
                 log.warn("emergency rewrite of file " + f1.getName() + " to " + newFile.getName());
             } else {
@@ -121,45 +178,108 @@ public class IODispatcher extends Thread {
             array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
         } else {
             final MergeJob job = new MergeJob(f1, f2, factory, array, newFile);
-            if (isAlive()) {
-                try {
-                    this.mergeQueue.add(job);
-                    if (f2 == null) {
-                        log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName());
-                    } else {
-                        log.info("appended merge job of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
-                    }
-                } catch (final IllegalStateException e) { // because mergeQueue size is 1, IllegalStateException could happen frequently (serial execution ensured in run() )
-                	log.warn("Could not add merge job to queue: " + e.getMessage());
-                } finally {
-                    this.controlQueue.release();
-                }
-            } else {
-                job.merge();
+            try {
+                this.mergeQueue.add(job);
                 if (f2 == null) {
-                    log.warn("dispatcher not running, merged files " + f1.getName() + " to " + newFile.getName());
+                    log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName());
                 } else {
-                    log.warn("dispatcher not running, rewrote file " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
+                    log.info("appended merge job of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
                 }
+            } catch (final IllegalStateException e) { // because mergeQueue size is small, IllegalStateException could happen frequently
+            	log.warn("Could not add merge job to queue: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * @return the number of dump jobs which are waiting for execution
+     */
+    public int dumpQueueSize() {
+        final ArrayBlockingQueue<DumpJob<? extends Reference>> dq = this.dumpQueue;
+        return dq == null ? 0 : dq.size();
+    }
+
+    /**
+     * @return the number of merge jobs which are waiting for execution
+     */
+    public int mergeQueueSize() {
+        final ArrayBlockingQueue<MergeJob> mq = this.mergeQueue;
+        return mq == null ? 0 : mq.size();
+    }
+
+    /**
+     * @return the number of merge workers
+     */
+    public int mergeWorkers() {
+        return this.mergeWorkers.length;
+    }
+
+    /**
+     * @return the number of merge jobs which are currently running
+     */
+    public int activeMerges() {
+        return this.activeMerges.get();
+    }
+
+    /**
+     * @return the number of finished dump jobs
+     */
+    public long dumpCount() {
+        return this.dumpCount.get();
+    }
+
+    /**
+     * @return the accumulated time of all dump jobs in milliseconds
+     */
+    public long dumpTime() {
+        return this.dumpTime.get();
+    }
+
+    /**
+     * @return the number of finished merge jobs
+     */
+    public long mergeCount() {
+        return this.mergeCount.get();
+    }
+
+    /**
+     * @return the accumulated time of all merge jobs in milliseconds
+     */
+    public long mergeTime() {
+        return this.mergeTime.get();
+    }
+
+    /**
+     * @return the accumulated size of all input files of merge jobs in bytes
+     */
+    public long mergeBytes() {
+        return this.mergeBytes.get();
+    }
+
+    /**
+     * @return the number of merge jobs which did not produce a result file
+     */
+    public long mergeFailures() {
+        return this.mergeFailures.get();
+    }
+
     @Override
     public void run() {
-        MergeJob mergeJob;
         DumpJob<? extends Reference> dumpJob;
         try {
             loop: while (true) try {
                 this.controlQueue.acquire();
 
-                // prefer dump actions to flush memory to disc
+                // dump actions flush memory to disc; merges are done by the merge workers
                 if (!this.dumpQueue.isEmpty()) {
                 	File f = null;
                     try {
                         dumpJob = this.dumpQueue.take();
                         f = dumpJob.file;
+                        final long start = System.currentTimeMillis();
                         dumpJob.dump();
+                        this.dumpTime.addAndGet(System.currentTimeMillis() - start);
+                        this.dumpCount.incrementAndGet();
                     } catch (final InterruptedException e) {
                         log.severe("main run job was interrupted (1)", e);
                     } catch (final Throwable e) {
@@ -171,30 +291,6 @@ public class IODispatcher extends Thread {
                     continue loop;
                 }
 
-                // otherwise do a merge operation
-                if (!this.mergeQueue.isEmpty() && !MemoryControl.shortStatus()) {
-                	File f = null, f1 = null, f2 = null;
-                    try {
-                        mergeJob = this.mergeQueue.take();
-                        f = mergeJob.newFile;
-                        f1 = mergeJob.f1;
-                        f2 = mergeJob.f2;
-                        mergeJob.merge();
-                    } catch (final InterruptedException e) {
-                        log.severe("main run job was interrupted (2)", e);
-                    } catch (final Throwable e) {
-                        if (f2 == null) {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input file is " + f1, e);
-                        } else {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input files are " + f1 + " and " + f2, e);
-                        }
-                    } finally {
-                        // make sure (on error) loop never hangs on controlQueue.acquire() (after/on error)
-                        if (this.terminate) this.controlQueue.release();
-                    }
-                    continue loop;
-                }
-
                 // check termination
                 if (this.terminate) {
                     log.info("caught termination signal");
@@ -211,16 +307,67 @@ public class IODispatcher extends Thread {
             log.info("terminating run job");
             this.controlQueue = null;
             this.dumpQueue = null;
-            this.mergeQueue = null;
             this.termination.release();
         }
     }
 
+    /**
+     * a merge worker takes merge jobs from the merge queue until the dispatcher is terminated and the queue is empty
+     */
+    private class MergeWorker extends Thread {
+
+        private MergeWorker(final int number) {
+            super("IODispatcher.MergeWorker-" + number);
+        }
+
+        @Override
+        public void run() {
+            final ArrayBlockingQueue<MergeJob> queue = IODispatcher.this.mergeQueue;
+            while (true) try {
+                // merges need memory; wait until enough is available
+                if (!IODispatcher.this.terminate && MemoryControl.shortStatus()) {
+                    Thread.sleep(1000);
+                    continue;
+                }
+                final MergeJob mergeJob = queue.poll(1000, TimeUnit.MILLISECONDS);
+                if (mergeJob == null) {
+                    if (IODispatcher.this.terminate) break;
+                    continue;
+                }
+                IODispatcher.this.activeMerges.incrementAndGet();
+                final long start = System.currentTimeMillis();
+                try {
+                    final long bytes = mergeJob.f1.length() + (mergeJob.f2 == null ? 0 : mergeJob.f2.length());
+                    if (mergeJob.merge() == null) {
+                        IODispatcher.this.mergeFailures.incrementAndGet();
+                    } else {
+                        IODispatcher.this.mergeBytes.addAndGet(bytes);
+                    }
+                } catch (final Throwable e) {
+                    IODispatcher.this.mergeFailures.incrementAndGet();
+                    if (mergeJob.f2 == null) {
+                        log.severe("merge job had errors, dump to " + mergeJob.newFile + " failed. Input file is " + mergeJob.f1, e);
+                    } else {
+                        log.severe("merge job had errors, dump to " + mergeJob.newFile + " failed. Input files are " + mergeJob.f1 + " and " + mergeJob.f2, e);
+                    }
+                } finally {
+                    IODispatcher.this.mergeTime.addAndGet(System.currentTimeMillis() - start);
+                    IODispatcher.this.mergeCount.incrementAndGet();
+                    IODispatcher.this.activeMerges.decrementAndGet();
+                }
+            } catch (final InterruptedException e) {
+                log.severe("merge worker was interrupted", e);
+                break;
+            }
+            log.info("terminated " + this.getName());
+        }
+    }
+
     private class DumpJob<ReferenceType extends Reference> {
-        private final ReferenceContainerCache<ReferenceType> cache;
+        private final ReferenceBuffer<ReferenceType> cache;
         private final File file;
         private final ReferenceContainerArray<ReferenceType> array;
-        private DumpJob(final ReferenceContainerCache<ReferenceType> cache, final File file, final ReferenceContainerArray<ReferenceType> array) {
+        private DumpJob(final ReferenceBuffer<ReferenceType> cache, final File file, final ReferenceContainerArray<ReferenceType> array) {
             this.cache = cache;
             this.file = file;
             this.array = array;
@@ -263,7 +410,11 @@ public class IODispatcher extends Thread {
         	    log.warn("merge of file (2) " + this.f2.getName() + " failed: file does not exists");
         		return null;
         	}
-            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+        	// concurrent merges share the available memory
+        	final int writeBuffer = (int) Math.min(MemoryControl.available() / 3 / IODispatcher.this.mergeWorkers.length, IODispatcher.this.writeBufferSize);
+        	final long size = this.f1.length() + (this.f2 == null ? 0 : this.f2.length());
+            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, writeBuffer,
+                    size >= parallelMergeThreshold ? IODispatcher.this.mergeExecutor : null);
         }
     }
 
@@ -31,9 +31,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.order.Order;
@@ -67,9 +71,21 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private static final long cleanupCycle =  60000;
     private static final long dumpCycle    = 600000;
 
+    /**
+     * if true, the ram buffer is a CompactReferenceContainerCache which stores the references in primitive arrays
+     * instead of a ReferenceContainer object for each term
+     */
+    public static boolean compactBuffer = false;
+
+    /**
+     * the minimum number of references in the file array of a term for which the references are also
+     * kept as ReferenceBlocks for top-k searches; 0 switches the blocks off
+     */
+    public static int blockMinReferences = 0;
+
     // class variables
     private final ReferenceContainerArray<ReferenceType> array;
-    private       ReferenceContainerCache<ReferenceType> ram;
+    private       ReferenceBuffer<ReferenceType>         ram;
     private final ComparableARC<byte[], Integer>         countCache;
     private       int                                    maxRamEntries;
     private       IODispatcher                           merger; // pointer to shared merger
@@ -80,6 +96,8 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private final Map<byte[], HandleSet>                 removeDelayedURLs; // mapping from word hashes to a list of url hashes
     private       boolean                                flushShallRun;
     private final Thread                                 flushThread;
+    private final ReferenceBlockStore<ReferenceType>     blocks;
+    private final Set<String>                            staleBlocks; // terms with blocks which miss references
 
     public IndexCell(
             final File cellPath,
@@ -97,7 +115,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
         this.merger = merger;
         this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize);
-        this.ram = new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
+        this.ram = newBuffer(factory, termOrder, termSize);
         this.countCache = new ComparableARC<byte[], Integer>(1000, termOrder);
         this.maxRamEntries = maxRamEntries;
         this.lastCleanup = System.currentTimeMillis();
@@ -106,11 +124,18 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         this.maxFileSize = maxFileSize;
         this.writeBufferSize = writeBufferSize;
         this.removeDelayedURLs = new TreeMap<byte[], HandleSet>(Word.commonHashOrder);
+        this.blocks = new ReferenceBlockStore<ReferenceType>(new File(cellPath, prefix + ".blocks"), factory, ReferenceBlocks.DEFAULT_BLOCK_SIZE);
+        this.staleBlocks = ConcurrentHashMap.newKeySet();
         this.flushShallRun = true;
         this.flushThread = new FlushThread(cellPath.toString());
         this.flushThread.start();
     }
 
+    private static <ReferenceType extends Reference> ReferenceBuffer<ReferenceType> newBuffer(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize) {
+        if (compactBuffer) return new CompactReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
+        return new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
+    }
+
     private class FlushThread extends Thread {
         public FlushThread(String name) {
             this.setName("IndexCell.FlushThread(" + name + ")");
@@ -123,6 +148,11 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
                 } catch (final Throwable e) {
                     ConcurrentLog.logException(e);
                 }
+                try {
+                    rewriteStaleBlocks();
+                } catch (final Throwable e) {
+                    ConcurrentLog.logException(e);
+                }
                 try { Thread.sleep(3000); } catch (final InterruptedException e) {}
             }
         }
@@ -145,13 +175,13 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
                         final File dumpFile = IndexCell.this.array.newContainerBLOBFile();
                         // a critical point: when the ram is handed to the dump job,
                         // don't write into it any more. Use a fresh one instead
-                        ReferenceContainerCache<ReferenceType> ramdump;
+                        ReferenceBuffer<ReferenceType> ramdump;
                         final ByteOrder termOrder = IndexCell.this.ram.termKeyOrdering();
                         final int termSize = IndexCell.this.ram.termKeyLength();
                         synchronized (this) {
                             ramdump = IndexCell.this.ram;
                             // get a fresh ram cache
-                            IndexCell.this.ram = new ReferenceContainerCache<ReferenceType>(IndexCell.this.factory, termOrder, termSize);
+                            IndexCell.this.ram = newBuffer(IndexCell.this.factory, termOrder, termSize);
                         }
                         // WARNING : if this cell is queried before this dump termination, terms are no longer in the cache and would therefore not be found
                         // dump the buffer
@@ -182,6 +212,76 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     }
 
+    private void rewriteStaleBlocks() throws IOException {
+        final Iterator<String> i = this.staleBlocks.iterator();
+        while (i.hasNext() && this.flushShallRun) {
+            final String term = i.next();
+            i.remove();
+            writeBlocks(ASCII.getBytes(term));
+        }
+    }
+
+    private void writeBlocks(final byte[] termHash) throws IOException {
+        final int count = this.array.count(termHash);
+        if (blockMinReferences <= 0 || count < blockMinReferences) {
+            this.blocks.delete(termHash);
+            return;
+        }
+        final ReferenceContainer<ReferenceType> c;
+        try {
+            c = this.array.get(termHash);
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (c == null) {
+            this.blocks.delete(termHash);
+            return;
+        }
+        this.blocks.put(termHash, c, count);
+    }
+
+    /**
+     * get the references of a term as blocks for a top-k search. Blocks of the references in the file array are only
+     * kept for terms with at least blockMinReferences references; they are written when they are requested the first time.
+     * When the term got new references in the file array, the outdated blocks are returned and rewritten by the flush thread.
+     * @param termHash
+     * @return null if the term has no blocks, otherwise the blocks of the file array and, if the ram buffer has references
+     * of the term, blocks of the ram buffer. The blocks must be closed after use.
+     * @throws IOException
+     */
+    public List<ReferenceBlocks<ReferenceType>> getBlocks(final byte[] termHash) throws IOException {
+        if (blockMinReferences <= 0) return null;
+        final int count = this.array.count(termHash);
+        if (count < blockMinReferences) return null;
+        ReferenceBlocks<ReferenceType> fileBlocks = this.blocks.get(termHash);
+        if (fileBlocks == null) {
+            writeBlocks(termHash);
+            fileBlocks = this.blocks.get(termHash);
+            if (fileBlocks == null) return null;
+        } else if (fileBlocks.sourceCount() != count) {
+            this.staleBlocks.add(ASCII.String(termHash));
+        }
+        final List<ReferenceBlocks<ReferenceType>> parts = new ArrayList<ReferenceBlocks<ReferenceType>>(2);
+        parts.add(fileBlocks);
+        final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, null);
+        if (c0 != null && !c0.isEmpty()) parts.add(ReferenceBlocks.of(this.factory, c0, ReferenceBlocks.DEFAULT_BLOCK_SIZE));
+        return parts;
+    }
+
+    /**
+     * create a top-k search over the terms of this cell
+     * @param maxCount the number of candidates which are selected with the block maxima of the terms
+     * @see TermSearch#TermSearch(IndexCell, HandleSet, HandleSet, ReferenceFactory, int, int)
+     */
+    public TermSearch<ReferenceType> query(
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            final ReferenceFactory<ReferenceType> termFactory,
+            final int maxDistance,
+            final int maxCount) throws SpaceExceededException {
+        return new TermSearch<ReferenceType>(this, queryHashes, excludeHashes, termFactory, maxDistance, maxCount);
+    }
+
     private boolean shrink(final long targetFileSize, final long maxFileSize) {
         if (this.array.entries() < 2) return false;
         boolean donesomething = false;
@@ -345,6 +445,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      * all containers in the BLOBs and the RAM are merged and returned.
      * Please be aware that the returned values may be top-level cloned ReferenceContainers or direct links to containers
      * If the containers are modified after they are returned, they MAY alter the stored index.
+     * If a url selection is given and the term has blocks, only the references of the selected urls are read from the file array.
      * @throws IOException
      * @return a container with merged ReferenceContainer from RAM and the file array or null if there is no data to be returned
      */
@@ -352,10 +453,14 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) throws IOException {
         final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, null);
         ReferenceContainer<ReferenceType> c1 = null;
+        final ReferenceBlocks<ReferenceType> fileBlocks = urlselection == null || blockMinReferences <= 0 ? null : this.blocks.get(termHash);
         try {
-            c1 = this.array.get(termHash);
+            // outdated blocks miss the references of newer dumps
+            c1 = fileBlocks == null || fileBlocks.sourceCount() != this.array.count(termHash) ? this.array.get(termHash) : fileBlocks.select(termHash, urlselection);
         } catch (final SpaceExceededException e2) {
             ConcurrentLog.logException(e2);
+        } finally {
+            if (fileBlocks != null) fileBlocks.close();
         }
         ReferenceContainer<ReferenceType> result = null;
         if (c0 != null && c1 != null) {
@@ -401,6 +506,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         if (c1 != null) {
             this.array.delete(termHash);
         }
+        this.blocks.delete(termHash);
         final ReferenceContainer<ReferenceType> c0 = this.ram.remove(termHash);
         if (c1 == null) return c0;
         if (c0 == null) return c1;
@@ -429,6 +535,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         if (c1 != null) {
             this.array.delete(termHash);
         }
+        this.blocks.delete(termHash);
         this.ram.delete(termHash);
         return;
     }
@@ -488,6 +595,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
             reduced = 0;
             ConcurrentLog.warn("IndexCell", "not possible to remove urlHashes from a RWI because of too low memory. Remove was not applied. Please increase RAM assignment");
         }
+        if (reduced > 0) this.blocks.delete(termHash); // the blocks would still contain the removed references
         //assert this.array.mem() <= am : "am = " + am + ", array.mem() = " + this.array.mem();
         return removed + (reduced / this.array.rowdef().objectsize);
     }
@@ -504,6 +612,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
             reduced = 0;
             ConcurrentLog.warn("IndexCell", "not possible to remove urlHashes from a RWI because of too low memory. Remove was not applied. Please increase RAM assignment");
         }
+        if (reduced > 0) this.blocks.delete(termHash); // the blocks would still contain the removed reference
         //assert this.array.mem() <= am : "am = " + am + ", array.mem() = " + this.array.mem();
         return removed || (reduced > 0);
     }
@@ -579,6 +688,8 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         this.removeDelayedURLs.clear();
         this.ram.clear();
         this.array.clear();
+        this.staleBlocks.clear();
+        this.blocks.clear();
         if (Switchboard.getSwitchboard() != null &&
                 Switchboard.getSwitchboard().peers != null &&
                 Switchboard.getSwitchboard().peers.mySeed() != null) Switchboard.getSwitchboard().peers.mySeed().resetCounters();
@@ -0,0 +1,131 @@
+/**
+ *  ReferenceBlockStore
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import net.yacy.cora.order.Digest;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A directory with one ReferenceBlocks file for every term which has many references.
+ * The files are named by the hex-encoded term hash, because term hashes are case-sensitive.
+ * A file is written to a unique temporary file first and then renamed, so readers never see a partial file.
+ */
+public class ReferenceBlockStore<ReferenceType extends Reference> {
+
+    private static final String SUFFIX = ".rwb";
+
+    private final File path;
+    private final ReferenceFactory<ReferenceType> factory;
+    private final int blockSize;
+
+    /**
+     * @param path the directory of the blocks files; it is created when the first file is written
+     * @param factory the factory of the references
+     * @param blockSize the number of references in a block
+     */
+    public ReferenceBlockStore(final File path, final ReferenceFactory<ReferenceType> factory, final int blockSize) {
+        this.path = path;
+        this.factory = factory;
+        this.blockSize = blockSize;
+        // remove the temporary files of writes which were interrupted by a shutdown
+        final String[] files = path.list();
+        if (files != null) for (final String name: files) {
+            if (isTemporary(name)) FileUtils.deletedelete(new File(path, name));
+        }
+    }
+
+    private static boolean isTemporary(final String name) {
+        return name.endsWith(".tmp") && name.contains(SUFFIX + ".");
+    }
+
+    private File file(final byte[] termHash) {
+        return new File(this.path, Digest.encodeHex(termHash) + SUFFIX);
+    }
+
+    /**
+     * @return true if there are blocks for the term
+     */
+    public boolean has(final byte[] termHash) {
+        return file(termHash).exists();
+    }
+
+    /**
+     * open the blocks of a term
+     * @param termHash
+     * @return the blocks, which must be closed after use, or null if there are no blocks for the term
+     */
+    public ReferenceBlocks<ReferenceType> get(final byte[] termHash) {
+        final File f = file(termHash);
+        if (!f.exists()) return null;
+        try {
+            return ReferenceBlocks.open(this.factory, f);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("ReferenceBlockStore", "deleted unreadable blocks file " + f.toString() + ": " + e.getMessage());
+            FileUtils.deletedelete(f);
+            return null;
+        }
+    }
+
+    /**
+     * write the blocks of a term, replacing existing blocks
+     * @param termHash
+     * @param container all references of the term
+     * @param sourceCount the number of references of the term in the index
+     * @throws IOException
+     */
+    public void put(final byte[] termHash, final ReferenceContainer<ReferenceType> container, final long sourceCount) throws IOException {
+        if (!this.path.exists() && !this.path.mkdirs()) throw new IOException("cannot create " + this.path.toString());
+        final File f = file(termHash);
+        // a unique temporary file: a search and the flush thread may write the blocks of the same term at the same time
+        final File tmp = File.createTempFile(f.getName() + ".", ".tmp", this.path);
+        try {
+            ReferenceBlocks.write(this.factory, container, this.blockSize, sourceCount, tmp);
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE); // replaces the blocks of the term without a moment in which the file is missing
+        } catch (final IOException e) {
+            FileUtils.deletedelete(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * delete the blocks of a term
+     */
+    public void delete(final byte[] termHash) {
+        final File f = file(termHash);
+        if (f.exists()) FileUtils.deletedelete(f);
+    }
+
+    /**
+     * delete the blocks of all terms
+     */
+    public void clear() {
+        final String[] files = this.path.list();
+        if (files == null) return;
+        for (final String name: files) {
+            if (name.endsWith(SUFFIX) || isTemporary(name)) FileUtils.deletedelete(new File(this.path, name));
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ *  ReferenceBlocks
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.Row;
+
+/**
+ * A read-only, block structured form of the references of one term which supports top-k searches
+ * without decoding all references. The references are sorted by their primary key (the url hash) and
+ * cut into blocks of a fixed number of rows. A block table holds the last key of every block, which
+ * serves as skip pointer, and the maximum impact of the references in the block. The impact of a
+ * reference is a static score computed by ReferenceFactory.impact; it is stored for every row, so
+ * that candidates can be scored without decoding the rows.
+ *
+ * The format is:
+ * <pre>
+ * header     : int magic, int row size, int block size, int row count, long source count
+ * block table: for every block the last key (primary key length bytes) and the maximum impact (int)
+ * impacts    : for every row the impact as unsigned short
+ * rows       : the sorted rows in the format of the reference row definition
+ * </pre>
+ * The source count is the number of references in the index at the time the blocks were written;
+ * it is used to find out if the blocks are outdated.
+ * Blocks can be read from a file, in which case only the header and the block table are held in ram
+ * and the impacts and rows of a block are read on demand, or from a byte array.
+ */
+public final class ReferenceBlocks<ReferenceType extends Reference> implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+    public static final int MAX_IMPACT = 0xffff;
+
+    private static final int MAGIC = 0x52574231; // "RWB1"
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+
+    private final ReferenceFactory<ReferenceType> factory;
+    private final Row rowdef;
+    private final ByteOrder order;
+    private final int keylength;
+    private final int blockSize;
+    private final int size;
+    private final int blockCount;
+    private final long sourceCount;
+    private final byte[] lastKeys; // blockCount * keylength
+    private final int[] blockMax;
+    private final long impactOffset, rowOffset;
+    private final byte[] data; // the complete encoded blocks, or null if the blocks are read from a file
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private ReferenceBlocks(final ReferenceFactory<ReferenceType> factory, final byte[] data, final RandomAccessFile file) throws IOException {
+        this.factory = factory;
+        this.rowdef = factory.getRow();
+        this.order = this.rowdef.objectOrder;
+        this.keylength = this.rowdef.primaryKeyLength;
+        this.data = data;
+        this.file = file;
+        this.channel = file == null ? null : file.getChannel();
+        final long length = data == null ? this.channel.size() : data.length;
+        if (length < HEADER_SIZE) throw new IOException("reference blocks too short: " + length);
+        final ByteBuffer header = ByteBuffer.wrap(read(0, HEADER_SIZE));
+        if (header.getInt() != MAGIC) throw new IOException("wrong reference blocks format");
+        if (header.getInt() != this.rowdef.objectsize) throw new IOException("reference blocks have a wrong row size");
+        this.blockSize = header.getInt();
+        this.size = header.getInt();
+        this.sourceCount = header.getLong();
+        if (this.blockSize <= 0 || this.size < 0) throw new IOException("wrong reference blocks header");
+        this.blockCount = (this.size + this.blockSize - 1) / this.blockSize;
+        final int tableEntry = this.keylength + 4;
+        this.impactOffset = HEADER_SIZE + ((long) this.blockCount) * tableEntry;
+        this.rowOffset = this.impactOffset + 2L * this.size;
+        if (length != this.rowOffset + ((long) this.size) * this.rowdef.objectsize) throw new IOException("reference blocks have a wrong length: " + length);
+        final ByteBuffer table = ByteBuffer.wrap(read(HEADER_SIZE, this.blockCount * tableEntry));
+        this.lastKeys = new byte[this.blockCount * this.keylength];
+        this.blockMax = new int[this.blockCount];
+        for (int b = 0; b < this.blockCount; b++) {
+            table.get(this.lastKeys, b * this.keylength, this.keylength);
+            this.blockMax[b] = table.getInt();
+        }
+    }
+
+    /**
+     * open reference blocks which had been written to a file
+     * @param factory the factory of the references
+     * @param f the file
+     * @return the blocks; they must be closed after use
+     * @throws IOException if the file cannot be read or has a wrong format
+     */
+    public static <ReferenceType extends Reference> ReferenceBlocks<ReferenceType> open(final ReferenceFactory<ReferenceType> factory, final File f) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            return new ReferenceBlocks<ReferenceType>(factory, null, raf);
+        } catch (final IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * encode a container into blocks in ram
+     * @param container the references; the container is sorted by this method
+     * @param blockSize the number of rows in a block
+     * @return the blocks
+     */
+    public static <ReferenceType extends Reference> ReferenceBlocks<ReferenceType> of(final ReferenceFactory<ReferenceType> factory, final ReferenceContainer<ReferenceType> container, final int blockSize) {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + container.size() * (factory.getRow().objectsize + 2) + (container.size() / blockSize + 1) * (factory.getRow().primaryKeyLength + 4));
+        try {
+            write(factory, container, blockSize, container.size(), bos);
+            return new ReferenceBlocks<ReferenceType>(factory, bos.toByteArray(), null);
+        } catch (final IOException e) {
+            throw new AssertionError(e); // cannot happen with a byte array stream
+        }
+    }
+
+    /**
+     * write a container as blocks into a file
+     * @param container the references; the container is sorted by this method
+     * @param blockSize the number of rows in a block
+     * @param sourceCount the number of references of the term in the index, stored to detect outdated blocks
+     * @param f the target file
+     * @throws IOException
+     */
+    public static <ReferenceType extends Reference> void write(final ReferenceFactory<ReferenceType> factory, final ReferenceContainer<ReferenceType> container, final int blockSize, final long sourceCount, final File f) throws IOException {
+        final OutputStream os = new BufferedOutputStream(new FileOutputStream(f), 64 * 1024);
+        try {
+            write(factory, container, blockSize, sourceCount, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static <ReferenceType extends Reference> void write(final ReferenceFactory<ReferenceType> factory, final ReferenceContainer<ReferenceType> container, final int blockSize, final long sourceCount, final OutputStream os) throws IOException {
+        assert blockSize > 0;
+        final Row rowdef = factory.getRow();
+        container.sort();
+
+        // collect the rows without double keys and compute their impact
+        final int[] rows = new int[container.size()];
+        final char[] impacts = new char[container.size()];
+        int size = 0;
+        byte[] lastKey = null;
+        for (int i = 0; i < container.size(); i++) {
+            final Row.Entry entry = container.get(i, false);
+            if (entry == null) continue;
+            final byte[] key = entry.getPrimaryKeyBytes();
+            if (lastKey != null && rowdef.objectOrder.equal(lastKey, key)) continue;
+            lastKey = key;
+            rows[size] = i;
+            impacts[size] = (char) Math.max(0, Math.min(MAX_IMPACT, factory.impact(factory.produceSlow(entry))));
+            size++;
+        }
+
+        final DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(rowdef.objectsize);
+        out.writeInt(blockSize);
+        out.writeInt(size);
+        out.writeLong(sourceCount);
+        for (int start = 0; start < size; start += blockSize) {
+            final int end = Math.min(size, start + blockSize);
+            int max = 0;
+            for (int i = start; i < end; i++) max = Math.max(max, impacts[i]);
+            out.write(container.get(rows[end - 1], false).getPrimaryKeyBytes(), 0, rowdef.primaryKeyLength);
+            out.writeInt(max);
+        }
+        for (int i = 0; i < size; i++) out.writeChar(impacts[i]);
+        final byte[] row = new byte[rowdef.objectsize];
+        for (int i = 0; i < size; i++) {
+            container.get(rows[i], false).writeToArray(row, 0);
+            out.write(row);
+        }
+        out.flush();
+    }
+
+    private byte[] read(final long pos, final int len) throws IOException {
+        final byte[] b = new byte[len];
+        if (this.data != null) {
+            System.arraycopy(this.data, (int) pos, b, 0, len);
+            return b;
+        }
+        final ByteBuffer bb = ByteBuffer.wrap(b);
+        long p = pos;
+        while (bb.hasRemaining()) {
+            final int r = this.channel.read(bb, p);
+            if (r < 0) throw new EOFException("reference blocks truncated at " + p);
+            p += r;
+        }
+        return b;
+    }
+
+    /**
+     * @return the number of references
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of blocks
+     */
+    public int blocks() {
+        return this.blockCount;
+    }
+
+    /**
+     * @return the number of references of the term in the index at the time the blocks were written
+     */
+    public long sourceCount() {
+        return this.sourceCount;
+    }
+
+    /**
+     * @param block the block number
+     * @return the maximum impact of all references in the block
+     */
+    public int blockMax(final int block) {
+        return this.blockMax[block];
+    }
+
+    /**
+     * compare the last key of a block with a given key
+     * @return a negative number if the last key of the block is smaller than the key, 0 if it is equal, a positive number otherwise
+     */
+    public int compareLastKey(final int block, final byte[] key) {
+        return this.order.compare(this.lastKeys, block * this.keylength, key, 0, this.keylength);
+    }
+
+    /**
+     * @param block the block number
+     * @return a copy of the last key of the block
+     */
+    public byte[] lastKey(final int block) {
+        final byte[] key = new byte[this.keylength];
+        System.arraycopy(this.lastKeys, block * this.keylength, key, 0, this.keylength);
+        return key;
+    }
+
+    /**
+     * follow the skip pointers to the block which may contain a key
+     * @param key the key
+     * @param from the first block to consider
+     * @return the number of the first block at or after from with a last key which is not smaller than the key,
+     * or blocks() if all references are smaller than the key
+     */
+    public int seekBlock(final byte[] key, final int from) {
+        if (from >= this.blockCount) return this.blockCount;
+        if (compareLastKey(from, key) >= 0) return from;
+        // gallop over the skip pointers, then search in the last step
+        int lo = from, step = 1;
+        int hi = from + step;
+        while (hi < this.blockCount && compareLastKey(hi, key) < 0) {
+            lo = hi;
+            step <<= 1;
+            hi = from + step;
+        }
+        if (hi >= this.blockCount) hi = this.blockCount;
+        // invariant: lastKey(lo) < key, lastKey(hi) >= key or hi == blockCount
+        while (hi - lo > 1) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareLastKey(mid, key) < 0) lo = mid; else hi = mid;
+        }
+        return hi;
+    }
+
+    /**
+     * read the impacts and rows of a block
+     * @param block the block number
+     * @return the block
+     * @throws IOException
+     */
+    public Block block(final int block) throws IOException {
+        final int first = block * this.blockSize;
+        final int count = Math.min(this.blockSize, this.size - first);
+        final byte[] impacts = read(this.impactOffset + 2L * first, 2 * count);
+        final byte[] rows = read(this.rowOffset + ((long) first) * this.rowdef.objectsize, count * this.rowdef.objectsize);
+        return new Block(block, count, impacts, rows);
+    }
+
+    /**
+     * read the references of a selection of urls
+     * @param termHash the term of the references
+     * @param urlselection the url hashes of the references which shall be read
+     * @return a container with all references of the selection which exist in the blocks
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public ReferenceContainer<ReferenceType> select(final byte[] termHash, final HandleSet urlselection) throws IOException, SpaceExceededException {
+        final ReferenceContainer<ReferenceType> c = new ReferenceContainer<ReferenceType>(this.factory, termHash, urlselection.size());
+        Block block = null;
+        for (final byte[] key: urlselection) {
+            final int b = seekBlock(key, 0);
+            if (b >= this.blockCount) continue;
+            if (block == null || block.number() != b) block = block(b);
+            final int i = block.find(key, 0);
+            if (i < block.count() && block.compare(i, key) == 0) c.add(block.get(i));
+        }
+        return c;
+    }
+
+    @Override
+    public void close() {
+        if (this.file != null) try {
+            this.file.close();
+        } catch (final IOException e) {}
+    }
+
+    /**
+     * the decoded impacts and the rows of one block
+     */
+    public final class Block {
+
+        private final int number, count;
+        private final byte[] impacts, rows;
+
+        private Block(final int number, final int count, final byte[] impacts, final byte[] rows) {
+            this.number = number;
+            this.count = count;
+            this.impacts = impacts;
+            this.rows = rows;
+        }
+
+        /**
+         * @return the number of the block
+         */
+        public int number() {
+            return this.number;
+        }
+
+        /**
+         * @return the number of references in the block
+         */
+        public int count() {
+            return this.count;
+        }
+
+        /**
+         * @return the index of the first row in the block with a key which is not smaller than the given key,
+         * or count() if all keys are smaller
+         */
+        public int find(final byte[] key, final int from) {
+            int lo = from, hi = this.count;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (compare(mid, key) < 0) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * compare the key of a row with a given key
+         */
+        public int compare(final int i, final byte[] key) {
+            return ReferenceBlocks.this.order.compare(this.rows, i * ReferenceBlocks.this.rowdef.objectsize, key, 0, ReferenceBlocks.this.keylength);
+        }
+
+        /**
+         * @return a copy of the key of a row
+         */
+        public byte[] key(final int i) {
+            final byte[] key = new byte[ReferenceBlocks.this.keylength];
+            System.arraycopy(this.rows, i * ReferenceBlocks.this.rowdef.objectsize, key, 0, ReferenceBlocks.this.keylength);
+            return key;
+        }
+
+        /**
+         * @return the impact of a row
+         */
+        public int impact(final int i) {
+            return ((this.impacts[2 * i] & 0xff) << 8) | (this.impacts[2 * i + 1] & 0xff);
+        }
+
+        /**
+         * @return the reference of a row
+         */
+        public ReferenceType get(final int i) {
+            return ReferenceBlocks.this.factory.produceSlow(ReferenceBlocks.this.rowdef.newEntry(this.rows, i * ReferenceBlocks.this.rowdef.objectsize, true));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *  ReferenceBuffer
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.io.File;
+import java.util.Iterator;
+
+import net.yacy.cora.util.ByteArray;
+import net.yacy.kelondro.index.Row;
+
+/**
+ * A ReferenceBuffer is the ram buffer of an IndexCell: it collects new references until it is
+ * dumped to a BLOB file which becomes a new generation of the ReferenceContainerArray.
+ *
+ * @param <ReferenceType>
+ */
+public interface ReferenceBuffer<ReferenceType extends Reference> extends Index<ReferenceType>, IndexReader<ReferenceType>, Iterable<ReferenceContainer<ReferenceType>> {
+
+    public Row rowdef();
+
+    /**
+     * @return an iterator over all term hashes in the buffer
+     */
+    public Iterator<ByteArray> keys();
+
+    /**
+     * dump the buffer to a heap file, ordered by the term hashes
+     * @param heapFile
+     * @param writeBuffer
+     * @param destructive - if true then the buffer may be cleaned during the dump to free memory
+     */
+    public void dump(File heapFile, int writeBuffer, boolean destructive);
+
+    /**
+     * @return the memory used by the buffer in bytes
+     */
+    public long usedMemory();
+
+    public boolean isEmpty();
+
+    /**
+     * @return the size of the largest container in the buffer
+     */
+    public int maxReferences();
+}
@@ -35,5 +35,13 @@ public interface ReferenceFactory<ReferenceType extends Reference> {
     public ReferenceType produceSlow(Row.Entry e);
     
     public ReferenceType produceFast(ReferenceType e, final boolean local);
+
+    /**
+     * compute a static, query-independent score of a reference which is stored in ReferenceBlocks
+     * and used as upper bound of the score of the reference in top-k searches
+     * @param r the reference
+     * @return the impact of the reference, a value between 0 and ReferenceBlocks.MAX_IMPACT; higher is better
+     */
+    public int impact(ReferenceType r);
     
 }
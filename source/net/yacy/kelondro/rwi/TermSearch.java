@@ -27,11 +27,20 @@
 
 package net.yacy.kelondro.rwi;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
 
 import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.RowHandleSet;
 
 
 public class TermSearch <ReferenceType extends Reference> {
@@ -69,6 +78,292 @@ public class TermSearch <ReferenceType extends Reference> {
                 maxDistance);
     }
 
+    /**
+     * A top-k search over the blocks of the terms. Candidates are selected in a block-max WAND manner:
+     * the references of all terms are visited in url hash order along the skip pointers of the blocks,
+     * and all blocks whose sum of block maxima cannot exceed the impact of the current k-th best candidate
+     * are skipped without reading them. Only the references of the maxCount candidates with the highest
+     * sum of impacts are read from the index, joined and excluded like in a full search.
+     * If none of the terms has blocks, a full search is done.
+     * The inclusion containers contain only the references of the candidates.
+     * @param base the index cell
+     * @param queryHashes the terms which must appear
+     * @param excludeHashes the terms which must not appear
+     * @param termFactory
+     * @param maxDistance
+     * @param maxCount the number of candidates (k)
+     * @throws SpaceExceededException
+     */
+    public TermSearch(
+            IndexCell<ReferenceType> base,
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            ReferenceFactory<ReferenceType> termFactory,
+            int maxDistance,
+            int maxCount) throws SpaceExceededException {
+
+        final List<List<ReferenceBlocks<ReferenceType>>> terms = new ArrayList<List<ReferenceBlocks<ReferenceType>>>(queryHashes.size());
+        HandleSet candidates = null;
+        try {
+            boolean blocked = false;
+            boolean complete = !queryHashes.isEmpty();
+            for (final byte[] termHash: queryHashes) {
+                List<ReferenceBlocks<ReferenceType>> parts = base.getBlocks(termHash);
+                if (parts == null) {
+                    final ReferenceContainer<ReferenceType> c = base.get(termHash, null);
+                    if (c == null || c.isEmpty()) {
+                        complete = false;
+                        break;
+                    }
+                    parts = new ArrayList<ReferenceBlocks<ReferenceType>>(1);
+                    parts.add(ReferenceBlocks.of(termFactory, c, ReferenceBlocks.DEFAULT_BLOCK_SIZE));
+                } else {
+                    blocked = true;
+                }
+                terms.add(parts);
+            }
+            if (!complete) {
+                candidates = new RowHandleSet(termFactory.getRow().primaryKeyLength, termFactory.getRow().objectOrder, 0);
+            } else if (blocked) {
+                candidates = topk(terms, termFactory.getRow().objectOrder, termFactory.getRow().primaryKeyLength, maxCount);
+            }
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        } finally {
+            for (final List<ReferenceBlocks<ReferenceType>> parts: terms) for (final ReferenceBlocks<ReferenceType> b: parts) b.close();
+        }
+
+        // read the references of the candidates; without candidates this is a full search
+        this.inclusionContainers =
+            (queryHashes.isEmpty() || (candidates != null && candidates.isEmpty())) ?
+                new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
+                base.searchConjunction(queryHashes, candidates);
+
+        if (!this.inclusionContainers.isEmpty() &&
+            (this.inclusionContainers.size() < queryHashes.size()))
+            this.inclusionContainers = new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder); // prevent that only a subset is returned
+
+        TreeMap<byte[], ReferenceContainer<ReferenceType>> exclusionContainers =
+            (this.inclusionContainers.isEmpty()) ?
+                new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
+                base.searchConjunction(excludeHashes, candidates);
+
+        // join and exclude the result
+        this.joinResult = ReferenceContainer.joinExcludeContainers(
+                termFactory,
+                this.inclusionContainers.values(),
+                exclusionContainers.values(),
+                maxDistance);
+    }
+
+    /**
+     * select the urls which appear in all terms and have the highest sum of impacts
+     * @param terms for each term the blocks of its references
+     * @param order the order of the url hashes
+     * @param keylength the length of the url hashes
+     * @param k the maximum number of selected urls
+     * @return the url hashes of the selected urls
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    protected static <ReferenceType extends Reference> HandleSet topk(
+            final List<List<ReferenceBlocks<ReferenceType>>> terms,
+            final ByteOrder order,
+            final int keylength,
+            final int k) throws IOException, SpaceExceededException {
+        final List<TermCursor<ReferenceType>> cursors = new ArrayList<TermCursor<ReferenceType>>(terms.size());
+        for (final List<ReferenceBlocks<ReferenceType>> parts: terms) cursors.add(new TermCursor<ReferenceType>(parts, order));
+        // the rarest term leads the search
+        Collections.sort(cursors, new Comparator<TermCursor<ReferenceType>>() {
+            @Override
+            public int compare(final TermCursor<ReferenceType> a, final TermCursor<ReferenceType> b) {
+                return Long.compare(a.size, b.size);
+            }
+        });
+        final TermCursor<ReferenceType> lead = cursors.get(0);
+        final PriorityQueue<Candidate> top = new PriorityQueue<Candidate>(Math.max(1, k));
+
+        byte[] key = lead.first();
+        search: while (key != null) {
+            final int threshold = top.size() < k ? -1 : top.peek().score;
+
+            // block level: the sum of the block maxima is an upper bound for all urls up to the smallest last key of the blocks
+            int bound = 0;
+            byte[] boundary = null;
+            for (final TermCursor<ReferenceType> c: cursors) {
+                if (!c.seekBlocks(key)) break search;
+                bound += c.blockMax();
+                final byte[] last = c.lastKey();
+                if (boundary == null || order.compare(last, boundary) < 0) boundary = last;
+            }
+            if (bound <= threshold) {
+                key = lead.next(boundary, false);
+                continue search;
+            }
+
+            // url level: check if all terms contain the url
+            for (int i = 1; i < cursors.size(); i++) {
+                final byte[] other = cursors.get(i).next(key, true);
+                if (other == null) break search;
+                if (order.compare(other, key) != 0) {
+                    key = lead.next(other, true);
+                    continue search;
+                }
+            }
+            int score = 0;
+            for (final TermCursor<ReferenceType> c: cursors) score += c.impact(key);
+            if (score > threshold) {
+                top.add(new Candidate(key, score));
+                if (top.size() > k) top.poll();
+            }
+            key = lead.next(key, false);
+        }
+
+        final HandleSet candidates = new RowHandleSet(keylength, order, top.size());
+        for (final Candidate c: top) candidates.put(c.key);
+        return candidates;
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private final byte[] key;
+        private final int score;
+        public Candidate(final byte[] key, final int score) {
+            this.key = key;
+            this.score = score;
+        }
+        @Override
+        public int compareTo(final Candidate o) {
+            return Integer.compare(this.score, o.score);
+        }
+    }
+
+    /**
+     * a position in the references of one term, which may be divided into several parts
+     * (the blocks of the file array and the blocks of the ram buffer)
+     */
+    private static class TermCursor<ReferenceType extends Reference> {
+
+        private final List<ReferenceBlocks<ReferenceType>> parts;
+        private final ByteOrder order;
+        private final long size;
+        private final int[] block; // the current block of each part
+        private final List<ReferenceBlocks<ReferenceType>.Block> loaded; // the loaded block of each part or null
+        private final int[] pos; // the position in the loaded block of each part
+
+        public TermCursor(final List<ReferenceBlocks<ReferenceType>> parts, final ByteOrder order) {
+            this.parts = parts;
+            this.order = order;
+            long s = 0;
+            for (final ReferenceBlocks<ReferenceType> p: parts) s += p.size();
+            this.size = s;
+            this.block = new int[parts.size()];
+            this.loaded = new ArrayList<ReferenceBlocks<ReferenceType>.Block>(parts.size());
+            for (int i = 0; i < parts.size(); i++) this.loaded.add(null);
+            this.pos = new int[parts.size()];
+        }
+
+        /**
+         * @return the smallest key of the term or null if the term has no references
+         */
+        public byte[] first() throws IOException {
+            byte[] min = null;
+            for (int p = 0; p < this.parts.size(); p++) {
+                if (this.parts.get(p).size() == 0) continue;
+                final ReferenceBlocks<ReferenceType>.Block b = load(p, 0);
+                final byte[] key = b.key(0);
+                if (min == null || this.order.compare(key, min) < 0) min = key;
+            }
+            return min;
+        }
+
+        /**
+         * move all parts to the blocks which may contain the key
+         * @return false if all references of the term are smaller than the key
+         */
+        public boolean seekBlocks(final byte[] key) {
+            boolean found = false;
+            for (int p = 0; p < this.parts.size(); p++) {
+                this.block[p] = this.parts.get(p).seekBlock(key, this.block[p]);
+                if (this.block[p] < this.parts.get(p).blocks()) found = true;
+            }
+            return found;
+        }
+
+        /**
+         * @return the maximum impact of the current blocks
+         */
+        public int blockMax() {
+            int max = 0;
+            for (int p = 0; p < this.parts.size(); p++) {
+                if (this.block[p] < this.parts.get(p).blocks()) max = Math.max(max, this.parts.get(p).blockMax(this.block[p]));
+            }
+            return max;
+        }
+
+        /**
+         * @return the smallest last key of the current blocks
+         */
+        public byte[] lastKey() {
+            byte[] min = null;
+            for (int p = 0; p < this.parts.size(); p++) {
+                if (this.block[p] >= this.parts.get(p).blocks()) continue;
+                final byte[] last = this.parts.get(p).lastKey(this.block[p]);
+                if (min == null || this.order.compare(last, min) < 0) min = last;
+            }
+            return min;
+        }
+
+        /**
+         * move to the smallest key which is greater than (or equal to, if inclusive) the given key
+         * @return the key of the new position or null if there is no such key
+         */
+        public byte[] next(final byte[] key, final boolean inclusive) throws IOException {
+            byte[] min = null;
+            for (int p = 0; p < this.parts.size(); p++) {
+                final ReferenceBlocks<ReferenceType> part = this.parts.get(p);
+                int b = part.seekBlock(key, this.block[p]);
+                while (b < part.blocks()) {
+                    final ReferenceBlocks<ReferenceType>.Block block = load(p, b);
+                    int i = block.find(key, this.loaded.get(p) == block && this.block[p] == b ? Math.min(this.pos[p], block.count()) : 0);
+                    if (!inclusive && i < block.count() && block.compare(i, key) == 0) i++;
+                    if (i < block.count()) {
+                        this.pos[p] = i;
+                        final byte[] k = block.key(i);
+                        if (min == null || this.order.compare(k, min) < 0) min = k;
+                        break;
+                    }
+                    b++; // the last key of the block was equal to the key and is excluded
+                }
+                this.block[p] = b;
+            }
+            return min;
+        }
+
+        /**
+         * @return the maximum impact of the key in all parts, which must be positioned at the key with next()
+         */
+        public int impact(final byte[] key) {
+            int impact = 0;
+            for (int p = 0; p < this.parts.size(); p++) {
+                final ReferenceBlocks<ReferenceType>.Block b = this.loaded.get(p);
+                if (b == null || b.number() != this.block[p] || this.pos[p] >= b.count()) continue;
+                if (b.compare(this.pos[p], key) == 0) impact = Math.max(impact, b.impact(this.pos[p]));
+            }
+            return impact;
+        }
+
+        private ReferenceBlocks<ReferenceType>.Block load(final int p, final int b) throws IOException {
+            ReferenceBlocks<ReferenceType>.Block block = this.loaded.get(p);
+            if (block == null || block.number() != b) {
+                block = this.parts.get(p).block(b);
+                this.loaded.set(p, block);
+                this.block[p] = b;
+                this.pos[p] = 0;
+            }
+            return block;
+        }
+    }
+
     public ReferenceContainer<ReferenceType> joined() {
         return this.joinResult;
     }
@@ -88,11 +88,11 @@ public class DHTSelection {
             final OrderedScoreMap<Seed> seedSelection = new OrderedScoreMap<Seed>(null);
             
             // create sets that contains only robinson/node/large/young peers
-            Iterator<Seed> dhtEnum = seedDB.seedsConnected(true, false, null, 0.50f);
+            final SeedRing ring = seedDB.connectedRing();
             Seed seed;
-            while (dhtEnum.hasNext()) {
-                seed = dhtEnum.next();
-                if (seed == null) continue;
+            for (int p = 0; p < ring.size(); p++) {
+                if (!ring.hasVersion(p, 0.50f)) continue;
+                seed = ring.peek(p); // only read; the selected seeds are copied below
                 if (omit != null && omit.contains(seed)) continue; // sort out peers that are target for DHT
                 if (seed.isLastSeenTimeout(3600000)) continue; // do not ask peers that had not been seen more than one hour (happens during a startup situation)
                 if (!seed.getFlagSolrAvailable()) continue; // extra peers always use solr direct, skip if solr interface is not available
@@ -123,7 +123,7 @@ public class DHTSelection {
                             (seed.getAge() < 1 ? " FRESH" : "")
                             );
                 }
-                extraSeeds.add(seed);
+                extraSeeds.add(seed.clone());
             }
         }
         
@@ -187,14 +187,17 @@ public class DHTSelection {
         ArrayList<Seed> seeds = new ArrayList<Seed>(redundancy);
         final long dhtVerticalTarget = seedDB.scheme.verticalDHTPosition(wordhash, verticalPosition);
         final byte[] verticalhash = Distribution.positionToHash(dhtVerticalTarget);
-        final Iterator<Seed> dhtEnum = getAcceptRemoteIndexSeeds(seedDB, verticalhash, redundancy, false);
-        int c = Math.min(seedDB.sizeConnected(), redundancy);
+        final SeedRing ring = seedDB.connectedRing();
+        final int start = ring.position(verticalhash);
+        int c = Math.min(ring.size(), redundancy);
         int cc = 20; // in case that the network grows rapidly, we may jump to several additional peers but that must have a limit
-        while (dhtEnum.hasNext() && c > 0 && cc-- > 0) {
-            Seed seed = dhtEnum.next();
-            if (seed == null || seed.hash == null) continue;
-            if (!seed.getFlagAcceptRemoteIndex()) continue; // probably a robinson peer
-            if (seed.getAge() < minage) continue; // prevent bad results because of too strong network growth
+        for (int step = 0; step < ring.size() && c > 0 && cc > 0; step++) {
+            final int p = (start + step) % ring.size(); // the ordering of the DHT is closed at the ends
+            if (!ring.hasVersion(p, yacyVersion.YACY_HANDLES_COLLECTION_INDEX)) continue;
+            if (!ring.acceptRemoteIndex(p)) continue; // probably a robinson peer
+            cc--;
+            if (ring.age(p) < minage) continue; // prevent bad results because of too strong network growth
+            final Seed seed = ring.seed(p);
             if (RemoteSearch.log.isInfo()) RemoteSearch.log.info("selectPeers/DHTorder: " + seed.hash + ":" + seed.getName() + "/ score " + c);
             seeds.add(seed);
             c--;
@@ -236,110 +239,52 @@ public class DHTSelection {
         return new acceptRemoteIndexSeedEnum(seedDB, starthash, Math.min(max, seedDB.sizeConnected()), alsoMyOwn);
     }
 
+    /**
+     * enumerates the seeds of a snapshot of the seed ring in the order of the DHT, starting at the given hash
+     * and wrapping around at the end of the ring; the own seed is enumerated at its position in the ring if requested
+     */
     private static class acceptRemoteIndexSeedEnum extends LookAheadIterator<Seed> implements Iterator<Seed>, Iterable<Seed> {
 
-        private final Iterator<Seed> se;
         private final SeedDB seedDB;
-        private int remaining;
-        private final boolean alsoMyOwn;
+        private final SeedRing ring;
+        private final int start;
+        private int step, ownStep, remaining;
 
         private acceptRemoteIndexSeedEnum(SeedDB seedDB, final byte[] starthash, int max, boolean alsoMyOwn) {
             this.seedDB = seedDB;
-            this.se = new seedDHTEnum(seedDB, starthash, alsoMyOwn);
+            this.ring = seedDB.connectedRing();
+            this.start = this.ring.position(starthash);
+            this.step = 0;
             this.remaining = max;
-            this.alsoMyOwn = alsoMyOwn;
-        }
-
-        @Override
-        protected Seed next0() {
-            if (this.remaining <= 0) return null;
-            Seed s = null;
-            try {
-                while (this.se.hasNext()) {
-                    s = this.se.next();
-                    if (s == null) return null;
-                    if (s.getFlagAcceptRemoteIndex() ||
-                        (this.alsoMyOwn && s.hash.equals(this.seedDB.mySeed().hash)) // Accept own peer regardless of FlagAcceptRemoteIndex
-                       ) {
-                        this.remaining--;
-                        break;
-                    }
-                }
-                return s;
-            } catch (final kelondroException e) {
-                System.out.println("DEBUG acceptRemoteIndexSeedEnum:" + e.getMessage());
-                Network.log.severe("database inconsistency (" + e.getMessage() + "), re-set of db.");
-                this.seedDB.resetActiveTable();
-                return null;
-            }
-        }
-
-    }
-    
-    private static class seedDHTEnum implements Iterator<Seed> {
-
-        private Iterator<Seed> e;
-        private int steps;
-        private final SeedDB seedDB;
-        private boolean alsoMyOwn;
-        private int pass, insertOwnInPass;
-        private Seed nextSeed;
-
-        private seedDHTEnum(final SeedDB seedDB, final byte[] firstHash, final boolean alsoMyOwn) {
-            this.seedDB = seedDB;
-            this.steps = seedDB.sizeConnected() + ((alsoMyOwn) ? 1 : 0);
-            this.e = seedDB.seedsConnected(true, false, firstHash, yacyVersion.YACY_HANDLES_COLLECTION_INDEX);
-            this.pass = 1;
-            this.alsoMyOwn = alsoMyOwn;
             if (alsoMyOwn) {
-                this.insertOwnInPass = (Base64Order.enhancedCoder.compare(ASCII.getBytes(seedDB.mySeed().hash), firstHash) > 0) ? 1 : 2;
+                // the number of seeds before the own seed: from the start to the own hash, wrapping around if the own hash is before the start
+                final byte[] myhash = ASCII.getBytes(seedDB.mySeed().hash);
+                final int p = this.ring.position(myhash);
+                this.ownStep = (Base64Order.enhancedCoder.compare(myhash, starthash) >= 0) ? p - this.start : this.ring.size() - this.start + p;
             } else {
-                this.insertOwnInPass = 0;
+                this.ownStep = -1;
             }
-            this.nextSeed = nextInternal();
         }
 
         @Override
-        public boolean hasNext() {
-            return (this.nextSeed != null) || this.alsoMyOwn;
-        }
-
-        public Seed nextInternal() {
-            if (this.steps == 0) return null;
-            this.steps--;
-
-            if (!this.e.hasNext() && this.pass == 1) {
-                // rotate from the beginning; this closes the ordering of the DHT at the ends
-                this.e = this.seedDB.seedsConnected(true, false, null, yacyVersion.YACY_HANDLES_COLLECTION_INDEX);
-                this.pass = 2;
-            }
-            if (this.e.hasNext()) {
-                return this.e.next();
+        protected Seed next0() {
+            while (this.remaining > 0) {
+                if (this.step == this.ownStep) {
+                    // Accept own peer regardless of FlagAcceptRemoteIndex
+                    this.ownStep = -1;
+                    this.remaining--;
+                    return this.seedDB.mySeed();
+                }
+                if (this.step >= this.ring.size()) return null;
+                final int p = (this.start + this.step++) % this.ring.size();
+                if (this.ring.hasVersion(p, yacyVersion.YACY_HANDLES_COLLECTION_INDEX) && this.ring.acceptRemoteIndex(p)) {
+                    this.remaining--;
+                    return this.ring.seed(p);
+                }
             }
-            this.steps = 0;
             return null;
         }
 
-        @Override
-        public Seed next() {
-            if (this.alsoMyOwn &&
-                ((this.pass > this.insertOwnInPass) ||
-                 (this.pass == this.insertOwnInPass && this.nextSeed == null) || // Own hash is last in line
-                 (this.pass == this.insertOwnInPass && this.nextSeed != null && (Base64Order.enhancedCoder.compare(ASCII.getBytes(this.seedDB.mySeed().hash), ASCII.getBytes(this.nextSeed.hash)) < 0)))
-               ) {
-                // take my own seed hash instead the enumeration result
-                this.alsoMyOwn = false;
-                return this.seedDB.mySeed();
-            }
-            final Seed next = this.nextSeed;
-            this.nextSeed = nextInternal();
-            return next;
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
     }
 
     /**
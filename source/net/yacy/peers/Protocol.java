@@ -86,6 +86,7 @@ import net.yacy.cora.federate.solr.connector.SolrConnector;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
+import net.yacy.cora.protocol.ByteArrayBody;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.http.HTTPClient;
@@ -1685,8 +1686,11 @@ public final class Protocol {
 		final boolean preferHttps = sb.getConfigBool(SwitchboardConstants.NETWORK_PROTOCOL_HTTPS_PREFERRED,
 				SwitchboardConstants.NETWORK_PROTOCOL_HTTPS_PREFERRED_DEFAULT);
         
+        // use the binary transfer format if both peers support it
+        final boolean binary = sb.getConfigBool(SwitchboardConstants.INDEX_DIST_BINARY, true) && targetSeed.getFlagBinaryRWI();
+
         // transfer the RWI without the URLs
-        Map<String, String> in = transferRWI(targetSeed, indexes, gzipBody, timeout, preferHttps);
+        Map<String, String> in = transferRWI(targetSeed, indexes, gzipBody, binary, timeout, preferHttps);
 
         if ( in == null ) {
             // targetSeed interface departure is already handled within transferRWI() for no response situation
@@ -1764,6 +1768,10 @@ public final class Protocol {
 	 *            the index entries to transfer
 	 * @param gzipBody
 	 *            when true, the transferred data are compressed using gzip
+	 * @param binary
+	 *            when true, the index entries are sent in the compressed binary
+	 *            format of {@link WordReferenceFactory#encodeTransfer(Iterable)}
+	 *            instead of one text line per entry
 	 * @param timeout
 	 *            the maximum time in milliseconds to wait for a success of the
 	 *            http(s) request(s) to the remote peer
@@ -1775,6 +1783,7 @@ public final class Protocol {
         final Seed targetSeed,
         final ReferenceContainerCache<WordReference> indexes,
         boolean gzipBody,
+        final boolean binary,
         final int timeout,
         final boolean preferHttps) {
         for (final String ip : targetSeed.getIPs()) {
@@ -1801,10 +1810,14 @@ public final class Protocol {
             }
 
             int indexcount = 0;
-            final StringBuilder entrypost = new StringBuilder(indexes.size() * 73);
+            final StringBuilder entrypost = binary ? null : new StringBuilder(indexes.size() * 73);
             Iterator<WordReference> eenum;
             Reference entry;
             for ( final ReferenceContainer<WordReference> ic : indexes ) {
+                if (binary) {
+                    indexcount += ic.size();
+                    continue;
+                }
                 eenum = ic.entries();
                 while ( eenum.hasNext() ) {
                     entry = eenum.next();
@@ -1827,7 +1840,18 @@ public final class Protocol {
                 final Map<String, ContentBody> parts = basicRequestParts(Switchboard.getSwitchboard(), targetSeed.hash, salt);
                 parts.put("wordc", UTF8.StringBody(Integer.toString(indexes.size())));
                 parts.put("entryc", UTF8.StringBody(Integer.toString(indexcount)));
-                parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+                final int payloadSize;
+                if (binary) {
+                    // the ".gz" file name lets the receiving servlet keep the binary content (base64-encoded)
+                    final byte[] payload = WordReferenceFactory.encodeTransfer(indexes);
+                    parts.put("indexformat", UTF8.StringBody("binary" + WordReferenceFactory.TRANSFER_FORMAT_VERSION));
+                    parts.put("indexes", new ByteArrayBody(payload, "indexes.gz"));
+                    payloadSize = payload.length;
+                    gzipBody = false; // the payload is already deflate-compressed
+                } else {
+                    parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+                    payloadSize = entrypost.length();
+                }
                 final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
                 byte[] content = null;
                 try {
@@ -1852,7 +1876,7 @@ public final class Protocol {
 
                 final Map<String, String> result = FileUtils.table(v);
                 // return the transfered index data in bytes (for debugging only)
-                result.put("indexPayloadSize", Integer.toString(entrypost.length()));
+                result.put("indexPayloadSize", Integer.toString(payloadSize));
                 result.put(Seed.IP, ip); // add used ip to result for error handling (in case no "result" key was received)
                 return result;
             } catch (final Exception e ) {
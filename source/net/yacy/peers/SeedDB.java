@@ -85,6 +85,7 @@ public final class SeedDB implements AlternativeDomainNames {
     private File seedActiveDBFile, seedPassiveDBFile, seedPotentialDBFile;
     private File myOwnSeedFile;
     private MapDataMining seedActiveDB, seedPassiveDB, seedPotentialDB;
+    private volatile SeedRing ring = SeedRing.EMPTY; // the connected seeds in DHT order, replaced with each change of the seedActiveDB
 
     protected int lastSeedUpload_seedDBSize = 0;
     public long lastSeedUpload_timeStamp = System.currentTimeMillis();
@@ -123,6 +124,7 @@ public final class SeedDB implements AlternativeDomainNames {
 
         // check if we are in the seedCaches: this can happen if someone else published our seed
         removeMySeed();
+        buildRing();
 
         this.lastSeedUpload_seedDBSize = sizeConnected();
 
@@ -171,6 +173,7 @@ public final class SeedDB implements AlternativeDomainNames {
 
         // check if we are in the seedCaches: this can happen if someone else published our seed
         removeMySeed();
+        buildRing();
 
         this.lastSeedUpload_seedDBSize = sizeConnected();
 
@@ -273,6 +276,7 @@ public final class SeedDB implements AlternativeDomainNames {
         try {
             final byte[] mySeedHash = ASCII.getBytes(this.mySeed.hash);
             this.seedActiveDB.delete(mySeedHash);
+            this.ring = this.ring.remove(mySeedHash);
             this.seedPassiveDB.delete(mySeedHash);
             this.seedPotentialDB.delete(mySeedHash);
         } catch (final IOException e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
@@ -314,6 +318,7 @@ public final class SeedDB implements AlternativeDomainNames {
         // this is an emergency function that should only be used if any problem with the
         // seed.db is detected
         Network.log.warn("seed-db " + seedDBFile.toString() + " reset (on-the-fly)");
+        if (seedDB == this.seedActiveDB) this.ring = SeedRing.EMPTY;
         seedDB.close();
         FileUtils.deletedelete(seedDBFile);
         if (seedDBFile.exists())
@@ -400,6 +405,26 @@ public final class SeedDB implements AlternativeDomainNames {
         return new seedEnum(up, rot, (firstHash == null) ? null : firstHash, null, this.seedActiveDB, minVersion);
     }
 
+    /**
+     * get the connected seeds as a ring in the order of the DHT; the ring is an immutable snapshot
+     * which is replaced with each change of a connected seed
+     * @return the ring of connected seeds
+     */
+    public SeedRing connectedRing() {
+        return this.ring;
+    }
+
+    private void buildRing() {
+        final List<Seed> seeds = new ArrayList<Seed>(this.seedActiveDB.size());
+        final Iterator<Seed> i = seedsConnected(true, false, null, 0.0d);
+        Seed seed;
+        while (i.hasNext()) {
+            seed = i.next();
+            if (seed != null && seed.hash != null) seeds.add(seed);
+        }
+        this.ring = SeedRing.build(seeds);
+    }
+
     public Iterator<Seed> seedsDisconnected(final boolean up, final boolean rot, final byte[] firstHash, final double minVersion) {
         // enumerates seed-type objects: all seeds sequentially without order
         return new seedEnum(up, rot, (firstHash == null) ? null : firstHash, null, this.seedPassiveDB, minVersion);
@@ -484,6 +509,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             try {
                 this.seedActiveDB.insert(ASCII.getBytes(seed.hash), seedPropMap);
+                this.ring = this.ring.put(seed);
                 this.seedPassiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPotentialDB.delete(ASCII.getBytes(seed.hash));
             } catch (final Exception e) {
@@ -498,6 +524,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             try {
                 this.seedActiveDB.delete(ASCII.getBytes(seed.hash));
+                this.ring = this.ring.remove(ASCII.getBytes(seed.hash));
                 this.seedPotentialDB.delete(ASCII.getBytes(seed.hash));
             } catch (final Exception e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
             //seed.put(yacySeed.LASTSEEN, yacyCore.shortFormatter.format(new Date(yacyCore.universalTime())));
@@ -517,6 +544,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             try {
                 this.seedActiveDB.delete(ASCII.getBytes(seed.hash));
+                this.ring = this.ring.remove(ASCII.getBytes(seed.hash));
                 this.seedPassiveDB.delete(ASCII.getBytes(seed.hash));
             } catch (final Exception e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
             //seed.put(yacySeed.LASTSEEN, yacyCore.shortFormatter.format(new Date(yacyCore.universalTime())));
@@ -636,6 +664,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             if (this.seedActiveDB.containsKey(ASCII.getBytes(seed.hash))) try {
                 this.seedActiveDB.insert(ASCII.getBytes(seed.hash), seedPropMap);
+                this.ring = this.ring.put(seed);
             } catch (final Exception e) {
                 Network.log.severe("ERROR add: seed.db corrupt (" + e.getMessage() + "); resetting seed.db", e);
                 resetActiveTable();
@@ -1092,6 +1121,7 @@ public final class SeedDB implements AlternativeDomainNames {
             	// emergency reset
             	Network.log.severe("seed-db emergency reset", e);
             	this.database.clear();
+            	if (this.database == SeedDB.this.seedActiveDB) SeedDB.this.ring = SeedRing.EMPTY;
 				this.nextSeed = null;
 				return null;
             }
@@ -0,0 +1,181 @@
+// SeedRing.java
+// -------------------------------------
+// part of YaCy, a peer-to-peer based web search engine
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * An immutable snapshot of the connected seeds, sorted by their hash in the order of the DHT.
+ * The properties which are needed for the selection of DHT targets are parsed once when a seed
+ * enters the ring, so that target selection is a binary search and a walk over arrays.
+ * Changes produce a new ring (copy-on-write), which the seed database swaps in.
+ */
+public final class SeedRing {
+
+    public static final SeedRing EMPTY = new SeedRing(new Seed[0], new byte[0][], new double[0], new boolean[0], new long[0]);
+
+    private static final Comparator<Seed> hashComparator = new Comparator<Seed>() {
+        @Override
+        public int compare(final Seed s0, final Seed s1) {
+            return Base64Order.enhancedCoder.compare(ASCII.getBytes(s0.hash), ASCII.getBytes(s1.hash));
+        }
+    };
+
+    private final Seed[] seeds; // private copies, never handed out
+    private final byte[][] hashes;
+    private final double[] versions;
+    private final boolean[] acceptRemoteIndex;
+    private final long[] birthdates;
+
+    private SeedRing(final Seed[] seeds, final byte[][] hashes, final double[] versions, final boolean[] acceptRemoteIndex, final long[] birthdates) {
+        this.seeds = seeds;
+        this.hashes = hashes;
+        this.versions = versions;
+        this.acceptRemoteIndex = acceptRemoteIndex;
+        this.birthdates = birthdates;
+    }
+
+    /**
+     * create a ring from a collection of seeds
+     * @param seeds the connected seeds; the ring keeps them, so they must not be used any more by the caller
+     * @return the ring of the seeds
+     */
+    public static SeedRing build(final Collection<Seed> seeds) {
+        final Seed[] s = seeds.toArray(new Seed[seeds.size()]);
+        Arrays.sort(s, hashComparator);
+        final SeedRing ring = new SeedRing(s, new byte[s.length][], new double[s.length], new boolean[s.length], new long[s.length]);
+        for (int i = 0; i < s.length; i++) ring.parse(i);
+        return ring;
+    }
+
+    private void parse(final int i) {
+        final Seed seed = this.seeds[i];
+        this.hashes[i] = ASCII.getBytes(seed.hash);
+        this.versions[i] = seed.getVersion();
+        this.acceptRemoteIndex[i] = seed.getFlagAcceptRemoteIndex();
+        this.birthdates[i] = seed.getBirthdate();
+    }
+
+    /**
+     * @param seed a seed which is connected
+     * @return a ring which contains a copy of the seed in place of a seed with the same hash
+     */
+    public SeedRing put(final Seed seed) {
+        final byte[] hash = ASCII.getBytes(seed.hash);
+        final int p = position(hash);
+        final boolean replace = p < this.seeds.length && Base64Order.enhancedCoder.equal(hash, this.hashes[p]);
+        final int n = replace ? this.seeds.length : this.seeds.length + 1;
+        final SeedRing ring = new SeedRing(new Seed[n], new byte[n][], new double[n], new boolean[n], new long[n]);
+        copy(this, 0, ring, 0, p);
+        if (replace) {
+            copy(this, p + 1, ring, p + 1, n - p - 1);
+        } else {
+            copy(this, p, ring, p + 1, n - p - 1);
+        }
+        ring.seeds[p] = seed.clone();
+        ring.parse(p);
+        return ring;
+    }
+
+    /**
+     * @param hash the hash of a seed which is not connected any more
+     * @return a ring without the seed, or this ring if the seed is not in it
+     */
+    public SeedRing remove(final byte[] hash) {
+        final int p = position(hash);
+        if (p >= this.seeds.length || !Base64Order.enhancedCoder.equal(hash, this.hashes[p])) return this;
+        final int n = this.seeds.length - 1;
+        final SeedRing ring = new SeedRing(new Seed[n], new byte[n][], new double[n], new boolean[n], new long[n]);
+        copy(this, 0, ring, 0, p);
+        copy(this, p + 1, ring, p, n - p);
+        return ring;
+    }
+
+    private static void copy(final SeedRing from, final int fromPos, final SeedRing to, final int toPos, final int length) {
+        System.arraycopy(from.seeds, fromPos, to.seeds, toPos, length);
+        System.arraycopy(from.hashes, fromPos, to.hashes, toPos, length);
+        System.arraycopy(from.versions, fromPos, to.versions, toPos, length);
+        System.arraycopy(from.acceptRemoteIndex, fromPos, to.acceptRemoteIndex, toPos, length);
+        System.arraycopy(from.birthdates, fromPos, to.birthdates, toPos, length);
+    }
+
+    public int size() {
+        return this.seeds.length;
+    }
+
+    /**
+     * @param hash a position in the DHT
+     * @return the position of the first seed with a hash equal to or greater than the given hash;
+     * size() if all seeds have a smaller hash
+     */
+    public int position(final byte[] hash) {
+        int low = 0, high = this.hashes.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (Base64Order.enhancedCoder.compare(this.hashes[mid], hash) < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @param i a position in the ring
+     * @return a copy of the seed at the position, which the caller may change
+     */
+    public Seed seed(final int i) {
+        return this.seeds[i].clone();
+    }
+
+    /**
+     * @param i a position in the ring
+     * @return the seed at the position itself, which is shared by all readers of the ring and must not be changed
+     */
+    Seed peek(final int i) {
+        return this.seeds[i];
+    }
+
+    public byte[] hash(final int i) {
+        return this.hashes[i];
+    }
+
+    /**
+     * @param i a position in the ring
+     * @param minVersion the minimum version of the peer
+     * @return true if the peer has at least the version; like in the seed enumerations, peers without version are always accepted
+     */
+    public boolean hasVersion(final int i, final double minVersion) {
+        return this.versions[i] >= minVersion || this.versions[i] == 0.0d;
+    }
+
+    public boolean acceptRemoteIndex(final int i) {
+        return this.acceptRemoteIndex[i];
+    }
+
+    /**
+     * @param i a position in the ring
+     * @return the age of the peer in days, computed like Seed.getAge()
+     */
+    public int age(final int i) {
+        return (int) Math.abs((System.currentTimeMillis() - this.birthdates[i]) / 1000 / 60 / 60 / 24);
+    }
+}
@@ -0,0 +1,317 @@
+// HostLinkGraph.java
+// -----------------------------
+// part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import net.yacy.cora.document.encoding.ASCII;
+
+/**
+ * An immutable snapshot of the host link structure of a {@link WebStructureGraph} in compressed sparse row form.
+ * Each host hash gets an int id, which is its position in the sorted list of all host hashes. The links of all
+ * hosts are stored in one array ordered by the id of the linking host, the reverse links in another array
+ * ordered by the id of the linked host, so the outgoing and the incoming links of a host are found without
+ * decoding any structure entry.
+ */
+public class HostLinkGraph {
+
+    public static final HostLinkGraph EMPTY = new HostLinkGraph(new String[0], new String[0], new String[0], new int[1], new int[0], new int[0]);
+
+    /**
+     * a decoded structure entry
+     */
+    private static class Entry {
+        private final String hostname;
+        private final String date;
+        private final String[] targets;
+        private final int[] counts;
+
+        private Entry(final String hostname, final byte[] value) {
+            this.hostname = hostname;
+            this.date = ASCII.String(value, 0, 8);
+            final int c = (value.length - 8) / 10;
+            this.targets = new String[c];
+            this.counts = new int[c];
+            for (int i = 0; i < c; i++) {
+                final int p = 8 + i * 10;
+                this.targets[i] = ASCII.String(value, p, 6);
+                this.counts[i] = hex(value, p + 6);
+            }
+        }
+
+        private static int hex(final byte[] b, final int p) {
+            int c = 0;
+            for (int i = p; i < p + 4; i++) {
+                final int d = Character.digit(b[i], 16);
+                if (d < 0) return 1;
+                c = (c << 4) | d;
+            }
+            return c;
+        }
+    }
+
+    private final String[] hosthashes; // sorted; the position of a host hash is the id of the host
+    private final String[] hostnames;  // null for hosts which are only known as link target
+    private final String[] dates;      // the date of the structure entry of each host
+    private final int[] outStart, outTarget, outCount; // links of host id: outTarget[outStart[id] .. outStart[id + 1] - 1]
+    private final int[] inStart, inSource, inCount;    // reverse links, ordered by source id
+    private final Map<String, List<String>> hostnameHashes; // lower case host name -> host hashes
+    private final Map<String, Integer> hostnameRefsize;     // host name -> summed length of the encoded structure entries
+    private final String maxRefsizeHostname;
+
+    private HostLinkGraph(final String[] hosthashes, final String[] hostnames, final String[] dates, final int[] outStart, final int[] outTarget, final int[] outCount) {
+        final int n = hosthashes.length;
+        this.hosthashes = hosthashes;
+        this.hostnames = hostnames;
+        this.dates = dates;
+        this.outStart = outStart;
+        this.outTarget = outTarget;
+        this.outCount = outCount;
+
+        // reverse the links with a counting sort by target
+        this.inStart = new int[n + 1];
+        for (final int t: outTarget) this.inStart[t + 1]++;
+        for (int i = 0; i < n; i++) this.inStart[i + 1] += this.inStart[i];
+        this.inSource = new int[outTarget.length];
+        this.inCount = new int[outTarget.length];
+        final int[] fill = Arrays.copyOf(this.inStart, n);
+        for (int s = 0; s < n; s++) {
+            for (int p = outStart[s]; p < outStart[s + 1]; p++) {
+                final int q = fill[outTarget[p]]++;
+                this.inSource[q] = s;
+                this.inCount[q] = outCount[p];
+            }
+        }
+
+        // host name lookups
+        this.hostnameHashes = new HashMap<String, List<String>>();
+        this.hostnameRefsize = new HashMap<String, Integer>();
+        String maxHostname = null;
+        int maxRefsize = 0;
+        for (int id = 0; id < n; id++) {
+            final String hostname = hostnames[id];
+            if (hostname == null) continue;
+            final String lower = hostname.toLowerCase(Locale.ROOT);
+            List<String> hashes = this.hostnameHashes.get(lower);
+            if (hashes == null) {
+                hashes = new ArrayList<String>(1);
+                this.hostnameHashes.put(lower, hashes);
+            }
+            hashes.add(hosthashes[id]);
+            final Integer r = this.hostnameRefsize.get(hostname);
+            final int refsize = (r == null ? 0 : r.intValue()) + 8 + 10 * outDegree(id);
+            this.hostnameRefsize.put(hostname, refsize);
+            if (refsize > maxRefsize) {
+                maxRefsize = refsize;
+                maxHostname = hostname;
+            }
+        }
+        this.maxRefsizeHostname = maxHostname;
+    }
+
+    /**
+     * compute the snapshot of a structure after some of its entries have been changed. Only the changed entries
+     * are decoded; the links of all other hosts are copied from this snapshot.
+     * @param structure the structure map: "'b64hash(6)','hostname" to 'date-yyyymmdd(8)'{'target-b64hash(6)''target-count-hex(4)'}*
+     * @param keys the keys of the entries of the structure which were added or changed since this snapshot was made
+     * @return the snapshot of the structure
+     */
+    public HostLinkGraph update(final SortedMap<String, byte[]> structure, final Collection<String> keys) {
+        // decode the changed entries; like the lookups in the structure, the first key of a host hash is used
+        final TreeMap<String, Entry> changed = new TreeMap<String, Entry>();
+        final TreeSet<String> added = new TreeSet<String>();
+        for (final String k: keys) {
+            if (k.length() < 8) continue;
+            final String hosthash = k.substring(0, 6);
+            if (changed.containsKey(hosthash)) continue;
+            final SortedMap<String, byte[]> tailMap = structure.tailMap(hosthash);
+            if (tailMap.isEmpty()) continue;
+            final String key = tailMap.firstKey();
+            final byte[] value = tailMap.get(key);
+            if (!key.startsWith(hosthash) || key.length() < 8 || value == null || value.length < 8) continue;
+            final Entry entry = new Entry(key.substring(7), value);
+            changed.put(hosthash, entry);
+            if (id(hosthash) < 0) added.add(hosthash);
+            for (final String target: entry.targets) if (id(target) < 0) added.add(target);
+        }
+        if (changed.isEmpty()) return this;
+
+        // merge the new host hashes into the sorted list; remap translates the ids of this snapshot
+        final int n0 = this.hosthashes.length;
+        final int n = n0 + added.size();
+        final String[] hosthashes = new String[n];
+        final int[] remap = new int[n0];
+        final int[] previous = new int[n];
+        final Iterator<String> a = added.iterator();
+        String next = a.hasNext() ? a.next() : null;
+        for (int i = 0, k = 0; k < n; k++) {
+            if (next != null && (i >= n0 || next.compareTo(this.hosthashes[i]) < 0)) {
+                hosthashes[k] = next;
+                previous[k] = -1;
+                next = a.hasNext() ? a.next() : null;
+            } else {
+                hosthashes[k] = this.hosthashes[i];
+                previous[k] = i;
+                remap[i++] = k;
+            }
+        }
+
+        // collect the rows
+        final Entry[] entries = new Entry[n];
+        for (final Map.Entry<String, Entry> e: changed.entrySet()) entries[Arrays.binarySearch(hosthashes, e.getKey())] = e.getValue();
+        final String[] hostnames = new String[n];
+        final String[] dates = new String[n];
+        final int[] outStart = new int[n + 1];
+        for (int id = 0; id < n; id++) {
+            final int degree = entries[id] != null ? entries[id].targets.length : previous[id] >= 0 ? outDegree(previous[id]) : 0;
+            outStart[id + 1] = outStart[id] + degree;
+        }
+        final int[] outTarget = new int[outStart[n]];
+        final int[] outCount = new int[outStart[n]];
+        for (int id = 0; id < n; id++) {
+            int p = outStart[id];
+            final Entry entry = entries[id];
+            if (entry != null) {
+                hostnames[id] = entry.hostname;
+                dates[id] = entry.date;
+                for (int i = 0; i < entry.targets.length; i++) {
+                    outTarget[p] = Arrays.binarySearch(hosthashes, entry.targets[i]);
+                    outCount[p++] = entry.counts[i];
+                }
+            } else if (previous[id] >= 0) {
+                final int prev = previous[id];
+                hostnames[id] = this.hostnames[prev];
+                dates[id] = this.dates[prev];
+                for (int q = this.outStart[prev]; q < this.outStart[prev + 1]; q++) {
+                    outTarget[p] = remap[this.outTarget[q]];
+                    outCount[p++] = this.outCount[q];
+                }
+            }
+        }
+        return new HostLinkGraph(hosthashes, hostnames, dates, outStart, outTarget, outCount);
+    }
+
+    /**
+     * @return the number of hosts, including hosts which are only known as link target
+     */
+    public int size() {
+        return this.hosthashes.length;
+    }
+
+    /**
+     * @param hosthash
+     * @return the id of the host or -1 if the host is not known
+     */
+    public int id(final String hosthash) {
+        final int id = Arrays.binarySearch(this.hosthashes, hosthash);
+        return id < 0 ? -1 : id;
+    }
+
+    public String hosthash(final int id) {
+        return this.hosthashes[id];
+    }
+
+    /**
+     * @param id
+     * @return the host name or null if there is no structure entry for the host
+     */
+    public String hostname(final int id) {
+        return this.hostnames[id];
+    }
+
+    /**
+     * @param id
+     * @return the date of the structure entry of the host (yyyymmdd) or null if there is no entry
+     */
+    public String date(final int id) {
+        return this.dates[id];
+    }
+
+    public int outDegree(final int id) {
+        return this.outStart[id + 1] - this.outStart[id];
+    }
+
+    public int outTarget(final int id, final int i) {
+        return this.outTarget[this.outStart[id] + i];
+    }
+
+    public int outCount(final int id, final int i) {
+        return this.outCount[this.outStart[id] + i];
+    }
+
+    public int inDegree(final int id) {
+        return this.inStart[id + 1] - this.inStart[id];
+    }
+
+    public int inSource(final int id, final int i) {
+        return this.inSource[this.inStart[id] + i];
+    }
+
+    public int inCount(final int id, final int i) {
+        return this.inCount[this.inStart[id] + i];
+    }
+
+    /**
+     * @param id
+     * @return a new map from the host hashes of the hosts linked from the host to the number of links
+     */
+    public Map<String, Integer> outgoing(final int id) {
+        final Map<String, Integer> map = new HashMap<String, Integer>();
+        for (int p = this.outStart[id]; p < this.outStart[id + 1]; p++) map.put(this.hosthashes[this.outTarget[p]], this.outCount[p]);
+        return map;
+    }
+
+    /**
+     * @param hostname
+     * @return the host hashes of the host name, ignoring case, with any protocol and port
+     */
+    public List<String> hostHashes(final String hostname) {
+        final List<String> hashes = this.hostnameHashes.get(hostname.toLowerCase(Locale.ROOT));
+        return hashes == null ? Collections.<String>emptyList() : Collections.unmodifiableList(hashes);
+    }
+
+    /**
+     * @param hostname
+     * @return the summed length of the encoded structure entries of the host name
+     */
+    public int refsize(final String hostname) {
+        final Integer r = this.hostnameRefsize.get(hostname);
+        return r == null ? 0 : r.intValue();
+    }
+
+    /**
+     * @return the host name with the largest summed length of the encoded structure entries or null if there are no entries
+     */
+    public String maxRefsizeHostname() {
+        return this.maxRefsizeHostname;
+    }
+}
@@ -60,6 +60,7 @@ import net.yacy.kelondro.index.Row.Entry;
 import net.yacy.kelondro.rwi.AbstractReference;
 import net.yacy.kelondro.rwi.Reference;
 import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceBlocks;
 import net.yacy.kelondro.rwi.ReferenceContainerCache;
 import net.yacy.kelondro.rwi.ReferenceFactory;
 import net.yacy.kelondro.util.FileUtils;
@@ -97,7 +98,13 @@ public class WebStructureGraph {
      * "'b64hash(6)','hostname" to 'date-yyyymmdd(8)'{'target-b64hash(6)''target-count-hex(4)'}*</p> 
      *  */
     private final TreeMap<String, byte[]> structure_new;
-    
+
+    /** Immutable link graph of the elder entries, updated when the latest entries are joined into them. Replaced while holding the structure_new lock */
+    private volatile HostLinkGraph graph;
+
+    /** Reverse links of the latest entries: from target host hashes to source host hashes to counts. Guarded by the structure_new lock */
+    private final Map<String, Map<String, Integer>> incomingNew;
+
     /** Queue used to receive new entries to store */
     private final BlockingQueue<LearnObject> publicRefDNSResolvingQueue;
     
@@ -133,6 +140,7 @@ public class WebStructureGraph {
     public WebStructureGraph(final File structureFile) {
         this.structure_old = new TreeMap<String, byte[]>();
         this.structure_new = new TreeMap<String, byte[]>();
+        this.incomingNew = new HashMap<String, Map<String, Integer>>();
         this.structureFile = structureFile;
         this.publicRefDNSResolvingQueue = new LinkedBlockingQueue<LearnObject>();
 
@@ -170,6 +178,7 @@ public class WebStructureGraph {
                 delcount--;
             }
         }
+        this.graph = HostLinkGraph.EMPTY.update(this.structure_old, this.structure_old.keySet());
 
         this.publicRefDNSResolvingWorker = new PublicRefDNSResolvingProcess();
         this.publicRefDNSResolvingWorker.start();
@@ -199,8 +208,14 @@ public class WebStructureGraph {
      * Clear the complete web structure.
      */
     public void clear() {
-        this.structure_old.clear();
-        this.structure_new.clear();
+        synchronized ( this.structure_old ) {
+            synchronized ( this.structure_new ) {
+                this.structure_old.clear();
+                this.structure_new.clear();
+                this.incomingNew.clear();
+                this.graph = HostLinkGraph.EMPTY;
+            }
+        }
     }
     
     public void generateCitationReference(final DigestURL url, final Document document) {
@@ -329,16 +344,12 @@ public class WebStructureGraph {
         // returns a map with a hosthash(String):refcount(Integer) relation
         assert hosthash.length() == 6;
         SortedMap<String, byte[]> tailMap;
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    return true;
-                }
-            }
-        }
         synchronized ( this.structure_new ) {
+            final HostLinkGraph g = this.graph;
+            final int id = g.id(hosthash);
+            if ( id >= 0 && g.hostname(id) != null ) {
+                return true;
+            }
             tailMap = this.structure_new.tailMap(hosthash);
             if ( !tailMap.isEmpty() ) {
                 final String key = tailMap.firstKey();
@@ -363,19 +374,14 @@ public class WebStructureGraph {
         String hostname = "";
         String date = "";
         String ref;
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    hostname = key.substring(7);
-                    ref = ASCII.String(tailMap.get(key));
-                    date = ref.substring(0, 8);
-                    h = refstr2map(ref);
-                }
-            }
-        }
         synchronized ( this.structure_new ) {
+            final HostLinkGraph g = this.graph;
+            final int id = g.id(hosthash);
+            if ( id >= 0 && g.hostname(id) != null ) {
+                hostname = g.hostname(id);
+                date = g.date(id);
+                h = g.outgoing(id);
+            }
             tailMap = this.structure_new.tailMap(hosthash);
             if ( !tailMap.isEmpty() ) {
                 final String key = tailMap.firstKey();
@@ -436,21 +442,19 @@ public class WebStructureGraph {
         if ( hostname == null ) {
             return null;
         }
-        // collect the references
-        WebStructureGraph.StructureEntry sentry;
+        // collect the references: the reverse links of the elder entries, overwritten by those of the latest entries
         final HashMap<String, Integer> hosthashes = new HashMap<String, Integer>();
-        Iterator<WebStructureGraph.StructureEntry> i = new StructureIterator(false);
-        while ( i.hasNext() ) {
-            sentry = i.next();
-            if ( sentry.references.containsKey(hosthash) ) {
-                hosthashes.put(sentry.hosthash, sentry.references.get(hosthash));
+        synchronized ( this.structure_new ) {
+            final HostLinkGraph g = this.graph;
+            final int id = g.id(hosthash);
+            if ( id >= 0 ) {
+                for ( int i = 0; i < g.inDegree(id); i++ ) {
+                    hosthashes.put(g.hosthash(g.inSource(id, i)), g.inCount(id, i));
+                }
             }
-        }
-        i = new StructureIterator(true);
-        while ( i.hasNext() ) {
-            sentry = i.next();
-            if ( sentry.references.containsKey(hosthash) ) {
-                hosthashes.put(sentry.hosthash, sentry.references.get(hosthash));
+            final Map<String, Integer> sources = this.incomingNew.get(hosthash);
+            if ( sources != null ) {
+                hosthashes.putAll(sources);
             }
         }
         // construct a new structureEntry Object
@@ -487,6 +491,11 @@ public class WebStructureGraph {
             return e;
         }
 
+        @Override
+        public int impact(final HostReference r) {
+            return Math.min(r.count(), ReferenceBlocks.MAX_IMPACT);
+        }
+
     }
 
     public static class HostReference extends AbstractReference implements Reference, Serializable {
@@ -580,9 +589,10 @@ public class WebStructureGraph {
         final ReferenceContainerCache<HostReference> idx =
             new ReferenceContainerCache<HostReference>(hostReferenceFactory, Base64Order.enhancedCoder, 6);
 
-        // we iterate over all structure entries.
+        // the elder entries are taken from the reverse links of the graph,
+        // the latest entries are added by iterating over them.
         // one structure entry has information that a specific host links to a list of other hosts
-        incomingReferencesEnrich(idx, new StructureIterator(false), 3000);
+        incomingReferencesEnrich(idx, this.graph);
         incomingReferencesEnrich(idx, new StructureIterator(true), 3000);
 
         // fill the cache again and set fill time
@@ -592,6 +602,44 @@ public class WebStructureGraph {
         return hostReferenceIndexCache;
     }
 
+    private static void incomingReferencesEnrich(final ReferenceContainerCache<HostReference> idx, final HostLinkGraph g) {
+        // one container for each linked host, filled from its row of reverse links
+        final long[] modified = new long[g.size()]; // the parsed dates of the linking hosts, 0 if not parsed yet
+        byte[] term;
+        ReferenceContainer<HostReference> r;
+        int source;
+        for ( int id = 0; id < g.size(); id++ ) {
+            if ( g.inDegree(id) == 0 ) {
+                continue;
+            }
+            term = ASCII.getBytes(g.hosthash(id));
+            try {
+                r = new ReferenceContainer<HostReference>(hostReferenceFactory, term, g.inDegree(id));
+                for ( int i = 0; i < g.inDegree(id); i++ ) {
+                    source = g.inSource(id, i);
+                    if ( modified[source] == 0 ) {
+                        try {
+                            modified[source] = GenericFormatter.SHORT_DAY_FORMATTER.parse(g.date(source), 0).getTime().getTime();
+                        } catch (final ParseException e ) {
+                            modified[source] = -1;
+                        }
+                    }
+                    if ( modified[source] < 0 ) {
+                        continue;
+                    }
+                    r.add(new HostReference(ASCII.getBytes(g.hosthash(source)), modified[source], g.inCount(id, i)));
+                }
+                if ( r.isEmpty() ) {
+                    continue;
+                }
+                r.sort();
+                idx.add(r);
+            } catch (final SpaceExceededException e ) {
+                continue;
+            }
+        }
+    }
+
     private void incomingReferencesEnrich(
         final ReferenceContainerCache<HostReference> idx,
         final Iterator<WebStructureGraph.StructureEntry> structureIterator,
@@ -648,16 +696,12 @@ public class WebStructureGraph {
         SortedMap<String, byte[]> tailMap;
         int c = 0;
         try {
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    c = refstr2count(UTF8.String(tailMap.get(key)));
-                }
-            }
-        }
         synchronized ( this.structure_new ) {
+            final HostLinkGraph g = this.graph;
+            final int id = g.id(hosthash);
+            if ( id >= 0 ) {
+                c = g.outDegree(id);
+            }
             tailMap = this.structure_new.tailMap(hosthash);
             if ( !tailMap.isEmpty() ) {
                 final String key = tailMap.firstKey();
@@ -680,16 +724,12 @@ public class WebStructureGraph {
         // returns the host as string, null if unknown
         assert hosthash.length() == 6;
         SortedMap<String, byte[]> tailMap;
-        synchronized ( this.structure_old ) {
-            tailMap = this.structure_old.tailMap(hosthash);
-            if ( !tailMap.isEmpty() ) {
-                final String key = tailMap.firstKey();
-                if ( key.startsWith(hosthash) ) {
-                    return key.substring(7);
-                }
-            }
-        }
         synchronized ( this.structure_new ) {
+            final HostLinkGraph g = this.graph;
+            final int id = g.id(hosthash);
+            if ( id >= 0 && g.hostname(id) != null ) {
+                return g.hostname(id);
+            }
             tailMap = this.structure_new.tailMap(hosthash);
             if ( !tailMap.isEmpty() ) {
                 final String key = tailMap.firstKey();
@@ -714,17 +754,8 @@ public class WebStructureGraph {
 	 */
 	public Set<String> hostName2HostHashes(final String hostName) {
 		Set<String> hashes = new HashSet<>();
-		synchronized (this.structure_old) {
-			String keyHostName, hash;
-			for (String key : structure_old.keySet()) {
-				hash = key.substring(0, 6);
-				keyHostName = key.substring(7);
-				if (keyHostName.equalsIgnoreCase(hostName)) {
-					hashes.add(hash);
-				}
-			}
-		}
 		synchronized (this.structure_new) {
+			hashes.addAll(this.graph.hostHashes(hostName));
 			String keyHostName, hash;
 			for (String key : structure_new.keySet()) {
 				hash = key.substring(0, 6);
@@ -788,38 +819,47 @@ public class WebStructureGraph {
             }
         }
 
-        // store the map back to the structure
+        // store the map back to the structure and update the reverse links of the latest entries
         synchronized ( this.structure_new ) {
-            this.structure_new.put(sourceHosthash + "," + url.getHost(), UTF8.getBytes(map2refstr(refs)));
-        }
-    }
-
-    private static void joinStructure(final TreeMap<String, byte[]> into, final TreeMap<String, byte[]> from) {
-        for ( final Map.Entry<String, byte[]> e : from.entrySet() ) {
-            if ( into.containsKey(e.getKey()) ) {
-                final Map<String, Integer> s0 = refstr2map(UTF8.String(into.get(e.getKey())));
-                final Map<String, Integer> s1 = refstr2map(UTF8.String(e.getValue()));
-                for ( final Map.Entry<String, Integer> r : s1.entrySet() ) {
-                    if ( s0.containsKey(r.getKey()) ) {
-                        s0.put(r.getKey(), s0.get(r.getKey()).intValue() + r.getValue().intValue());
-                    } else {
-                        s0.put(r.getKey(), r.getValue().intValue());
+            final byte[] previous = this.structure_new.put(sourceHosthash + "," + url.getHost(), UTF8.getBytes(map2refstr(refs)));
+            if ( previous != null ) {
+                for ( final String target : refstr2map(UTF8.String(previous)).keySet() ) {
+                    final Map<String, Integer> sources = this.incomingNew.get(target);
+                    if ( sources != null ) {
+                        sources.remove(sourceHosthash);
+                        if ( sources.isEmpty() ) {
+                            this.incomingNew.remove(target);
+                        }
                     }
                 }
-                into.put(e.getKey(), UTF8.getBytes(map2refstr(s0)));
-            } else {
-                into.put(e.getKey(), e.getValue());
+            }
+            for ( final Map.Entry<String, Integer> ref : refs.entrySet() ) {
+                Map<String, Integer> sources = this.incomingNew.get(ref.getKey());
+                if ( sources == null ) {
+                    sources = new HashMap<String, Integer>();
+                    this.incomingNew.put(ref.getKey(), sources);
+                }
+                sources.put(sourceHosthash, ref.getValue());
             }
         }
     }
 
     /**
      * Feed the elder entries structure map with latest computed entries map and then clear this last one.
+     * The latest entries already contain the references of the elder entries of the same host, so they replace them.
+     * The link graph of the elder entries is updated with the changed hosts only.
      */
     public void joinOldNew() {
-        synchronized ( this.structure_new ) {
-            joinStructure(this.structure_old, this.structure_new);
-            this.structure_new.clear();
+        synchronized ( this.structure_old ) {
+            synchronized ( this.structure_new ) {
+                if ( this.structure_new.isEmpty() ) {
+                    return;
+                }
+                this.structure_old.putAll(this.structure_new);
+                this.graph = this.graph.update(this.structure_old, this.structure_new.keySet());
+                this.structure_new.clear();
+                this.incomingNew.clear();
+            }
         }
     }
 
@@ -832,30 +872,19 @@ public class WebStructureGraph {
         int refsize, maxref = 0;
         String hostName, maxHostName = null;
         Integer refsNb;
-        synchronized ( this.structure_old ) {
-            for ( final Map.Entry<String, byte[]> entry : this.structure_old.entrySet() ) {
-                refsize = entry.getValue().length;
-                hostName = entry.getKey().substring(7);
-                refsNb = hostNamesToRefsNb.get(hostName);
-                if(refsNb == null) {
-                	refsNb = refsize;
-                } else {
-                	refsNb += refsize;
-                }
-                if ( refsNb > maxref ) {
-                    maxref = refsNb;
-                    maxHostName = hostName;
-                }
-                hostNamesToRefsNb.put(hostName, refsNb);
-            }
-        }
         synchronized ( this.structure_new ) {
+            // the maximum of the elder entries is known from the graph, only the latest entries are added to it
+            final HostLinkGraph g = this.graph;
+            maxHostName = g.maxRefsizeHostname();
+            if ( maxHostName != null ) {
+                maxref = g.refsize(maxHostName);
+            }
             for ( final Map.Entry<String, byte[]> entry : this.structure_new.entrySet() ) {
                 refsize = entry.getValue().length;
                 hostName = entry.getKey().substring(7);
                 refsNb = hostNamesToRefsNb.get(hostName);
                 if(refsNb == null) {
-                	refsNb = refsize;
+                	refsNb = g.refsize(hostName) + refsize;
                 } else {
                 	refsNb += refsize;
                 }
@@ -871,12 +900,13 @@ public class WebStructureGraph {
     
     public ReversibleScoreMap<String> hostReferenceScore() {
         ReversibleScoreMap<String> result = new ClusteredScoreMap<String>(ASCII.identityASCIIComparator);
-        synchronized ( this.structure_old ) {
-            for ( final Map.Entry<String, byte[]> entry : this.structure_old.entrySet() ) {
-                result.set(entry.getKey().substring(7), (entry.getValue().length - 8) / 10);
-            }
-        }
         synchronized ( this.structure_new ) {
+            final HostLinkGraph g = this.graph;
+            for ( int id = 0; id < g.size(); id++ ) {
+                if ( g.hostname(id) != null ) {
+                    result.set(g.hostname(id), g.outDegree(id));
+                }
+            }
             for ( final Map.Entry<String, byte[]> entry : this.structure_new.entrySet() ) {
                 result.set(entry.getKey().substring(7), (entry.getValue().length - 8) / 10);
             }
@@ -1036,6 +1066,9 @@ public class WebStructureGraph {
         						+ " entries/second");
         			}
         			this.structure_old.clear();
+        			synchronized ( this.structure_new ) {
+        				this.graph = HostLinkGraph.EMPTY;
+        			}
         		}
         	}
         }
@@ -44,6 +44,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -51,6 +52,8 @@ import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.document.id.Punycode;
 import net.yacy.cora.document.id.Punycode.PunycodeException;
+import net.yacy.cora.storage.ARC;
+import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
@@ -77,6 +80,12 @@ public class Blacklist {
 
     public static final String BLACKLIST_FILENAME_FILTER = "^.*\\.black$";
 
+    /** maximum number of hosts per blacklist type with a cached set of applicable path patterns */
+    private static final int HOST_CACHE_SIZE = 10000;
+
+    /** marker for hosts without any applicable path pattern */
+    private static final Pattern[] NO_PATTERNS = new Pattern[0];
+
     public static enum BlacklistError {
 
         NO_ERROR(0),
@@ -106,6 +115,10 @@ public class Blacklist {
     private final ConcurrentMap<BlacklistType, HandleSet> cachedUrlHashs;
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_matchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_notmatchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
+    private final ConcurrentMap<BlacklistType, Map<String, Pattern>> hostpatterns_notmatchable; // key=host regex as in hostpaths_notmatchable, value=compiled host regex
+    private final ConcurrentMap<BlacklistType, ARC<String, Pattern[]>> cachedHostPatterns; // key=host, value=all path patterns applicable to that host
+    private final AtomicLong hostCacheHit = new AtomicLong(0), hostCacheMiss = new AtomicLong(0);
+    private final AtomicLong hostCacheGeneration = new AtomicLong(0); // incremented on each clear of a host cache, so that patterns computed before a clear are not cached
 
     public Blacklist(final File rootPath) {
 
@@ -114,11 +127,15 @@ public class Blacklist {
         // prepare the data structure
         this.hostpaths_matchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.hostpaths_notmatchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
+        this.hostpatterns_notmatchable = new ConcurrentHashMap<BlacklistType, Map<String, Pattern>>();
+        this.cachedHostPatterns = new ConcurrentHashMap<BlacklistType, ARC<String, Pattern[]>>();
         this.cachedUrlHashs = new ConcurrentHashMap<BlacklistType, HandleSet>();
 
         for (final BlacklistType blacklistType : BlacklistType.values()) {
             this.hostpaths_matchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
             this.hostpaths_notmatchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
+            this.hostpatterns_notmatchable.put(blacklistType, new ConcurrentHashMap<String, Pattern>());
+            this.cachedHostPatterns.put(blacklistType, new ConcurrentARC<String, Pattern[]>(HOST_CACHE_SIZE, Math.min(32, 2 * Runtime.getRuntime().availableProcessors())));
             loadDHTCache(blacklistType);
         }
     }
@@ -159,6 +176,49 @@ public class Blacklist {
         return this.cachedUrlHashs.get(blacklistType);
     }
 
+    /**
+     * A new path pattern set as value of the blacklist maps. The set may be
+     * extended by add() while isListed() is iterating over it.
+     */
+    private static Set<Pattern> newPatternSet() {
+        return ConcurrentHashMap.<Pattern>newKeySet();
+    }
+
+    /**
+     * Compile a host key of the not-matchable blacklist map.
+     * @param hostRegex a host regular expression as used as key in the not-matchable blacklist map
+     * @return the compiled pattern or null if the host key is not a valid regular expression
+     */
+    private static Pattern compileHostPattern(final String hostRegex) {
+        try {
+            return Pattern.compile(hostRegex);
+        } catch (final PatternSyntaxException e) {
+            log.warn("ignored invalid blacklist host regex: " + hostRegex);
+            return null;
+        }
+    }
+
+    /**
+     * Register the compiled form of a new host key of the not-matchable blacklist map.
+     */
+    private final void compileHostKey(final BlacklistType blacklistType, final String hostRegex) {
+        final Map<String, Pattern> hostPatterns = this.hostpatterns_notmatchable.get(blacklistType);
+        if (hostPatterns.containsKey(hostRegex)) return;
+        final Pattern hostPattern = compileHostPattern(hostRegex);
+        if (hostPattern != null) hostPatterns.put(hostRegex, hostPattern);
+    }
+
+    /**
+     * Forget all cached host verdicts of a blacklist type; must be called after each change of the blacklist maps.
+     */
+    private final void clearHostCache(final BlacklistType blacklistType) {
+        final ARC<String, Pattern[]> hostCache = this.cachedHostPatterns.get(blacklistType);
+        synchronized (hostCache) {
+            this.hostCacheGeneration.incrementAndGet();
+            hostCache.clear();
+        }
+    }
+
     public final File getRootPath() {
     	return blacklistRootPath;
     }
@@ -170,6 +230,12 @@ public class Blacklist {
         for (final Map<String, Set<Pattern>> entry : this.hostpaths_notmatchable.values()) {
             entry.clear();
         }
+        for (final Map<String, Pattern> entry : this.hostpatterns_notmatchable.values()) {
+            entry.clear();
+        }
+        for (final ARC<String, Pattern[]> entry : this.cachedHostPatterns.values()) {
+            entry.clear();
+        }
         for (final HandleSet entry : this.cachedUrlHashs.values()) {
             entry.clear();
         }
@@ -225,7 +291,7 @@ public class Blacklist {
             for (final Iterator<Map.Entry<String, List<String>>> mi = loadedBlacklist.iterator(); mi.hasNext();) {
                 loadedEntry = mi.next();
                 loadedPaths = loadedEntry.getValue();
-                loadedPathsPattern = new HashSet<Pattern>();
+                loadedPathsPattern = newPatternSet();
                 for (String a: loadedPaths) {
                     if (a.equals("*")) {
                         loadedPathsPattern.add(Pattern.compile(".*", Pattern.CASE_INSENSITIVE));
@@ -247,12 +313,14 @@ public class Blacklist {
                         blacklistMapMatch.put(loadedEntry.getKey(), loadedPathsPattern);
                     } else {
                         blacklistMapNotMatch.put(loadedEntry.getKey(), loadedPathsPattern);
+                        compileHostKey(blFile.getType(), loadedEntry.getKey());
                     }
                 } else {
-                    paths.addAll(new HashSet<Pattern>(loadedPathsPattern));
+                    paths.addAll(loadedPathsPattern);
                 }
             }
         }
+        clearHostCache(blFile.getType());
     }
 
     public final void loadList(final BlacklistType blacklistType, final String fileNames, final String sep) {
@@ -300,8 +368,10 @@ public class Blacklist {
             }
             if (hostList.isEmpty()) {
                 blacklistMapNotMatch.remove(host);
+                this.hostpatterns_notmatchable.get(blacklistType).remove(host);
             }
         }
+        clearHostCache(blacklistType);
 
         //TODO: check if delete from blacklist is desired, on reload entry will not be available in any blacklist
         //      even if remove (above) from internal maps (at runtime) is only done for given blacklistType
@@ -376,12 +446,16 @@ public class Blacklist {
 
 					Set<Pattern> hostList;
 					if (!(blacklistMap.containsKey(h) && ((hostList = blacklistMap.get(h)) != null))) {
-						blacklistMap.put(h, (hostList = new HashSet<Pattern>()));
+						blacklistMap.put(h, (hostList = newPatternSet()));
+						if (!isMatchable(host)) {
+							compileHostKey(blacklistType, h);
+						}
 					}
 
 					Pattern pattern = Pattern.compile(p, Pattern.CASE_INSENSITIVE);
 
 					hostList.add(pattern);
+					clearHostCache(blacklistType);
 
 					// Append the line to the file.
 					final String newEntry = h + "/" + pattern;
@@ -455,9 +529,11 @@ public class Blacklist {
                 final Map<String, Set<Pattern>> blacklistMap = getBlacklistMap(supportedBlacklistType, isMatchable(host));
                 Set<Pattern> hostList;
                 if (!(blacklistMap.containsKey(h) && ((hostList = blacklistMap.get(h)) != null))) {
-                    blacklistMap.put(h, (hostList = new HashSet<Pattern>()));
+                    blacklistMap.put(h, (hostList = newPatternSet()));
+                    if (!isMatchable(host)) compileHostKey(supportedBlacklistType, h);
                 }
                 hostList.add(pattern);
+                clearHostCache(supportedBlacklistType);
             }
         }
 
@@ -498,6 +574,31 @@ public class Blacklist {
         while (iter.hasNext()) {
             this.cachedUrlHashs.get(iter.next()).clear();
         }
+        for (final ARC<String, Pattern[]> hostCache : this.cachedHostPatterns.values()) {
+            synchronized (hostCache) {
+                this.hostCacheGeneration.incrementAndGet();
+                hostCache.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of hosts in all blacklist types with cached applicable path patterns
+     */
+    public final int hostCacheSize() {
+        int size = 0;
+        for (final ARC<String, Pattern[]> hostCache : this.cachedHostPatterns.values()) {
+            size += hostCache.size();
+        }
+        return size;
+    }
+
+    public final long hostCacheHit() {
+        return this.hostCacheHit.get();
+    }
+
+    public final long hostCacheMiss() {
+        return this.hostCacheMiss.get();
     }
 
     public final boolean hashInBlacklistedCache(final BlacklistType blacklistType, final byte[] urlHash) {
@@ -602,12 +703,23 @@ public class Blacklist {
             throw new IllegalArgumentException("path may not be null");
         }
 
-        // getting the proper blacklists
-        final Map<String, Set<Pattern>> blacklistMapMatched = getBlacklistMap(blacklistType, true);
-        
-        final Map<String, Set<Pattern>> blacklistMapNotMatched = getBlacklistMap(blacklistType, false);
+        // the host part is resolved only once for each host, further checks only match the path
+        final ARC<String, Pattern[]> hostCache = this.cachedHostPatterns.get(blacklistType);
+        Pattern[] pathPatterns = hostCache.get(hostlow);
+        if (pathPatterns == null) {
+            this.hostCacheMiss.incrementAndGet();
+            final long generation = this.hostCacheGeneration.get();
+            pathPatterns = hostPathPatterns(hostlow, getBlacklistMap(blacklistType, true),
+                    getBlacklistMap(blacklistType, false), this.hostpatterns_notmatchable.get(blacklistType));
+            // a clear during the computation may have made the patterns stale; they are still used for this check
+            synchronized (hostCache) {
+                if (generation == this.hostCacheGeneration.get()) hostCache.insert(hostlow, pathPatterns);
+            }
+        } else {
+            this.hostCacheHit.incrementAndGet();
+        }
 
-        return Blacklist.isListed(hostlow, path, blacklistMapMatched, blacklistMapNotMatched);
+        return isListed(hostlow, path, pathPatterns);
     }
 
     /**
@@ -621,89 +733,92 @@ public class Blacklist {
 	protected final static boolean isListed(final String hostlow, final String path,
 			final Map<String, Set<Pattern>> blacklistMapMatched,
 			final Map<String, Set<Pattern>> blacklistMapNotMatched) {
+		return isListed(hostlow, path, hostPathPatterns(hostlow, blacklistMapMatched, blacklistMapNotMatched, null));
+	}
+
+	/**
+	 * Check if a path matches one of the path patterns applicable to a host.
+	 * @param hostlow host part, only used for logging
+	 * @param path path on the host
+	 * @param pathPatterns all path patterns of the blacklist entries matching the host
+	 * @return true when host/path is blacklisted
+	 */
+	private final static boolean isListed(final String hostlow, final String path, final Pattern[] pathPatterns) {
+		if (pathPatterns.length == 0) {
+			return false;
+		}
 		long beginTime = 0;
 		if(log.isFine()) {
 			beginTime = System.nanoTime();
 		}
 		final String p = (!path.isEmpty() && path.charAt(0) == '/') ? path.substring(1) : path;
 
-        Pattern[] app;
-        boolean matched = false;
-        Pattern pp; // path-pattern
+		boolean matched = false;
+		for (int i = pathPatterns.length - 1; !matched && i > -1; i--) {
+			matched = pathPatterns[i].matcher(p).matches();
+		}
+		if(log.isFine()) {
+			/* Trace URLs spending too much CPU time : set Blacklist.level = FINE in yacy.logging file */
+			long timeInSeconds = (System.nanoTime() - beginTime) / 1000000000;
+			if(timeInSeconds > 10) {
+				log.fine("Long processing : " + timeInSeconds + " seconds. URL :  " + hostlow + path);
+			}
+		}
+		return matched;
+	}
 
-        // try to match complete domain
-        if (!matched && blacklistMapMatched.get(hostlow) != null) {
-            app = blacklistMapMatched.get(hostlow).toArray(new Pattern[0]);
-            for (int i = app.length - 1; !matched && i > -1; i--) {
-                pp = app[i];
-                matched |= pp.matcher(p).matches();
-            }
-        }
-        // first try to match the domain with wildcard '*'
-        // [TL] While "." are found within the string
-        int index = 0;
-        while (!matched && (index = hostlow.indexOf('.', index + 1)) != -1) {
-            if (blacklistMapMatched.get(hostlow.substring(0, index + 1) + "*") != null) {
-                app = blacklistMapMatched.get(hostlow.substring(0, index + 1) + "*").toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
-            if (blacklistMapMatched.get(hostlow.substring(0, index)) != null) {
-                app = blacklistMapMatched.get(hostlow.substring(0, index)).toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
-        }
-        index = hostlow.length();
-        while (!matched && (index = hostlow.lastIndexOf('.', index - 1)) != -1) {
-            if (blacklistMapMatched.get("*" + hostlow.substring(index, hostlow.length())) != null) {
-                app = blacklistMapMatched.get("*" + hostlow.substring(index, hostlow.length())).toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
-            if (blacklistMapMatched.get(hostlow.substring(index + 1, hostlow.length())) != null) {
-                app = blacklistMapMatched.get(hostlow.substring(index + 1, hostlow.length())).toArray(new Pattern[0]);
-                for (int i = app.length - 1; !matched && i > -1; i--) {
-                    pp = app[i];
-                    matched |= pp.matcher(p).matches();
-                }
-            }
-        }
+	/**
+	 * Collect the path patterns of all blacklist entries whose host part matches the given host.
+	 * @param hostlow host part
+	 * @param blacklistMapMatched blacklist patterns indexed by matched hosts
+	 * @param blacklistMapNotMatched blacklist patterns indexed by not matched hosts
+	 * @param hostPatterns the compiled keys of blacklistMapNotMatched, may be null or incomplete;
+	 *        missing host keys are then compiled for this call only
+	 * @return the applicable path patterns, an empty array if the host is not listed at all
+	 */
+	private final static Pattern[] hostPathPatterns(final String hostlow,
+			final Map<String, Set<Pattern>> blacklistMapMatched,
+			final Map<String, Set<Pattern>> blacklistMapNotMatched,
+			final Map<String, Pattern> hostPatterns) {
+		final List<Pattern> patterns = new ArrayList<Pattern>();
+
+		// try to match complete domain
+		addAll(patterns, blacklistMapMatched.get(hostlow));
+
+		// first try to match the domain with wildcard '*'
+		// [TL] While "." are found within the string
+		int index = 0;
+		while ((index = hostlow.indexOf('.', index + 1)) != -1) {
+			addAll(patterns, blacklistMapMatched.get(hostlow.substring(0, index + 1) + "*"));
+			addAll(patterns, blacklistMapMatched.get(hostlow.substring(0, index)));
+		}
+		index = hostlow.length();
+		while ((index = hostlow.lastIndexOf('.', index - 1)) != -1) {
+			addAll(patterns, blacklistMapMatched.get("*" + hostlow.substring(index, hostlow.length())));
+			addAll(patterns, blacklistMapMatched.get(hostlow.substring(index + 1, hostlow.length())));
+		}
 
+		// loop over all Regex-entries
+		Pattern hostPattern;
+		for (final Entry<String, Set<Pattern>> entry : blacklistMapNotMatched.entrySet()) {
+			hostPattern = hostPatterns == null ? null : hostPatterns.get(entry.getKey());
+			if (hostPattern == null) {
+				hostPattern = compileHostPattern(entry.getKey());
+				if (hostPattern == null) {
+					continue;
+				}
+			}
+			if (hostPattern.matcher(hostlow).matches()) {
+				addAll(patterns, entry.getValue());
+			}
+		}
+		return patterns.isEmpty() ? NO_PATTERNS : patterns.toArray(new Pattern[patterns.size()]);
+	}
 
-        // loop over all Regex-entries
-        if (!matched) {
-            String key;
-            for (final Entry<String, Set<Pattern>> entry : blacklistMapNotMatched.entrySet()) {
-                key = entry.getKey();
-                try {
-                    if (Pattern.matches(key, hostlow)) {
-                        app = entry.getValue().toArray(new Pattern[0]);
-                        for (final Pattern ap : app) {
-                            if (ap.matcher(p).matches()) {
-                                return true;
-                            }
-                        }
-                    }
-                } catch (final PatternSyntaxException e) {
-                    //System.out.println(e.toString());
-                }
-            }
-        }
-        if(log.isFine()) {
-        	/* Trace URLs spending too much CPU time : set Blacklist.level = FINE in yacy.logging file */
-        	long timeInSeconds = (System.nanoTime() - beginTime) / 1000000000;
-        	if(timeInSeconds > 10) {
-        		log.fine("Long processing : " + timeInSeconds + " seconds. URL :  " + hostlow + path);
-        	}
-        }
-        return matched;
+	private final static void addAll(final List<Pattern> target, final Set<Pattern> source) {
+		if (source != null) {
+			target.addAll(source);
+		}
 	}
 
     public static BlacklistError checkError(final String element, final Map<String, String> properties) {
@@ -47,12 +47,15 @@ import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.federate.solr.FailCategory;
 import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.cora.protocol.http.ProxySettings;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.retrieval.AsyncHTTPLoader;
 import net.yacy.crawler.retrieval.FTPLoader;
 import net.yacy.crawler.retrieval.FileLoader;
 import net.yacy.crawler.retrieval.HTTPLoader;
@@ -80,6 +83,7 @@ public final class LoaderDispatcher {
     private final SMBLoader smbLoader;
     private final FileLoader fileLoader;
     private final ConcurrentHashMap<DigestURL, Semaphore> loaderSteering; // a map that delivers a 'finish' semaphore for urls
+    private volatile AsyncHTTPLoader asyncHttpLoader; // loader for http and https without a blocked thread for each load; null if not used
 
     public LoaderDispatcher(final Switchboard sb) {
         this.sb = sb;
@@ -91,6 +95,31 @@ public final class LoaderDispatcher {
         this.smbLoader = new SMBLoader(sb, LoaderDispatcher.log);
         this.fileLoader = new FileLoader(sb, LoaderDispatcher.log);
         this.loaderSteering = new ConcurrentHashMap<DigestURL, Semaphore>();
+        this.asyncHttpLoader = null;
+    }
+
+    /**
+     * switch on asynchronous loading of http and https resources with {@link #loadAsync(Request, CacheStrategy, BlacklistType, ClientIdentification.Agent, AsyncHTTPLoader.Callback)}
+     * @param maxThreads the maximum number of threads which handle network events and responses
+     * @param maxConnectionsPerHost the maximum number of open connections to a single host
+     * @throws IOException if the http client cannot be started
+     */
+    public synchronized void startAsyncLoader(final int maxThreads, final int maxConnectionsPerHost) throws IOException {
+        if (this.asyncHttpLoader == null) this.asyncHttpLoader = new AsyncHTTPLoader(this.sb, LoaderDispatcher.log, maxThreads, maxConnectionsPerHost);
+    }
+
+    /**
+     * @return the asynchronous http loader or null if it is not started
+     */
+    public AsyncHTTPLoader asyncLoader() {
+        return this.asyncHttpLoader;
+    }
+
+    public synchronized void close() {
+        if (this.asyncHttpLoader != null) {
+            this.asyncHttpLoader.close();
+            this.asyncHttpLoader = null;
+        }
     }
 
     public boolean isSupportedProtocol(final String protocol) {
@@ -193,6 +222,69 @@ public final class LoaderDispatcher {
         }
     }
 
+    /**
+     * load a resource like {@link #load(Request, CacheStrategy, BlacklistType, ClientIdentification.Agent)}, but if the asynchronous
+     * loader is started, http and https resources are loaded without blocking the calling thread while the server is accessed.
+     * Other resources, resources on localhost and resources which are loaded through a proxy are loaded in the calling thread.
+     * @param request the request essentials
+     * @param cacheStrategy strategy according to NOCACHE, IFFRESH, IFEXIST, CACHEONLY
+     * @param blacklistType
+     * @param agent
+     * @param callback receives the response or the reason of a failure; it may be called before this method returns
+     */
+    public void loadAsync(final Request request, final CacheStrategy cacheStrategy, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final AsyncHTTPLoader.Callback callback) {
+        final DigestURL url = request.url();
+        final String protocol = url.getProtocol();
+        final String host = url.getHost();
+        final AsyncHTTPLoader async = this.asyncHttpLoader;
+        final boolean https = protocol.equals("https");
+        if (async == null || !(https || protocol.equals("http")) || host == null || Domains.isLocalhost(host) ||
+            ProxySettings.useForHost(host, https ? ProxySettings.Protocol.HTTPS : ProxySettings.Protocol.HTTP)) {
+            try {
+                callback.loaded(load(request, cacheStrategy, blacklistType, agent));
+            } catch (final IOException e) {
+                callback.failed(request, e.getMessage());
+            }
+            return;
+        }
+
+        final CrawlProfile crawlProfile = request.profileHandle() == null ? null : this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+        try {
+            // check if url is in blacklist
+            if (blacklistType != null && Switchboard.urlBlacklist.isListed(blacklistType, host.toLowerCase(Locale.ROOT), url.getFile())) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), crawlProfile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+                throw new IOException("DISPATCHER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            }
+
+            // check if we have the page in the cache
+            final Response response = loadFromCache(request, cacheStrategy, agent, url, crawlProfile);
+            if (response != null) {
+                callback.loaded(response);
+                return;
+            }
+            if (cacheStrategy == CacheStrategy.CACHEONLY) throw new IOException("cache only strategy");
+
+            checkAccessTime(agent, url);
+            if (accessTime.size() > accessTimeMaxsize) accessTime.clear(); // prevent a memory leak here
+            accessTime.put(host, System.currentTimeMillis());
+        } catch (final IOException e) {
+            callback.failed(request, e.getMessage());
+            return;
+        }
+
+        async.load(request, crawlProfile, protocolMaxFileSize(url), blacklistType, agent, new AsyncHTTPLoader.Callback() {
+            @Override
+            public void loaded(final Response response) {
+                storeCache(response, crawlProfile);
+                callback.loaded(response);
+            }
+            @Override
+            public void failed(final Request failedRequest, final String error) {
+                callback.failed(failedRequest, error);
+            }
+        });
+    }
+
     /**
      * load a resource from the web, from ftp, from smb or a file
      * @param request the request essentials
@@ -257,11 +349,21 @@ public final class LoaderDispatcher {
             throw new IOException("empty response (code " + response.getStatus() + ") for url " + url.toNormalform(true));
         }
 
+        storeCache(response, crawlProfile);
+        return response;
+    }
+
+    /**
+     * store a loaded resource to the cache if the crawl profile and the response allow that
+     * @param response
+     * @param crawlProfile
+     */
+    private void storeCache(final Response response, final CrawlProfile crawlProfile) {
         // we got something. Now check if we want to store that to the cache
         // first check looks if we want to store the content to the cache
         if (crawlProfile == null || !crawlProfile.storeHTCache()) {
             // no caching wanted. Thats ok, do not write any message
-            return response;
+            return;
         }
         // second check tells us if the protocol tells us something about caching
         final String storeError = response.shallStoreCacheForCrawler();
@@ -278,7 +380,6 @@ public final class LoaderDispatcher {
         } else {
             LoaderDispatcher.log.warn("cannot write " + response.url() + " to Cache (4): " + storeError);
         }
-        return response;
     }
 
     /**
@@ -113,7 +113,6 @@ import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.solr.FailCategory;
 import net.yacy.cora.federate.solr.Ranking;
 import net.yacy.cora.federate.solr.connector.ShardSelection;
-import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.lod.vocabulary.Tagging;
@@ -126,6 +125,7 @@ import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.TimeoutRequest;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HostPolicy;
 import net.yacy.cora.protocol.http.ProxySettings;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
@@ -139,6 +139,7 @@ import net.yacy.crawler.HarvestProcess;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.CrawlQueues;
+import net.yacy.crawler.data.Latency;
 import net.yacy.crawler.data.NoticedURL;
 import net.yacy.crawler.data.NoticedURL.StackType;
 import net.yacy.crawler.data.ResultImages;
@@ -185,7 +186,9 @@ import net.yacy.kelondro.blob.BEncodedHeap;
 import net.yacy.kelondro.blob.Tables;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.io.MappedFile;
 import net.yacy.kelondro.logging.GuiHandler;
+import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
@@ -566,14 +569,23 @@ public final class Switchboard extends serverSwitch {
 
         // initialize index
         ReferenceContainer.maxReferences = getConfigInt("index.maxReferences", 0);
+        MappedFile.setMaxMappedFiles(this.getConfigInt(SwitchboardConstants.HEAP_MMAP_MAXFILES, SwitchboardConstants.HEAP_MMAP_MAXFILES_DEFAULT));
+        IndexCell.compactBuffer = this.getConfigBool(SwitchboardConstants.INDEX_COMPACT_BUFFER, SwitchboardConstants.INDEX_COMPACT_BUFFER_DEFAULT);
+        IndexCell.blockMinReferences = this.getConfigInt(SwitchboardConstants.INDEX_BLOCKS_MIN_REFERENCES, SwitchboardConstants.INDEX_BLOCKS_MIN_REFERENCES_DEFAULT);
+        SearchEvent.rwiTopK = this.getConfigInt(SwitchboardConstants.SEARCH_RWI_TOPK, SwitchboardConstants.SEARCH_RWI_TOPK_DEFAULT);
         final File segmentsPath = new File(new File(indexPath, networkName), "SEGMENTS");
         try {this.index = new Segment(this.log, segmentsPath, archivePath, solrCollectionConfigurationWork, solrWebgraphConfigurationWork);} catch (IOException e) {ConcurrentLog.logException(e);}
+        this.index.setMergeWorkers(this.getConfigInt(SwitchboardConstants.INDEX_MERGE_WORKERS, SwitchboardConstants.INDEX_MERGE_WORKERS_DEFAULT));
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) try {
             this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
         } catch (final IOException e) {ConcurrentLog.logException(e);}
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) try {
             this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
         } catch (final IOException e) {ConcurrentLog.logException(e);}
+        final long sentencesMaxSize = 1024L * 1024L * this.getConfigLong(SwitchboardConstants.INDEX_SENTENCES_MAXSIZE, SwitchboardConstants.INDEX_SENTENCES_MAXSIZE_DEFAULT); // this is megabyte
+        if (sentencesMaxSize > 0) try {
+            this.index.connectSentences(sentencesMaxSize);
+        } catch (final IOException e) {ConcurrentLog.logException(e);}
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT, true)) {
             try {this.index.fulltext().connectLocalSolr();} catch (final IOException e) {ConcurrentLog.logException(e);}
         }
@@ -888,6 +900,13 @@ public final class Switchboard extends serverSwitch {
         // start a loader
         this.log.config("Starting Crawl Loader");
         this.loader = new LoaderDispatcher(this);
+        if (getConfigBool(SwitchboardConstants.CRAWLER_ASYNC, SwitchboardConstants.CRAWLER_ASYNC_DEFAULT)) try {
+            this.loader.startAsyncLoader(
+                    getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_MAX_THREADS, SwitchboardConstants.CRAWLER_ASYNC_MAX_THREADS_DEFAULT),
+                    getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_MAX_CONNECTIONS_PER_HOST, SwitchboardConstants.CRAWLER_ASYNC_MAX_CONNECTIONS_PER_HOST_DEFAULT));
+        } catch (final IOException e) {
+            this.log.warn("cannot start the asynchronous http loader: " + e.getMessage());
+        }
         
         // load the robots.txt db
         this.log.config("Initializing robots.txt DB");
@@ -906,6 +925,7 @@ public final class Switchboard extends serverSwitch {
                 getDataPath());
         OAIListFriendsLoader.init(this.loader, oaiFriends, ClientIdentification.yacyInternetCrawlerAgent);
         this.crawlQueues = new CrawlQueues(this, this.queuesRoot);
+        HostPolicy.setStatistics(Latency.hostStatistics); // adapt the http connections of a host to its latency
 
         // on startup, resume all crawls
         setConfig(SwitchboardConstants.CRAWLJOB_LOCAL_CRAWL + "_isPaused", "false");
@@ -950,6 +970,8 @@ public final class Switchboard extends serverSwitch {
                             + " property: " + pse.getMessage());
             System.exit(-1);
         }
+        Domains.nameCacheHitTTL = getConfigLong(SwitchboardConstants.HTTPC_NAME_CACHE_HIT_TTL, SwitchboardConstants.HTTPC_NAME_CACHE_HIT_TTL_DEFAULT);
+        Domains.nameCacheMissTTL = getConfigLong(SwitchboardConstants.HTTPC_NAME_CACHE_MISS_TTL, SwitchboardConstants.HTTPC_NAME_CACHE_MISS_TTL_DEFAULT);
 
         // generate snippets cache
         this.log.config("Initializing Snippet Cache");
@@ -981,7 +1003,8 @@ public final class Switchboard extends serverSwitch {
                 this.peers,
                 isIntranetMode(),
                 isGlobalMode(),
-                this.domainList); // Intranet and Global mode may be both true!
+                this.domainList, // Intranet and Global mode may be both true!
+                Math.min(1000, this.getConfigInt(SwitchboardConstants.CRAWLER_STACKER_BATCH, SwitchboardConstants.CRAWLER_STACKER_BATCH_DEFAULT))); // solr allows 1024 boolean clauses
 
         // possibly switch off localIP check
         Domains.setNoLocalCheck(isAllIPMode());
@@ -1473,8 +1496,11 @@ public final class Switchboard extends serverSwitch {
             final File segmentsPath = new File(new File(indexPrimaryPath, networkName), "SEGMENTS");
             final File archivePath = getDataPath(SwitchboardConstants.INDEX_ARCHIVE_PATH, SwitchboardConstants.INDEX_ARCHIVE_DEFAULT);
             this.index = new Segment(this.log, segmentsPath, archivePath, collectionConfiguration, webgraphConfiguration);
+            this.index.setMergeWorkers(this.getConfigInt(SwitchboardConstants.INDEX_MERGE_WORKERS, SwitchboardConstants.INDEX_MERGE_WORKERS_DEFAULT));
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
+            final long sentencesMaxSize = 1024L * 1024L * this.getConfigLong(SwitchboardConstants.INDEX_SENTENCES_MAXSIZE, SwitchboardConstants.INDEX_SENTENCES_MAXSIZE_DEFAULT); // this is megabyte
+            if (sentencesMaxSize > 0) this.index.connectSentences(sentencesMaxSize);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT, true)) {
                 this.index.fulltext().connectLocalSolr();
             }
@@ -1535,7 +1561,8 @@ public final class Switchboard extends serverSwitch {
                     this.peers,
                     "local.any".indexOf(getConfig(SwitchboardConstants.NETWORK_DOMAIN, "global")) >= 0,
                     "global.any".indexOf(getConfig(SwitchboardConstants.NETWORK_DOMAIN, "global")) >= 0,
-                    this.domainList);
+                    this.domainList,
+                    Math.min(1000, this.getConfigInt(SwitchboardConstants.CRAWLER_STACKER_BATCH, SwitchboardConstants.CRAWLER_STACKER_BATCH_DEFAULT)));
 
         }
         Domains.setNoLocalCheck(isAllIPMode()); // possibly switch off localIP check
@@ -1830,8 +1857,7 @@ public final class Switchboard extends serverSwitch {
      * @return if it exists, the name of the database is returned, if it not exists, null is returned
      */
     public HarvestProcess urlExists(final String hash) throws IOException {
-        LoadTimeURL md = this.index.fulltext().getDefaultConnector().getLoadTimeURL(hash);
-        if (md != null && md.date >= 0) return HarvestProcess.LOADED;
+        if (this.index.fulltext().getLoadTime(hash) >= 0) return HarvestProcess.LOADED;
         HarvestProcess hp = this.crawlQueues.exists(ASCII.getBytes(hash));
         if (hp != null) return hp;
         return null; // todo: can also be in error
@@ -1954,6 +1980,7 @@ public final class Switchboard extends serverSwitch {
         this.crawlStacker.announceClose();
         this.crawlStacker.close();
         this.crawlQueues.close();
+        this.loader.close();
         this.robots.close();
         this.indexingDocumentProcessor.shutdown();
         this.indexingCondensementProcessor.shutdown();
@@ -4196,6 +4223,7 @@ public final class Switchboard extends serverSwitch {
         mySeed.put(Seed.UTC, GenericFormatter.UTCDiffString());
         mySeed.setFlagAcceptRemoteCrawl(getConfigBool(SwitchboardConstants.CRAWLJOB_REMOTE, false));
         mySeed.setFlagAcceptRemoteIndex(getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, true));
+        mySeed.setFlagBinaryRWI(getConfigBool(SwitchboardConstants.INDEX_DIST_BINARY, true));
         mySeed.setFlagSSLAvailable(this.getHttpServer() != null && this.getHttpServer().withSSL() && getConfigBool("server.https", false));
         if (mySeed.getFlagSSLAvailable()) mySeed.put(Seed.PORTSSL, Integer.toString(getPublicPort(SwitchboardConstants.SERVER_SSLPORT, 8443)));
 
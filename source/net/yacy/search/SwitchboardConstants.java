@@ -193,6 +193,12 @@ public final class SwitchboardConstants {
      * <p>Name of the setting whether DHT chunks shall be transferred gzip-encodedly</p>
      */
     public static final String INDEX_DIST_GZIP_BODY             = "indexDistribution.gzipBody";
+    /**
+     * <p><code>public static final String <strong>INDEX_DIST_BINARY</strong> = "indexDistribution.binaryTransfer"</code></p>
+     * <p>Name of the setting whether RWIs shall be sent and received in the compressed binary transfer format
+     * when the remote peer supports it</p>
+     */
+    public static final String INDEX_DIST_BINARY                = "indexDistribution.binaryTransfer";
     /**
      * <p><code>public static final String <strong>INDEX_DIST_ALLOW</strong> = "allowDistributeIndex"</code></p>
      * <p>Name of the setting whether Index Distribution shall be allowed (and the DHT-thread therefore started) or not</p>
@@ -310,6 +316,24 @@ public final class SwitchboardConstants {
     /** Default configuration setting for remote Solr responses binary encoding */
     public static final boolean REMOTE_SOLR_BINARY_RESPONSE_ENABLED_DEFAULT            = true;
 
+    /** Key of the setting for the number of documents which are buffered and written to Solr as one batch; 0 writes every document immediately */
+    public static final String SOLR_WRITEBEHIND_BATCHSIZE = "solr.writeBehind.batchSize";
+
+    /** Default number of documents written to Solr as one batch */
+    public static final int SOLR_WRITEBEHIND_BATCHSIZE_DEFAULT = 100;
+
+    /** Key of the setting for the maximum time in milliseconds that a document is buffered before it is written to Solr */
+    public static final String SOLR_WRITEBEHIND_MAXDELAY = "solr.writeBehind.maxDelay";
+
+    /** Default maximum time in milliseconds that a document is buffered before it is written to Solr */
+    public static final long SOLR_WRITEBEHIND_MAXDELAY_DEFAULT = 1000;
+
+    /** Key of the setting for the maximum number of documents in the url hash to load date cache of the collection; 0 disables the cache */
+    public static final String SOLR_LOADTIMECACHE_MAXSIZE = "solr.loadTimeCache.maxSize";
+
+    /** Default maximum number of documents in the url hash to load date cache of the collection */
+    public static final int SOLR_LOADTIMECACHE_MAXSIZE_DEFAULT = 1000000;
+
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_ENABLED      = "federated.service.solr.indexing.enabled";
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_URL          = "federated.service.solr.indexing.url";
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_SHARDING     = "federated.service.solr.indexing.sharding";
@@ -327,6 +351,38 @@ public final class SwitchboardConstants {
      * <p>Name of the setting how many active crawler-threads may maximal be running on the same time</p>
      */
     public static final String CRAWLER_THREADS_ACTIVE_MAX       = "crawler.MaxActiveThreads";
+    /**
+     * <p><code>public static final String <strong>CRAWLER_ASYNC</strong> = "crawler.async"</code></p>
+     * <p>Name of the setting if http and https resources of the crawler are loaded with the event-driven loader, which
+     * does not block a crawler thread while a resource is loaded</p>
+     */
+    public static final String CRAWLER_ASYNC                    = "crawler.async";
+    public static final boolean CRAWLER_ASYNC_DEFAULT           = false;
+    /**
+     * <p><code>public static final String <strong>CRAWLER_ASYNC_MAX_ACTIVE</strong> = "crawler.async.maxActive"</code></p>
+     * <p>Name of the setting how many loads of the event-driven loader may be running on the same time</p>
+     */
+    public static final String CRAWLER_ASYNC_MAX_ACTIVE         = "crawler.async.maxActive";
+    public static final int    CRAWLER_ASYNC_MAX_ACTIVE_DEFAULT = 2000;
+    /**
+     * <p><code>public static final String <strong>CRAWLER_ASYNC_MAX_THREADS</strong> = "crawler.async.maxThreads"</code></p>
+     * <p>Name of the setting how many threads of the event-driven loader handle network events and loaded resources</p>
+     */
+    public static final String CRAWLER_ASYNC_MAX_THREADS        = "crawler.async.maxThreads";
+    public static final int    CRAWLER_ASYNC_MAX_THREADS_DEFAULT = 32;
+    /**
+     * <p><code>public static final String <strong>CRAWLER_ASYNC_MAX_CONNECTIONS_PER_HOST</strong> = "crawler.async.maxConnectionsPerHost"</code></p>
+     * <p>Name of the setting how many connections the event-driven loader may open to a single host</p>
+     */
+    public static final String CRAWLER_ASYNC_MAX_CONNECTIONS_PER_HOST         = "crawler.async.maxConnectionsPerHost";
+    public static final int    CRAWLER_ASYNC_MAX_CONNECTIONS_PER_HOST_DEFAULT = 2;
+    /**
+     * <p><code>public static final String <strong>CRAWLER_STACKER_BATCH</strong> = "crawler.stacker.existenceBatchSize"</code></p>
+     * <p>Name of the setting how many urls waiting in the crawl stacker are checked for existence in the index
+     * with a single index request; 1 disables the batch checks</p>
+     */
+    public static final String CRAWLER_STACKER_BATCH            = "crawler.stacker.existenceBatchSize";
+    public static final int    CRAWLER_STACKER_BATCH_DEFAULT    = 100;
     public static final String CRAWLER_LATENCY_FACTOR           = "crawler.latencyFactor";
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
@@ -364,6 +420,18 @@ public final class SwitchboardConstants {
      */
     public static final String WORDCACHE_MAX_COUNT              = "wordCacheMaxCount";
     public static final String HTTPC_NAME_CACHE_CACHING_PATTERNS_NO = "httpc.nameCacheNoCachingPatterns";
+    /**
+     * <p><code>public static final String <strong>HTTPC_NAME_CACHE_HIT_TTL</strong> = "httpc.nameCacheHitTTL"</code></p>
+     * <p>Time in milliseconds until a resolved host name is looked up again in the name service</p>
+     */
+    public static final String HTTPC_NAME_CACHE_HIT_TTL         = "httpc.nameCacheHitTTL";
+    public static final long   HTTPC_NAME_CACHE_HIT_TTL_DEFAULT = 60L * 60L * 1000L;
+    /**
+     * <p><code>public static final String <strong>HTTPC_NAME_CACHE_MISS_TTL</strong> = "httpc.nameCacheMissTTL"</code></p>
+     * <p>Time in milliseconds until a host name which could not be resolved is looked up again in the name service</p>
+     */
+    public static final String HTTPC_NAME_CACHE_MISS_TTL        = "httpc.nameCacheMissTTL";
+    public static final long   HTTPC_NAME_CACHE_MISS_TTL_DEFAULT = 10L * 60L * 1000L;
     public static final String ROBOTS_TXT                       = "httpd.robots.txt";
     public static final String ROBOTS_TXT_DEFAULT               = RobotsTxtConfig.LOCKED + "," + RobotsTxtConfig.DIRS;
     /** Key of the setting configuring how many active robots.txt loading threads may be running on the same time at max */
@@ -443,6 +511,48 @@ public final class SwitchboardConstants {
     public static final String INDEX_PATH_DEFAULT       = "DATA/INDEX";
     public static final String INDEX_ARCHIVE_PATH       = "indexArchivePath"; // this is a relative path to the application root or an absolute path
     public static final String INDEX_ARCHIVE_DEFAULT    = "DATA/ARCHIVE";
+    /**
+     * <p><code>public static final String <strong>INDEX_MERGE_WORKERS</strong> = "index.merge.workers"</code></p>
+     * <p>Name of the setting specifying the number of concurrently running merge jobs for the files of the
+     * reverse word index and the citation index</p>
+     */
+    public static final String INDEX_MERGE_WORKERS          = "index.merge.workers";
+    public static final int    INDEX_MERGE_WORKERS_DEFAULT  = 2;
+    /**
+     * <p><code>public static final String <strong>HEAP_MMAP_MAXFILES</strong> = "heap.mmap.maxFiles"</code></p>
+     * <p>Name of the setting specifying the maximum number of read-only BLOB heap files of the reverse word index
+     * and the HTCACHE which are read using a memory mapping; 0 switches off memory mapping</p>
+     */
+    public static final String HEAP_MMAP_MAXFILES           = "heap.mmap.maxFiles";
+    public static final int    HEAP_MMAP_MAXFILES_DEFAULT   = 0;
+    /**
+     * <p><code>public static final String <strong>INDEX_COMPACT_BUFFER</strong> = "index.compactBuffer"</code></p>
+     * <p>Name of the setting specifying if the ram buffer of the reverse word index and the citation index
+     * stores its references in compact primitive arrays instead of one container object for each term</p>
+     */
+    public static final String INDEX_COMPACT_BUFFER         = "index.compactBuffer";
+    public static final boolean INDEX_COMPACT_BUFFER_DEFAULT = false;
+    /**
+     * <p><code>public static final String <strong>INDEX_BLOCKS_MIN_REFERENCES</strong> = "index.blocks.minReferences"</code></p>
+     * <p>Name of the setting specifying the minimum number of references of a term in the reverse word index
+     * for which the references are additionally stored in blocks with skip pointers and block maxima; 0 switches the blocks off</p>
+     */
+    public static final String INDEX_BLOCKS_MIN_REFERENCES  = "index.blocks.minReferences";
+    public static final int    INDEX_BLOCKS_MIN_REFERENCES_DEFAULT = 0;
+    /**
+     * <p><code>public static final String <strong>INDEX_SENTENCES_MAXSIZE</strong> = "index.sentences.maxSize"</code></p>
+     * <p>Name of the setting specifying the maximum size in megabytes of the store of document sentences which
+     * is used for the computation of snippets; 0 switches the store off</p>
+     */
+    public static final String INDEX_SENTENCES_MAXSIZE      = "index.sentences.maxSize";
+    public static final long   INDEX_SENTENCES_MAXSIZE_DEFAULT = 1024;
+    /**
+     * <p><code>public static final String <strong>SEARCH_RWI_TOPK</strong> = "search.rwi.topk"</code></p>
+     * <p>Name of the setting specifying the number of candidates which a local RWI search selects with the
+     * block maxima of the search terms before they are ranked; 0 reads all references of the search terms</p>
+     */
+    public static final String SEARCH_RWI_TOPK              = "search.rwi.topk";
+    public static final int    SEARCH_RWI_TOPK_DEFAULT      = 0;
     /**
      * <p><code>public static final String <strong>LISTS_PATH</strong> = "listsPath"</code></p>
      * <p>Name of the setting specifying the folder beginning from the YaCy-installation's top-folder, where all
@@ -51,6 +51,7 @@ import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
 import net.yacy.cora.federate.solr.connector.EmbeddedSolrConnector;
+import net.yacy.cora.federate.solr.connector.LoadTimeCacheSolrConnector;
 import net.yacy.cora.federate.solr.connector.RemoteSolrConnector;
 import net.yacy.cora.federate.solr.connector.ShardSelection;
 import net.yacy.cora.federate.solr.connector.SolrConnector;
@@ -236,7 +237,7 @@ public final class Fulltext {
             EmbeddedInstance instance = this.solrInstances.getEmbedded();
             if (instance != null) {
                 for (String name: instance.getCoreNames()) {
-                    this.solrInstances.getEmbeddedConnector(name).clear();
+                    this.solrInstances.clear(name, false);
                 }
                 this.commit(false);
             }
@@ -249,7 +250,7 @@ public final class Fulltext {
             ShardInstance instance = this.solrInstances.getRemote();
             if (instance != null) {
                 for (String name: instance.getCoreNames()) {
-                    this.solrInstances.getRemoteConnector(name).clear();
+                    this.solrInstances.clear(name, true);
                 }
             }
             this.solrInstances.clearCaches();
@@ -553,9 +554,25 @@ public final class Fulltext {
      */
     public long getLoadTime(final String urlHash) throws IOException {
         if (urlHash == null) return -1l;
-        SolrConnector.LoadTimeURL md = this.getDefaultConnector().getLoadTimeURL(urlHash);
-        if (md == null) return -1l;
-        return md.date;
+        return this.getDefaultConnector().getLoadTime(urlHash);
+    }
+
+    /**
+     * get the load times of several resources with a single index request.
+     * @param urlHashes
+     * @return a map from url hash to the load time in milliseconds since epoch for all documents which exist
+     */
+    public Map<String, Long> getLoadTimes(final Collection<String> urlHashes) throws IOException {
+        if (urlHashes == null || urlHashes.isEmpty()) return new HashMap<String, Long>();
+        return this.getDefaultConnector().getLoadTimes(urlHashes);
+    }
+
+    /**
+     * @return the url hash to load date cache in front of the default connector or null if there is none
+     */
+    public LoadTimeCacheSolrConnector getLoadTimeCache() {
+        final SolrConnector connector = this.getDefaultConnector();
+        return connector instanceof LoadTimeCacheSolrConnector ? (LoadTimeCacheSolrConnector) connector : null;
     }
     
     public List<File> dumpFiles() {
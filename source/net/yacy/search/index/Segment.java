@@ -41,6 +41,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
@@ -68,7 +69,10 @@ import net.yacy.crawler.retrieval.Response;
 import net.yacy.document.Condenser;
 import net.yacy.document.Document;
 import net.yacy.document.Parser;
+import net.yacy.document.SentenceTable;
 import net.yacy.document.parser.htmlParser;
+import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.blob.Compressor;
 import net.yacy.kelondro.data.citation.CitationReference;
 import net.yacy.kelondro.data.citation.CitationReferenceFactory;
 import net.yacy.kelondro.data.word.Word;
@@ -112,6 +116,10 @@ public class Segment {
     public static final String termIndexName = "text.index";
     public static final String citationIndexName = "citation.index";
     public static final String firstseenIndexName = "firstseen.index";
+    public static final String sentenceIndexName = "sentences.array";
+    public static final int    sentenceBufferSize = 1024 * 1024;
+    public static final int    sentenceCompressorBufferSize = 4 * 1024 * 1024;
+    public static final long   sentenceLockTimeout = 2000;
 
     // the reference factory
     public static final ReferenceFactory<WordReference> wordReferenceFactory = new WordReferenceFactory();
@@ -124,7 +132,9 @@ public class Segment {
     protected       IndexCell<WordReference>       termIndex;
     protected       IndexCell<CitationReference>   urlCitationIndex;
     protected       IndexTable                     firstSeenIndex;
+    protected       Compressor                     sentenceIndex; // url hash -> SentenceTable of the document
     protected       IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
+    private         int                            mergeWorkers = 1; // number of concurrent merge jobs of the iodispatcher
 
     /**
      * create a new Segment
@@ -142,9 +152,25 @@ public class Segment {
         this.fulltext = new Fulltext(segmentPath, archivePath, collectionConfiguration, webgraphConfiguration);
         this.termIndex = null;
         this.urlCitationIndex = null;
+        this.sentenceIndex = null;
         this.firstSeenIndex = new IndexTable(new File(segmentPath, firstseenIndexName), 12, 8, false, false);
     }
     
+    /**
+     * set the number of concurrent merge jobs; must be called before the RWI or citation index is connected
+     * @param mergeWorkers
+     */
+    public void setMergeWorkers(final int mergeWorkers) {
+        this.mergeWorkers = Math.max(1, mergeWorkers);
+    }
+
+    /**
+     * @return the io dispatcher which dumps and merges the files of the RWI and citation index or null if none is connected
+     */
+    public IODispatcher merger() {
+        return this.merger;
+    }
+
     public boolean connectedRWI() {
         return this.termIndex != null;
     }
@@ -153,7 +179,7 @@ public class Segment {
         if (this.termIndex != null) return;
         
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2, 2, writeBufferSize);
+            this.merger = new IODispatcher(2, 2, writeBufferSize, this.mergeWorkers);
             this.merger.start();
         }
         this.termIndex = new IndexCell<WordReference>(
@@ -183,7 +209,7 @@ public class Segment {
         if (this.urlCitationIndex != null) return;
 
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2,2,writeBufferSize);
+            this.merger = new IODispatcher(2, 2, writeBufferSize, this.mergeWorkers);
             this.merger.start();
         }
         this.urlCitationIndex = new IndexCell<CitationReference>(
@@ -205,6 +231,70 @@ public class Segment {
         this.urlCitationIndex = null;
     }
 
+    public boolean connectedSentences() {
+        return this.sentenceIndex != null;
+    }
+
+    /**
+     * open the store of the sentences of the indexed documents, which is used to compute snippets
+     * without loading and parsing the documents again
+     * @param maxSize the maximum size of the store in bytes; if it is exceeded, the oldest entries are removed
+     * @throws IOException
+     */
+    public void connectSentences(final long maxSize) throws IOException {
+        if (this.sentenceIndex != null) return;
+        final ArrayStack backend = new ArrayStack(new File(new File(this.segmentPath, "default"), sentenceIndexName), "sentences", wordOrder, Word.commonHashLength, sentenceBufferSize, false, true);
+        backend.setMaxSize(maxSize);
+        this.sentenceIndex = new Compressor(backend, sentenceCompressorBufferSize, sentenceLockTimeout, Deflater.BEST_SPEED);
+    }
+
+    public void disconnectSentences() {
+        if (this.sentenceIndex == null) return;
+        this.sentenceIndex.close(true);
+        this.sentenceIndex = null;
+    }
+
+    /**
+     * @param urlhash
+     * @return the sentences of the document as they were stored when the document was indexed,
+     * or null if they are not stored
+     */
+    public SentenceTable getSentences(final byte[] urlhash) {
+        final Compressor sentences = this.sentenceIndex;
+        if (sentences == null) return null;
+        try {
+            final byte[] b = sentences.get(urlhash);
+            return b == null ? null : SentenceTable.decode(b);
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.warn("Segment", "no memory to read the sentences of " + ASCII.String(urlhash));
+        }
+        return null;
+    }
+
+    private void storeSentences(final byte[] urlhash, final Document document) {
+        final Compressor sentences = this.sentenceIndex;
+        if (sentences == null) return;
+        try {
+            // remove the sentences of a previous version first: the insert does not write anything if it does not get the lock in time
+            sentences.delete(urlhash);
+            sentences.insert(urlhash, new SentenceTable(document.getSentences(false)).encode());
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    private void removeSentences(final byte[] urlhash) {
+        final Compressor sentences = this.sentenceIndex;
+        if (sentences == null) return;
+        try {
+            sentences.delete(urlhash);
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
     public int citationCount() {
         return this.urlCitationIndex == null ? 0 : this.urlCitationIndex.sizesMax();
     }
@@ -463,6 +553,7 @@ public class Segment {
             if (this.fulltext != null) this.fulltext.clearLocalSolr();
             if (this.fulltext != null) this.fulltext.clearRemoteSolr();
             if (this.urlCitationIndex != null) this.urlCitationIndex.clear();
+            if (this.sentenceIndex != null) this.sentenceIndex.clear();
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
         }
@@ -482,6 +573,7 @@ public class Segment {
     	if (this.termIndex != null) this.termIndex.close();
         if (this.fulltext != null) this.fulltext.close();
         if (this.urlCitationIndex != null) this.urlCitationIndex.close();
+        if (this.sentenceIndex != null) this.sentenceIndex.close(true);
         if (this.firstSeenIndex != null) this.firstSeenIndex.close();
         if (this.merger != null) {
             this.merger.terminate();
@@ -613,6 +705,9 @@ public class Segment {
                 Transactions.store(vector, true, crawlProfile.snapshotLoadImage(), crawlProfile.snapshotReplaceold(), proxy, acceptLanguage);
         }
         
+        // STORE SENTENCES FOR SNIPPETS
+        this.storeSentences(url.hash(), document);
+
         // STORE TO SOLR
         this.putDocument(vector);
         List<SolrInputDocument> webgraph = vector.getWebgraphDocuments();
@@ -789,6 +884,7 @@ public class Segment {
             if (document == null) {
                 // delete just the url entry
                 fulltext().remove(urlhash);
+                removeSentences(urlhash);
                 return 0;
             }
             // get the word set
@@ -801,6 +897,7 @@ public class Segment {
 
             // finally delete the url entry itself
             fulltext().remove(urlhash);
+            removeSentences(urlhash);
             return count;
         } catch (final Parser.Failure e) {
             return 0;
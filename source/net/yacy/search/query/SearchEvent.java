@@ -135,6 +135,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     /** Default count of words for topicnavigagtor */
     private static final int MAX_TOPWORDS = 12;
 
+    /** number of candidates of a top-k search in the local RWI index; 0 reads all references of the search terms */
+    public static int rwiTopK = 0;
+
     private long eventTime;
     public QueryParams query;
     public final SeedDB peers;
@@ -586,7 +589,16 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
             // so following sortings together with the global results will be fast
             try {
                 final long timer = System.currentTimeMillis();
-                TermSearch<WordReference> search =
+                TermSearch<WordReference> search = rwiTopK > 0 ?
+                    SearchEvent.this.query
+                        .getSegment()
+                        .termIndex()
+                        .query(
+                                SearchEvent.this.query.getQueryGoal().getIncludeHashes(),
+                                SearchEvent.this.query.getQueryGoal().getExcludeHashes(),
+                            Segment.wordReferenceFactory,
+                            SearchEvent.this.query.maxDistance,
+                            rwiTopK) :
                     SearchEvent.this.query
                         .getSegment()
                         .termIndex()
@@ -670,8 +682,16 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         }
         long timer = System.currentTimeMillis();
 
-        // normalize entries
-        final BlockingQueue<WordReferenceVars> decodedEntries = this.order.normalizeWith(index, maxtime, local);
+        // normalize entries; if no entry is filtered out, only the entries which can enter the rwiStack are decoded
+        final boolean unfiltered =
+                this.query.constraint == null &&
+                this.query.contentdom.getCode() == 0 &&
+                (this.query.modifier.language == null || this.query.modifier.language.isEmpty()) &&
+                this.query.modifier.sitehash == null &&
+                this.query.siteexcludes == null;
+        final BlockingQueue<WordReferenceVars> decodedEntries = unfiltered ?
+                this.order.normalizeWith(index, maxtime, local, max_results_rwi, this.flagcount) : // flags of all entries are counted by the normalization
+                this.order.normalizeWith(index, maxtime, local);
         int is = index.size();
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(
             this.query.id(true),
@@ -706,6 +726,17 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     break pollloop;
                 }
                 if (iEntry == WordReferenceVars.poison) {
+                    if (unfiltered) {
+                        // only the best max_results_rwi entries were decoded; all other entries pass the (absent) filters as well
+                        // and must be counted as available, but not twice if the url was already delivered by another container
+                        final Iterator<byte[]> urlhashes = index.keys();
+                        while (urlhashes.hasNext()) {
+                            final byte[] urlhash = urlhashes.next();
+                            if (this.urlhashes.has(urlhash)) continue;
+                            this.urlhashes.putUnique(urlhash);
+                            if (local) this.local_rwi_available.incrementAndGet(); else this.remote_rwi_available.incrementAndGet();
+                        }
+                    }
                     break pollloop;
                 }
                 assert (iEntry.urlhash().length == index.row().primaryKeyLength);
@@ -718,7 +749,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 
                 // increase flag counts
                 Bitfield flags = iEntry.flags();
-                for (int j = 0; j < 32; j++) {
+                if (!unfiltered) for (int j = 0; j < 32; j++) {
                     if (flags.get(j)) this.flagcount[j]++;
                 }
 
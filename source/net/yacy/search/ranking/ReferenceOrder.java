@@ -28,17 +28,17 @@ package net.yacy.search.ranking;
 
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.RecursiveAction;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.sorting.ConcurrentScoreMap;
 import net.yacy.cora.util.ConcurrentLog;
-import net.yacy.document.LargeNumberCache;
 import net.yacy.document.Tokenizer;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReference;
@@ -46,17 +46,42 @@ import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
+import net.yacy.search.index.Segment;
 
 
 public class ReferenceOrder {
 
     private static int cores = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * one pool for the normalization of all searches, so concurrent searches do not start their own threads
+     */
+    private static final ForkJoinPool pool = new ForkJoinPool(cores, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool p) {
+            final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("ReferenceOrder.Normalizer_" + t.getPoolIndex());
+            return t;
+        }
+    }, null, false);
+
+    /** number of rows which are decoded or scored in one task */
+    private static final int SLICE = 512;
+
+    // the normalized columns; the index is the position in the min/max arrays
+    private static final int HITCOUNT = 0, LLOCAL = 1, LOTHER = 2, VIRTUALAGE = 3, WORDSINTEXT = 4, PHRASESINTEXT = 5, WORDSINTITLE = 6,
+                             POSINTEXT = 7, DISTANCE = 8, POSINPHRASE = 9, POSOFPHRASE = 10, URLLENGTH = 11, URLCOMPS = 12;
+    private static final int COLUMNS = 13;
+    private static final int FIRST_INVERSE = POSINTEXT; // columns from here on are better if the value is smaller
+
     private       int maxdomcount;
-    private       WordReferenceVars min, max;
+    private       int[] min, max; // null until the first container is normalized
+    private       double minTermFrequency, maxTermFrequency;
+    private final int[] coeff;
     private final ConcurrentScoreMap<String> doms; // collected for "authority" heuristic
     private final RankingProfile ranking;
     private final String language;
+    private final byte[] languageBytes;
 
     public ReferenceOrder(final RankingProfile profile, final String language) {
         this.min = null;
@@ -65,187 +90,379 @@ public class ReferenceOrder {
         this.doms = new ConcurrentScoreMap<String>();
         this.maxdomcount = 0;
         this.language = language;
+        this.languageBytes = ASCII.getBytes(language);
+        this.coeff = new int[COLUMNS];
+        this.coeff[HITCOUNT] = profile.coeff_hitcount;
+        this.coeff[LLOCAL] = profile.coeff_llocal;
+        this.coeff[LOTHER] = profile.coeff_lother;
+        this.coeff[VIRTUALAGE] = profile.coeff_date;
+        this.coeff[WORDSINTEXT] = profile.coeff_wordsintext;
+        this.coeff[PHRASESINTEXT] = profile.coeff_phrasesintext;
+        this.coeff[WORDSINTITLE] = profile.coeff_wordsintitle;
+        this.coeff[POSINTEXT] = profile.coeff_posintext;
+        this.coeff[DISTANCE] = profile.coeff_worddistance;
+        this.coeff[POSINPHRASE] = profile.coeff_posinphrase;
+        this.coeff[POSOFPHRASE] = profile.coeff_posofphrase;
+        this.coeff[URLLENGTH] = profile.coeff_urllength;
+        this.coeff[URLCOMPS] = profile.coeff_urlcomps;
     }
 
     public BlockingQueue<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, long maxtime, final boolean local) {
+        return normalizeWith(container, maxtime, local, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * normalize the ranking with the references of a container: the minimum and maximum of all ranking criteria and the
+     * host counts of the authority heuristic are updated. The references are decoded into columns of primitive values by
+     * the shared normalization pool.
+     * @param container
+     * @param maxtime
+     * @param local
+     * @param maxcount only the maxcount references with the best ranking are returned
+     * @param flagcount if not null, the flags of all references of the container are counted in this array
+     * @return a queue which is filled with the references while the normalization is still running; it is terminated with WordReferenceVars.poison
+     */
+    public BlockingQueue<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, long maxtime, final boolean local, final int maxcount, final int[] flagcount) {
         final LinkedBlockingQueue<WordReferenceVars> out = new LinkedBlockingQueue<WordReferenceVars>();
-        int threads = cores;
-        if (container.size() < 100) threads = 2;
-        final Thread distributor = new NormalizeDistributor(container, out, threads, maxtime, local);
-        distributor.start();
+        pool.execute(new Normalization(container, out, maxtime, local, maxcount, flagcount));
 
-        // return the resulting queue while the processing queues are still working
+        // return the resulting queue while the normalization is still working
         return out;
     }
 
-    private final class NormalizeDistributor extends Thread {
+    /**
+     * the decoded references of a container, one array for each ranking criterion
+     */
+    private static final class Columns {
+        private final int[][] values;
+        private final double[] termFrequency;
+        private final long[] constant; // the part of the ranking which does not depend on other references
+        private final String[] hosthash; // null for rows which were not decoded
+        private final long[] score;
+        private final int[] min, max;
+        private double minTermFrequency, maxTermFrequency;
+        private final int[] flagcount;
+        private final Map<String, Integer> doms;
 
-        ReferenceContainer<WordReference> container;
-        LinkedBlockingQueue<WordReferenceVars> out;
-        private final int threads;
-        private final long maxtime;
-        private final boolean local;
-        
-        public NormalizeDistributor(final ReferenceContainer<WordReference> container, final LinkedBlockingQueue<WordReferenceVars> out, final int threads, final long maxtime, final boolean local) {
-        	super("ReferenceOrder.NormalizeDistributor");
+        private Columns(final int size) {
+            this.values = new int[COLUMNS][size];
+            this.termFrequency = new double[size];
+            this.constant = new long[size];
+            this.hosthash = new String[size];
+            this.score = new long[size];
+            this.min = new int[COLUMNS];
+            this.max = new int[COLUMNS];
+            Arrays.fill(this.min, Integer.MAX_VALUE);
+            Arrays.fill(this.max, Integer.MIN_VALUE);
+            this.minTermFrequency = Double.MAX_VALUE;
+            this.maxTermFrequency = -Double.MAX_VALUE;
+            this.flagcount = new int[32];
+            this.doms = new HashMap<String, Integer>();
+        }
+
+        private void merge(final Columns other) {
+            for (int c = 0; c < COLUMNS; c++) {
+                if (other.min[c] < this.min[c]) this.min[c] = other.min[c];
+                if (other.max[c] > this.max[c]) this.max[c] = other.max[c];
+            }
+            if (other.minTermFrequency < this.minTermFrequency) this.minTermFrequency = other.minTermFrequency;
+            if (other.maxTermFrequency > this.maxTermFrequency) this.maxTermFrequency = other.maxTermFrequency;
+            for (int j = 0; j < 32; j++) this.flagcount[j] += other.flagcount[j];
+            for (final Map.Entry<String, Integer> entry: other.doms.entrySet()) {
+                final Integer count = this.doms.get(entry.getKey());
+                this.doms.put(entry.getKey(), count == null ? entry.getValue() : count.intValue() + entry.getValue().intValue());
+            }
+        }
+    }
+
+    /**
+     * decode a slice of the rows of a container into the columns; the statistics of the slice are collected
+     * in a separate Columns object and merged when the sub-tasks are joined
+     */
+    private final class Decode extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ReferenceContainer<WordReference> container;
+        private final Columns columns;
+        private final Columns stats;
+        private final int from, to;
+        private final long timeout;
+
+        private Decode(final ReferenceContainer<WordReference> container, final Columns columns, final Columns stats, final int from, final int to, final long timeout) {
             this.container = container;
-            this.out = out;
-            this.threads = threads;
-            this.maxtime = maxtime;
-            this.local = local;
+            this.columns = columns;
+            this.stats = stats;
+            this.from = from;
+            this.to = to;
+            this.timeout = timeout;
         }
 
         @Override
-        public void run() {
-            // transform the reference container into a stream of parsed entries
-            final BlockingQueue<WordReferenceVars> vars = WordReferenceVars.transform(this.container, this.maxtime, this.local);
-
-            // start the transformation threads
-            final Semaphore termination = new Semaphore(this.threads);
-            final NormalizeWorker[] worker = new NormalizeWorker[this.threads];
-            for (int i = 0; i < this.threads; i++) {
-                worker[i] = new NormalizeWorker(this.out, termination, this.maxtime);
-                worker[i].start();
+        protected void compute() {
+            if (this.to - this.from > SLICE) {
+                final int mid = (this.from + this.to) >>> 1;
+                final Columns right = new Columns(0);
+                invokeAll(
+                        new Decode(this.container, this.columns, this.stats, this.from, mid, this.timeout),
+                        new Decode(this.container, this.columns, right, mid, this.to, this.timeout));
+                this.stats.merge(right);
+                return;
             }
+            final int[][] v = this.columns.values;
+            for (int i = this.from; i < this.to; i++) {
+                final WordReference t = Segment.wordReferenceFactory.produceSlow(this.container.get(i, false));
+                v[HITCOUNT][i] = t.hitcount();
+                v[LLOCAL][i] = t.llocal();
+                v[LOTHER][i] = t.lother();
+                v[VIRTUALAGE][i] = t.virtualAge();
+                v[WORDSINTEXT][i] = t.wordsintext();
+                v[PHRASESINTEXT][i] = t.phrasesintext();
+                v[WORDSINTITLE][i] = t.wordsintitle();
+                v[POSINTEXT][i] = t.posintext();
+                v[DISTANCE][i] = t.distance();
+                v[POSINPHRASE][i] = t.posinphrase();
+                v[POSOFPHRASE][i] = t.posofphrase();
+                v[URLLENGTH][i] = t.urllength();
+                v[URLCOMPS][i] = t.urlcomps();
+                final double tf = t.termFrequency();
+                this.columns.termFrequency[i] = tf;
+                final Bitfield flags = t.flags();
+                this.columns.constant[i] = constant(t.urlhash(), flags, t.getLanguage());
+                final String hosthash = t.hosthash();
+                this.columns.hosthash[i] = hosthash;
 
-            // fill the queue
-            WordReferenceVars iEntry;
-            int p = 0;
-            long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-            try {
-                while ((iEntry = vars.take()) != WordReferenceVars.poison) {
-                    worker[p % this.threads].add(iEntry);
-                    p++;
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeDistributor", "adding of decoded rows to workers ended with timeout = " + this.maxtime);
-                        break;
-                    }
+                for (int c = 0; c < COLUMNS; c++) {
+                    final int x = v[c][i];
+                    if (x < this.stats.min[c]) this.stats.min[c] = x;
+                    if (x > this.stats.max[c]) this.stats.max[c] = x;
+                }
+                if (tf < this.stats.minTermFrequency) this.stats.minTermFrequency = tf;
+                if (tf > this.stats.maxTermFrequency) this.stats.maxTermFrequency = tf;
+                for (int j = 0; j < 32; j++) if (flags.get(j)) this.stats.flagcount[j]++;
+                final Integer count = this.stats.doms.get(hosthash);
+                this.stats.doms.put(hosthash, count == null ? 1 : count.intValue() + 1);
+
+                if ((i & 0xff) == 0 && System.currentTimeMillis() > this.timeout) {
+                    ConcurrentLog.warn("ReferenceOrder", "decoding of rows ended with timeout");
+                    break;
                 }
-            } catch (final InterruptedException e) {
             }
+        }
+    }
+
+    /**
+     * compute the ranking of a slice of the decoded rows
+     */
+    private final class Score extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Columns columns;
+        private final int[] min, max;
+        private final double minTermFrequency, maxTermFrequency;
+        private final int from, to;
 
-            // insert poison to stop the queues
-            for (int i = 0; i < this.threads; i++) worker[i].add(WordReferenceVars.poison);
+        private Score(final Columns columns, final int[] min, final int[] max, final double minTermFrequency, final double maxTermFrequency, final int from, final int to) {
+            this.columns = columns;
+            this.min = min;
+            this.max = max;
+            this.minTermFrequency = minTermFrequency;
+            this.maxTermFrequency = maxTermFrequency;
+            this.from = from;
+            this.to = to;
+        }
 
-            // wait for termination but not too long to make it possible that this
-            // is called from outside with a join to get some normalization results
-            // before going on
-            for (int i = 0; i < this.threads; i++) try {worker[i].join(100);} catch (final InterruptedException e) {}
+        @Override
+        protected void compute() {
+            if (this.to - this.from > SLICE) {
+                final int mid = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new Score(this.columns, this.min, this.max, this.minTermFrequency, this.maxTermFrequency, this.from, mid),
+                        new Score(this.columns, this.min, this.max, this.minTermFrequency, this.maxTermFrequency, mid, this.to));
+                return;
+            }
+            final long[] score = this.columns.score;
+            for (int i = this.from; i < this.to; i++) {
+                score[i] = this.columns.hosthash[i] == null ? 0 : this.columns.constant[i] + authorityScore(this.columns.hosthash[i]);
+            }
+            // one tight loop for each criterion
+            for (int c = 0; c < COLUMNS; c++) {
+                final int lo = this.min[c], range = this.max[c] - lo;
+                if (range == 0) continue;
+                final int shift = ReferenceOrder.this.coeff[c];
+                final int[] v = this.columns.values[c];
+                if (c < FIRST_INVERSE) {
+                    for (int i = this.from; i < this.to; i++) score[i] += (((v[i] - lo) << 8) / range) << shift;
+                } else {
+                    for (int i = this.from; i < this.to; i++) score[i] += (256 - (((v[i] - lo) << 8) / range)) << shift;
+                }
+            }
+            if (this.maxTermFrequency != this.minTermFrequency) {
+                final int shift = ReferenceOrder.this.ranking.coeff_termfrequency;
+                final double[] tf = this.columns.termFrequency;
+                for (int i = this.from; i < this.to; i++) {
+                    score[i] += ((int) (((tf[i] - this.minTermFrequency) * 256.0) / (this.maxTermFrequency - this.minTermFrequency))) << shift;
+                }
+            }
+            // rows which were not decoded because of the timeout are never selected
+            for (int i = this.from; i < this.to; i++) if (this.columns.hosthash[i] == null) score[i] = Long.MIN_VALUE;
         }
     }
 
     /**
-     * normalize ranking: find minimum and maximum of separate ranking criteria
+     * decode, normalize and rank all references of a container and put the best of them into the out queue
      */
-    private class NormalizeWorker extends Thread {
-
+    private final class Normalization extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ReferenceContainer<WordReference> container;
         private final BlockingQueue<WordReferenceVars> out;
-        private final Semaphore termination;
-        private final BlockingQueue<WordReferenceVars> decodedEntries;
         private final long maxtime;
+        private final boolean local;
+        private final int maxcount;
+        private final int[] flagcount;
 
-        public NormalizeWorker(final BlockingQueue<WordReferenceVars> out, final Semaphore termination, long maxtime) {
-        	super("ReferenceOrder.NormalizeWorker");
+        private Normalization(final ReferenceContainer<WordReference> container, final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local, final int maxcount, final int[] flagcount) {
+            this.container = container;
             this.out = out;
-            this.termination = termination;
-            this.decodedEntries = new LinkedBlockingQueue<WordReferenceVars>();
             this.maxtime = maxtime;
-        }
-
-        public void add(final WordReferenceVars entry) {
-            try {
-                this.decodedEntries.put(entry);
-            } catch (final InterruptedException e) {
-            }
+            this.local = local;
+            this.maxcount = maxcount;
+            this.flagcount = flagcount;
         }
 
         @Override
-        public void run() {
+        protected void compute() {
             try {
-                WordReferenceVars iEntry;
-                final Map<String, Integer> doms0 = new HashMap<String, Integer>();
-                String dom;
-                Integer count;
-                final Integer int1 = 1;
-                long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-                while ((iEntry = this.decodedEntries.take()) != WordReferenceVars.poison) {
-                    // find min/max
-                    if (ReferenceOrder.this.min == null) ReferenceOrder.this.min = iEntry.clone(); else ReferenceOrder.this.min.min(iEntry);
-                    if (ReferenceOrder.this.max == null) ReferenceOrder.this.max = iEntry.clone(); else ReferenceOrder.this.max.max(iEntry);
-                    this.out.put(iEntry); // must be after the min/max check to prevent that min/max is null in cardinal()
-                    // update domcount
-                    dom = iEntry.hosthash();
-                    count = doms0.get(dom);
-                    if (count == null) {
-                        doms0.put(dom, int1);
+                final long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
+                final int size = this.container.size();
+                if (size == 0) return;
+                final Columns columns = new Columns(size);
+                new Decode(this.container, columns, columns, 0, size, timeout).invoke();
+
+                // update the normalization of this search with the statistics of the container
+                final int[] min, max;
+                final double minTermFrequency, maxTermFrequency;
+                synchronized (ReferenceOrder.this) {
+                    if (ReferenceOrder.this.min == null) {
+                        ReferenceOrder.this.min = columns.min.clone();
+                        ReferenceOrder.this.max = columns.max.clone();
+                        ReferenceOrder.this.minTermFrequency = columns.minTermFrequency;
+                        ReferenceOrder.this.maxTermFrequency = columns.maxTermFrequency;
                     } else {
-                        doms0.put(dom, LargeNumberCache.valueOf(count.intValue() + 1));
+                        // copy on write, because cardinal() reads the arrays without synchronization
+                        final int[] min0 = ReferenceOrder.this.min.clone(), max0 = ReferenceOrder.this.max.clone();
+                        for (int c = 0; c < COLUMNS; c++) {
+                            min0[c] = Math.min(min0[c], columns.min[c]);
+                            max0[c] = Math.max(max0[c], columns.max[c]);
+                        }
+                        ReferenceOrder.this.min = min0;
+                        ReferenceOrder.this.max = max0;
+                        ReferenceOrder.this.minTermFrequency = Math.min(ReferenceOrder.this.minTermFrequency, columns.minTermFrequency);
+                        ReferenceOrder.this.maxTermFrequency = Math.max(ReferenceOrder.this.maxTermFrequency, columns.maxTermFrequency);
                     }
+                    min = ReferenceOrder.this.min;
+                    max = ReferenceOrder.this.max;
+                    minTermFrequency = ReferenceOrder.this.minTermFrequency;
+                    maxTermFrequency = ReferenceOrder.this.maxTermFrequency;
+                }
+                for (final Map.Entry<String, Integer> entry: columns.doms.entrySet()) {
+                    ReferenceOrder.this.doms.inc(entry.getKey(), entry.getValue().intValue());
+                }
+                if (!ReferenceOrder.this.doms.isEmpty()) ReferenceOrder.this.maxdomcount = ReferenceOrder.this.doms.getMaxScore();
+                if (this.flagcount != null) synchronized (this.flagcount) {
+                    for (int j = 0; j < 32; j++) this.flagcount[j] += columns.flagcount[j];
+                }
 
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeWorker", "normlization of decoded rows ended with timeout = " + this.maxtime);
-                        break;
+                if (this.maxcount >= size) {
+                    // all references are returned; the ranking is computed by the consumer
+                    for (int i = 0; i < size; i++) {
+                        if (columns.hosthash[i] == null) continue;
+                        this.out.put(new WordReferenceVars(Segment.wordReferenceFactory.produceSlow(this.container.get(i, false)), this.local));
+                        if ((i & 0xff) == 0 && System.currentTimeMillis() > timeout) break;
                     }
+                    return;
                 }
 
-                // update domain score
-                Map.Entry<String, Integer> entry;
-                final Iterator<Map.Entry<String, Integer>> di = doms0.entrySet().iterator();
-                while (di.hasNext()) {
-                    entry = di.next();
-                    ReferenceOrder.this.doms.inc(entry.getKey(), (entry.getValue()).intValue());
+                // rank all references and return only the best
+                new Score(columns, min, max, minTermFrequency, maxTermFrequency, 0, size).invoke();
+                final int[] best = top(columns.score, this.maxcount);
+                for (final int i: best) {
+                    if (columns.hosthash[i] == null) continue;
+                    this.out.put(new WordReferenceVars(Segment.wordReferenceFactory.produceSlow(this.container.get(i, false)), this.local));
                 }
-                if (!ReferenceOrder.this.doms.isEmpty()) ReferenceOrder.this.maxdomcount = ReferenceOrder.this.doms.getMaxScore();
             } catch (final InterruptedException e) {
-                ConcurrentLog.logException(e);
-            } catch (final Exception e) {
+            } catch (final Throwable e) {
                 ConcurrentLog.logException(e);
             } finally {
-                // insert poison to signal the termination to next queue
                 try {
-                    this.termination.acquire();
-                    if (this.termination.availablePermits() == 0) this.out.put(WordReferenceVars.poison);
+                    this.out.put(WordReferenceVars.poison);
                 } catch (final InterruptedException e) {}
             }
         }
     }
 
+    /**
+     * select the positions of the k largest scores
+     * @param score
+     * @param k
+     * @return the positions, the best first
+     */
+    protected static int[] top(final long[] score, final int k) {
+        final int n = Math.min(k, score.length);
+        if (n <= 0) return new int[0];
+        // min-heap of positions; the root is the worst of the best
+        final int[] heap = new int[n];
+        for (int i = 0; i < n; i++) {
+            heap[i] = i;
+            siftUp(heap, i, score);
+        }
+        for (int i = n; i < score.length; i++) {
+            if (score[i] <= score[heap[0]]) continue;
+            heap[0] = i;
+            siftDown(heap, n, score);
+        }
+        // sort the heap: remove the worst until the heap is empty
+        for (int m = n - 1; m > 0; m--) {
+            final int worst = heap[0];
+            heap[0] = heap[m];
+            heap[m] = worst;
+            siftDown(heap, m, score);
+        }
+        return heap;
+    }
+
+    private static void siftUp(final int[] heap, int i, final long[] score) {
+        final int x = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (score[heap[parent]] <= score[x]) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = x;
+    }
+
+    private static void siftDown(final int[] heap, final int size, final long[] score) {
+        final int x = heap[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && score[heap[child + 1]] < score[heap[child]]) child++;
+            if (score[x] <= score[heap[child]]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = x;
+    }
+
     public int authority(final String hostHash) {
         assert hostHash.length() == 6;
         return (this.doms.get(hostHash) << 8) / (1 + this.maxdomcount);
     }
 
     /**
-     * return the ranking of a given word entry
-     * @param t
-     * @return a ranking: the higher the number, the better is the ranking
+     * the part of the ranking of a reference which does not depend on the normalization
      */
-    public long cardinal(final WordReference t) {
-        // the normalizedEntry must be a normalized indexEntry
-        assert this.min != null;
-        assert this.max != null;
-        assert t != null;
-        assert this.ranking != null;
-        final Bitfield flags = t.flags();
-        final long tf = ((this.max.termFrequency() == this.min.termFrequency()) ? 0 : (((int)(((t.termFrequency()-this.min.termFrequency())*256.0)/(this.max.termFrequency() - this.min.termFrequency())))) << this.ranking.coeff_termfrequency);
-        //System.out.println("tf(" + t.urlHash + ") = " + Math.floor(1000 * t.termFrequency()) + ", min = " + Math.floor(1000 * min.termFrequency()) + ", max = " + Math.floor(1000 * max.termFrequency()) + ", tf-normed = " + tf);
-        final long r =
-             ((256 - DigestURL.domLengthNormalized(t.urlhash())) << this.ranking.coeff_domlength)
-           + ((this.max.urlcomps()      == this.min.urlcomps()   )   ? 0 : (256 - (((t.urlcomps()     - this.min.urlcomps()    ) << 8) / (this.max.urlcomps()    - this.min.urlcomps())    )) << this.ranking.coeff_urlcomps)
-           + ((this.max.urllength()     == this.min.urllength()  )   ? 0 : (256 - (((t.urllength()    - this.min.urllength()   ) << 8) / (this.max.urllength()   - this.min.urllength())   )) << this.ranking.coeff_urllength)
-           + ((this.max.posintext()     == this.min.posintext())     ? 0 : (256 - (((t.posintext()    - this.min.posintext()   ) << 8) / (this.max.posintext()   - this.min.posintext())   )) << this.ranking.coeff_posintext)
-           + ((this.max.posofphrase()   == this.min.posofphrase())   ? 0 : (256 - (((t.posofphrase()  - this.min.posofphrase() ) << 8) / (this.max.posofphrase() - this.min.posofphrase()) )) << this.ranking.coeff_posofphrase)
-           + ((this.max.posinphrase()   == this.min.posinphrase())   ? 0 : (256 - (((t.posinphrase()  - this.min.posinphrase() ) << 8) / (this.max.posinphrase() - this.min.posinphrase()) )) << this.ranking.coeff_posinphrase)
-           + ((this.max.distance()      == this.min.distance()   )   ? 0 : (256 - (((t.distance()     - this.min.distance()    ) << 8) / (this.max.distance()    - this.min.distance())    )) << this.ranking.coeff_worddistance)
-           + ((this.max.virtualAge()    == this.min.virtualAge())    ? 0 :        (((t.virtualAge()   - this.min.virtualAge()  ) << 8) / (this.max.virtualAge()  - this.min.virtualAge())   ) << this.ranking.coeff_date)
-           + ((this.max.wordsintitle()  == this.min.wordsintitle())  ? 0 : (((t.wordsintitle() - this.min.wordsintitle()  ) << 8) / (this.max.wordsintitle() - this.min.wordsintitle())  ) << this.ranking.coeff_wordsintitle)
-           + ((this.max.wordsintext()   == this.min.wordsintext())   ? 0 : (((t.wordsintext()  - this.min.wordsintext()   ) << 8) / (this.max.wordsintext()  - this.min.wordsintext())   ) << this.ranking.coeff_wordsintext)
-           + ((this.max.phrasesintext() == this.min.phrasesintext()) ? 0 : (((t.phrasesintext()- this.min.phrasesintext() ) << 8) / (this.max.phrasesintext()- this.min.phrasesintext()) ) << this.ranking.coeff_phrasesintext)
-           + ((this.max.llocal()        == this.min.llocal())        ? 0 : (((t.llocal()       - this.min.llocal()        ) << 8) / (this.max.llocal()       - this.min.llocal())        ) << this.ranking.coeff_llocal)
-           + ((this.max.lother()        == this.min.lother())        ? 0 : (((t.lother()       - this.min.lother()        ) << 8) / (this.max.lother()       - this.min.lother())        ) << this.ranking.coeff_lother)
-           + ((this.max.hitcount()      == this.min.hitcount())      ? 0 : (((t.hitcount()     - this.min.hitcount()      ) << 8) / (this.max.hitcount()     - this.min.hitcount())      ) << this.ranking.coeff_hitcount)
-           + tf
-           + ((this.ranking.coeff_authority > 12) ? (authority(t.hosthash()) << this.ranking.coeff_authority) : 0)
+    private long constant(final byte[] urlhash, final Bitfield flags, final byte[] language) {
+        return
+             ((256 - DigestURL.domLengthNormalized(urlhash)) << this.ranking.coeff_domlength)
            + ((flags.get(WordReferenceRow.flag_app_dc_identifier))  ? 255 << this.ranking.coeff_appurl             : 0)
            + ((flags.get(WordReferenceRow.flag_app_dc_title))       ? 255 << this.ranking.coeff_app_dc_title       : 0)
            + ((flags.get(WordReferenceRow.flag_app_dc_creator))     ? 255 << this.ranking.coeff_app_dc_creator     : 0)
@@ -257,13 +474,52 @@ public class ReferenceOrder {
            + ((flags.get(Tokenizer.flag_cat_hasaudio))     ? 255 << this.ranking.coeff_cathasaudio        : 0)
            + ((flags.get(Tokenizer.flag_cat_hasvideo))     ? 255 << this.ranking.coeff_cathasvideo        : 0)
            + ((flags.get(Tokenizer.flag_cat_hasapp))       ? 255 << this.ranking.coeff_cathasapp          : 0)
-           + ((Arrays.equals(t.getLanguage(), ASCII.getBytes(this.language))) ? 255 << this.ranking.coeff_language    : 0);
+           + ((Arrays.equals(language, this.languageBytes)) ? 255 << this.ranking.coeff_language    : 0);
+    }
 
-        //if (searchWords != null) r += (yacyURL.probablyWordURL(t.urlHash(), searchWords) != null) ? 256 << ranking.coeff_appurl : 0;
+    private long authorityScore(final String hosthash) {
+        return (this.ranking.coeff_authority > 12) ? (authority(hosthash) << this.ranking.coeff_authority) : 0;
+    }
 
+    /**
+     * return the ranking of a given word entry
+     * @param t
+     * @return a ranking: the higher the number, the better is the ranking
+     */
+    public long cardinal(final WordReference t) {
+        // the normalization must be done with normalizeWith before
+        final int[] min = this.min, max = this.max;
+        assert min != null;
+        assert max != null;
+        assert t != null;
+        assert this.ranking != null;
+        final int[] v = new int[COLUMNS];
+        v[HITCOUNT] = t.hitcount();
+        v[LLOCAL] = t.llocal();
+        v[LOTHER] = t.lother();
+        v[VIRTUALAGE] = t.virtualAge();
+        v[WORDSINTEXT] = t.wordsintext();
+        v[PHRASESINTEXT] = t.phrasesintext();
+        v[WORDSINTITLE] = t.wordsintitle();
+        v[POSINTEXT] = t.posintext();
+        v[DISTANCE] = t.distance();
+        v[POSINPHRASE] = t.posinphrase();
+        v[POSOFPHRASE] = t.posofphrase();
+        v[URLLENGTH] = t.urllength();
+        v[URLCOMPS] = t.urlcomps();
+        long r = constant(t.urlhash(), t.flags(), t.getLanguage()) + authorityScore(t.hosthash());
+        for (int c = 0; c < COLUMNS; c++) {
+            final int range = max[c] - min[c];
+            if (range == 0) continue;
+            final int n = ((v[c] - min[c]) << 8) / range;
+            r += (c < FIRST_INVERSE ? n : 256 - n) << this.coeff[c];
+        }
+        if (this.maxTermFrequency != this.minTermFrequency) {
+            r += ((int) (((t.termFrequency() - this.minTermFrequency) * 256.0) / (this.maxTermFrequency - this.minTermFrequency))) << this.ranking.coeff_termfrequency;
+        }
         return r; // the higher the number the better the ranking.
     }
-    
+
     public long cardinal(final URIMetadataNode t) {
         // the normalizedEntry must be a normalized indexEntry
         assert t != null;
@@ -32,6 +32,7 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -42,10 +43,11 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -98,7 +100,6 @@ import net.yacy.document.parser.html.IconEntry;
 import net.yacy.document.parser.html.ImageEntry;
 import net.yacy.kelondro.data.citation.CitationReference;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
-import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
 import net.yacy.kelondro.util.MemoryControl;
@@ -1648,7 +1649,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             int concurrency = Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors());
             postprocessingActivity = "collecting cr for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
             ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            int countcheck = 0;
+            final Queue<String> crhosts = new ConcurrentLinkedQueue<String>();
             for (String host: collection1hosts.keyList(true)) {
                 // Patch the citation index for links with canonical tags.
                 // This shall fulfill the following requirement:
@@ -1692,34 +1693,49 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
                 if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
                 
-                // do the citation rank computation
-                if (collection1hosts.get(host) <= 0) continue;
-                // select all documents for each host
-                CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
-                int convergence_attempts = 0;
-                while (convergence_attempts++ < 30) {
-                    ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
-                    if (crh.convergenceStep()) break;
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
-                        break;
+                // the citation rank computation is done after all citations are patched
+                if (collection1hosts.get(host) > 0) crhosts.add(host);
+            }
+
+            // do the citation rank computation; the hosts are independent from each other and are computed concurrently
+            final int crhostcount = crhosts.size();
+            final AtomicInteger countcheck = new AtomicInteger(0);
+            final Thread[] crThread = new Thread[Math.max(1, concurrency)];
+            for (int t = 0; t < crThread.length; t++) {
+                crThread[t] = new Thread("CollectionConfiguration.postprocessing.crhost-" + t) {
+                    @Override
+                    public void run() {
+                        String host;
+                        while ((host = crhosts.poll()) != null) {
+                            // select all documents for each host
+                            CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
+                            int convergence_attempts = 0;
+                            while (convergence_attempts++ < 30) {
+                                if (crh.convergenceStep()) break;
+                            }
+                            ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
+                            // we have now the cr for all documents of a specific host; we store them for later use
+                            Map<String, CRV> crn = crh.normalize();
+                            //crh.log(crn);
+                            rankings.putAll(crn); // accumulate this here for usage in document update later
+                            countcheck.incrementAndGet();
+                            if (MemoryControl.shortStatus()) {
+                                ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
+                                crhosts.clear();
+                                break;
+                            }
+                        }
                     }
-                }
-                ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
-                // we have now the cr for all documents of a specific host; we store them for later use
-                Map<String, CRV> crn = crh.normalize();
-                //crh.log(crn);
-                rankings.putAll(crn); // accumulate this here for usage in document update later
-                if (MemoryControl.shortStatus()) {
-                    ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
-                    break;
-                }
-                countcheck++;
+                };
+                crThread[t].start();
             }
-            if (collection1hosts.size() != countcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
+            for (int t = 0; t < crThread.length; t++) crThread[t].join();
+            if (crhostcount != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + crhostcount + ", counted=" + countcheck.get());
         } catch (final IOException e2) {
             ConcurrentLog.logException(e2);
             collection1hosts = new ClusteredScoreMap<String>(true);
+        } catch (final InterruptedException e) {
+            ConcurrentLog.logException(e);
         }
 		return rankings;
 	}
@@ -1952,25 +1968,26 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      */
     private static final class CRHost {
         private final Segment segment;
-        private final Map<String, double[]> crt;
+        private final String[] ids; // the document ids of the host; the position of an id is the index of the document in all arrays
         private final int cr_host_count;
-        private final RowHandleMap internal_links_counter;
+        private final int[] inStart, inSource; // the documents which link to document i: inSource[inStart[i] .. inStart[i + 1] - 1]
+        private final int[] internal_links_counter; // the number of internal links from each document, -1 if not known yet
+        private final double[] outWeight; // the share of the cr of a document which is passed to each document it links to
+        private double[] cr, ncr, contribution; // old value, new value and old value * outWeight of each document
         private double damping;
         private int converge_eq_factor;
-        private ReferenceReportCache rrCache;
         public CRHost(final Segment segment, final ReferenceReportCache rrCache, final String host, final double damping, final int converge_digits) {
             this.segment = segment;
             this.damping = damping;
-            this.rrCache = rrCache;
             this.converge_eq_factor = (int) Math.pow(10.0d, converge_digits);
             SolrConnector connector = segment.fulltext().getDefaultConnector();
-            this.crt = new ConcurrentHashMap<String, double[]>();
+            final List<String> idlist = new ArrayList<String>();
             try {
                 // select all documents for each host
                 BlockingQueue<String> ids = connector.concurrentIDsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
                 String id;
                 while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
-                    this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                    idlist.add(id);
                     if (MemoryControl.shortStatus()) {
                         ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
                         break;
@@ -1978,41 +1995,82 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
             } catch (final InterruptedException e2) {
             }
-            this.cr_host_count = this.crt.size();
-            double initval = 1.0d / cr_host_count;
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) entry.getValue()[0] = initval;
-            this.internal_links_counter = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 100, "internal_links_counter");
+            this.ids = idlist.toArray(new String[idlist.size()]);
+            this.cr_host_count = this.ids.length;
+            final Map<String, Integer> index = new HashMap<String, Integer>(this.cr_host_count * 4 / 3 + 1);
+            for (int i = 0; i < this.cr_host_count; i++) index.put(this.ids[i], i);
+
+            // load the internal link graph of the host once from the reference reports
+            this.internal_links_counter = new int[this.cr_host_count];
+            Arrays.fill(this.internal_links_counter, -1);
+            this.inStart = new int[this.cr_host_count + 1];
+            int[] source = new int[Math.max(16, this.cr_host_count)];
+            int edges = 0;
+            for (int i = 0; i < this.cr_host_count; i++) {
+                this.inStart[i] = edges;
+                final HandleSet iids;
+                try {
+                    iids = rrCache.getReferenceReport(this.ids[i], false).getInternallIDs();
+                } catch (final IOException e) {
+                    ConcurrentLog.warn("CollectionConfiguration", "no reference report for id " + this.ids[i] + ": " + e.getMessage());
+                    continue;
+                }
+                for (byte[] iid: iids) {
+                    final Integer j = index.get(ASCII.String(iid));
+                    if (j == null) continue; // the linking document is not in the index
+                    if (getInternalLinks(j.intValue()) <= 0) continue; // if (ilc == 0) then the reference report is wrong!
+                    if (edges == source.length) source = Arrays.copyOf(source, source.length * 2);
+                    source[edges++] = j.intValue();
+                }
+            }
+            this.inStart[this.cr_host_count] = edges;
+            this.inSource = Arrays.copyOf(source, edges);
+            this.outWeight = new double[this.cr_host_count];
+            for (int j = 0; j < this.cr_host_count; j++) {
+                if (this.internal_links_counter[j] > 0) this.outWeight[j] = 1.0d / this.internal_links_counter[j];
+            }
+
+            this.cr = new double[this.cr_host_count];
+            this.ncr = new double[this.cr_host_count];
+            this.contribution = new double[this.cr_host_count];
+            Arrays.fill(this.cr, 1.0d / this.cr_host_count);
         }
         /**
          * produce a map from IDs to CRV records, normalization entries containing the values that are stored to solr.
          * @return
          */
         public Map<String, CRV> normalize() {
-            final TreeMap<Double, List<byte[]>> reorder = new TreeMap<Double, List<byte[]>>();
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                Double d = entry.getValue()[0];
-                List<byte[]> ds = reorder.get(d);
-                if (ds == null) {ds = new ArrayList<byte[]>(); reorder.put(d, ds);}
-                ds.add(ASCII.getBytes(entry.getKey()));
+            // the distinct cr values in ascending order and the number of documents having each value
+            final double[] sorted = this.cr.clone();
+            Arrays.sort(sorted);
+            final double[] values = new double[sorted.length];
+            final int[] counts = new int[sorted.length];
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (distinct == 0 || Double.compare(values[distinct - 1], sorted[i]) != 0) values[distinct++] = sorted[i];
+                counts[distinct - 1]++;
             }
+            // assign a crn to each value: the first half of the documents get the lowest crn, half of the remaining documents the next and so on
+            final int[] crns = new int[distinct];
             int nextcount = (this.cr_host_count + 1) / 2;
             int nextcrn = 0;
-            Map<String, CRV> r = new HashMap<String, CRV>();
-            while (reorder.size() > 0) {
+            int v = 0;
+            while (v < distinct) {
                 int count = nextcount;
-                while (reorder.size() > 0 && count > 0) {
-                    Map.Entry<Double, List<byte[]>> next = reorder.pollFirstEntry();
-                    List<byte[]> ids = next.getValue();
-                    count -= ids.size();
-                    double cr = next.getKey();
-                    for (byte[] id: ids) r.put(ASCII.String(id), new CRV(this.cr_host_count, cr, nextcrn));
+                while (v < distinct && count > 0) {
+                    count -= counts[v];
+                    crns[v++] = nextcrn;
                 }
                 nextcrn++;
                 nextcount = Math.max(1, (nextcount + count + 1) / 2);
             }
             // finally, increase the crn number in such a way that the maximum is always 10
             int inc = 11 - nextcrn; // nextcrn is +1
-            for (Map.Entry<String, CRV> entry: r.entrySet()) entry.getValue().crn += inc;
+            Map<String, CRV> r = new HashMap<String, CRV>(this.cr_host_count * 4 / 3 + 1);
+            for (int i = 0; i < this.cr_host_count; i++) {
+                final int p = Arrays.binarySearch(values, 0, distinct, this.cr[i]);
+                r.put(this.ids[i], new CRV(this.cr_host_count, this.cr[i], crns[p] + inc));
+            }
             return r;
         }
         /**
@@ -2035,74 +2093,48 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             }
         }
         /**
-         * Calculate the number of internal links from a specific document, denoted by the document ID.
+         * Calculate the number of internal links from a specific document, denoted by its index in the host.
          * This is a very important attribute for the ranking computation because it is the dividend for the previous ranking attribute.
-         * The internalLinks value will be requested several times for the same id during the convergenceStep()-steps; therefore it should use a cache.
+         * The internalLinks value is needed for every link from the same document while the link graph is loaded; therefore it uses a cache.
          * This cache is part of the CRHost data structure.
-         * @param id
-         * @return the number of links from the document, denoted by the ID to documents within the same domain
+         * @param j
+         * @return the number of links from the document, denoted by the index, to documents within the same domain
          */
-        public int getInternalLinks(final byte[] id) {
-            int il = (int) this.internal_links_counter.get(id);
+        private int getInternalLinks(final int j) {
+            int il = this.internal_links_counter[j];
             if (il >= 0) return il;
+            il = 0;
             SolrConnector connector = this.segment.fulltext().getDefaultConnector();
-            if (connector == null) return 0;
-            try {
-                SolrDocument doc = connector.getDocumentById(ASCII.String(id), CollectionSchema.inboundlinkscount_i.getSolrFieldName());
-                if (doc == null) {
-                    this.internal_links_counter.put(id, 0);
-                    return 0;
-                }
-                Object x = doc.getFieldValue(CollectionSchema.inboundlinkscount_i.getSolrFieldName());
+            if (connector != null) try {
+                SolrDocument doc = connector.getDocumentById(this.ids[j], CollectionSchema.inboundlinkscount_i.getSolrFieldName());
+                Object x = doc == null ? null : doc.getFieldValue(CollectionSchema.inboundlinkscount_i.getSolrFieldName());
                 il = (x == null) ? 0 : (x instanceof Integer) ? ((Integer) x).intValue() : (x instanceof Long) ? ((Long) x).intValue() : 0;
-                this.internal_links_counter.put(id, il);
-                return il;
             } catch (final IOException e) {
                 ConcurrentLog.logException(e);
-            } catch (final SpaceExceededException e) {
-                ConcurrentLog.logException(e);
             }
-            try {this.internal_links_counter.put(id, 0);} catch (final SpaceExceededException e) {}
-            return 0;
+            this.internal_links_counter[j] = il;
+            return il;
         }
         /**
-         * Use the crt cache to compute the next generation of crt values.
+         * Use the link graph of the host to compute the next generation of cr values.
          * @return
          */
         public boolean convergenceStep() {
             boolean convergence = true;
             double df = (1.0d - damping) / this.cr_host_count;
-            try {
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    String id = entry.getKey();
-                    ReferenceReport rr = this.rrCache.getReferenceReport(id, false);
-                    // sum up the cr of the internal links
-                    HandleSet iids = rr.getInternallIDs();
-                    double ncr = 0.0d;
-                    for (byte[] iid: iids) {
-                        int ilc = getInternalLinks(iid);
-                        if (ilc > 0) { // if (ilc == 0) then the reference report is wrong!
-                            double[] d = this.crt.get(ASCII.String(iid));
-                            // d[] could be empty at some situations
-                            if (d != null && d.length > 0) {
-                                ncr += d[0] / ilc;
-                            } else {
-                                // Output a warning that d[] is empty
-                                ConcurrentLog.warn("COLLECTION", "d[] is empty, iid="  + ASCII.String(iid));
-                                break;
-                            }
-                        }
-                    }
-                    ncr = df + damping * ncr;
-                    if (convergence && !eqd(ncr, entry.getValue()[0])) convergence = false;
-                    entry.getValue()[1] = ncr;
-                }
-                // after the loop, replace the old value with the new value in crt
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    entry.getValue()[0] = entry.getValue()[1];
-                }
-            } catch (final IOException e) {
+            for (int j = 0; j < this.cr_host_count; j++) this.contribution[j] = this.cr[j] * this.outWeight[j];
+            for (int i = 0; i < this.cr_host_count; i++) {
+                // sum up the cr of the internal links
+                double ncr = 0.0d;
+                for (int p = this.inStart[i]; p < this.inStart[i + 1]; p++) ncr += this.contribution[this.inSource[p]];
+                ncr = df + damping * ncr;
+                if (convergence && !eqd(ncr, this.cr[i])) convergence = false;
+                this.ncr[i] = ncr;
             }
+            // after the loop, replace the old value with the new value
+            final double[] t = this.cr;
+            this.cr = this.ncr;
+            this.ncr = t;
             return convergence;
         }
         /**
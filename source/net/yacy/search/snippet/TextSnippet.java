@@ -47,6 +47,7 @@ import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.document.Document;
 import net.yacy.document.Parser;
+import net.yacy.document.SentenceTable;
 import net.yacy.document.SnippetExtractor;
 import net.yacy.document.WordTokenizer;
 import net.yacy.document.parser.html.CharacterCoding;
@@ -186,6 +187,7 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         String textline = null;
         HandleSet remainingHashes = queryhashes.clone();
         List<StringBuilder> sentences = null;
+        SentenceTable sentenceTable = null;
         
         // try to get the snippet from metadata
         removeMatchingHashes(row.url().toTokens(), remainingHashes);
@@ -206,6 +208,9 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
             if (solrText != null && solrText.length() > 0) { // TODO: instead of join with desc, we could check if snippet already complete and skip further computation
                 // compute sentences from solr query
                 if (sentences == null) sentences = row.getSentences(pre); else sentences.addAll(row.getSentences(pre));
+            } else if ((sentenceTable = storedSentences(url, pre, cacheStrategy)) != null) {
+                // the sentences were stored when the document was indexed: no need to load and parse the document;
+                // the table holds only the text, so the description sentences are searched before it
             } else if (net.yacy.crawler.data.Cache.has(url.hash())) {
                 // get the sentences from the cache
                 final Request request = loader == null ? null : loader.request(url, true, reindexing);
@@ -226,15 +231,15 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
                     }
                 }
             }
-            if (sentences == null) {
+            if (sentences == null && sentenceTable == null) {
                 // not found the snippet
                 init(url.hash(), null, false, ResultClass.SOURCE_METADATA, null);
                 return;
             }
 
-            if (sentences.size() > 0) {
+            if ((sentenceTable != null && sentenceTable.size() > 0) || (sentences != null && sentences.size() > 0)) {
                 try {
-                    final SnippetExtractor tsr = new SnippetExtractor(sentences, remainingHashes, snippetMaxLength);
+                    final SnippetExtractor tsr = sentenceTable != null ? new SnippetExtractor(sentences, sentenceTable, remainingHashes, snippetMaxLength) : new SnippetExtractor(sentences, remainingHashes, snippetMaxLength);
                     textline = tsr.getSnippet();
                     remainingHashes = tsr.getRemainingWords();
                 } catch (final UnsupportedOperationException e) {
@@ -287,6 +292,21 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         }
         sentences = null; // we don't need this here any more
 
+        // try to get the snippet from the sentences which were stored when the document was indexed
+        if (sentenceTable == null) sentenceTable = storedSentences(url, pre, cacheStrategy);
+        if (sentenceTable != null) {
+            try {
+                final SnippetExtractor tsr = new SnippetExtractor(sentenceTable, remainingHashes, snippetMaxLength);
+                textline = tsr.getSnippet();
+                remainingHashes = tsr.getRemainingWords();
+            } catch (final UnsupportedOperationException e) {
+                init(url.hash(), null, false, ResultClass.ERROR_NO_MATCH, "snippet extractor failed:" + e.getMessage());
+                return;
+            }
+            initExtracted(url, wordhashes, urls, textline, remainingHashes, snippetMaxLength, source);
+            return;
+        }
+
         // try to load the resource from the cache
         Response response = null;
         try {
@@ -345,6 +365,28 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         }
         sentences = null;
 
+        initExtracted(url, wordhashes, urls, textline, remainingHashes, snippetMaxLength, source);
+    }
+
+    /**
+     * @param url
+     * @param pre
+     * @param cacheStrategy
+     * @return the sentences of the document which were stored when the document was indexed or null if they are not available
+     */
+    private static SentenceTable storedSentences(final DigestURL url, final boolean pre, final CacheStrategy cacheStrategy) {
+        if (pre) return null; // the sentences are stored with joined lines
+        // the stored sentences are a cached copy of the document: do not use them if the document must be loaded fresh
+        if (url.isFile() || url.isSMB() || cacheStrategy == CacheStrategy.NOCACHE || cacheStrategy == CacheStrategy.IFFRESH) return null;
+        final Switchboard sb = Switchboard.getSwitchboard();
+        if (sb == null || sb.index == null) return null;
+        return sb.index.getSentences(url.hash());
+    }
+
+    /**
+     * Init the snippet line computed by the snippet extractor from the sentences of the document
+     */
+    private void initExtracted(final DigestURL url, final String wordhashes, final String urls, String textline, final HandleSet remainingHashes, final int snippetMaxLength, final ResultClass source) {
         if (textline == null || !remainingHashes.isEmpty()) {
             init(url.hash(), null, false, ResultClass.ERROR_NO_MATCH, "no matching snippet found");
             return;
@@ -0,0 +1,399 @@
+// Template.java
+// -------------------------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.server.serverObjects;
+
+/**
+ * A template which is parsed once into a tree of instructions. The tree is immutable, so a template
+ * can be rendered by any number of threads at the same time.
+ * The syntax is the syntax of the {@link TemplateEngine}: #[key]#, #{multi}#...#{/multi}#,
+ * #(alternative)#...::...#(/alternative)# and #%include%#.
+ */
+final class Template {
+
+    private final static byte hashChar = (byte) '#';
+    private final static byte[] pClose = {']', '#'};
+    private final static byte[] mClose = {'}', '#'};
+    private final static byte[] aClose = {')', '#'};
+    private final static byte[] iClose = {'%', '#'};
+    private final static byte[] aOpen = {'#', '('};
+    private final static byte[] dpdp = {':', ':'};
+    private final static byte[] PP = {'%', '%'};
+
+    final static byte[] UNRESOLVED_PATTERN = ASCII.getBytes("-UNRESOLVED_PATTERN-");
+
+    private final Node[] nodes;
+    private final long lastModified;
+    private final long length;
+
+    private Template(final Node[] nodes, final long lastModified, final long length) {
+        this.nodes = nodes;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * parse a template
+     * @param servletname the name of the template, used for error messages
+     * @param b the template
+     * @param lastModified the time of the last modification of the template file
+     * @param length the size of the template file
+     * @return the parsed template
+     */
+    static Template compile(final String servletname, final byte[] b, final long lastModified, final long length) {
+        // the template ends with the first 0 byte, like in a stream which is read until read() <= 0
+        int end = 0;
+        while (end < b.length && b[end] != 0) end++;
+        return new Template(parse(servletname, b, 0, end), lastModified, length);
+    }
+
+    /**
+     * @return true if the template was parsed from a file with the given modification time and size
+     */
+    boolean isCurrent(final long lastModified, final long length) {
+        return this.lastModified == lastModified && this.length == length;
+    }
+
+    /**
+     * write the template with the patterns replaced
+     * @param servletname the name of the template, used for error messages
+     * @param out
+     * @param pattern the values of the patterns
+     * @throws IOException
+     */
+    void render(final String servletname, final OutputStream out, final serverObjects pattern) throws IOException {
+        render(this.nodes, new Context(servletname, out, pattern), "");
+    }
+
+    private static void render(final Node[] nodes, final Context context, final String prefix) throws IOException {
+        for (final Node node: nodes) node.render(context, prefix);
+    }
+
+    private static final class Context {
+        private final String servletname;
+        private final OutputStream out;
+        private final serverObjects pattern;
+        private final String clientlanguage;
+        private Context(final String servletname, final OutputStream out, final serverObjects pattern) {
+            this.servletname = servletname;
+            this.out = out;
+            this.pattern = pattern;
+            this.clientlanguage = pattern.get("clientlanguage"); // preferred language or null (used for include files)
+        }
+    }
+
+    private static interface Node {
+        public void render(Context context, String prefix) throws IOException;
+    }
+
+    /**
+     * text without patterns
+     */
+    private static final class Text implements Node {
+        private final byte[] text;
+        private Text(final byte[] text) {
+            this.text = text;
+        }
+        @Override
+        public void render(final Context context, final String prefix) throws IOException {
+            context.out.write(this.text);
+        }
+    }
+
+    /**
+     * #[key]#
+     */
+    private static final class Normal implements Node {
+        private final String key;
+        private Normal(final String key) {
+            this.key = key;
+        }
+        @Override
+        public void render(final Context context, final String prefix) throws IOException {
+            context.out.write(replacePattern(prefix + this.key, context.pattern));
+        }
+    }
+
+    /**
+     * #{key}#...#{/key}#
+     */
+    private static final class Multi implements Node {
+        private final String key;
+        private final Node[] body;
+        private Multi(final String key, final Node[] body) {
+            this.key = key;
+            this.body = body;
+        }
+        @Override
+        public void render(final Context context, final String prefix) throws IOException {
+            final String value = context.pattern.get(prefix + this.key);
+            int num = 0;
+            if (value != null && !value.isEmpty()) {
+                try {
+                    num = Integer.parseInt(value); // the value contains the iteration number as string
+                } catch (final NumberFormatException e) {
+                    ConcurrentLog.logException(e);
+                    num = 0;
+                }
+            }
+            for (int i = 0; i < num; i++) {
+                Template.render(this.body, context, prefix + this.key + "_" + i + "_");
+            }
+        }
+    }
+
+    /**
+     * #(key)#...::...#(/key)#
+     */
+    private static final class Alternative implements Node {
+        private final String key;
+        private final Node[][] alternatives;
+        private final byte[] source; // the text between the tags, for the selection of an alternative by name
+        private Alternative(final String key, final Node[][] alternatives, final byte[] source) {
+            this.key = key;
+            this.alternatives = alternatives;
+            this.source = source;
+        }
+        @Override
+        public void render(final Context context, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String patternId = context.pattern.get(patternKey);
+            final String newPrefix = patternKey + "_";
+            // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
+            int which = 0;
+            if (patternId == null || "false".equals(patternId)) {
+                which = 0;
+            } else if ("true".equals(patternId)) {
+                which = 1;
+            } else try {
+                which = Integer.parseInt(patternId); // index
+            } catch (final NumberFormatException e) {
+                // the alternative is selected by name: %%name...::
+                final byte[] name = UTF8.getBytes(patternId);
+                final byte[] start = new byte[PP.length + name.length];
+                System.arraycopy(PP, 0, start, 0, PP.length);
+                System.arraycopy(name, 0, start, PP.length, name.length);
+                final int p = indexOf(this.source, start, 0, this.source.length);
+                if (p < 0) {
+                    ConcurrentLog.severe("TEMPLATE", "Bad Key-Value pair in #()# construct: key=\"" + patternKey + "\", value=\"" + patternId + "\" in " + context.servletname);
+                    return;
+                }
+                int q = indexOf(this.source, dpdp, p + start.length, this.source.length);
+                if (q < 0) q = this.source.length;
+                Template.render(parse(context.servletname, this.source, p + start.length, q), context, newPrefix);
+                return;
+            }
+            // an index beyond the last alternative selects the last alternative
+            Template.render(this.alternatives[which >= 0 && which < this.alternatives.length ? which : this.alternatives.length - 1], context, newPrefix);
+        }
+    }
+
+    /**
+     * #%file%# or #%[key]%#
+     */
+    private static final class Include implements Node {
+        private final String filename;
+        private final boolean isPattern;
+        private Include(final String filename, final boolean isPattern) {
+            this.filename = filename;
+            this.isPattern = isPattern;
+        }
+        @Override
+        public void render(final Context context, final String prefix) throws IOException {
+            final byte[] name = this.isPattern ? replacePattern(prefix + this.filename, context.pattern) : UTF8.getBytes(this.filename);
+            if (name.length == 0 || Arrays.equals(name, UNRESOLVED_PATTERN)) return;
+            final String filename = UTF8.String(name);
+            final Template include;
+            try {
+                include = TemplateEngine.getInclude(HTTPDFileHandler.getLocalizedFile(filename, context.clientlanguage));
+            } catch (final IOException e) {
+                // file not found?
+                ConcurrentLog.severe("FILEHANDLER","Include Error with file " + filename + ": " + e.getMessage());
+                return;
+            }
+            Template.render(include.nodes, context, ""); // clear pattern prefix for include
+        }
+    }
+
+    final static byte[] replacePattern(final String key, final serverObjects pattern) {
+        final String value = pattern.get(key);
+        return value == null ? UNRESOLVED_PATTERN : UTF8.getBytes(value);
+    }
+
+    /**
+     * parse a part of a template into a list of nodes
+     */
+    private static Node[] parse(final String servletname, final byte[] b, final int from, final int to) {
+        final List<Node> nodes = new ArrayList<Node>();
+        int p = from;
+        parse: while (p < to) {
+            final int h = indexOf(b, hashChar, p, to);
+            if (h < 0) {
+                text(nodes, b, p, to);
+                break;
+            }
+            text(nodes, b, p, h);
+            p = h + 1;
+            if (p >= to) {
+                text(nodes, b, h, to);
+                break;
+            }
+            final byte c = b[p++];
+            switch (c) {
+            case '{': { // multi
+                final int k = indexOf(b, mClose, p, to);
+                if (k < 0) break parse;
+                final byte[] key = Arrays.copyOfRange(b, p, k);
+                p = k + mClose.length;
+                if (p < to && b[p] == 10) p++; // kill newline
+                final byte[] close = concat(new byte[]{'#', '{', '/'}, key, mClose);
+                final int e = indexOf(b, close, p, to);
+                if (e < 0) {
+                    ConcurrentLog.severe("TEMPLATE", "No Close Key found for #{" + UTF8.String(key) + "}#" + " in " + servletname);
+                    break parse;
+                }
+                nodes.add(new Multi(UTF8.String(key), parse(servletname, b, p, e)));
+                p = e + close.length;
+                if (p < to && b[p] == 10) p++; // kill newline
+                break;
+            }
+            case '(': { // alternative
+                final int k = indexOf(b, aClose, p, to);
+                if (k < 0) break parse;
+                final byte[] key = Arrays.copyOfRange(b, p, k);
+                final byte[] close = concat(new byte[]{'/'}, key, new byte[0]);
+                p = k + aClose.length;
+                final int start = p;
+                final List<Node[]> alternatives = new ArrayList<Node[]>();
+                int textStart = p; // the alternatives are parts of the source if there are no nested alternatives
+                int others = 0; // the depth of nested alternatives
+                boolean closed = false;
+                while (p < to) {
+                    final byte bb = b[p++];
+                    if (bb == hashChar) {
+                        if (p < to && b[p] == '(') {
+                            final int e = indexOf(b, aClose, p + 1, to);
+                            if (e < 0) {
+                                p = to;
+                                break;
+                            }
+                            final byte[] inner = Arrays.copyOfRange(b, p + 1, e);
+                            if (Arrays.equals(inner, close)) {
+                                alternatives.add(parse(servletname, b, textStart, p - 1));
+                                nodes.add(new Alternative(UTF8.String(key), alternatives.toArray(new Node[alternatives.size()][]), Arrays.copyOfRange(b, start, p - 1)));
+                                p = e + aClose.length;
+                                closed = true;
+                                break;
+                            }
+                            if (others > 0 && inner.length > 0 && inner[0] == '/') others--; else others++;
+                            p = e + aClose.length;
+                        }
+                    } else if (bb == ':' && others == 0) {
+                        if (p < to && b[p] == ':') {
+                            alternatives.add(parse(servletname, b, textStart, p - 1));
+                            p++;
+                            textStart = p;
+                        } else {
+                            p++; // the character after a single colon is always text
+                        }
+                    }
+                }
+                if (!closed) {
+                    ConcurrentLog.severe("TEMPLATE", "No Close Key found for #(" + UTF8.String(key) + ")# in " + servletname);
+                    break parse;
+                }
+                break;
+            }
+            case '[': { // normal
+                final int k = indexOf(b, pClose, p, to);
+                if (k < 0) break parse;
+                nodes.add(new Normal(UTF8.String(b, p, k - p)));
+                p = k + pClose.length;
+                break;
+            }
+            case '%': { // include
+                final int k = indexOf(b, iClose, p, to);
+                if (k < 0) break parse;
+                if (k - p >= 2 && b[p] == '[' && b[k - 1] == ']') {
+                    nodes.add(new Include(UTF8.String(b, p + 1, k - p - 2), true)); // simple pattern for filename
+                } else if (k > p) {
+                    nodes.add(new Include(UTF8.String(b, p, k - p), false));
+                }
+                p = k + iClose.length;
+                break;
+            }
+            default: // no match, this is simply a '#' without meaning
+                text(nodes, b, h, p);
+            }
+        }
+        return join(nodes);
+    }
+
+    private static void text(final List<Node> nodes, final byte[] b, final int from, final int to) {
+        if (to > from) nodes.add(new Text(Arrays.copyOfRange(b, from, to)));
+    }
+
+    /**
+     * join consecutive text nodes
+     */
+    private static Node[] join(final List<Node> nodes) {
+        final List<Node> joined = new ArrayList<Node>(nodes.size());
+        for (final Node node: nodes) {
+            final int last = joined.size() - 1;
+            if (node instanceof Text && last >= 0 && joined.get(last) instanceof Text) {
+                joined.set(last, new Text(concat(((Text) joined.get(last)).text, ((Text) node).text, new byte[0])));
+            } else {
+                joined.add(node);
+            }
+        }
+        return joined.toArray(new Node[joined.size()]);
+    }
+
+    private static int indexOf(final byte[] b, final byte c, final int from, final int to) {
+        for (int i = from; i < to; i++) if (b[i] == c) return i;
+        return -1;
+    }
+
+    static int indexOf(final byte[] b, final byte[] pattern, final int from, final int to) {
+        final int last = to - pattern.length;
+        search: for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) if (b[i + j] != pattern[j]) continue search;
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] concat(final byte[] a, final byte[] b, final byte[] c) {
+        final byte[] r = new byte[a.length + b.length + c.length];
+        System.arraycopy(a, 0, r, 0, a.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        System.arraycopy(c, 0, r, a.length + b.length, c.length);
+        return r;
+    }
+}
@@ -0,0 +1,221 @@
+package net.yacy.cora.federate.solr.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
+import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.schema.WebgraphSchema;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ConcurrentUpdateSolrConnectorTest {
+
+    static EmbeddedSolrConnector solr;
+    static EmbeddedInstance localCollectionInstance;
+
+    @BeforeClass
+    public static void initTesting() {
+        File solr_config = new File("defaults/solr");
+        File storage = new File("test/DATA/INDEX/webportal/SEGMENTS/text/solr/");
+        storage.mkdirs();
+        try {
+            localCollectionInstance = new EmbeddedInstance(solr_config, storage, CollectionSchema.CORE_NAME, new String[]{CollectionSchema.CORE_NAME, WebgraphSchema.CORE_NAME});
+            solr = new EmbeddedSolrConnector(localCollectionInstance);
+            solr.clear(); // delete all documents in index (for clean testing)
+        } catch (final IOException ex) {
+            fail("IOException starting embedded solr");
+        }
+    }
+
+    @AfterClass
+    public static void finalizeTesting() {
+        localCollectionInstance.close();
+    }
+
+    private static SolrInputDocument testDocument(final String id) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(CollectionSchema.id.getSolrFieldName(), id);
+        doc.addField(CollectionSchema.sku.getSolrFieldName(), "http://yacy.net/" + id + ".html");
+        doc.addField(CollectionSchema.load_date_dt.getSolrFieldName(), new Date());
+        doc.addField(CollectionSchema.title.getSolrFieldName(), "Lorem ipsum");
+        return doc;
+    }
+
+    /**
+     * Test that buffered documents are visible to reads by id and written on commit
+     */
+    @Test
+    public void testReadPending() throws IOException {
+        // a large batch size and delay keep the documents in the buffer until commit
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(solr, 1000, 60000);
+        try {
+            cusc.add(testDocument("pendingAAAAA"));
+            assertEquals(1, cusc.bufferSize() - solr.bufferSize());
+
+            SolrDocument doc = cusc.getDocumentById("pendingAAAAA");
+            assertNotNull(doc);
+            assertEquals("Lorem ipsum", doc.getFieldValue(CollectionSchema.title.getSolrFieldName()));
+            assertNotNull(cusc.getLoadTimeURL("pendingAAAAA"));
+            assertNull(solr.getDocumentById("pendingAAAAA"));
+
+            cusc.commit(true);
+            assertEquals(0, cusc.bufferSize() - solr.bufferSize());
+            assertNotNull(solr.getDocumentById("pendingAAAAA"));
+        } finally {
+            cusc.stop();
+        }
+    }
+
+    /**
+     * Test that a delete cancels a buffered document
+     */
+    @Test
+    public void testDeletePending() throws IOException {
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(solr, 1000, 60000);
+        try {
+            cusc.add(testDocument("deletedAAAAA"));
+            cusc.deleteById("deletedAAAAA");
+            assertNull(cusc.getDocumentById("deletedAAAAA"));
+            cusc.commit(true);
+            assertNull(solr.getDocumentById("deletedAAAAA"));
+        } finally {
+            cusc.stop();
+        }
+    }
+
+    /**
+     * Test that the background writer writes a full batch
+     */
+    @Test
+    public void testBatchWrite() throws IOException, InterruptedException {
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(solr, 10, 60000);
+        try {
+            for (int i = 0; i < 10; i++) cusc.add(testDocument("batchAAAAAA" + i));
+            for (int i = 0; i < 100 && cusc.bufferSize() - solr.bufferSize() > 0; i++) Thread.sleep(50);
+            assertEquals(0, cusc.bufferSize() - solr.bufferSize());
+            solr.commit(true);
+            assertEquals(10, solr.getCountByQuery(CollectionSchema.id.getSolrFieldName() + ":batchAAAAAA*"));
+        } finally {
+            cusc.stop();
+        }
+    }
+
+    /**
+     * Test that a batch which cannot be written stays buffered and is written with the next flush
+     */
+    @Test
+    public void testRetryFailedBatch() throws IOException {
+        final AtomicBoolean unreachable = new AtomicBoolean(true);
+        final SolrConnector failing = new MirrorSolrConnector(solr, null) {
+            @Override
+            public void add(final Collection<SolrInputDocument> solrdocs) throws IOException {
+                if (unreachable.get()) throw new IOException("connector is unreachable");
+                super.add(solrdocs);
+            }
+        };
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(failing, 1000, 60000);
+        try {
+            cusc.add(testDocument("retriedAAAAA"));
+            cusc.flush();
+            assertEquals(1, cusc.bufferSize() - solr.bufferSize());
+            assertNotNull(cusc.getDocumentById("retriedAAAAA"));
+
+            unreachable.set(false);
+            cusc.flush();
+            assertEquals(0, cusc.bufferSize() - solr.bufferSize());
+            solr.commit(true);
+            assertNotNull(solr.getDocumentById("retriedAAAAA"));
+        } finally {
+            cusc.stop();
+        }
+    }
+
+    /**
+     * Test that the background writer waits with growing delays while the connector cannot be reached
+     */
+    @Test
+    public void testRetryDelay() throws IOException, InterruptedException {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final SolrConnector failing = new MirrorSolrConnector(solr, null) {
+            @Override
+            public void add(final Collection<SolrInputDocument> solrdocs) throws IOException {
+                attempts.incrementAndGet();
+                throw new IOException("connector is unreachable");
+            }
+        };
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(failing, 2, 50);
+        try {
+            cusc.add(testDocument("delayedAAAA1"));
+            cusc.add(testDocument("delayedAAAA2"));
+            Thread.sleep(1000);
+            // writes after 0, 50, 100, 200 and 400 milliseconds; no retries without a delay
+            assertTrue(attempts.get() > 1);
+            assertTrue(attempts.get() <= 6);
+            assertEquals(2, cusc.bufferSize() - solr.bufferSize());
+        } finally {
+            cusc.stop();
+        }
+    }
+
+    /**
+     * Test that documents are refused when the buffer is full and the connector cannot be reached
+     */
+    @Test
+    public void testBufferLimit() throws IOException {
+        final SolrConnector failing = new MirrorSolrConnector(solr, null) {
+            @Override
+            public void add(final Collection<SolrInputDocument> solrdocs) throws IOException {
+                throw new IOException("connector is unreachable");
+            }
+        };
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(failing, 2, 60000);
+        try {
+            cusc.add(testDocument("limitedAAAA0"));
+            cusc.flush();
+            for (int i = 1; i < 8; i++) cusc.add(testDocument("limitedAAAA" + i));
+            assertEquals(8, cusc.bufferSize() - solr.bufferSize());
+            try {
+                cusc.add(testDocument("limitedAAAA8"));
+                fail("the document must be refused");
+            } catch (final IOException e) {
+                // the buffer is full
+            }
+            assertNull(cusc.getDocumentById("limitedAAAA8"));
+            // a buffered document can be replaced
+            cusc.add(testDocument("limitedAAAA7"));
+            assertEquals(8, cusc.bufferSize() - solr.bufferSize());
+        } finally {
+            cusc.stop();
+        }
+    }
+
+    /**
+     * Test that stop writes the buffer and that documents added after the stop are written directly
+     */
+    @Test
+    public void testStop() throws IOException {
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(solr, 1000, 60000);
+        cusc.add(testDocument("stoppedAAAA1"));
+        cusc.stop();
+        cusc.add(testDocument("stoppedAAAA2"));
+        assertEquals(0, cusc.bufferSize() - solr.bufferSize());
+        solr.commit(true);
+        assertNotNull(solr.getDocumentById("stoppedAAAA1"));
+        assertNotNull(solr.getDocumentById("stoppedAAAA2"));
+    }
+}
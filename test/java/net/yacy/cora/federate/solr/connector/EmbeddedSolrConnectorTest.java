@@ -2,8 +2,10 @@ package net.yacy.cora.federate.solr.connector;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
 import net.yacy.search.schema.CollectionSchema;
 import net.yacy.search.schema.WebgraphSchema;
@@ -173,6 +175,30 @@ public class EmbeddedSolrConnectorTest {
         assertEquals(id, foundid);
     }
 
+    /**
+     * Test that the load times of several documents are found with one request
+     */
+    @Test
+    public void testGetLoadTimes() throws IOException {
+        final long now = System.currentTimeMillis();
+        final String[] ids = new String[]{"LoadTimes0aa", "LoadTimes1aa", "LoadTimes2aa"};
+        for (int i = 0; i < ids.length; i++) {
+            SolrInputDocument doc = new SolrInputDocument();
+            doc.addField(CollectionSchema.id.name(), ids[i]);
+            doc.addField(CollectionSchema.sku.name(), "http://yacy.net/" + i);
+            doc.addField(CollectionSchema.load_date_dt.name(), new Date(now - i * 1000));
+            solr.add(doc);
+        }
+        solr.commit(true);
+
+        Map<String, Long> times = solr.getLoadTimes(Arrays.asList(ids[0], ids[2], "LoadTimes9aa"));
+        assertEquals(2, times.size());
+        assertEquals(now, times.get(ids[0]).longValue());
+        assertEquals(now - 2000, times.get(ids[2]).longValue());
+        assertFalse(times.containsKey("LoadTimes9aa"));
+        assertEquals(solr.getLoadTime(ids[2]), times.get(ids[2]).longValue());
+    }
+
     /**
      * Test of close and reopen embedded Solr
      * test for issue http://mantis.tokeek.de/view.php?id=686
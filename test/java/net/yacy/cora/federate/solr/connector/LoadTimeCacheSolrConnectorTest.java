@@ -0,0 +1,137 @@
+package net.yacy.cora.federate.solr.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
+import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.schema.WebgraphSchema;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class LoadTimeCacheSolrConnectorTest {
+
+    static EmbeddedSolrConnector solr;
+    static EmbeddedInstance localCollectionInstance;
+
+    @BeforeClass
+    public static void initTesting() {
+        File solr_config = new File("defaults/solr");
+        File storage = new File("test/DATA/INDEX/webportal/SEGMENTS/text/solr/");
+        storage.mkdirs();
+        try {
+            localCollectionInstance = new EmbeddedInstance(solr_config, storage, CollectionSchema.CORE_NAME, new String[]{CollectionSchema.CORE_NAME, WebgraphSchema.CORE_NAME});
+            solr = new EmbeddedSolrConnector(localCollectionInstance);
+            solr.clear(); // delete all documents in index (for clean testing)
+        } catch (final IOException ex) {
+            fail("IOException starting embedded solr");
+        }
+    }
+
+    @AfterClass
+    public static void finalizeTesting() {
+        localCollectionInstance.close();
+    }
+
+    private static SolrInputDocument testDocument(final String id, final Date loaddate) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(CollectionSchema.id.getSolrFieldName(), id);
+        doc.addField(CollectionSchema.sku.getSolrFieldName(), "http://yacy.net/" + id + ".html");
+        doc.addField(CollectionSchema.load_date_dt.getSolrFieldName(), loaddate);
+        return doc;
+    }
+
+    private static void waitForFill(final LoadTimeCacheSolrConnector ltc) throws InterruptedException {
+        for (int i = 0; i < 200 && !ltc.isComplete(); i++) Thread.sleep(50);
+        assertTrue(ltc.isComplete());
+    }
+
+    /**
+     * Test that existing documents are cached on startup and that changes are reflected in the cache
+     */
+    @Test
+    public void testLoadTime() throws IOException, InterruptedException {
+        final Date existingDate = new Date(1400000000000L);
+        solr.add(testDocument("existingAAAA", existingDate));
+        solr.commit(true);
+
+        LoadTimeCacheSolrConnector ltc = new LoadTimeCacheSolrConnector(solr, 1000);
+        try {
+            waitForFill(ltc);
+            assertEquals(existingDate.getTime(), ltc.getLoadTime("existingAAAA"));
+            assertEquals(-1, ltc.getLoadTime("unknownAAAAA"));
+            assertEquals(2, ltc.cacheHit());
+            assertEquals(0, ltc.cacheMiss());
+            assertNull(ltc.getLoadTimeURL("unknownAAAAA"));
+
+            final Date addedDate = new Date(1500000000000L);
+            ltc.add(testDocument("addedAAAAAAA", addedDate));
+            assertEquals(addedDate.getTime(), ltc.getLoadTime("addedAAAAAAA"));
+
+            ltc.deleteById("existingAAAA");
+            assertEquals(-1, ltc.getLoadTime("existingAAAA"));
+            assertEquals(0, ltc.cacheMiss());
+        } finally {
+            ltc.stop();
+        }
+    }
+
+    /**
+     * Test that an incomplete cache falls back to the index and caches the result
+     */
+    @Test
+    public void testOverflow() throws IOException, InterruptedException {
+        for (int i = 0; i < 5; i++) solr.add(testDocument("overflowAAA" + i, new Date()));
+        solr.commit(true);
+
+        LoadTimeCacheSolrConnector ltc = new LoadTimeCacheSolrConnector(solr, 2);
+        try {
+            for (int i = 0; i < 200 && ltc.cacheSize() < 2; i++) Thread.sleep(50);
+            Thread.sleep(200);
+            assertTrue(!ltc.isComplete());
+            for (int i = 0; i < 5; i++) assertTrue(ltc.getLoadTime("overflowAAA" + i) > 0);
+            assertEquals(-1, ltc.getLoadTime("unknownAAAAA"));
+            assertTrue(ltc.cacheMiss() > 0);
+        } finally {
+            ltc.stop();
+        }
+    }
+
+    /**
+     * Test that a clear of the connector behind the wrappers drops the buffered documents and the cached load dates
+     */
+    @Test
+    public void testClearBehindWrappers() throws IOException, InterruptedException {
+        solr.add(testDocument("clearedAAAAA", new Date()));
+        solr.commit(true);
+
+        ConcurrentUpdateSolrConnector cusc = new ConcurrentUpdateSolrConnector(new MirrorSolrConnector(solr, null), 1000, 60000);
+        LoadTimeCacheSolrConnector ltc = new LoadTimeCacheSolrConnector(cusc, 1000);
+        try {
+            waitForFill(ltc);
+            assertTrue(ltc.getLoadTime("clearedAAAAA") > 0);
+            ltc.add(testDocument("pendingAAAAA", new Date()));
+            assertEquals(1, cusc.bufferSize());
+
+            ltc.clear(solr);
+            assertEquals(0, cusc.bufferSize());
+            waitForFill(ltc);
+            assertEquals(-1, ltc.getLoadTime("clearedAAAAA"));
+            assertEquals(-1, ltc.getLoadTime("pendingAAAAA"));
+            cusc.flush();
+            solr.commit(true);
+            assertNull(solr.getLoadTimeURL("pendingAAAAA"));
+        } finally {
+            ltc.stop();
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package net.yacy.cora.language.synonyms;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -115,4 +116,55 @@ public class AutotaggingLibraryTest {
 		Assert.assertEquals(0, tags.size());
 	}
 
+	/**
+	 * Test that the matcher finds all synonyms ending at a word in one pass, also overlapping ones,
+	 * and that it is built again when the vocabularies change
+	 */
+	@Test
+	public void testGetMatcher() throws IOException {
+		final ConcurrentHashMap<String, Tagging> vocabularies = new ConcurrentHashMap<String, Tagging>();
+		final AutotaggingLibrary lib = new AutotaggingLibrary(vocabularies);
+
+		Map<String, SOTuple> table = new LinkedHashMap<String, Tagging.SOTuple>();
+		table.put("New York", new Tagging.SOTuple("NYC,Big Apple", null));
+		table.put("York", new Tagging.SOTuple("", null));
+		table.put("M\u00FCnchen", new Tagging.SOTuple("", null));
+		vocabularies.put("cities", new Tagging("cities", null, null, table));
+
+		table = new LinkedHashMap<String, Tagging.SOTuple>();
+		table.put("New York City Marathon", new Tagging.SOTuple("", null));
+		table.put("Apple", new Tagging.SOTuple("", null));
+		vocabularies.put("events", new Tagging("events", null, null, table));
+
+		final AutotaggingMatcher matcher = lib.getMatcher();
+		Assert.assertSame(matcher, lib.getMatcher());
+		final Set<String> found = new HashSet<String>();
+		int state = matcher.start();
+		for (final String word: "the new york city marathon passes the big apple and goes to M\u00FCnchen".split(" ")) {
+			state = matcher.next(state, word);
+			for (final AutotaggingMatcher.Match match: matcher.matches(state)) {
+				found.add(match.vocabulary.getName() + ":" + match.vocabulary.getMetatagFromSynonym(match.synonym).getObject());
+			}
+		}
+		final Set<String> expected = new HashSet<String>();
+		expected.add("cities:New York"); // found with "new york" and its synonym "big apple"
+		expected.add("cities:York");
+		expected.add("events:New York City Marathon");
+		expected.add("events:Apple");
+		expected.add("cities:M\u00FCnchen");
+		Assert.assertEquals(expected, found);
+
+		/* vocabularies matching from linked data are not used for clear text */
+		vocabularies.get("events").setMatchFromLinkedData(true);
+		final AutotaggingMatcher changed = lib.getMatcher();
+		Assert.assertNotSame(matcher, changed);
+		state = changed.next(changed.start(), "apple");
+		Assert.assertEquals(0, changed.matches(state).length);
+
+		/* a deleted vocabulary is not matched any more */
+		vocabularies.remove("cities");
+		state = lib.getMatcher().next(0, "york");
+		Assert.assertEquals(0, lib.getMatcher().matches(state).length);
+	}
+
 }
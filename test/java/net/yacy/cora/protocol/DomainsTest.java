@@ -19,8 +19,15 @@
  */
 package net.yacy.cora.protocol;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -86,4 +93,76 @@ public class DomainsTest {
             assertEquals(teststr, expectedHost, host);
         }
     }
+
+    /**
+     * a local stand-in for the name service which counts the lookups per host
+     */
+    private static class StandInResolver implements Domains.Resolver {
+        private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+        private final CountDownLatch release;
+        private StandInResolver(final CountDownLatch release) {
+            this.release = release;
+        }
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            this.lookups.putIfAbsent(host, new AtomicInteger());
+            this.lookups.get(host).incrementAndGet();
+            try {
+                this.release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {}
+            if (host.startsWith("unknown")) throw new UnknownHostException(host);
+            return InetAddress.getByAddress(host, new byte[]{93, (byte) 184, (byte) 216, (byte) host.length()});
+        }
+        private int lookups(final String host) {
+            final AtomicInteger count = this.lookups.get(host);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    /**
+     * Test of dnsResolve and prefetch with a stand-in resolver: prefetched hosts are cached,
+     * concurrent requests share one lookup and unknown hosts are cached until the negative ttl expires.
+     */
+    @Test
+    public void testResolveAndPrefetch() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final StandInResolver resolver = new StandInResolver(release);
+        final long missTTL = Domains.nameCacheMissTTL;
+        Domains.setResolver(resolver);
+        try {
+            // a prefetch which is still running is joined by dnsResolve instead of starting a second lookup
+            Domains.prefetch("prefetch.example.org");
+            Domains.prefetch("prefetch.example.org");
+            final Thread waiting = new Thread() {
+                @Override
+                public void run() {
+                    Domains.dnsResolve("prefetch.example.org");
+                }
+            };
+            waiting.start();
+            Thread.sleep(100);
+            release.countDown();
+            waiting.join();
+            final InetAddress ip = Domains.dnsResolve("Prefetch.Example.org");
+            assertNotNull(ip);
+            assertEquals("prefetch.example.org", ip.getHostName());
+            assertEquals(1, resolver.lookups("prefetch.example.org"));
+            assertEquals(ip, Domains.dnsResolveFromCache("prefetch.example.org"));
+
+            // unknown hosts are cached as miss until the negative ttl expires
+            assertNull(Domains.dnsResolve("unknown.example.org"));
+            assertNull(Domains.dnsResolve("unknown.example.org"));
+            assertEquals(1, resolver.lookups("unknown.example.org"));
+            Domains.nameCacheMissTTL = 0;
+            assertNull(Domains.dnsResolve("unknown2.example.org"));
+            assertNull(Domains.dnsResolve("unknown2.example.org"));
+            assertEquals(2, resolver.lookups("unknown2.example.org"));
+
+            assertTrue(Domains.lookupCount() >= 4);
+            assertTrue(Domains.prefetchCount() >= 1);
+        } finally {
+            Domains.nameCacheMissTTL = missTTL;
+            Domains.setResolver(null);
+        }
+    }
 }
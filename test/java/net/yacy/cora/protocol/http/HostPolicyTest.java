@@ -0,0 +1,79 @@
+package net.yacy.cora.protocol.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.http.HttpHost;
+import org.junit.Test;
+
+public class HostPolicyTest {
+
+    /**
+     * Test that slow hosts get less parallel connections and shorter time-outs, but never less than the minimum
+     */
+    @Test
+    public void testAdaptation() {
+        assertEquals(16, HostPolicy.maxConnections(-1, 16));
+        assertEquals(16, HostPolicy.maxConnections(HostPolicy.slowLatency, 16));
+        assertEquals(8, HostPolicy.maxConnections(2 * HostPolicy.slowLatency, 16));
+        assertEquals(1, HostPolicy.maxConnections(100 * HostPolicy.slowLatency, 16));
+
+        assertEquals(10000, HostPolicy.timeout(-1, 10000));
+        assertEquals(HostPolicy.minTimeout, HostPolicy.timeout(50, 10000));
+        assertEquals(5000, HostPolicy.timeout(500, 10000));
+        assertEquals(10000, HostPolicy.timeout(5000, 10000));
+
+        assertEquals(HostPolicy.keepAliveDefault, HostPolicy.keepAlive(-1, -1));
+        assertEquals(HostPolicy.keepAliveMax, HostPolicy.keepAlive(200, -1));
+        assertEquals(10000, HostPolicy.keepAlive(200, 10000));
+        assertEquals(HostPolicy.keepAliveMax, HostPolicy.keepAlive(-1, 60000));
+    }
+
+    /**
+     * Test that the latency is taken from the statistics provider
+     */
+    @Test
+    public void testStatistics() {
+        assertEquals(-1, HostPolicy.averageLatency(new HttpHost("example.org", -1, "http")));
+        HostPolicy.setStatistics(new HostPolicy.Statistics() {
+            @Override
+            public int averageLatency(final String scheme, final String host, final int port) {
+                return "example.org".equals(host) && "https".equals(scheme) ? 1500 : -1;
+            }
+        });
+        try {
+            assertEquals(1500, HostPolicy.averageLatency(new HttpHost("example.org", 443, "https")));
+            assertEquals(-1, HostPolicy.averageLatency(new HttpHost("example.org", 80, "http")));
+        } finally {
+            HostPolicy.setStatistics(null);
+        }
+    }
+
+    /**
+     * Test that no more connections than the limit of a slow host are permitted and that released permits are reused
+     */
+    @Test
+    public void testPermits() throws InterruptedException {
+        final HostPolicy.Permit p1 = HostPolicy.acquire("http://slow.example.org:80", 2, 0);
+        final HostPolicy.Permit p2 = HostPolicy.acquire("http://slow.example.org:80", 2, 0);
+        assertNotNull(p1);
+        assertNotNull(p2);
+        assertNull(HostPolicy.acquire("http://slow.example.org:80", 2, 10));
+        assertNotNull(HostPolicy.acquire("http://other.example.org:80", 2, 0));
+
+        p1.release();
+        p1.release(); // a second release must not add a permit
+        final HostPolicy.Permit p3 = HostPolicy.acquire("http://slow.example.org:80", 2, 0);
+        assertNotNull(p3);
+        assertNull(HostPolicy.acquire("http://slow.example.org:80", 2, 10));
+
+        // a lower limit takes effect when the permits are released
+        p2.release();
+        assertNull(HostPolicy.acquire("http://slow.example.org:80", 1, 10));
+        p3.release();
+        final HostPolicy.Permit p4 = HostPolicy.acquire("http://slow.example.org:80", 1, 0);
+        assertNotNull(p4);
+        p4.release();
+    }
+}
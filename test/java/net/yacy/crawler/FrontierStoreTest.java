@@ -0,0 +1,236 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.util.FileUtils;
+
+public class FrontierStoreTest {
+
+    private static final File STORE_DIR = new File("test/DATA/INDEX/QUEUE/FrontierStoreTest");
+
+    private static Request request(final int host, final int page, final int depth) throws MalformedURLException {
+        final DigestURL url = new DigestURL("http://host" + host + ".example.com/page" + page + ".html");
+        return new Request(null, url, null, "page " + page, new Date(), null, depth, 0);
+    }
+
+    private static void put(final FrontierStore store, final Request request) throws IOException, SpaceExceededException {
+        assertTrue(store.put(request.depth(), request.toRow()));
+    }
+
+    /**
+     * pop all requests of a host
+     * @return the urls in the order of the pops
+     */
+    private static List<String> popAll(final FrontierStore store, final String hosthash) throws IOException {
+        final List<String> urls = new ArrayList<String>();
+        Row.Entry row;
+        while ((row = store.peek(hosthash)) != null) {
+            final Request request = new Request(row);
+            urls.add(request.url().toNormalform(true) + " " + request.depth());
+            assertTrue(store.remove(request.url().hash()));
+        }
+        return urls;
+    }
+
+    /**
+     * Test that the requests of a host are returned from the lowest depth first, in the order of their pushes,
+     * and that the queues are restored when the store is opened again
+     */
+    @Test
+    public void testOrderAndReopen() throws IOException, SpaceExceededException {
+        FileUtils.deletedelete(STORE_DIR);
+        FrontierStore store = new FrontierStore(STORE_DIR, Request.rowdef);
+        final List<String> expected = new ArrayList<String>();
+        for (int page = 0; page < 30; page++) {
+            final Request request = request(1, page, 2 - page % 3);
+            put(store, request);
+            put(store, request(2, page, 0));
+        }
+        for (int depth = 0; depth < 3; depth++) {
+            for (int page = 2 - depth; page < 30; page += 3) expected.add(request(1, page, depth).url().toNormalform(true) + " " + depth);
+        }
+        final Request double1 = request(1, 0, 2);
+        assertFalse(store.put(double1.depth(), double1.toRow()));
+        assertEquals(60, store.size());
+        assertEquals(2, store.hosts().size());
+
+        // remove some requests before and some after a restart
+        final String hosthash = request(1, 0, 0).url().hosthash();
+        assertTrue(store.remove(request(1, 5, 0).url().hash()));
+        expected.remove(request(1, 5, 0).url().toNormalform(true) + " 0");
+        store.close();
+
+        store = new FrontierStore(STORE_DIR, Request.rowdef);
+        assertEquals(59, store.size());
+        assertEquals(29, store.size(hosthash));
+        assertTrue(store.has(request(1, 7, 0).url().hash()));
+        assertFalse(store.has(request(1, 5, 0).url().hash()));
+        assertEquals("page 7", new Request(store.get(request(1, 7, 0).url().hash())).name());
+        assertEquals(30, store.clear(request(2, 0, 0).url().hosthash()));
+        assertTrue(store.remove(request(1, 10, 0).url().hash()));
+        expected.remove(request(1, 10, 0).url().toNormalform(true) + " 1");
+        store.close();
+
+        store = new FrontierStore(STORE_DIR, Request.rowdef);
+        assertEquals(28, store.size());
+        assertEquals(1, store.hosts().size());
+        final Iterator<Row.Entry> i = store.rows(hosthash);
+        int n = 0;
+        while (i.hasNext()) {
+            final Request request = new Request(i.next());
+            assertEquals(expected.get(n++), request.url().toNormalform(true) + " " + request.depth());
+        }
+        assertEquals(28, n);
+        assertEquals(expected, popAll(store, hosthash));
+        assertTrue(store.isEmpty());
+        store.close();
+        assertFalse(new File(STORE_DIR, FrontierStore.fileName).exists());
+        FileUtils.deletedelete(STORE_DIR);
+    }
+
+    /**
+     * Test that an incomplete record at the end of the log is cut off and that a log with mostly removed records is compacted
+     */
+    @Test
+    public void testRecoveryAndCompaction() throws IOException, SpaceExceededException {
+        FileUtils.deletedelete(STORE_DIR);
+        FrontierStore store = new FrontierStore(STORE_DIR, Request.rowdef);
+        for (int page = 0; page < 100; page++) put(store, request(3, page, page % 2));
+        for (int page = 0; page < 90; page++) store.remove(request(3, page, 0).url().hash());
+        store.close();
+
+        final File file = new File(STORE_DIR, FrontierStore.fileName);
+        final long length = file.length();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(length);
+        raf.write('P');
+        raf.write(ASCII.getBytes("AAAAAA"));
+        raf.close();
+
+        store = new FrontierStore(STORE_DIR, Request.rowdef);
+        assertEquals(10, store.size());
+        assertTrue(file.length() < length / 3);
+        final List<String> urls = popAll(store, request(3, 0, 0).url().hosthash());
+        assertEquals(10, urls.size());
+        assertEquals(request(3, 90, 0).url().toNormalform(true) + " 0", urls.get(0));
+        assertEquals(request(3, 98, 0).url().toNormalform(true) + " 0", urls.get(4));
+        assertEquals(request(3, 91, 1).url().toNormalform(true) + " 1", urls.get(5));
+        assertNull(store.peek(request(3, 0, 0).url().hosthash()));
+        store.close();
+        FileUtils.deletedelete(STORE_DIR);
+    }
+
+    /**
+     * Test that the queues of different hosts are used concurrently
+     */
+    @Test
+    public void testConcurrentHosts() throws Exception {
+        FileUtils.deletedelete(STORE_DIR);
+        final FrontierStore store = new FrontierStore(STORE_DIR, Request.rowdef);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int host = 10 + t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final List<String> expected = new ArrayList<String>();
+                        for (int page = 0; page < 500; page++) {
+                            put(store, request(host, page, 0));
+                            expected.add(request(host, page, 0).url().toNormalform(true) + " 0");
+                        }
+                        assertEquals(500, store.size(request(host, 0, 0).url().hosthash()));
+                        assertEquals(expected, popAll(store, request(host, 0, 0).url().hosthash()));
+                    } catch (final Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (final Thread thread: threads) thread.start();
+        for (final Thread thread: threads) thread.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(store.isEmpty());
+        assertTrue(store.hosts().isEmpty());
+        store.close();
+        FileUtils.deletedelete(STORE_DIR);
+    }
+
+    /**
+     * Test that the log is compacted in the background while other hosts continue to push requests
+     */
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        FileUtils.deletedelete(STORE_DIR);
+        FrontierStore store = new FrontierStore(STORE_DIR, Request.rowdef);
+        for (int page = 0; page < 6000; page++) put(store, request(4, page, page % 2));
+        store.flush();
+        final File file = new File(STORE_DIR, FrontierStore.fileName);
+        final long length = file.length();
+
+        // removals start the compaction; meanwhile another host pushes requests
+        final FrontierStore s = store;
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final Thread pusher = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int page = 0; page < 1000; page++) put(s, request(5, page, 0));
+                } catch (final Throwable e) {
+                    errors.add(e);
+                }
+            }
+        };
+        pusher.start();
+        for (int page = 0; page < 5900; page++) assertTrue(store.remove(request(4, page, 0).url().hash()));
+        pusher.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (file.length() >= length / 2 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+        assertTrue(file.length() < length / 2);
+        assertEquals(1100, store.size());
+
+        // the cursors and the index point to the records in the compacted log
+        final String hosthash = request(4, 0, 0).url().hosthash();
+        assertEquals("page 5950", new Request(store.get(request(4, 5950, 0).url().hash())).name());
+        final List<String> expected = new ArrayList<String>();
+        for (int page = 5900; page < 6000; page += 2) expected.add(request(4, page, 0).url().toNormalform(true) + " 0");
+        for (int page = 5901; page < 6000; page += 2) expected.add(request(4, page, 1).url().toNormalform(true) + " 1");
+        final Iterator<Row.Entry> i = store.rows(hosthash);
+        int n = 0;
+        while (i.hasNext()) assertEquals(expected.get(n++), new Request(i.next()).url().toNormalform(true) + " " + (n < 51 ? 0 : 1));
+        assertEquals(100, n);
+        assertEquals(expected, popAll(store, hosthash));
+        store.close();
+
+        store = new FrontierStore(STORE_DIR, Request.rowdef);
+        assertEquals(1000, store.size());
+        final List<String> urls = popAll(store, request(5, 0, 0).url().hosthash());
+        assertEquals(1000, urls.size());
+        for (int page = 0; page < 1000; page++) assertEquals(request(5, page, 0).url().toNormalform(true) + " 0", urls.get(page));
+        store.close();
+        FileUtils.deletedelete(STORE_DIR);
+    }
+}
@@ -15,8 +15,7 @@ import org.junit.Test;
 * directorylayout is
 *
 *   stackDir                      (dir)
-*      +-- hostDir                (dir)
-*           +-- crawldepth.stack  (file)
+*      +-- frontier.log           (file, the FrontierStore of all hosts)
 */
 public class HostQueueTest {
     final String stackDir = "test/DATA/INDEX/QUEUE/CrawlerCoreStacks";
@@ -32,7 +31,8 @@ public class HostQueueTest {
         DigestURL url = new DigestURL(urlstr);
         
         // open queue
-        HostQueue testhq = new HostQueue(stackDirFile, url, true, true);
+        FrontierStore store = new FrontierStore(stackDirFile, Request.rowdef);
+        HostQueue testhq = new HostQueue(store, url, true);
 
         // add a url
         Request req = new Request(url, null);
@@ -41,19 +41,17 @@ public class HostQueueTest {
         int sizeA = testhq.size();
         assertTrue (sizeA > 0);
 
-        testhq.clear(); // clear the complete host queue (should delete all files in stackDir)
+        testhq.clear(); // clear the complete host queue
 
         int sizeB = testhq.size();
         assertEquals (0,sizeB);
-
-        // verify stackDir empty (double check)
-        String[] filelist = stackDirFile.list();
-        assertEquals ("host files in queue dir",0,filelist.length);
+        assertEquals (0,store.size());
 
         testhq.close();
+        store.close(); // an empty store deletes its file
 
         // verify stackDir empty
-        filelist = stackDirFile.list();
+        String[] filelist = stackDirFile.list();
         assertEquals ("host files in queue dir",0,filelist.length);
 
     }
@@ -0,0 +1,85 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HostScheduleTest {
+
+    /**
+     * Test that hosts are taken in the order of their due time and that equal due times keep the insertion order
+     */
+    @Test
+    public void testOrder() {
+        HostSchedule schedule = new HostSchedule();
+        schedule.offer("hostCC", 3000);
+        schedule.offer("hostAA", 1000);
+        schedule.offer("hostBB", 2000);
+        schedule.offer("hostDD", 2000);
+        assertEquals(4, schedule.size());
+        assertEquals("hostAA", schedule.take());
+        assertEquals("hostBB", schedule.take());
+        assertEquals("hostDD", schedule.take());
+        assertEquals("hostCC", schedule.take());
+        assertNull(schedule.take());
+    }
+
+    /**
+     * Test that a taken host is not scheduled again until it is released
+     */
+    @Test
+    public void testTakeRelease() {
+        HostSchedule schedule = new HostSchedule();
+        assertTrue(schedule.offer("hostAA", 1000));
+        assertFalse(schedule.offer("hostAA", 0)); // already scheduled
+        assertEquals("hostAA", schedule.take());
+        assertTrue(schedule.contains("hostAA"));
+        assertFalse(schedule.offer("hostAA", 0)); // taken
+        assertFalse(schedule.update("hostAA", 0)); // taken
+        assertNull(schedule.take());
+        schedule.release("hostAA");
+        assertFalse(schedule.contains("hostAA"));
+        assertTrue(schedule.offer("hostAA", 0));
+        assertEquals("hostAA", schedule.take());
+    }
+
+    /**
+     * Test that an update moves a host to its new position
+     */
+    @Test
+    public void testUpdate() {
+        HostSchedule schedule = new HostSchedule();
+        schedule.offer("hostAA", 1000);
+        schedule.offer("hostBB", 2000);
+        assertTrue(schedule.update("hostAA", 3000));
+        assertFalse(schedule.update("hostCC", 0)); // not scheduled
+        assertEquals(2, schedule.size());
+        assertEquals("hostBB", schedule.take());
+        assertEquals("hostAA", schedule.take());
+        assertNull(schedule.take());
+
+        schedule.offer("hostCC", 1000);
+        schedule.remove("hostCC");
+        assertEquals(0, schedule.size());
+        assertNull(schedule.take());
+    }
+
+    /**
+     * Test that only hosts which are due up to the given time are taken
+     */
+    @Test
+    public void testTakeDue() {
+        HostSchedule schedule = new HostSchedule();
+        schedule.offer("hostAA", 1000);
+        schedule.offer("hostBB", 2000);
+        assertNull(schedule.take(999));
+        assertEquals("hostAA", schedule.take(1500));
+        assertNull(schedule.take(1500));
+        assertTrue(schedule.contains("hostBB"));
+        assertEquals("hostBB", schedule.take(2000));
+        assertNull(schedule.take(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,156 @@
+package net.yacy.crawler.retrieval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.util.ConcurrentLog;
+
+public class AsyncHTTPLoaderTest {
+
+    private static final String TEXT = "<html><body>Lorem ipsum dolor sit amet</body></html>";
+
+    private static Server server;
+    private static String base;
+    private static volatile String acceptEncoding;
+    private static AsyncHTTPLoader loader;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(final String target, final org.eclipse.jetty.server.Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                acceptEncoding = request.getHeader(HeaderFramework.ACCEPT_ENCODING);
+                response.setContentType("text/html");
+                if ("/gzip.html".equals(target)) {
+                    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    final GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                    gzip.write(UTF8.getBytes(TEXT));
+                    gzip.close();
+                    response.setHeader(HeaderFramework.CONTENT_ENCODING, "gzip");
+                    response.setContentLength(compressed.size());
+                    response.getOutputStream().write(compressed.toByteArray());
+                } else if ("/plain.html".equals(target)) {
+                    response.getOutputStream().write(UTF8.getBytes(TEXT));
+                } else if ("/redirect.html".equals(target)) {
+                    response.setStatus(302);
+                    response.setHeader(HeaderFramework.LOCATION, "/plain.html");
+                } else if ("/large.html".equals(target)) {
+                    response.getOutputStream().write(new byte[10000]);
+                } else {
+                    response.setStatus(404);
+                    response.getOutputStream().write(UTF8.getBytes("not found"));
+                }
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        loader = new AsyncHTTPLoader(null, new ConcurrentLog("AsyncHTTPLoaderTest"), 4, 2);
+    }
+
+    @AfterClass
+    public static void stopServer() throws Exception {
+        loader.close();
+        server.stop();
+    }
+
+    /**
+     * the result of a load: either a response or an error
+     */
+    private static class Result {
+        private final Response response;
+        private final String error;
+        private Result(final Response response, final String error) {
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    private static Result load(final String path, final int maxFileSize) throws Exception {
+        final BlockingQueue<Result> results = new ArrayBlockingQueue<Result>(1);
+        loader.load(new Request(new DigestURL(base + path), null), null, maxFileSize, null, ClientIdentification.yacyInternetCrawlerAgent, new AsyncHTTPLoader.Callback() {
+            @Override
+            public void loaded(final Response response) {
+                results.add(new Result(response, null));
+            }
+            @Override
+            public void failed(final Request request, final String error) {
+                results.add(new Result(null, error));
+            }
+        });
+        final Result result = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no result for " + path, result);
+        return result;
+    }
+
+    /**
+     * Test that a compressed content is decoded and that the response header describes the decoded content
+     */
+    @Test
+    public void testDecodedContent() throws Exception {
+        final Result result = load("/gzip.html", -1);
+        assertNull(result.error, result.error);
+        assertEquals(TEXT, UTF8.String(result.response.getContent()));
+        assertNull(result.response.getResponseHeader().get(HeaderFramework.CONTENT_ENCODING));
+        assertEquals(Integer.toString(TEXT.length()), result.response.getResponseHeader().get(HeaderFramework.CONTENT_LENGTH));
+        // only encodings which the http client can decode are accepted
+        assertEquals("gzip", acceptEncoding);
+    }
+
+    /**
+     * Test that a redirection is followed with the same request
+     */
+    @Test
+    public void testRedirect() throws Exception {
+        final Result result = load("/redirect.html", -1);
+        assertNull(result.error, result.error);
+        assertEquals(base + "/plain.html", result.response.url().toNormalform(true));
+        assertEquals(TEXT, UTF8.String(result.response.getContent()));
+    }
+
+    /**
+     * Test that a load is aborted when the content exceeds the maximum file size
+     */
+    @Test
+    public void testMaxFileSize() throws Exception {
+        final Result result = load("/large.html", 1000);
+        assertNull(result.response);
+        assertTrue(result.error, result.error.contains("max filesize limit"));
+        assertNull(load("/large.html", 20000).error);
+    }
+
+    /**
+     * Test that a response with a status other than 200 is rejected
+     */
+    @Test
+    public void testWrongStatus() throws Exception {
+        final Result result = load("/missing.html", -1);
+        assertNull(result.response);
+        assertTrue(result.error, result.error.startsWith("REJECTED WRONG STATUS TYPE"));
+        assertTrue(result.error, result.error.contains("404"));
+    }
+}
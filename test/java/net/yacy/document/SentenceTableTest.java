@@ -0,0 +1,101 @@
+package net.yacy.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleSet;
+
+public class SentenceTableTest {
+
+    private static final String TEXT =
+            "YaCy is a distributed search engine. Every peer stores a part of the index.\n" +
+            "Snippets are computed from the sentences of a document. Umlaute like München and 😀 are kept.\n" +
+            "The search engine does not need to load the document again to compute a snippet for a search result.";
+
+    private static HandleSet hashes(final String... words) throws Exception {
+        final HandleSet set = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, words.length);
+        for (final String word: words) set.put(Word.word2hash(word));
+        return set;
+    }
+
+    private static List<StringBuilder> sentences() {
+        // like Document.getSentences(false)
+        final SentenceReader sr = new SentenceReader(TEXT, false);
+        final List<StringBuilder> sentences = new ArrayList<StringBuilder>();
+        while (sr.hasNext()) sentences.add(sr.next());
+        sr.close();
+        return sentences;
+    }
+
+    /**
+     * Test that a stored table has the sentences of the document
+     */
+    @Test
+    public void testEncodeDecode() {
+        final List<StringBuilder> sentences = sentences();
+        final SentenceTable table = SentenceTable.decode(new SentenceTable(sentences).encode());
+        assertEquals(sentences.size(), table.size());
+        for (int i = 0; i < sentences.size(); i++) assertEquals(sentences.get(i).toString(), table.sentence(i).toString());
+        assertEquals(0, SentenceTable.decode(new SentenceTable(sentences.subList(0, 0)).encode()).size());
+        assertNull(SentenceTable.decode(new byte[]{0, 0, 0, 5, 1}));
+    }
+
+    /**
+     * Test that the snippets computed from a table are the same as the snippets computed from the sentences
+     */
+    @Test
+    public void testSnippet() throws Exception {
+        final List<StringBuilder> sentences = sentences();
+        final SentenceTable table = new SentenceTable(sentences);
+        assertTrue(table.mayContain(1, SentenceTable.filter(hashes("peer"))));
+
+        final String[][] queries = new String[][] {
+            {"snippet"}, {"search", "engine"}, {"münchen"}, {"peer", "result"}, {"distributed", "sentences", "load"}
+        };
+        for (final String[] query: queries) {
+            final SnippetExtractor fromSentences = new SnippetExtractor(sentences, hashes(query), 180);
+            final SnippetExtractor fromTable = new SnippetExtractor(table, hashes(query), 180);
+            assertEquals(fromSentences.getSnippet(), fromTable.getSnippet());
+            assertEquals(fromSentences.getRemainingWords().size(), fromTable.getRemainingWords().size());
+        }
+
+        try {
+            new SnippetExtractor(table, hashes("notinthetext"), 180);
+            assertFalse("no snippet expected", true);
+        } catch (final UnsupportedOperationException e) {
+            // the word is not in any sentence
+        }
+    }
+
+    /**
+     * Test that sentences which are not in the table, like the description, are searched together with the table
+     */
+    @Test
+    public void testSnippetWithDescription() throws Exception {
+        final List<StringBuilder> sentences = sentences();
+        final SentenceTable table = new SentenceTable(sentences);
+        final List<StringBuilder> description = new ArrayList<StringBuilder>();
+        description.add(new StringBuilder("A peer to peer web crawler written in Java."));
+
+        final String[][] queries = new String[][] {
+            {"crawler"}, {"snippet"}, {"crawler", "snippet"}
+        };
+        for (final String[] query: queries) {
+            final List<StringBuilder> all = new ArrayList<StringBuilder>(description);
+            all.addAll(sentences);
+            final SnippetExtractor fromSentences = new SnippetExtractor(all, hashes(query), 180);
+            final SnippetExtractor fromTable = new SnippetExtractor(description, table, hashes(query), 180);
+            assertEquals(fromSentences.getSnippet(), fromTable.getSnippet());
+            assertEquals(0, fromTable.getRemainingWords().size());
+        }
+    }
+}
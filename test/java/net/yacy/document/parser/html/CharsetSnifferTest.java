@@ -0,0 +1,41 @@
+package net.yacy.document.parser.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CharsetSnifferTest {
+
+    private static String sniff(final String html) {
+        final byte[] b = html.getBytes(StandardCharsets.ISO_8859_1);
+        return CharsetSniffer.sniff(b, b.length);
+    }
+
+    /**
+     * Test the charset declarations which are found in the beginning of a document
+     */
+    @Test
+    public void testSniff() {
+        assertEquals("utf-8", sniff("<html><head><meta charset=\"utf-8\"></head></html>"));
+        assertEquals("ISO-8859-1", sniff("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\"></head>"));
+        assertEquals("windows-1251", sniff("<HTML><HEAD><META CONTENT='text/html;charset=windows-1251' HTTP-EQUIV=content-type /></HEAD>"));
+        assertEquals("koi8-r", sniff("<html><head><title>a > b</title><meta name=\"x\"/><meta\ncharset=koi8-r></head>"));
+
+        // declarations which are not taken
+        assertNull(sniff("<html><head><meta content=\"text/html; charset=ISO-8859-1\"></head></html>"));
+        assertNull(sniff("<html><head><!-- <meta charset=\"utf-8\"> --></head></html>"));
+        assertNull(sniff("<html><head></head><body><meta charset=\"utf-8\"></body></html>"));
+        assertNull(sniff("<html><head><meta charset=\"utf-8"));
+        assertNull(sniff(""));
+
+        // byte order marks
+        assertEquals(StandardCharsets.UTF_8.name(), CharsetSniffer.sniff(new byte[]{(byte) 0xef, (byte) 0xbb, (byte) 0xbf, '<'}, 4));
+        assertEquals(StandardCharsets.UTF_16BE.name(), CharsetSniffer.sniff(new byte[]{(byte) 0xfe, (byte) 0xff, 0, '<'}, 4));
+        assertEquals(StandardCharsets.UTF_16LE.name(), CharsetSniffer.sniff(new byte[]{(byte) 0xff, (byte) 0xfe, '<', 0}, 4));
+        assertEquals(3, CharsetSniffer.bomLength(new byte[]{(byte) 0xef, (byte) 0xbb, (byte) 0xbf}, 3));
+        assertEquals(0, CharsetSniffer.bomLength(new byte[]{(byte) 0xef, (byte) 0xbb}, 2));
+    }
+}
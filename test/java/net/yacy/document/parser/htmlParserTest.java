@@ -140,6 +140,45 @@ public class htmlParserTest extends TestCase {
 		}
 	}
 	
+	/**
+	 * Test the htmlParser.parse() method, with the charset declared in the document
+	 * by a meta tag or a byte order mark, but not by the HTTP header.
+	 * 
+	 * @throws Exception
+	 *             when an unexpected error occurred
+	 */
+	@Test
+	public void testParseHtmlWithDocumentCharset() throws Exception {
+		final AnchorURL url = new AnchorURL("http://localhost/test.html");
+		final String mimetype = "text/html";
+		final String body = "<body><p>In München steht ein Hofbräuhaus.</p></body></html>";
+		final htmlParser parser = new htmlParser();
+
+		final String[] heads = new String[] {
+				"<!DOCTYPE html><html><head><meta charset=\"windows-1252\"><title>Test</title></head>",
+				"<html><head><!-- <meta charset=\"UTF-8\"> --><META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset=windows-1252\"></head>" };
+		for (final String head : heads) {
+			try (InputStream sourceStream = new ByteArrayInputStream((head + body).getBytes("windows-1252"));) {
+				final Document doc = parser.parse(url, mimetype, null, new VocabularyScraper(), 0, sourceStream)[0];
+				assertEquals("windows-1252", doc.getCharset());
+				assertTrue(doc.getTextString().contains("München"));
+			}
+		}
+
+		/* the byte order mark is used for the charset and is not part of the text */
+		final byte[] html = ("<html><head><title>Test</title></head>" + body).getBytes(StandardCharsets.UTF_16LE);
+		final byte[] bomHtml = new byte[html.length + 2];
+		bomHtml[0] = (byte) 0xff;
+		bomHtml[1] = (byte) 0xfe;
+		System.arraycopy(html, 0, bomHtml, 2, html.length);
+		try (InputStream sourceStream = new ByteArrayInputStream(bomHtml);) {
+			final Document doc = parser.parse(url, mimetype, null, new VocabularyScraper(), 0, sourceStream)[0];
+			assertEquals(StandardCharsets.UTF_16LE.name(), doc.getCharset());
+			assertTrue(doc.getTextString().contains("München"));
+			assertEquals("Test", doc.dc_title());
+		}
+	}
+
 	/**
 	 * Test the htmlParser.parse() method, when filtering out div elements on their CSS class.
 	 * 
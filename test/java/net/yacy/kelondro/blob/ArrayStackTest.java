@@ -0,0 +1,269 @@
+/**
+ *  ArrayStackTest
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.io.MappedFile;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceContainerArray;
+import net.yacy.kelondro.rwi.ReferenceContainerCache;
+import net.yacy.kelondro.rwi.ReferenceFactory;
+import net.yacy.kelondro.rwi.ReferenceIterator;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the merge of reference container files in ArrayStack.
+ */
+public class ArrayStackTest {
+
+    private static final File TEST_DIR = new File("test/DATA/ArrayStackTest");
+    private static final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+
+    @Before
+    public void setUp() {
+        FileUtils.deletedelete(TEST_DIR);
+        TEST_DIR.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deletedelete(TEST_DIR);
+    }
+
+    private static WordReferenceRow reference(final String url) throws Exception {
+        return new WordReferenceRow(
+                new DigestURL(url).hash(), url.length(), 3, 2,
+                100, 10,
+                System.currentTimeMillis(), System.currentTimeMillis(),
+                UTF8.getBytes("en"), Response.DT_TEXT,
+                1, 2);
+    }
+
+    /**
+     * dump a heap file with the terms term{from} .. term{to - 1}, each with references to page{0} .. page{refs - 1}
+     */
+    private static File dump(final String name, final int from, final int to, final String host) throws Exception {
+        final ReferenceContainerCache<WordReference> cache = new ReferenceContainerCache<WordReference>(factory, Word.commonHashOrder, Word.commonHashLength);
+        for (int t = from; t < to; t++) {
+            final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(factory, Word.word2hash("term" + t));
+            for (int r = 0; r < 5; r++) container.add(reference("http://" + host + ".example.org/page" + r + ".html"));
+            cache.add(container);
+        }
+        final File f = new File(TEST_DIR, name);
+        cache.dump(f, 1024 * 1024, false);
+        return f;
+    }
+
+    private static List<ReferenceContainer<WordReference>> read(final File f) throws Exception {
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        final ReferenceIterator<WordReference> i = new ReferenceIterator<WordReference>(f, factory);
+        try {
+            while (i.hasNext()) containers.add(i.next());
+        } finally {
+            i.close();
+        }
+        return containers;
+    }
+
+    private static List<ReferenceContainer<WordReference>> merge(final String name, final ExecutorService executor) throws Exception {
+        final File stackDir = new File(TEST_DIR, name);
+        final ArrayStack stack = new ArrayStack(stackDir, "text.index", Word.commonHashOrder, Word.commonHashLength, 1024 * 1024, false, true);
+        try {
+            final File f1 = dump(name + "1.blob", 0, 500, "hostA");
+            final File f2 = dump(name + "2.blob", 250, 750, "hostB");
+            final File result = stack.mergeMount(f1, f2, factory, stack.newBLOB(new Date()), 1024 * 1024, executor);
+            assertNotNull(result);
+            assertEquals(1, stack.entries());
+            return read(result);
+        } finally {
+            stack.close(true);
+        }
+    }
+
+    /**
+     * Test that a merge with parallel key ranges produces the same file content as a sequential merge
+     */
+    @Test
+    public void testParallelMerge() throws Exception {
+        final List<ReferenceContainer<WordReference>> sequential = merge("sequential", null);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<ReferenceContainer<WordReference>> parallel;
+        try {
+            parallel = merge("parallel", executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(750, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            final ReferenceContainer<WordReference> s = sequential.get(i);
+            final ReferenceContainer<WordReference> p = parallel.get(i);
+            assertArrayEquals(s.getTermHash(), p.getTermHash());
+            assertArrayEquals(s.exportCollection(), p.exportCollection());
+        }
+        // terms in both files have the references of both hosts
+        int merged = 0;
+        for (final ReferenceContainer<WordReference> c: parallel) {
+            if (c.size() == 10) merged++; else assertEquals(5, c.size());
+        }
+        assertEquals(250, merged);
+    }
+
+    /**
+     * Test that an interrupted merge is aborted and keeps its input files instead of mounting a truncated result
+     */
+    @Test
+    public void testInterruptedMerge() throws Exception {
+        final File stackDir = new File(TEST_DIR, "interrupted");
+        final ArrayStack stack = new ArrayStack(stackDir, "text.index", Word.commonHashOrder, Word.commonHashLength, 1024 * 1024, false, true);
+        try {
+            final File f1 = dump("interrupted1.blob", 0, 500, "hostA");
+            final File f2 = dump("interrupted2.blob", 250, 750, "hostB");
+            final File newFile = stack.newBLOB(new Date());
+            // interrupt the merging thread until the merge returns; a single interrupt may be consumed by the logger
+            final Thread merger = Thread.currentThread();
+            final AtomicBoolean merging = new AtomicBoolean(true);
+            final Thread interrupter = new Thread() {
+                @Override
+                public void run() {
+                    while (merging.get()) {
+                        merger.interrupt();
+                        try {Thread.sleep(1);} catch (final InterruptedException e) {}
+                    }
+                }
+            };
+            interrupter.start();
+            final File result;
+            try {
+                result = stack.mergeMount(f1, f2, factory, newFile, 1024 * 1024, null);
+            } finally {
+                merging.set(false);
+                while (interrupter.isAlive()) {
+                    try {interrupter.join();} catch (final InterruptedException e) {}
+                }
+                Thread.interrupted();
+            }
+            assertNull(result);
+            assertEquals(0, stack.entries());
+            assertFalse(newFile.exists());
+            assertEquals(500, read(f1).size());
+            assertEquals(500, read(f2).size());
+        } finally {
+            stack.close(true);
+        }
+    }
+
+    /**
+     * Test that read-only generations read from a memory mapping return the same containers as file reads
+     */
+    @Test
+    public void testMappedRead() throws Exception {
+        final File stackDir = new File(TEST_DIR, "mapped");
+        final File f = dump("text.index.20140101000000000.blob", 0, 100, "hostA");
+        stackDir.mkdirs();
+        assertTrue(f.renameTo(new File(stackDir, f.getName())));
+        final List<ReferenceContainer<WordReference>> expected = read(new File(stackDir, f.getName()));
+
+        MappedFile.setMaxMappedFiles(4);
+        final ReferenceContainerArray<WordReference> array = new ReferenceContainerArray<WordReference>(stackDir, "text.index", factory, Word.commonHashOrder, Word.commonHashLength);
+        try {
+            assertEquals(1, MappedFile.mappedFiles());
+            for (final ReferenceContainer<WordReference> c: expected) {
+                final ReferenceContainer<WordReference> m = array.get(c.getTermHash());
+                assertNotNull(m);
+                assertArrayEquals(c.exportCollection(), m.exportCollection());
+            }
+            // a write removes the mapping; the next read maps the file again
+            array.delete(expected.get(0).getTermHash());
+            assertNull(array.get(expected.get(0).getTermHash()));
+            assertEquals(expected.get(1).size(), array.get(expected.get(1).getTermHash()).size());
+            assertEquals(1, MappedFile.mappedFiles());
+        } finally {
+            array.close();
+            MappedFile.setMaxMappedFiles(0);
+        }
+        assertEquals(0, MappedFile.mappedFiles());
+    }
+
+    /**
+     * Test that the key filters of the generations are dumped and that they reject keys of other generations
+     */
+    @Test
+    public void testKeyFilter() throws Exception {
+        final File stackDir = new File(TEST_DIR, "filter");
+        stackDir.mkdirs();
+        final File f1 = dump("filter/text.index.20140101000000000.blob", 0, 300, "hostA");
+        dump("filter/text.index.20140102000000000.blob", 300, 600, "hostB");
+        int blm = 0;
+        for (final String s: stackDir.list()) if (s.endsWith(".blm")) blm++;
+        assertEquals(2, blm);
+
+        final HeapModifier heap = new HeapModifier(f1, Word.commonHashLength, Word.commonHashOrder);
+        try {
+            assertTrue(heap.mightContainKey(Word.word2hash("term300"))); // no filter initialized
+            heap.initKeyFilter();
+            int rejected = 0;
+            for (int t = 0; t < 300; t++) {
+                assertTrue(heap.mightContainKey(Word.word2hash("term" + t)));
+                if (!heap.mightContainKey(Word.word2hash("term" + (t + 300)))) rejected++;
+            }
+            assertTrue(rejected > 280);
+        } finally {
+            heap.close(false);
+        }
+
+        final ReferenceContainerArray<WordReference> array = new ReferenceContainerArray<WordReference>(stackDir, "text.index", factory, Word.commonHashOrder, Word.commonHashLength);
+        try {
+            for (int t = 0; t < 600; t++) {
+                final ReferenceContainer<WordReference> c = array.get(Word.word2hash("term" + t));
+                assertNotNull(c);
+                assertEquals(5, c.size());
+            }
+            assertNull(array.get(Word.word2hash("term600")));
+            assertFalse(array.has(Word.word2hash("term600")));
+        } finally {
+            array.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *  WordReferenceFactoryTest
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.kelondro.data.word;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the binary transfer format of WordReferenceFactory.
+ */
+public class WordReferenceFactoryTest {
+
+    private static WordReferenceRow reference(final String url, final int posintext) throws Exception {
+        final WordReferenceRow ientry = new WordReferenceRow(
+                new DigestURL(url).hash(), url.length(), 3, 2,
+                100, 10,
+                System.currentTimeMillis(), System.currentTimeMillis(),
+                UTF8.getBytes("en"), Response.DT_TEXT,
+                1, 2);
+        final Word word = new Word(posintext, 1, 10);
+        word.flags = new Bitfield(4);
+        ientry.setWord(word);
+        return ientry;
+    }
+
+    private static List<ReferenceContainer<WordReference>> containers(final int terms, final int refs) throws Exception {
+        final WordReferenceFactory factory = new WordReferenceFactory();
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        for (int t = 0; t < terms; t++) {
+            final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(factory, Word.word2hash("term" + t));
+            for (int r = 0; r < refs; r++) {
+                container.add(reference("http://host" + (r % 7) + ".example.org/page" + r + ".html", r + 1));
+            }
+            containers.add(container);
+        }
+        return containers;
+    }
+
+    /**
+     * Test that encodeTransfer/decodeTransfer restores all terms and row bytes.
+     */
+    @Test
+    public void testTransferRoundTrip() throws Exception {
+        final List<ReferenceContainer<WordReference>> sent = containers(5, 50);
+        final byte[] transfer = WordReferenceFactory.encodeTransfer(sent);
+        final List<ReferenceContainer<WordReference>> received = WordReferenceFactory.decodeTransfer(transfer, Integer.MAX_VALUE);
+
+        assertEquals(sent.size(), received.size());
+        int textSize = 0;
+        for (int t = 0; t < sent.size(); t++) {
+            final ReferenceContainer<WordReference> s = sent.get(t);
+            final ReferenceContainer<WordReference> r = received.get(t);
+            assertArrayEquals(s.getTermHash(), r.getTermHash());
+            assertEquals(s.size(), r.size());
+            final Iterator<WordReference> i = s.entries();
+            while (i.hasNext()) {
+                final WordReference ref = i.next();
+                final WordReference copy = r.getReference(ref.urlhash());
+                assertEquals(ASCII.String(ref.urlhash()), ref.toPropertyForm(), copy.toPropertyForm());
+                textSize += ASCII.String(s.getTermHash()).length() + ref.toPropertyForm().length() + 2;
+            }
+        }
+        assertTrue("binary " + transfer.length + " >= text " + textSize, transfer.length < textSize);
+    }
+
+    /**
+     * Test that decodeTransfer stops at the given maximum number of references.
+     */
+    @Test
+    public void testTransferLimit() throws Exception {
+        final byte[] transfer = WordReferenceFactory.encodeTransfer(containers(3, 10));
+        final List<ReferenceContainer<WordReference>> received = WordReferenceFactory.decodeTransfer(transfer, 15);
+        int count = 0;
+        for (final ReferenceContainer<WordReference> c: received) count += c.size();
+        assertEquals(15, count);
+    }
+
+    /**
+     * Test that a truncated transfer is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testTruncatedTransfer() throws Exception {
+        final byte[] transfer = WordReferenceFactory.encodeTransfer(containers(2, 10));
+        final byte[] truncated = new byte[transfer.length / 2];
+        System.arraycopy(transfer, 0, truncated, 0, truncated.length);
+        WordReferenceFactory.decodeTransfer(truncated, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,110 @@
+package net.yacy.kelondro.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MappedFileTest {
+
+    private final File file = new File(System.getProperty("java.io.tmpdir"), "MappedFileTest.bin");
+
+    @After
+    public void tearDown() {
+        MappedFile.setMaxMappedFiles(0);
+        this.file.delete();
+    }
+
+    private byte[] write(final int length) throws IOException {
+        final byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) b[i] = (byte) (i * 7);
+        final FileOutputStream os = new FileOutputStream(this.file);
+        try {
+            os.write(b);
+        } finally {
+            os.close();
+        }
+        return b;
+    }
+
+    /**
+     * Test that reads which cross the border of mapped chunks return the file content
+     */
+    @Test
+    public void testChunkBorders() throws IOException {
+        final byte[] content = write(1000);
+        MappedFile.setMaxMappedFiles(1);
+        final MappedFile m = MappedFile.map(this.file, 64);
+        assertNotNull(m);
+        try {
+            assertEquals(1000, m.length());
+            final byte[] b = new byte[200];
+            for (int pos = 0; pos + b.length <= content.length; pos += 31) {
+                m.readFully(pos, b, 0, b.length);
+                for (int i = 0; i < b.length; i++) assertEquals(content[pos + i], b[i]);
+            }
+            final byte[] all = new byte[1000];
+            m.readFully(0, all, 0, all.length);
+            assertArrayEquals(content, all);
+            for (int pos = 58; pos < 70; pos++) {
+                final int expected = ((content[pos] & 0xFF) << 24) | ((content[pos + 1] & 0xFF) << 16) | ((content[pos + 2] & 0xFF) << 8) | (content[pos + 3] & 0xFF);
+                assertEquals(expected, m.readInt(pos));
+            }
+        } finally {
+            m.close();
+        }
+    }
+
+    /**
+     * Test that the number of mapped files is limited and that closed mappings are released
+     */
+    @Test
+    public void testLimit() throws IOException {
+        write(100);
+        assertNull(MappedFile.map(this.file)); // switched off by default
+        MappedFile.setMaxMappedFiles(1);
+        final MappedFile m = MappedFile.map(this.file);
+        assertNotNull(m);
+        assertEquals(1, MappedFile.mappedFiles());
+        assertNull(MappedFile.map(this.file));
+        m.close();
+        m.close();
+        assertEquals(0, MappedFile.mappedFiles());
+        final MappedFile m1 = MappedFile.map(this.file);
+        assertNotNull(m1);
+        m1.close();
+    }
+
+    /**
+     * Test that reads of a closed mapping fail, so that the file can be truncated after the close
+     */
+    @Test
+    public void testReadAfterClose() throws IOException {
+        write(100);
+        MappedFile.setMaxMappedFiles(1);
+        final MappedFile m = MappedFile.map(this.file);
+        assertNotNull(m);
+        m.readInt(0);
+        m.close();
+        assertTrue(m.isClosed());
+        try {
+            m.readInt(0);
+            fail("read of a closed mapping");
+        } catch (final IOException e) {
+        }
+        try {
+            m.readFully(0, new byte[10], 0, 10);
+            fail("read of a closed mapping");
+        } catch (final IOException e) {
+        }
+    }
+}
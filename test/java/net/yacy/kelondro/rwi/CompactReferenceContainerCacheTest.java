@@ -0,0 +1,147 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
+
+public class CompactReferenceContainerCacheTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static byte[] urlHash(final int i) {
+        return ASCII.getBytes(String.format("url%09d", i));
+    }
+
+    private static WordReference reference(final int url, final int value) {
+        final Row.Entry entry = factory.getRow().newEntry();
+        entry.setCol(0, urlHash(url));
+        entry.setCol(1, value);
+        return factory.produceSlow(entry);
+    }
+
+    private static CompactReferenceContainerCache<WordReference> newCache() {
+        return new CompactReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength);
+    }
+
+    /**
+     * Test that references of many terms are stored and that the newest reference of a url wins
+     */
+    @Test
+    public void testAddGet() throws SpaceExceededException {
+        final CompactReferenceContainerCache<WordReference> cache = newCache();
+        for (int t = 0; t < 3000; t++) {
+            final byte[] term = Word.word2hash("term" + t);
+            for (int u = 0; u <= t % 7; u++) cache.add(term, reference(u, 1));
+            cache.add(term, reference(0, 2)); // replaces the first reference
+        }
+        assertEquals(3000, cache.size());
+        for (int t = 0; t < 3000; t++) {
+            final byte[] term = Word.word2hash("term" + t);
+            assertTrue(cache.has(term));
+            assertEquals(t % 7 + 2, cache.count(term)); // double entries are counted
+            final ReferenceContainer<WordReference> c = cache.get(term, null);
+            assertNotNull(c);
+            assertArrayEquals(term, c.getTermHash());
+            assertEquals(t % 7 + 1, c.size());
+            assertEquals(2, c.getReference(urlHash(0)).toKelondroEntry().getColLong(1));
+            if (t % 7 > 0) assertEquals(1, c.getReference(urlHash(1)).toKelondroEntry().getColLong(1));
+        }
+        assertFalse(cache.has(Word.word2hash("unknown")));
+        assertNull(cache.get(Word.word2hash("unknown"), null));
+        assertEquals(8, cache.maxReferences()); // including the double entry
+    }
+
+    /**
+     * Test the removal of single references and of complete terms and that the arena space is reused
+     */
+    @Test
+    public void testRemove() throws SpaceExceededException {
+        final CompactReferenceContainerCache<WordReference> cache = newCache();
+        final byte[] a = Word.word2hash("a");
+        final byte[] b = Word.word2hash("b");
+        for (int u = 0; u < 100; u++) {
+            cache.add(a, reference(u, 1));
+            cache.add(b, reference(u, 1));
+        }
+        assertTrue(cache.remove(a, urlHash(5)));
+        assertFalse(cache.remove(a, urlHash(5)));
+        final HandleSet urls = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 10);
+        try {
+            for (int u = 10; u < 20; u++) urls.put(urlHash(u));
+        } catch (final SpaceExceededException e) {}
+        assertEquals(10, cache.remove(a, urls));
+        final ReferenceContainer<WordReference> c = cache.remove(a);
+        assertEquals(89, c.size());
+        assertFalse(cache.has(a));
+        assertEquals(100, cache.get(b, null).size());
+
+        final long used = cache.usedMemory();
+        for (int u = 0; u < 100; u++) cache.add(a, reference(u, 1));
+        assertEquals(used, cache.usedMemory()); // the removed references are reused
+        cache.delete(b);
+        assertEquals(1, cache.size());
+        assertEquals(100, cache.references());
+        cache.clear();
+        assertTrue(cache.isEmpty());
+    }
+
+    /**
+     * Test that the dump of the compact cache is equal to the dump of a ReferenceContainerCache with the same content
+     */
+    @Test
+    public void testDump() throws SpaceExceededException, IOException {
+        final CompactReferenceContainerCache<WordReference> compact = newCache();
+        final ReferenceContainerCache<WordReference> cache = new ReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength);
+        for (int t = 0; t < 500; t++) {
+            final byte[] term = Word.word2hash("term" + t);
+            for (int u = 0; u < 1 + t % 13; u++) {
+                final WordReference r = reference((u * 31 + t) % 17, t);
+                compact.add(term, r);
+                cache.add(term, r);
+            }
+        }
+        final Iterator<ReferenceContainer<WordReference>> i = compact.referenceContainerIterator(null, false, false);
+        int count = 0;
+        while (i.hasNext()) {
+            final ReferenceContainer<WordReference> c = i.next();
+            assertEquals(cache.get(c.getTermHash(), null).size(), c.size());
+            count++;
+        }
+        assertEquals(500, count);
+
+        final File path = new File(System.getProperty("java.io.tmpdir"), "CompactReferenceContainerCacheTest");
+        FileUtils.deletedelete(path);
+        path.mkdirs();
+        try {
+            final File f0 = new File(path, "cache.blob");
+            final File f1 = new File(path, "compact.blob");
+            cache.dump(f0, 1024 * 1024, true);
+            compact.dump(f1, 1024 * 1024, true);
+            assertTrue(compact.isEmpty());
+            assertArrayEquals(Files.readAllBytes(f0.toPath()), Files.readAllBytes(f1.toPath()));
+        } finally {
+            FileUtils.deletedelete(path);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
+
+public class ReferenceBlocksTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static byte[] urlHash(final int i) {
+        return ASCII.getBytes(String.format("url%09d", i));
+    }
+
+    private static WordReference reference(final int url, final int hitcount, final int posintext) {
+        final Row.Entry entry = factory.getRow().newEntry();
+        entry.setCol(0, urlHash(url));
+        entry.setCol(14, hitcount);
+        entry.setCol(15, posintext);
+        return factory.produceSlow(entry);
+    }
+
+    private static ReferenceContainer<WordReference> container(final String term, final int urls, final int step, final Random random) throws SpaceExceededException {
+        final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, Word.word2hash(term), urls);
+        for (int u = 0; u < urls * step; u += step) c.add(reference(u, random.nextInt(64), random.nextInt(300)));
+        return c;
+    }
+
+    /**
+     * Test that the blocks written to a file contain the sorted references, their impacts and correct block maxima
+     */
+    @Test
+    public void testWriteOpen() throws SpaceExceededException, IOException {
+        final ReferenceContainer<WordReference> c = container("blocks", 1000, 3, new Random(1));
+        final File path = new File(System.getProperty("java.io.tmpdir"), "ReferenceBlocksTest");
+        FileUtils.deletedelete(path);
+        path.mkdirs();
+        final File f = new File(path, "test.rwb");
+        try {
+            ReferenceBlocks.write(factory, c, 64, 1000, f);
+            final ReferenceBlocks<WordReference> blocks = ReferenceBlocks.open(factory, f);
+            try {
+                assertEquals(1000, blocks.size());
+                assertEquals(16, blocks.blocks());
+                assertEquals(1000, blocks.sourceCount());
+                int n = 0;
+                for (int b = 0; b < blocks.blocks(); b++) {
+                    final ReferenceBlocks<WordReference>.Block block = blocks.block(b);
+                    int max = 0;
+                    for (int i = 0; i < block.count(); i++) {
+                        assertEquals(ASCII.String(urlHash(n * 3)), ASCII.String(block.key(i)));
+                        final WordReference r = block.get(i);
+                        assertEquals(factory.impact(c.getReference(urlHash(n * 3))), block.impact(i));
+                        assertEquals(c.getReference(urlHash(n * 3)).hitcount(), r.hitcount());
+                        max = Math.max(max, block.impact(i));
+                        n++;
+                    }
+                    assertEquals(max, blocks.blockMax(b));
+                    assertEquals(ASCII.String(block.key(block.count() - 1)), ASCII.String(blocks.lastKey(b)));
+                }
+                assertEquals(1000, n);
+
+                // seek: the block of a key is the first block with a last key which is not smaller
+                assertEquals(0, blocks.seekBlock(urlHash(0), 0));
+                assertEquals(1, blocks.seekBlock(urlHash(64 * 3), 0));
+                assertEquals(1, blocks.seekBlock(urlHash(63 * 3 + 1), 0));
+                assertEquals(15, blocks.seekBlock(urlHash(999 * 3), 3));
+                assertEquals(16, blocks.seekBlock(urlHash(999 * 3 + 1), 0));
+
+                // select
+                final HandleSet urls = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 10);
+                for (int u = 0; u < 3000; u += 301) urls.put(urlHash(u));
+                final ReferenceContainer<WordReference> s = blocks.select(c.getTermHash(), urls);
+                assertEquals(4, s.size()); // 0, 903, 1806, 2709
+                assertTrue(s.getReference(urlHash(903)) != null);
+                assertNull(s.getReference(urlHash(301)));
+            } finally {
+                blocks.close();
+            }
+        } finally {
+            FileUtils.deletedelete(path);
+        }
+    }
+
+    /**
+     * Test that the block-max WAND selection finds the same scores as an exhaustive top-k selection
+     */
+    @Test
+    public void testTopK() throws SpaceExceededException, IOException {
+        final Random random = new Random(2);
+        final ReferenceContainer<WordReference> a = container("a", 5000, 1, random);
+        final ReferenceContainer<WordReference> b = container("b", 2000, 3, random);
+        final ReferenceContainer<WordReference> b0 = container("b", 300, 7, random); // a second part of b, like a ram buffer
+        for (final int k: new int[]{1, 10, 100}) {
+            final List<List<ReferenceBlocks<WordReference>>> terms = new ArrayList<List<ReferenceBlocks<WordReference>>>();
+            final List<ReferenceBlocks<WordReference>> pa = new ArrayList<ReferenceBlocks<WordReference>>();
+            pa.add(ReferenceBlocks.of(factory, a, 32));
+            final List<ReferenceBlocks<WordReference>> pb = new ArrayList<ReferenceBlocks<WordReference>>();
+            pb.add(ReferenceBlocks.of(factory, b, 32));
+            pb.add(ReferenceBlocks.of(factory, b0, 32));
+            terms.add(pa);
+            terms.add(pb);
+            final HandleSet candidates = TermSearch.topk(terms, Word.commonHashOrder, Word.commonHashLength, k);
+
+            // exhaustive: the score of a url is the sum of the maximum impacts of the url in the terms
+            final Map<String, Integer> scores = new HashMap<String, Integer>();
+            for (int u = 0; u < 5000; u++) {
+                final WordReference ra = a.getReference(urlHash(u));
+                final WordReference rb = b.getReference(urlHash(u));
+                final WordReference rb0 = b0.getReference(urlHash(u));
+                if (ra == null || (rb == null && rb0 == null)) continue;
+                final int ib = Math.max(rb == null ? 0 : factory.impact(rb), rb0 == null ? 0 : factory.impact(rb0));
+                scores.put(ASCII.String(urlHash(u)), factory.impact(ra) + ib);
+            }
+            final List<Integer> expected = new ArrayList<Integer>(scores.values());
+            Collections.sort(expected, Collections.reverseOrder());
+            final List<Integer> found = new ArrayList<Integer>();
+            for (final byte[] url: candidates) found.add(scores.get(ASCII.String(url)));
+            Collections.sort(found, Collections.reverseOrder());
+            assertEquals(expected.subList(0, k), found);
+        }
+    }
+
+    /**
+     * Test that concurrent writes of the blocks of the same term do not corrupt each other
+     */
+    @Test
+    public void testConcurrentPut() throws SpaceExceededException, IOException, InterruptedException {
+        final File path = new File(System.getProperty("java.io.tmpdir"), "ReferenceBlockStoreTest");
+        FileUtils.deletedelete(path);
+        final ReferenceBlockStore<WordReference> store = new ReferenceBlockStore<WordReference>(path, factory, 64);
+        final ReferenceContainer<WordReference> c = container("concurrent", 2000, 1, new Random(3));
+        final List<IOException> errors = Collections.synchronizedList(new ArrayList<IOException>());
+        final Thread[] writers = new Thread[4];
+        try {
+            for (int t = 0; t < writers.length; t++) {
+                writers[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 20; i++) try {
+                            store.put(c.getTermHash(), c, c.size());
+                        } catch (final IOException e) {
+                            errors.add(e);
+                        }
+                    }
+                };
+                writers[t].start();
+            }
+            for (final Thread writer: writers) writer.join();
+            assertTrue(errors.toString(), errors.isEmpty());
+            final ReferenceBlocks<WordReference> blocks = store.get(c.getTermHash());
+            try {
+                assertEquals(2000, blocks.size());
+            } finally {
+                blocks.close();
+            }
+            assertEquals(1, path.list().length); // no temporary files are left
+        } finally {
+            FileUtils.deletedelete(path);
+        }
+    }
+}
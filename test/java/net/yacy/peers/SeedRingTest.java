@@ -0,0 +1,76 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+
+public class SeedRingTest {
+
+    private static Seed seed(final String hash, final String version, final boolean acceptRemoteIndex) {
+        final Seed seed = new Seed(hash, new ConcurrentHashMap<String, String>());
+        seed.put(Seed.VERSION, version);
+        seed.put("BDate", "20040101000000");
+        seed.setFlagAcceptRemoteIndex(acceptRemoteIndex);
+        return seed;
+    }
+
+    /**
+     * Test that the ring is sorted in the order of the DHT and that changes produce new rings
+     */
+    @Test
+    public void testPutRemove() {
+        final List<Seed> seeds = new ArrayList<Seed>();
+        seeds.add(seed("CCCCCCCCCCCC", "1.9", true));
+        seeds.add(seed("AAAAAAAAAAAA", "1.9", false));
+        seeds.add(seed("____________", "0.4", true));
+        final SeedRing ring = SeedRing.build(seeds);
+        assertEquals(3, ring.size());
+        assertEquals("AAAAAAAAAAAA", ASCII.String(ring.hash(0)));
+        assertEquals("CCCCCCCCCCCC", ASCII.String(ring.hash(1)));
+        assertEquals("____________", ASCII.String(ring.hash(2)));
+        assertFalse(ring.acceptRemoteIndex(0));
+        assertTrue(ring.hasVersion(1, 1.0d));
+        assertFalse(ring.hasVersion(2, 1.0d));
+        assertTrue(ring.age(0) > 365);
+
+        // positions of hashes between and behind the seeds
+        assertEquals(0, ring.position(ASCII.getBytes("AAAAAAAAAAAA")));
+        assertEquals(1, ring.position(ASCII.getBytes("BBBBBBBBBBBB")));
+        assertEquals(2, ring.position(ASCII.getBytes("zzzzzzzzzzzz")));
+        assertEquals(0, SeedRing.EMPTY.position(ASCII.getBytes("zzzzzzzzzzzz")));
+
+        // insert and replace
+        final SeedRing ring2 = ring.put(seed("BBBBBBBBBBBB", "1.9", true)).put(seed("CCCCCCCCCCCC", "1.9", false));
+        assertEquals(3, ring.size());
+        assertTrue(ring.acceptRemoteIndex(1));
+        assertEquals(4, ring2.size());
+        assertEquals("BBBBBBBBBBBB", ASCII.String(ring2.hash(1)));
+        assertEquals("CCCCCCCCCCCC", ASCII.String(ring2.hash(2)));
+        assertFalse(ring2.acceptRemoteIndex(2));
+        assertTrue(ring2.acceptRemoteIndex(3));
+
+        // the seeds of the ring are copies
+        final Seed s = ring2.seed(1);
+        assertNotSame(s, ring2.seed(1));
+        s.setFlagAcceptRemoteIndex(false);
+        assertTrue(ring2.seed(1).getFlagAcceptRemoteIndex());
+
+        // remove
+        final SeedRing ring3 = ring2.remove(ASCII.getBytes("AAAAAAAAAAAA"));
+        assertEquals(3, ring3.size());
+        assertEquals("BBBBBBBBBBBB", ASCII.String(ring3.hash(0)));
+        assertEquals("____________", ASCII.String(ring3.hash(2)));
+        assertSame(ring3, ring3.remove(ASCII.getBytes("AAAAAAAAAAAA")));
+        assertEquals(0, ring3.remove(ASCII.getBytes("BBBBBBBBBBBB")).remove(ASCII.getBytes("CCCCCCCCCCCC")).remove(ASCII.getBytes("____________")).size());
+    }
+}
@@ -307,12 +307,78 @@ public class WebStructureGraphTest {
 			Assert.assertEquals(1, inRefs.references.size());
 			/* 3 accumulated links from that host */
 			Assert.assertEquals(Integer.valueOf(3), inRefs.references.get(sourceHash));
-			
+
 		} finally {
 			graph.close();
 		}
 	}
-	
+
+	/**
+	 * References joined repeatedly from the new to the old structure must not be counted twice,
+	 * and the old structure must answer the same as the new one
+	 */
+	@Test
+	public void testJoinOldNew() throws MalformedURLException {
+
+		WebStructureGraph graph = new WebStructureGraph(null);
+		try {
+			final DigestURL source = new DigestURL("http://source.net/index.html");
+			final String sourceHash = source.hosthash();
+			final DigestURL otherSource = new DigestURL("http://other.org/index.html");
+			final String otherSourceHash = otherSource.hosthash();
+			final DigestURL target = new DigestURL("http://target.com/index.html");
+			final String targetHash = target.hosthash();
+			final DigestURL otherTarget = new DigestURL("http://othertarget.com/index.html");
+
+			Set<DigestURL> targets = new HashSet<>();
+			targets.add(target);
+			targets.add(otherTarget);
+			graph.learnrefs(new LearnObject(source, targets));
+			graph.joinOldNew();
+
+			targets = new HashSet<>();
+			targets.add(target);
+			graph.learnrefs(new LearnObject(source, targets));
+			graph.learnrefs(new LearnObject(otherSource, targets));
+
+			/* Check the references from the old structure overlaid with the new one */
+			StructureEntry inRefs = graph.incomingReferences(targetHash);
+			Assert.assertNotNull(inRefs);
+			Assert.assertEquals(2, inRefs.references.size());
+			Assert.assertEquals(Integer.valueOf(2), inRefs.references.get(sourceHash));
+			Assert.assertEquals(Integer.valueOf(1), inRefs.references.get(otherSourceHash));
+
+			graph.joinOldNew();
+			graph.joinOldNew();
+
+			/* Check the same references from the old structure only */
+			inRefs = graph.incomingReferences(targetHash);
+			Assert.assertNotNull(inRefs);
+			Assert.assertEquals("target.com", inRefs.hostname);
+			Assert.assertEquals(2, inRefs.references.size());
+			Assert.assertEquals(Integer.valueOf(2), inRefs.references.get(sourceHash));
+			Assert.assertEquals(Integer.valueOf(1), inRefs.references.get(otherSourceHash));
+
+			final StructureEntry outRefs = graph.outgoingReferences(sourceHash);
+			Assert.assertNotNull(outRefs);
+			Assert.assertEquals("source.net", outRefs.hostname);
+			Assert.assertEquals(2, outRefs.references.size());
+			Assert.assertEquals(Integer.valueOf(2), outRefs.references.get(targetHash));
+			Assert.assertEquals(Integer.valueOf(1), outRefs.references.get(otherTarget.hosthash()));
+
+			Assert.assertEquals(2, graph.referencesCount(sourceHash));
+			Assert.assertEquals(0, graph.referencesCount(targetHash));
+			Assert.assertEquals("target.com", graph.hostHash2hostName(targetHash));
+			Assert.assertTrue(graph.hostName2HostHashes("Source.net").contains(sourceHash));
+			Assert.assertEquals("source.net", graph.hostWithMaxReferences());
+			Assert.assertEquals(2, graph.hostReferenceScore().get("source.net"));
+			Assert.assertEquals(1, graph.hostReferenceScore().get("other.org"));
+
+		} finally {
+			graph.close();
+		}
+	}
+
 	/**
 	 * Simple performance measurements with a test structure filled to its limits.
 	 */
@@ -3,12 +3,26 @@ package net.yacy.search.ranking;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import net.yacy.cora.document.analysis.Classification;
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.search.index.Segment;
 import net.yacy.search.schema.CollectionConfiguration;
 import org.apache.solr.common.SolrInputDocument;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -49,4 +63,65 @@ public class ReferenceOrderTest {
 
     }
 
+    private static ReferenceContainer<WordReference> container(final int size) throws SpaceExceededException {
+        final Random random = new Random(1);
+        final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(Segment.wordReferenceFactory, Word.word2hash("test"), size);
+        for (int u = 0; u < size; u++) {
+            final Row.Entry entry = Segment.wordReferenceFactory.getRow().newEntry();
+            entry.setCol(0, ASCII.getBytes(String.format("%06dhost%02d", u, u % 17)));
+            for (int col = 1; col < 19; col++) if (col != 6 && col != 7 && col != 12 && col != 13) entry.setCol(col, random.nextInt(200));
+            entry.setCol(7, ASCII.getBytes(u % 3 == 0 ? "xx" : "en"));
+            c.add(Segment.wordReferenceFactory.produceSlow(entry));
+        }
+        return c;
+    }
+
+    private static List<Long> drain(final BlockingQueue<WordReferenceVars> queue, final ReferenceOrder order) throws InterruptedException {
+        final List<Long> scores = new ArrayList<Long>();
+        WordReferenceVars entry;
+        while ((entry = queue.take()) != WordReferenceVars.poison) scores.add(order.cardinal(entry));
+        Collections.sort(scores, Collections.reverseOrder());
+        return scores;
+    }
+
+    /**
+     * Test that the normalization returns all references or only the best references with the same ranking
+     */
+    @Test
+    public void testNormalizeWith() throws SpaceExceededException, InterruptedException {
+        final ReferenceContainer<WordReference> c = container(3000);
+        final RankingProfile rp = new RankingProfile(Classification.ContentDomain.TEXT);
+
+        final ReferenceOrder all = new ReferenceOrder(rp, "xx");
+        final List<Long> allScores = drain(all.normalizeWith(c, Long.MAX_VALUE, true), all);
+        assertEquals(3000, allScores.size());
+
+        final ReferenceOrder best = new ReferenceOrder(rp, "xx");
+        final int[] flagcount = new int[32];
+        final List<Long> bestScores = drain(best.normalizeWith(c, Long.MAX_VALUE, true, 100, flagcount), best);
+        assertEquals(allScores.subList(0, 100), bestScores);
+    }
+
+    /**
+     * Test of the selection of the best scores
+     */
+    @Test
+    public void testTop() {
+        final long[] score = new long[]{5, 1, 9, 3, 9, 7, 0};
+        assertArrayEquals(new int[]{2, 4, 5}, sortTies(ReferenceOrder.top(score, 3), score));
+        assertEquals(7, ReferenceOrder.top(score, 10).length);
+        assertEquals(0, ReferenceOrder.top(score, 0).length);
+    }
+
+    private static int[] sortTies(final int[] positions, final long[] score) {
+        // positions with equal scores may be returned in any order
+        for (int i = 1; i < positions.length; i++) {
+            assertTrue(score[positions[i - 1]] >= score[positions[i]]);
+            if (score[positions[i - 1]] == score[positions[i]] && positions[i - 1] > positions[i]) {
+                final int p = positions[i]; positions[i] = positions[i - 1]; positions[i - 1] = p;
+            }
+        }
+        return positions;
+    }
+
 }
@@ -0,0 +1,78 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverObjects;
+
+public class TemplateEngineTest {
+
+    private static String render(final String template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.writeTemplate("test", new ByteArrayInputStream(UTF8.getBytes(template)), out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    /**
+     * Test the replacement of normal patterns, multi patterns and alternatives
+     */
+    @Test
+    public void testPatterns() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("name", "John");
+        pattern.put("times", 2);
+        pattern.put("times_0_daytime", 0);
+        pattern.put("times_0_num", 1);
+        pattern.put("times_1_daytime", 1);
+        pattern.put("times_1_num", 2);
+        assertEquals("Hello John # #!", render("Hello #[name]# # #!", pattern));
+        assertEquals("-UNRESOLVED_PATTERN-", render("#[unknown]#", pattern));
+        assertEquals("Good morning (1)\nGood evening (2)\n",
+                render("#{times}#\nGood #(daytime)#morning::evening#(/daytime)# (#[num]#)\n#{/times}#\n", pattern));
+
+        // alternatives: the last alternative is taken for a too large index, nested alternatives are not split
+        pattern.put("a", 5);
+        pattern.put("b", "true");
+        assertEquals("z", render("#(a)#x::y::z#(/a)#", pattern));
+        pattern.put("b_c", 1);
+        assertEquals("y2", render("#(b)#x#(c)#1::2#(/c)#::y#(c)#1::2#(/c)##(/b)#", pattern));
+
+        // alternatives selected by name
+        pattern.put("n", "second");
+        assertEquals("two", render("#(n)#%%firstone::%%secondtwo#(/n)#", pattern));
+    }
+
+    /**
+     * Test that a template file is rendered again after it was modified
+     */
+    @Test
+    public void testFileCache() throws IOException {
+        final File f = File.createTempFile("TemplateEngineTest", ".html");
+        try {
+            final serverObjects pattern = new serverObjects();
+            pattern.put("x", "1");
+            FileUtils.copy(UTF8.getBytes("a#[x]#"), f);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TemplateEngine.writeTemplate(f.getName(), f, out, pattern);
+            assertEquals("a1", UTF8.String(out.toByteArray()));
+            out = new ByteArrayOutputStream();
+            TemplateEngine.writeTemplate(f.getName(), f, out, pattern);
+            assertEquals("a1", UTF8.String(out.toByteArray()));
+
+            FileUtils.copy(UTF8.getBytes("bb#[x]#"), f);
+            out = new ByteArrayOutputStream();
+            TemplateEngine.writeTemplate(f.getName(), f, out, pattern);
+            assertEquals("bb1", UTF8.String(out.toByteArray()));
+        } finally {
+            FileUtils.deletedelete(f);
+        }
+    }
+}